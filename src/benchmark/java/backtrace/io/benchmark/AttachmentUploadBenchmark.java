@@ -0,0 +1,128 @@
+package backtrace.io.benchmark;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.HttpConnectionPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures throughput of report upload with a large attachment to a local server,
+ * using {@link java.net.HttpURLConnection} and the connection pool, and counts file descriptors
+ * left open after the uploads. Run with
+ * {@code ./gradlew benchmark -Pbenchmark=AttachmentUploadBenchmark}, optional arguments are attachment size
+ * in MB and number of uploads
+ */
+public class AttachmentUploadBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final String RESPONSE = "{\"response\":\"ok\",\"_rxid\":\"03000000-cdf4-a003-0000-000000000000\"}";
+
+    public static void main(String[] args) throws IOException {
+        int sizeMegabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        File attachment = createAttachment(sizeMegabytes);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", AttachmentUploadBenchmark::handle);
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+        BacktraceData data = new BacktraceData(new BacktraceReport("benchmark",
+                Collections.singletonList(attachment.getAbsolutePath())));
+
+        try {
+            System.out.println(String.format("%-25s %12s %12s %12s", "transport", "p50 [ms]", "MB/s",
+                    "open files"));
+            print("HttpURLConnection", sizeMegabytes, measure(iterations, serverUrl -> ApiSender.sendReport(serverUrl, data), url));
+            HttpConnectionPool pool = new HttpConnectionPool(1, 1, TimeUnit.MINUTES);
+            print("connection pool", sizeMegabytes, measure(iterations,
+                    serverUrl -> ApiSender.sendReport(serverUrl, data, pool), url));
+            pool.close();
+        } finally {
+            server.stop(0);
+            attachment.delete();
+        }
+    }
+
+    private static File createAttachment(int sizeMegabytes) throws IOException {
+        File attachment = File.createTempFile("backtrace-benchmark", ".log");
+        byte[] block = new byte[1024 * 1024];
+        Random random = new Random(0);
+        try (OutputStream outputStream = new FileOutputStream(attachment)) {
+            for (int i = 0; i < sizeMegabytes; i++) {
+                random.nextBytes(block);
+                outputStream.write(block);
+            }
+        }
+        return attachment;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            while (inputStream.read(buffer) != -1) {
+                // request body is discarded
+            }
+        }
+        byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    private static long[] measure(int iterations, Function<String, BacktraceResult> upload, String url) {
+        long openFilesBefore = getOpenFiles();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            check(upload.apply(url));
+        }
+        long[] samples = new long[iterations + 1];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            check(upload.apply(url));
+            samples[i] = System.nanoTime() - start;
+        }
+        System.gc();
+        samples[iterations] = getOpenFiles() - openFilesBefore;
+        return samples;
+    }
+
+    private static void check(BacktraceResult result) {
+        if (result.getStatus() != BacktraceResultStatus.Ok) {
+            throw new IllegalStateException("Upload failed: " + result.getMessage());
+        }
+    }
+
+    private static long getOpenFiles() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            return ((com.sun.management.UnixOperatingSystemMXBean) bean).getOpenFileDescriptorCount();
+        }
+        return -1;
+    }
+
+    private static void print(String transport, int sizeMegabytes, long[] results) {
+        long openFiles = results[results.length - 1];
+        long[] samples = Arrays.copyOf(results, results.length - 1);
+        Arrays.sort(samples);
+        double median = samples[samples.length / 2] / 1000000.0;
+        System.out.println(String.format("%-25s %12.1f %12.1f %12s", transport, median,
+                sizeMegabytes * 1000.0 / median, openFiles >= 0 ? "+" + openFiles : "n/a"));
+    }
+}
@@ -0,0 +1,111 @@
+package backtrace.io.benchmark;
+
+import backtrace.io.BacktraceClient;
+import backtrace.io.BacktraceConfig;
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the calling thread is blocked by {@link BacktraceClient#send(BacktraceReport)}
+ * and compares it with the cost of gathering the report data, which is done by the sender threads,
+ * and with the cost of a report rejected by the rate limiter.
+ * Run with {@code ./gradlew benchmark}
+ */
+public class SendLatencyBenchmark {
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int ITERATIONS = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("benchmark", SendLatencyBenchmark.class.getSimpleName());
+
+        System.out.println(String.format("%-40s %10s %10s %10s %10s", "operation", "p50 [us]", "p90 [us]",
+                "p99 [us]", "max [us]"));
+        for (boolean allThreads : new boolean[]{false, true}) {
+            print("BacktraceData, allThreads=" + allThreads, measureDataCreation(iterations, attributes, allThreads));
+            print("send(report), allThreads=" + allThreads, measureSend(iterations, attributes, allThreads));
+        }
+        print("send(exception), rate limited", measureRateLimitedSend(iterations));
+    }
+
+    private static long[] measureDataCreation(int iterations, Map<String, Object> attributes, boolean allThreads) {
+        BacktraceReport report = new BacktraceReport(new Exception("benchmark"));
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            new BacktraceData(report, attributes, allThreads);
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            new BacktraceData(report, attributes, allThreads);
+            samples[i] = System.nanoTime() - start;
+        }
+        return samples;
+    }
+
+    private static long[] measureSend(int iterations, Map<String, Object> attributes, boolean allThreads)
+            throws InterruptedException {
+        BacktraceConfig config = new BacktraceConfig("https://localhost/", "token");
+        config.disableDatabase();
+        config.setGatherAllThreads(allThreads);
+        BacktraceClient client = new BacktraceClient(config, attributes);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), ""));
+
+        Exception exception = new Exception("benchmark");
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            client.send(new BacktraceReport(exception));
+        }
+        client.await(1, TimeUnit.MINUTES);
+
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            BacktraceReport report = new BacktraceReport(exception);
+            long start = System.nanoTime();
+            client.send(report);
+            samples[i] = System.nanoTime() - start;
+        }
+        client.await(1, TimeUnit.MINUTES);
+        client.close();
+        return samples;
+    }
+
+    private static long[] measureRateLimitedSend(int iterations) throws InterruptedException {
+        BacktraceConfig config = new BacktraceConfig("https://localhost/", "token");
+        config.disableDatabase();
+        config.setRateLimit(0.001, 1);
+        BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), ""));
+
+        Exception exception = new Exception("benchmark");
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            client.send(exception);
+        }
+
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            client.send(exception);
+            samples[i] = System.nanoTime() - start;
+        }
+        client.close();
+        return samples;
+    }
+
+    private static void print(String operation, long[] samples) {
+        Arrays.sort(samples);
+        System.out.println(String.format("%-40s %10.1f %10.1f %10.1f %10.1f", operation,
+                percentile(samples, 0.5), percentile(samples, 0.9), percentile(samples, 0.99),
+                samples[samples.length - 1] / 1000.0));
+    }
+
+    private static double percentile(long[] sortedSamples, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(index, 0)] / 1000.0;
+    }
+}
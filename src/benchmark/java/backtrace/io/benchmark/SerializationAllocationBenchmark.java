@@ -0,0 +1,123 @@
+package backtrace.io.benchmark;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.helpers.BacktraceSerializeHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures heap allocated per report by serialization of the report to the request body,
+ * building the JSON string and copying it to bytes compared with serializing directly to the stream,
+ * and by the multipart body sent with Content-Length header, whose JSON was buffered before it was written.
+ * Run with {@code ./gradlew benchmark -Pbenchmark=SerializationAllocationBenchmark}
+ */
+public class SerializationAllocationBenchmark {
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 2_000;
+    private static final int LARGE_REPORT_ATTRIBUTES = 5_000;
+
+    private interface Serializer {
+        void write(BacktraceData data, OutputStream outputStream) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("benchmark", SerializationAllocationBenchmark.class.getSimpleName());
+
+        Map<String, Object> largeAttributes = new HashMap<>(attributes);
+        for (int i = 0; i < LARGE_REPORT_ATTRIBUTES; i++) {
+            largeAttributes.put("attribute." + i, "value of attribute number " + i);
+        }
+
+        System.out.println(String.format("%-50s %12s %14s", "operation", "JSON [KB]", "allocated [KB]"));
+        measure(threadBean, iterations, "allThreads=false", new BacktraceData(
+                new BacktraceReport(new Exception("benchmark")), attributes, false));
+        measure(threadBean, iterations, "allThreads=true", new BacktraceData(
+                new BacktraceReport(new Exception("benchmark")), attributes, true));
+        measure(threadBean, iterations, LARGE_REPORT_ATTRIBUTES + " attributes", new BacktraceData(
+                new BacktraceReport(new Exception("benchmark")), largeAttributes, true));
+    }
+
+    private static void measure(com.sun.management.ThreadMXBean threadBean, int iterations, String name,
+                                BacktraceData data) throws Exception {
+        int jsonSize = BacktraceSerializeHelper.toJson(data).getBytes(StandardCharsets.UTF_8).length;
+        print("toJson + getBytes, " + name, jsonSize, measure(threadBean, iterations, data,
+                (report, outputStream) -> outputStream.write(
+                        BacktraceSerializeHelper.toJson(report).getBytes(StandardCharsets.UTF_8))));
+        print("toJson(stream), " + name, jsonSize, measure(threadBean, iterations, data,
+                (report, outputStream) -> BacktraceSerializeHelper.toJson(outputStream, report)));
+        print("buffered JSON + toByteArray, " + name, jsonSize, measure(threadBean, iterations, data,
+                (report, outputStream) -> {
+                    ByteArrayOutputStream json = new ByteArrayOutputStream();
+                    BacktraceSerializeHelper.toJson(json, report);
+                    outputStream.write(json.toByteArray());
+                }));
+        print("MultipartBody create + writeTo, " + name, jsonSize,
+                measure(threadBean, iterations, data, multipartBody()));
+    }
+
+    /**
+     * Creates the multipart body sent without compression and writes it to the stream,
+     * the body is internal to the http package, so it is accessed by reflection
+     */
+    private static Serializer multipartBody() throws ReflectiveOperationException {
+        Class<?> bodyClass = Class.forName("backtrace.io.http.MultipartBody");
+        Method create = bodyClass.getDeclaredMethod("create", BacktraceData.class);
+        Method writeTo = bodyClass.getDeclaredMethod("writeTo", OutputStream.class);
+        create.setAccessible(true);
+        writeTo.setAccessible(true);
+        return (report, outputStream) -> {
+            try {
+                writeTo.invoke(create.invoke(null, report), outputStream);
+            } catch (InvocationTargetException e) {
+                throw new IOException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static double measure(com.sun.management.ThreadMXBean threadBean, int iterations, BacktraceData data,
+                                  Serializer serializer) throws IOException {
+        OutputStream outputStream = new NullOutputStream();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            serializer.write(data, outputStream);
+        }
+        long threadId = Thread.currentThread().getId();
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            serializer.write(data, outputStream);
+        }
+        return (double) (threadBean.getThreadAllocatedBytes(threadId) - start) / iterations;
+    }
+
+    private static void print(String operation, int jsonSize, double allocatedBytes) {
+        System.out.println(String.format("%-50s %12.1f %14.1f", operation, jsonSize / 1024.0,
+                allocatedBytes / 1024.0));
+    }
+
+    /**
+     * Discards written bytes, like a socket which does not keep the request in memory
+     */
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
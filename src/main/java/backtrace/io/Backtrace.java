@@ -3,124 +3,594 @@ package backtrace.io;
 import backtrace.io.data.BacktraceData;
 import backtrace.io.data.BacktraceReport;
 import backtrace.io.database.BacktraceDatabase;
+import backtrace.io.events.AsyncRequestHandler;
 import backtrace.io.events.OnServerResponseEvent;
 import backtrace.io.http.ApiSender;
 import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.HttpConnectionPool;
+import backtrace.io.http.RequestCompression;
+import backtrace.io.http.RequestTimeouts;
 import backtrace.io.http.BacktraceResultStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
 class Backtrace {
     private static final transient Logger LOGGER = LoggerFactory.getLogger(Backtrace.class);
+    private static final int MAX_SPILLED_REPORTS = 10_000; // names of stored reports sent when the circuit closes
     private BacktraceQueue queue;
     private BacktraceDatabase database;
+    private final BacktraceRetryScheduler retryScheduler;
     private final BacktraceConfig config;
+    private final BacktraceMetrics metrics;
+    private final HttpConnectionPool connectionPool;
+    private final RequestCompression compression;
+    private final RequestTimeouts timeouts;
+    private final int maxAsyncRequests;
+    private final Semaphore asyncRequests; // permits of requests in progress of asynchronous request handlers
+    private final Map<String, BacktraceCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final EndpointSelector endpointSelector;
+    private final Queue<String> spilledReports = new ConcurrentLinkedQueue<>(); // names of reports stored while circuit was open
+    private final AtomicInteger spilledReportsCount = new AtomicInteger();
+    private final int maxSpilledReports;
 
     /**
      * Creates Backtrace instance
      *
-     * @param config Library configuration
-     * @param queue  Queue containing error reports that should be sent to the Backtrace console
+     * @param config  Library configuration
+     * @param queue   Queue containing error reports that should be sent to the Backtrace console
+     * @param metrics Library counters
      */
-    Backtrace(BacktraceConfig config, BacktraceQueue queue) {
+    Backtrace(BacktraceConfig config, BacktraceQueue queue, BacktraceMetrics metrics) {
         this.database = BacktraceDatabase.init(config, queue);
         this.config = config;
+        this.metrics = metrics;
         this.queue = queue;
+        this.queue.setDatabase(this.database);
+        this.retryScheduler = new BacktraceRetryScheduler(config, queue);
+        this.connectionPool = config.getConnectionPoolSize() > 0 ? metrics.registerConnectionPool(
+                new HttpConnectionPool(config.getConnectionPoolSize(), config.getConnectionPoolIdleTimeoutMillis(),
+                        TimeUnit.MILLISECONDS)) : null;
+        this.compression = config.getCompressionType() != null ? metrics.registerCompression(
+                new RequestCompression(config.getCompressionType(), config.getCompressionLevel(),
+                        config.getCompressionThreshold())) : null;
+        this.timeouts = new RequestTimeouts(config.getConnectTimeoutMillis(), config.getReadTimeoutMillis(),
+                config.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS);
+        this.maxAsyncRequests = config.getMaxConcurrentRequests();
+        this.asyncRequests = new Semaphore(this.maxAsyncRequests);
+        this.endpointSelector = new EndpointSelector(config, metrics, this::getCircuitBreaker);
+        int maxRecordCount = config.getDatabaseConfig().getDatabaseMaxRecordCount();
+        this.maxSpilledReports = maxRecordCount > 0 ? Math.min(maxRecordCount, MAX_SPILLED_REPORTS) : MAX_SPILLED_REPORTS;
     }
 
     /**
-     * Handles the queue of incoming error reports
+     * Handles the queue of incoming error reports, many workers can handle the same queue concurrently
+     *
+     * @param workerMetrics counters of the worker which handles the message
      */
-    void handleBacktraceMessage() {
-        if (queue.isEmpty()) {
-            this.queue.queueIsEmpty();
-            this.queue.unlock();
+    void handleBacktraceMessage(BacktraceWorkerMetrics workerMetrics) {
+        BacktraceMessage message;
+        try {
+            message = this.queue.take();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for message from queue");
+            return;
+        }
+
+        if (message == null) {
+            return;
         }
 
+        processMessage(message, workerMetrics);
+    }
+
+    /**
+     * Takes a message from the queue and processes it on the executor, the number of messages processed
+     * at the same time is limited by permits
+     *
+     * @param executor      executor on which the message is processed
+     * @param permits       semaphore limiting number of concurrent requests
+     * @param workerMetrics counters of the worker which dispatches the message
+     */
+    void dispatchBacktraceMessage(Executor executor, final Semaphore permits, final BacktraceWorkerMetrics workerMetrics) {
+        final BacktraceMessage message;
         try {
-            if (this.queue.isClosing()) {
-                return;
-            }
-            this.queue.awaitNewMessage();
-            BacktraceMessage message = queue.poll();
-            if (message != null) {
-                processSingleBacktraceMessage(message);
-            }
+            permits.acquire();
+            message = this.queue.take();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for message from queue");
+            return;
+        }
+
+        if (message == null) {
+            permits.release();
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    processMessage(message, workerMetrics);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.error("Can not dispatch message from queue", e);
+            permits.release();
+            this.queue.messageProcessed();
+        }
+    }
+
+    /**
+     * Process a message taken from the queue and inform the queue that processing is finished.
+     * A message sent by an asynchronous request handler is finished when the response is received
+     *
+     * @param message       message containing error report and callback
+     * @param workerMetrics counters of the worker which handles the message
+     */
+    private void processMessage(BacktraceMessage message, BacktraceWorkerMetrics workerMetrics) {
+        long start = System.nanoTime();
+        workerMetrics.processingStarted();
+        CompletableFuture<Void> processing = null;
+        try {
+            processing = processSingleBacktraceMessage(message);
         } catch (Exception e) {
             LOGGER.error("Exception during pipeline for message from queue..", e);
+            message.completeExceptionally(e);
+        } finally {
+            workerMetrics.processingFinished(System.nanoTime() - start);
+            if (processing == null) {
+                this.queue.messageProcessed();
+            }
         }
+
+        if (processing == null) {
+            return;
+        }
+        processing.whenComplete((ignored, exception) -> {
+            try {
+                if (exception != null) {
+                    Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                            ? exception.getCause() : exception;
+                    LOGGER.error("Exception during pipeline for message from queue..", cause);
+                    message.completeExceptionally(cause);
+                }
+            } finally {
+                this.queue.messageProcessed();
+            }
+        });
     }
 
     /**
      * Process a single message from the queue
      *
      * @param backtraceMessage message containing error report and callback
+     * @return future completed when the response is handled
      */
-    private void processSingleBacktraceMessage(BacktraceMessage backtraceMessage) {
+    private CompletableFuture<Void> processSingleBacktraceMessage(BacktraceMessage backtraceMessage) {
         BacktraceData backtraceData = backtraceMessage.getBacktraceData();
 
         if (backtraceData == null) {
             LOGGER.warn("BacktraceData in queue is null");
-            return;
+            backtraceMessage.complete(null);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (backtraceData.getReport().getRetryCounter() == 0) {
+            this.database.saveReport(backtraceData);
+        }
+
+        BacktraceConfig clientConfig = this.getClientConfig(backtraceMessage);
+        String submissionUrl = this.getSubmissionUrl(backtraceData, clientConfig);
+        BacktraceCircuitBreaker circuitBreaker = this.getCircuitBreaker(submissionUrl);
+        if (circuitBreaker != null && !circuitBreaker.isAvailable()) {
+            this.handleOpenCircuit(backtraceMessage, circuitBreaker);
+            return CompletableFuture.completedFuture(null);
         }
 
-        this.database.saveReport(backtraceData);
         LOGGER.debug("Message from current report: " + backtraceData.getReport().getMessage());
-        if (config.getBeforeSendEvent() != null) {
+        if (clientConfig.getBeforeSendEvent() != null) {
             LOGGER.debug("Custom before sending event");
-            backtraceData = config.getBeforeSendEvent().onEvent(backtraceData);
+            backtraceData = clientConfig.getBeforeSendEvent().onEvent(backtraceData);
         }
+        backtraceData.limitAttachments(clientConfig.getMaxAttachmentBytes(),
+                clientConfig.getMaxReportAttachmentBytes());
 
-        BacktraceResult result = this.sendReport(backtraceData);
+        AsyncRequestHandler asyncRequestHandler = clientConfig.getAsyncRequestHandler();
+        if (asyncRequestHandler != null) {
+            try {
+                this.asyncRequests.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CompletableFuture<Void> interrupted = new CompletableFuture<>();
+                interrupted.completeExceptionally(e);
+                return interrupted;
+            }
+            if (!this.allowRequest(backtraceMessage, circuitBreaker)) {
+                this.asyncRequests.release();
+                return CompletableFuture.completedFuture(null);
+            }
+            return this.sendReportAsync(asyncRequestHandler, submissionUrl, backtraceData, circuitBreaker)
+                    .thenAccept(result -> this.handleResult(result, backtraceMessage));
+        }
+
+        if (!this.allowRequest(backtraceMessage, circuitBreaker)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BacktraceResult result = this.sendReport(clientConfig, submissionUrl, backtraceData, circuitBreaker);
+        this.handleResult(result, backtraceMessage);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Checks right before the report is sent whether the circuit breaker allows it, so a probe report is sent
+     * only when nothing can stop the request and its response is always recorded
+     *
+     * @param backtraceMessage message containing error report and callback
+     * @param circuitBreaker   circuit breaker guarding the submission endpoint or null if it is disabled
+     * @return {@code true} if the report should be sent, otherwise the report is handled as if the circuit was open
+     */
+    private boolean allowRequest(BacktraceMessage backtraceMessage, BacktraceCircuitBreaker circuitBreaker) {
+        if (circuitBreaker == null || circuitBreaker.allowRequest()) {
+            return true;
+        }
+        this.handleOpenCircuit(backtraceMessage, circuitBreaker);
+        return false;
+    }
 
-        this.handleResponse(result, backtraceMessage);
+    /**
+     * Handles server response, executes callback and completes the message unless the report will be sent again
+     *
+     * @param result           server response
+     * @param backtraceMessage message containing error report and callback
+     */
+    private void handleResult(BacktraceResult result, BacktraceMessage backtraceMessage) {
+        if (result == null) {
+            LOGGER.warn("Request handler returned null result");
+            backtraceMessage.complete(null);
+            return;
+        }
+
+        boolean retrying = this.handleResponse(result, backtraceMessage);
 
         OnServerResponseEvent callback = backtraceMessage.getCallback();
         if (callback != null) {
             LOGGER.debug("Custom callback");
             callback.onEvent(result);
         }
+
+        if (!retrying) {
+            backtraceMessage.complete(result);
+        }
+    }
+
+    /**
+     * Returns configuration of the client which sent the report, reports loaded from the database
+     * are handled with the configuration of the dispatcher
+     *
+     * @param backtraceMessage message containing error report
+     * @return client configuration
+     */
+    private BacktraceConfig getClientConfig(BacktraceMessage backtraceMessage) {
+        return backtraceMessage.getConfig() != null ? backtraceMessage.getConfig() : this.config;
+    }
+
+    /**
+     * Returns endpoint of the client which sent the report. If the client has more endpoints, a healthy endpoint
+     * is chosen each time the report is sent, including retries, and stored in the report
+     *
+     * @param backtraceData error report
+     * @param clientConfig  configuration of the client which sent the report
+     * @return submission url
+     */
+    private String getSubmissionUrl(BacktraceData backtraceData, BacktraceConfig clientConfig) {
+        String submissionUrl = backtraceData.getSubmissionUrl();
+        if (clientConfig.getSubmissionEndpoints().size() > 1 &&
+                (submissionUrl == null || clientConfig.isSubmissionEndpoint(submissionUrl))) {
+            submissionUrl = this.endpointSelector.select(clientConfig);
+            backtraceData.setSubmissionUrl(submissionUrl);
+        }
+        return submissionUrl != null ? submissionUrl : this.config.getSubmissionUrl();
+    }
+
+    /**
+     * Sends a error report and records in the circuit breaker and endpoint counters whether the endpoint is available
+     *
+     * @param clientConfig   configuration of the client which sent the report
+     * @param submissionUrl  endpoint to which the report is sent
+     * @param backtraceData  error report
+     * @param circuitBreaker circuit breaker guarding the submission endpoint or null if it is disabled
+     * @return server response
+     */
+    private BacktraceResult sendReport(BacktraceConfig clientConfig, String submissionUrl,
+                                       BacktraceData backtraceData, BacktraceCircuitBreaker circuitBreaker) {
+        long startNanos = System.nanoTime();
+        BacktraceResult result = null;
+        try {
+            result = this.sendReport(clientConfig, submissionUrl, backtraceData);
+            return result;
+        } finally {
+            this.recordResponse(submissionUrl, circuitBreaker, result, startNanos);
+        }
+    }
+
+    /**
+     * Sends a error report using asynchronous request handler without blocking the current thread.
+     * The caller acquires the asynchronous request permit, which is released when the request is completed.
+     * If the request is not completed within the request timeout, the future is completed with timeout result
+     *
+     * @param asyncRequestHandler request handler which sends the report
+     * @param submissionUrl       endpoint to which the report is sent
+     * @param backtraceData       error report
+     * @param circuitBreaker      circuit breaker guarding the submission endpoint or null if it is disabled
+     * @return future completed with server response
+     */
+    private CompletableFuture<BacktraceResult> sendReportAsync(AsyncRequestHandler asyncRequestHandler,
+                                                               String submissionUrl, BacktraceData backtraceData,
+                                                               BacktraceCircuitBreaker circuitBreaker) {
+        boolean started = false;
+        try {
+            if (backtraceData.getSubmissionUrl() == null) {
+                backtraceData.setSubmissionUrl(submissionUrl);
+            }
+            long startNanos = System.nanoTime();
+            CompletableFuture<BacktraceResult> request;
+            try {
+                LOGGER.debug("Custom asynchronous request handler");
+                request = asyncRequestHandler.onRequest(backtraceData);
+                if (request == null) {
+                    request = CompletableFuture.completedFuture(null);
+                }
+            } catch (Exception e) {
+                request = new CompletableFuture<>();
+                request.completeExceptionally(e);
+            }
+            if (this.timeouts.getRequestTimeoutMillis() > 0) {
+                request = this.withTimeout(request, backtraceData.getReport());
+            }
+            CompletableFuture<BacktraceResult> response = request.whenComplete((result, exception) -> {
+                this.asyncRequests.release();
+                this.recordResponse(submissionUrl, circuitBreaker, result, startNanos);
+            });
+            started = true;
+            return response;
+        } finally {
+            if (!started) {
+                this.asyncRequests.release();
+                if (circuitBreaker != null) {
+                    circuitBreaker.releaseProbe();
+                }
+            }
+        }
+    }
+
+    /**
+     * Completes request of asynchronous request handler with timeout result, if the handler does not complete it
+     * within the request timeout
+     *
+     * @param request future of the request
+     * @param report  error report sent by the request
+     * @return future completed with server response or timeout result
+     */
+    private CompletableFuture<BacktraceResult> withTimeout(CompletableFuture<BacktraceResult> request,
+                                                           BacktraceReport report) {
+        return this.timeouts.orTimeout(request)
+                .handle((result, exception) -> {
+                    Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                    if (cause instanceof TimeoutException) {
+                        LOGGER.error("Asynchronous request has not been completed within " +
+                                this.timeouts.getRequestTimeoutMillis() + " ms", cause);
+                        return BacktraceResult.onError(report, (TimeoutException) cause);
+                    }
+                    if (exception != null) {
+                        throw exception instanceof CompletionException ? (CompletionException) exception
+                                : new CompletionException(exception);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Wait until responses for all requests sent by asynchronous request handlers are received
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void awaitAsyncRequests() throws InterruptedException {
+        this.asyncRequests.acquire(this.maxAsyncRequests);
+        this.asyncRequests.release(this.maxAsyncRequests);
     }
 
     /**
      * Sends a error report using custom request handler or send it to the Backtrace console by a default method
      *
+     * @param clientConfig  configuration of the client which sent the report
+     * @param submissionUrl endpoint to which the report is sent
      * @param backtraceData error report
      * @return server response
      */
-    private BacktraceResult sendReport(BacktraceData backtraceData) {
-        if (this.config.getRequestHandler() != null) {
+    private BacktraceResult sendReport(BacktraceConfig clientConfig, String submissionUrl,
+                                       BacktraceData backtraceData) {
+        if (clientConfig.getRequestHandler() != null) {
             LOGGER.debug("Custom request handler");
-            return this.config.getRequestHandler().onRequest(backtraceData);
+            return clientConfig.getRequestHandler().onRequest(backtraceData);
         }
         LOGGER.debug("Default request handler");
-        return ApiSender.sendReport(config.getSubmissionUrl(), backtraceData);
+        return ApiSender.sendReport(submissionUrl, backtraceData, this.connectionPool, this.compression,
+                this.timeouts);
     }
 
     /**
      * Depending on the status of the response from the server, it performs various processing flows.
      * If successful, it marks the report as sent and deletes it from the database.
-     * In case of failure, if the repetition limit is not exceeded, it adds to the queue.
+     * In case of failure, if the repetition limit is not exceeded, it schedules sending the report again
+     * after backoff delay and stores the increased retry counter in the database. Timed out requests are retried.
      *
      * @param result           server response
      * @param backtraceMessage message containing error report and callback
+     * @return {@code true} if the report will be sent again
      */
-    private void handleResponse(BacktraceResult result, BacktraceMessage backtraceMessage) {
+    private boolean handleResponse(BacktraceResult result, BacktraceMessage backtraceMessage) {
         if (result.getStatus() == BacktraceResultStatus.Ok) {
+            this.metrics.reportSent();
             if (config.getDatabaseConfig().isDatabaseEnabled()) {
                 database.removeReport(backtraceMessage.getBacktraceData());
             }
-            return;
+            return false;
         }
 
-        BacktraceReport report = backtraceMessage.getBacktraceData().getReport();
+        BacktraceReport report = backtraceMessage.getReport();
         if (result.shouldRetry() && report.getRetryCounter() < config.getDatabaseConfig().getDatabaseRetryLimit()) {
             report.incrementRetryCounter();
-            this.queue.addWithLock(backtraceMessage);
+            this.database.saveReport(backtraceMessage.getBacktraceData());
+            this.retryScheduler.schedule(backtraceMessage, report.getRetryCounter());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns circuit breaker guarding the submission endpoint, creating it on first use.
+     * Circuit breakers are identified in logs and metrics by the redacted submission url, so the token is not exposed
+     *
+     * @param url submission url
+     * @return circuit breaker or null if circuit breaker is disabled
+     */
+    private BacktraceCircuitBreaker getCircuitBreaker(String url) {
+        if (!config.isCircuitBreakerEnabled()) {
+            return null;
+        }
+        return circuitBreakers.computeIfAbsent(url, key -> metrics.registerCircuitBreaker(new BacktraceCircuitBreaker(
+                EndpointSelector.redact(key), config.getCircuitBreakerFailureThreshold(),
+                TimeUnit.MILLISECONDS.toNanos(config.getCircuitBreakerOpenDurationMillis()))));
+    }
+
+    /**
+     * Updates endpoint counters and circuit breaker state, a missing response, a timeout or a response which should
+     * be retried means the endpoint is unavailable. When the circuit closes, reports stored while it was open are sent
+     *
+     * @param submissionUrl  endpoint to which the report has been sent
+     * @param circuitBreaker circuit breaker guarding the submission endpoint or null if it is disabled
+     * @param result         server response or null if there is no response
+     * @param startNanos     time when the request was started
+     */
+    private void recordResponse(String submissionUrl, BacktraceCircuitBreaker circuitBreaker,
+                                BacktraceResult result, long startNanos) {
+        boolean failed = result == null ||
+                (result.getStatus() != BacktraceResultStatus.Ok && result.shouldRetry());
+        this.endpointSelector.getEndpoint(submissionUrl).onResponse(System.nanoTime() - startNanos, failed);
+        if (circuitBreaker == null) {
+            return;
+        }
+        if (failed) {
+            circuitBreaker.onFailure();
+            return;
+        }
+        if (circuitBreaker.onSuccess()) {
+            this.loadSpilledReports();
+        }
+    }
+
+    /**
+     * Handles a report which can not be sent because the circuit is open. If the report is stored in the database,
+     * it will be sent when the circuit closes, otherwise it is scheduled to be sent after the circuit open duration.
+     * Only the name of the stored report is kept in memory, so a long outage does not keep reports on the heap.
+     * Reports stored over the limit of remembered names are sent the next time the library starts
+     *
+     * @param backtraceMessage message containing error report and callback
+     * @param circuitBreaker   open circuit breaker
+     */
+    private void handleOpenCircuit(BacktraceMessage backtraceMessage, BacktraceCircuitBreaker circuitBreaker) {
+        BacktraceReport report = backtraceMessage.getReport();
+        String reportName = this.database.getReportName(report);
+        if (reportName == null) {
+            LOGGER.debug("Circuit is open and report can not be stored in the database, report will be sent later");
+            long delayMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(circuitBreaker.getRemainingOpenNanos()),
+                    config.getRetryInitialDelayMillis());
+            this.retryScheduler.schedule(backtraceMessage, delayMillis);
+            return;
+        }
+
+        String reason = String.format("Circuit breaker for %s is open, report has been stored in the database",
+                circuitBreaker.getUrl());
+        LOGGER.warn(reason);
+        if (this.spilledReportsCount.incrementAndGet() <= this.maxSpilledReports) {
+            this.spilledReports.add(reportName);
+        } else {
+            this.spilledReportsCount.decrementAndGet();
+            LOGGER.debug("Too many reports stored while circuit is open, report will be sent after restart");
+        }
+        this.metrics.reportSpilled();
+
+        BacktraceResult result = BacktraceResult.onError(report, new IllegalStateException(reason));
+        OnServerResponseEvent callback = backtraceMessage.getCallback();
+        if (callback != null) {
+            callback.onEvent(result);
+        }
+        backtraceMessage.complete(result);
+
+        if (circuitBreaker.getState() == CircuitBreakerState.Closed) {
+            this.loadSpilledReports();
+        }
+    }
+
+    /**
+     * Adds reports stored in the database while the circuit was open back to the queue
+     */
+    private void loadSpilledReports() {
+        String reportName;
+        while ((reportName = this.spilledReports.poll()) != null) {
+            this.spilledReportsCount.decrementAndGet();
+            BacktraceData backtraceData = this.database.loadReport(reportName);
+            if (backtraceData == null) {
+                LOGGER.warn("Report stored while circuit was open can not be loaded from the database");
+                continue;
+            }
+            this.queue.offer(new BacktraceMessage(backtraceData, null));
         }
     }
 
     void close() {
+        this.close(null);
+    }
+
+    /**
+     * Stops sending reports and passes messages waiting for retry to the handler
+     *
+     * @param remainingMessageHandler handles messages which will not be sent, if null the messages are cancelled
+     */
+    void close(Consumer<BacktraceMessage> remainingMessageHandler) {
         this.queue.close();
+        if (remainingMessageHandler != null) {
+            this.retryScheduler.close(remainingMessageHandler);
+        } else {
+            this.retryScheduler.close();
+        }
+        if (this.connectionPool != null) {
+            this.connectionPool.close();
+        }
+    }
+
+    /**
+     * Aborts requests sent by the default request handler which are in progress, by closing their connections
+     */
+    void abortRequests() {
+        this.timeouts.abortRequests();
+    }
+
+    boolean isClosing() {
+        return this.queue.isClosing();
     }
 }
@@ -0,0 +1,251 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses reports of identical exceptions into one report. The first report with given fingerprint
+ * is sent immediately and opens the aggregation window, identical reports received in the meantime are collapsed
+ * into the first of them, which only increases its occurrence count. When the window elapses, the collapsed report
+ * is sent with occurrence count and first-seen and last-seen timestamps as attributes. The collapsed report
+ * is pending in the queue while it is held, so waiting for the queue includes aggregated reports
+ */
+class BacktraceAggregator {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceAggregator.class);
+    private final static String THREAD_NAME = "backtrace-aggregator";
+    static final String OCCURRENCES_ATTRIBUTE = "occurrences";
+    static final String FIRST_SEEN_ATTRIBUTE = "first_seen";
+    static final String LAST_SEEN_ATTRIBUTE = "last_seen";
+
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final long windowMillis;
+    private final int stackFrames;
+    private final BacktraceQueueHandler queueHandler;
+    private final Sender sender;
+    private ScheduledExecutorService scheduler;
+    private boolean closed = false;
+
+    /**
+     * Sends aggregated report
+     */
+    interface Sender {
+        CompletableFuture<BacktraceResult> send(BacktraceReport report, ReportPriority priority,
+                                                Map<String, Object> attributes, String reportingThreadName);
+    }
+
+    /**
+     * Creates aggregator with settings taken from library configuration
+     *
+     * @param config       library configuration
+     * @param queueHandler queue in which collapsed reports are pending while they are held
+     * @param sender       sends reports
+     */
+    BacktraceAggregator(BacktraceConfig config, BacktraceQueueHandler queueHandler, Sender sender) {
+        this(config.getAggregationWindowMillis(), config.getAggregationStackFrames(), queueHandler, sender);
+    }
+
+    /**
+     * Creates aggregator
+     *
+     * @param windowMillis time in milliseconds for which identical reports are collapsed, zero disables aggregation
+     * @param stackFrames  number of top stack frames which identify the error together with classifier
+     * @param queueHandler queue in which collapsed reports are pending while they are held
+     * @param sender       sends reports
+     */
+    BacktraceAggregator(long windowMillis, int stackFrames, BacktraceQueueHandler queueHandler, Sender sender) {
+        this.windowMillis = windowMillis;
+        this.stackFrames = stackFrames;
+        this.queueHandler = queueHandler;
+        this.sender = sender;
+    }
+
+    /**
+     * Checks whether the report should be aggregated, only reports of handled exceptions are aggregated
+     *
+     * @param report   error report
+     * @param priority report priority
+     * @return {@code true} if the report should be passed to {@link #add}
+     */
+    boolean accepts(BacktraceReport report, ReportPriority priority) {
+        return windowMillis > 0 && priority != ReportPriority.Crash && report.getExceptionTypeReport();
+    }
+
+    /**
+     * Sends the report if it is the first with its fingerprint in the aggregation window,
+     * otherwise adds it to the aggregate of identical reports received in the window
+     *
+     * @param report              error report
+     * @param priority            report priority
+     * @param attributes          client attributes which are sent if the report is sent or starts a new aggregate
+     * @param reportingThreadName name of the thread which reported the error
+     * @return future completed with the result of sending the report or the aggregated report
+     */
+    CompletableFuture<BacktraceResult> add(BacktraceReport report, ReportPriority priority,
+                                           Map<String, Object> attributes, String reportingThreadName) {
+        final String fingerprint = report.getFingerprint(stackFrames);
+        while (true) {
+            Aggregate aggregate = aggregates.get(fingerprint);
+            if (aggregate == null) {
+                Aggregate created = new Aggregate();
+                aggregate = aggregates.putIfAbsent(fingerprint, created);
+                if (aggregate == null) {
+                    schedule(fingerprint, created);
+                    return sender.send(report, priority, attributes, reportingThreadName);
+                }
+            }
+            if (aggregate.add(report, priority, attributes, reportingThreadName, System.currentTimeMillis())) {
+                return aggregate.result.thenApply(result -> result);
+            }
+            // window has been closed in the meantime, the report opens a new one
+        }
+    }
+
+    /**
+     * Sends all aggregated reports and stops the aggregator, reports added later are sent immediately
+     */
+    void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            closed = true;
+            scheduler = this.scheduler;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (Map.Entry<String, Aggregate> entry : aggregates.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void schedule(final String fingerprint, final Aggregate aggregate) {
+        try {
+            getScheduler().schedule(() -> flush(fingerprint, aggregate), windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Aggregator is closed, report is sent immediately");
+            flush(fingerprint, aggregate);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (closed) {
+            throw new RejectedExecutionException("Aggregator is closed");
+        }
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Closes the aggregation window and sends the aggregated report if identical reports have been received
+     * in the window, the next identical report is sent immediately and opens a new window
+     *
+     * @param fingerprint fingerprint of the aggregated reports
+     * @param aggregate   aggregate which should be sent
+     */
+    private void flush(String fingerprint, final Aggregate aggregate) {
+        if (!aggregates.remove(fingerprint, aggregate)) {
+            return;
+        }
+        Map<String, Object> attributes = aggregate.close();
+        if (attributes == null) {
+            return;
+        }
+        LOGGER.debug("Sending aggregated report, occurrences: " + attributes.get(OCCURRENCES_ATTRIBUTE));
+        try {
+            sender.send(aggregate.report, aggregate.priority, attributes, aggregate.reportingThreadName)
+                    .whenComplete((result, throwable) -> {
+                        if (throwable != null) {
+                            aggregate.result.completeExceptionally(throwable);
+                        } else {
+                            aggregate.result.complete(result);
+                        }
+                    });
+        } catch (Exception e) {
+            LOGGER.error("Can not send aggregated report", e);
+            aggregate.result.completeExceptionally(e);
+        } finally {
+            queueHandler.messageProcessed();
+        }
+    }
+
+    /**
+     * Identical reports received within one aggregation window after the first report, which has been sent
+     */
+    private class Aggregate {
+        private final CompletableFuture<BacktraceResult> result = new CompletableFuture<>();
+        private BacktraceReport report;
+        private Map<String, Object> attributes;
+        private String reportingThreadName;
+        private ReportPriority priority;
+        private long firstSeen;
+        private long lastSeen;
+        private long occurrences = 0;
+        private boolean closed = false;
+
+        /**
+         * Counts another occurrence of the error, the first occurrence is the report sent with aggregation attributes
+         * and it is pending in the queue until it is sent
+         *
+         * @param report              error report
+         * @param priority            priority of the occurrence
+         * @param attributes          client attributes of the occurrence
+         * @param reportingThreadName name of the thread which reported the error
+         * @param time                time of the occurrence in milliseconds
+         * @return {@code false} if the window has already been closed
+         */
+        synchronized boolean add(BacktraceReport report, ReportPriority priority, Map<String, Object> attributes,
+                                 String reportingThreadName, long time) {
+            if (closed) {
+                return false;
+            }
+            if (occurrences++ == 0) {
+                queueHandler.messageScheduled();
+                this.report = report;
+                this.attributes = attributes;
+                this.reportingThreadName = reportingThreadName;
+                this.priority = priority;
+                this.firstSeen = time;
+            }
+            lastSeen = Math.max(lastSeen, time);
+            if (priority.ordinal() < this.priority.ordinal()) {
+                this.priority = priority;
+            }
+            return true;
+        }
+
+        /**
+         * Closes the window and returns client attributes together with attributes describing occurrences of the error
+         *
+         * @return attributes of the aggregated report or null if there are no occurrences to send
+         */
+        synchronized Map<String, Object> close() {
+            closed = true;
+            if (occurrences == 0) {
+                return null;
+            }
+            Map<String, Object> attributes = new HashMap<>(this.attributes);
+            attributes.put(OCCURRENCES_ATTRIBUTE, Long.toString(occurrences));
+            attributes.put(FIRST_SEEN_ATTRIBUTE, Long.toString(TimeUnit.MILLISECONDS.toSeconds(firstSeen)));
+            attributes.put(LAST_SEEN_ATTRIBUTE, Long.toString(TimeUnit.MILLISECONDS.toSeconds(lastSeen)));
+            return attributes;
+        }
+    }
+}
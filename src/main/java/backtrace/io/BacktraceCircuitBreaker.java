@@ -0,0 +1,189 @@
+package backtrace.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker guarding a single submission endpoint. After the configured number of consecutive failures
+ * the circuit opens and no reports are sent until the open duration elapses, then a single probe report
+ * decides whether the circuit closes again or stays open
+ */
+public class BacktraceCircuitBreaker {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceCircuitBreaker.class);
+    private final String url;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private CircuitBreakerState state = CircuitBreakerState.Closed;
+    private int consecutiveFailures = 0;
+    private long stateChangeTime = System.nanoTime();
+    private long openedCount = 0;
+    private long halfOpenedCount = 0;
+    private long closedCount = 0;
+    private long timeOpenNanos = 0;
+    private long openSince = 0;
+
+    /**
+     * Creates circuit breaker for submission endpoint
+     *
+     * @param url               submission url with masked token
+     * @param failureThreshold  number of consecutive failures after which the circuit opens
+     * @param openDurationNanos time in nanoseconds after which a probe report is sent
+     */
+    BacktraceCircuitBreaker(String url, int failureThreshold, long openDurationNanos) {
+        this.url = url;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDurationNanos;
+    }
+
+    /**
+     * Returns the submission url guarded by this circuit breaker with the token replaced by its short hash,
+     * so the token is not exposed
+     *
+     * @return redacted submission url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns current state of the circuit
+     *
+     * @return circuit state
+     */
+    public synchronized CircuitBreakerState getState() {
+        return state;
+    }
+
+    /**
+     * Returns how many times the circuit has been opened
+     *
+     * @return number of transitions to open state
+     */
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+
+    /**
+     * Returns how many probe reports have been sent
+     *
+     * @return number of transitions to half-open state
+     */
+    public synchronized long getHalfOpenedCount() {
+        return halfOpenedCount;
+    }
+
+    /**
+     * Returns how many times the circuit has been closed after a successful probe
+     *
+     * @return number of transitions to closed state
+     */
+    public synchronized long getClosedCount() {
+        return closedCount;
+    }
+
+    /**
+     * Returns total time during which the endpoint was considered unavailable, including current outage
+     *
+     * @return time spent in open and half-open state in milliseconds
+     */
+    public synchronized long getTimeOpenMillis() {
+        long time = timeOpenNanos;
+        if (state != CircuitBreakerState.Closed) {
+            time += System.nanoTime() - openSince;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(time);
+    }
+
+    /**
+     * Checks whether a report can be sent to the endpoint. When the open duration elapses
+     * the first caller is allowed to send a probe report and the circuit becomes half-open
+     *
+     * @return {@code true} if the report should be sent
+     */
+    synchronized boolean allowRequest() {
+        if (state == CircuitBreakerState.Closed) {
+            return true;
+        }
+        if (state == CircuitBreakerState.Open && System.nanoTime() - stateChangeTime >= openDurationNanos) {
+            transitionTo(CircuitBreakerState.HalfOpen);
+            halfOpenedCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives up the probe report allowed by {@link #allowRequest()} when it will not be sent, the circuit opens
+     * again and the next report can be sent as a probe without waiting for another open duration
+     */
+    synchronized void releaseProbe() {
+        if (state != CircuitBreakerState.HalfOpen) {
+            return;
+        }
+        transitionTo(CircuitBreakerState.Open);
+        stateChangeTime -= openDurationNanos;
+        halfOpenedCount--;
+    }
+
+    /**
+     * Checks whether {@link #allowRequest()} would allow a report, without changing the state
+     *
+     * @return {@code false} if the circuit is open and the probe report can not be sent yet
+     *         or the probe report is in progress
+     */
+    synchronized boolean isAvailable() {
+        return state == CircuitBreakerState.Closed ||
+                (state == CircuitBreakerState.Open && System.nanoTime() - stateChangeTime >= openDurationNanos);
+    }
+
+    /**
+     * Returns time remaining until the next probe report can be sent
+     *
+     * @return remaining time in nanoseconds, zero if reports can be sent
+     */
+    synchronized long getRemainingOpenNanos() {
+        if (state != CircuitBreakerState.Open) {
+            return 0;
+        }
+        return Math.max(openDurationNanos - (System.nanoTime() - stateChangeTime), 0);
+    }
+
+    /**
+     * Records that the endpoint has responded
+     *
+     * @return {@code true} if the circuit has been closed by this response
+     */
+    synchronized boolean onSuccess() {
+        consecutiveFailures = 0;
+        if (state == CircuitBreakerState.Closed) {
+            return false;
+        }
+        timeOpenNanos += System.nanoTime() - openSince;
+        transitionTo(CircuitBreakerState.Closed);
+        closedCount++;
+        return true;
+    }
+
+    /**
+     * Records that the endpoint is unavailable
+     */
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == CircuitBreakerState.HalfOpen ||
+                (state == CircuitBreakerState.Closed && consecutiveFailures >= failureThreshold)) {
+            if (state == CircuitBreakerState.Closed) {
+                openSince = System.nanoTime();
+            }
+            transitionTo(CircuitBreakerState.Open);
+            openedCount++;
+        }
+    }
+
+    private void transitionTo(CircuitBreakerState newState) {
+        LOGGER.info(String.format("Circuit breaker for %s changes state from %s to %s", url, state, newState));
+        state = newState;
+        stateChangeTime = System.nanoTime();
+    }
+}
@@ -2,21 +2,36 @@ package backtrace.io;
 
 
 import backtrace.io.data.BacktraceReport;
+import backtrace.io.events.AsyncRequestHandler;
 import backtrace.io.events.BeforeSendEvent;
 import backtrace.io.events.OnServerResponseEvent;
 import backtrace.io.events.RequestHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import backtrace.io.http.BacktraceResult;
+
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 public class BacktraceClient {
     private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceClient.class);
+    private static final ClassValue<String> CLASSIFIERS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getCanonicalName();
+        }
+    };
     private BacktraceQueueHandler backtrace;
     private BacktraceConfig config;
+    private final boolean sharedDispatcher;
     private final Map<String, Object> customAttributes;
+    private final BacktraceRateLimiter rateLimiter;
+    private final BacktraceSampler sampler;
+    private final BacktraceAggregator aggregator;
 
     /**
      * Creates Backtrace client instance with BacktraceConfig
@@ -34,12 +49,30 @@ public class BacktraceClient {
      * @param attributes Custom attributes which will be attached to each report
      */
     public BacktraceClient(BacktraceConfig config, Map<String, Object> attributes) {
+        this(config, attributes, null);
+    }
+
+    /**
+     * Creates Backtrace client instance with custom attributes which sends reports using dispatcher shared
+     * with other clients. Queue, sender threads, database, retries and circuit breakers are configured
+     * by the dispatcher, endpoint, events, sampling, rate limits and aggregation are configured
+     * by the client configuration
+     *
+     * @param config     Library configuration
+     * @param attributes Custom attributes which will be attached to each report
+     * @param dispatcher Dispatcher shared with other clients, if null the client creates its own
+     */
+    public BacktraceClient(BacktraceConfig config, Map<String, Object> attributes, BacktraceDispatcher dispatcher) {
         if (config == null) {
             throw new NullPointerException("BacktraceConfig is null");
         }
         this.customAttributes = attributes != null ? attributes : new HashMap<>();
         this.config = config;
-        this.backtrace = new BacktraceQueueHandler(config);
+        this.sharedDispatcher = dispatcher != null;
+        this.backtrace = dispatcher != null ? dispatcher.getQueueHandler() : new BacktraceQueueHandler(config);
+        this.rateLimiter = new BacktraceRateLimiter(config, this.backtrace.getMetrics());
+        this.sampler = new BacktraceSampler(config, this.backtrace.getMetrics());
+        this.aggregator = new BacktraceAggregator(config, this.backtrace, this::sendAggregated);
     }
 
     /**
@@ -60,6 +93,19 @@ public class BacktraceClient {
         this.customAttributes.put("application", applicationName);
     }
 
+    BacktraceConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Returns counters describing processing of error reports, e.g. number of reports dropped because the queue was full
+     *
+     * @return library metrics
+     */
+    public BacktraceMetrics getMetrics() {
+        return this.backtrace.getMetrics();
+    }
+
     /**
      * Sets the request which will be executed instead of the default error sending to the Backtrace Console
      *
@@ -69,6 +115,17 @@ public class BacktraceClient {
         config.setRequestHandler(customRequestHandler);
     }
 
+    /**
+     * Sets the request which will be executed instead of the default error sending to the Backtrace Console
+     * and completes without blocking the sender thread. Up to {@link BacktraceConfig#setMaxConcurrentRequests(int)}
+     * requests are in progress at the same time
+     *
+     * @param customRequestHandler Custom event which will be executed the default error sending to the Backtrace API
+     */
+    public void setCustomAsyncRequestHandler(AsyncRequestHandler customRequestHandler) {
+        config.setAsyncRequestHandler(customRequestHandler);
+    }
+
     /**
      * Sets the event which will be executed before sending the error
      *
@@ -84,7 +141,7 @@ public class BacktraceClient {
      * @param report Error report which will be sent
      */
     public void send(BacktraceReport report) {
-        this.send(report, null);
+        this.send(report, (OnServerResponseEvent) null);
     }
 
     /**
@@ -94,7 +151,103 @@ public class BacktraceClient {
      * @param callback Event which will be executed after receiving a response
      */
     public void send(BacktraceReport report, OnServerResponseEvent callback) {
-        this.backtrace.send(report, this.customAttributes, callback, config.isGatherAllThreads());
+        this.send(report, BacktraceMessage.getDefaultPriority(report), callback);
+    }
+
+    /**
+     * Sends a report to Backtrace Console, reports with higher priority are sent before reports with lower priority
+     *
+     * @param report   Error report which will be sent
+     * @param priority Priority of the report
+     */
+    public void send(BacktraceReport report, ReportPriority priority) {
+        this.send(report, priority, null);
+    }
+
+    /**
+     * Sends a report to Backtrace Console and executes callback when receives a response,
+     * reports with higher priority are sent before reports with lower priority
+     *
+     * @param report   Error report which will be sent
+     * @param priority Priority of the report
+     * @param callback Event which will be executed after receiving a response
+     */
+    public void send(BacktraceReport report, ReportPriority priority, OnServerResponseEvent callback) {
+        double sampleRate = this.sample(report.getClassifier(), priority);
+        if (sampleRate == 0) {
+            this.onSampledOut(report, callback);
+            return;
+        }
+        if (!this.tryAcquire(report.getClassifier(), priority)) {
+            this.onRateLimited(report, callback);
+            return;
+        }
+        this.enqueue(report, priority, sampleRate, callback);
+    }
+
+    /**
+     * Sends a report to Backtrace Console and returns future which will be completed with the final result,
+     * after all retries. The future is completed on the completion executor set in {@link BacktraceConfig}
+     *
+     * @param report Error report which will be sent
+     * @return future completed with the final server response
+     */
+    public CompletableFuture<BacktraceResult> sendAsync(BacktraceReport report) {
+        return this.sendAsync(report, BacktraceMessage.getDefaultPriority(report));
+    }
+
+    /**
+     * Sends a report to Backtrace Console and returns future which will be completed with the final result,
+     * reports with higher priority are sent before reports with lower priority
+     *
+     * @param report   Error report which will be sent
+     * @param priority Priority of the report
+     * @return future completed with the final server response
+     */
+    public CompletableFuture<BacktraceResult> sendAsync(BacktraceReport report, ReportPriority priority) {
+        double sampleRate = this.sample(report.getClassifier(), priority);
+        if (sampleRate == 0) {
+            return CompletableFuture.completedFuture(BacktraceResult.onSampledOut(report));
+        }
+        if (!this.tryAcquire(report.getClassifier(), priority)) {
+            return CompletableFuture.completedFuture(BacktraceResult.onRateLimited(report));
+        }
+        return this.enqueueAsync(report, priority, sampleRate);
+    }
+
+    /**
+     * Sends a message to Backtrace Console and returns future which will be completed with the final result
+     *
+     * @param message Text message
+     * @return future completed with the final server response
+     */
+    public CompletableFuture<BacktraceResult> sendAsync(String message) {
+        double sampleRate = this.sample(null, ReportPriority.Info);
+        if (sampleRate == 0) {
+            return CompletableFuture.completedFuture(BacktraceResult.onSampledOut(null));
+        }
+        if (!this.tryAcquire(null, ReportPriority.Info)) {
+            return CompletableFuture.completedFuture(BacktraceResult.onRateLimited(null));
+        }
+        return this.enqueueAsync(new BacktraceReport(message), ReportPriority.Info, sampleRate);
+    }
+
+    /**
+     * Sends an exception to Backtrace Console and returns future which will be completed with the final result
+     *
+     * @param exception Current exception
+     * @return future completed with the final server response
+     */
+    public CompletableFuture<BacktraceResult> sendAsync(Exception exception) {
+        String classifier = getClassifier(exception);
+        double sampleRate = this.sample(classifier, ReportPriority.Error);
+        if (sampleRate == 0) {
+            return CompletableFuture.completedFuture(BacktraceResult.onSampledOut(null));
+        }
+        if (!this.tryAcquire(classifier, ReportPriority.Error)) {
+            return CompletableFuture.completedFuture(BacktraceResult.onRateLimited(null));
+        }
+        return this.enqueueAsync(new BacktraceReport(exception), ReportPriority.Error, sampleRate);
     }
 
     /**
@@ -103,7 +256,7 @@ public class BacktraceClient {
      * @param message Text message
      */
     public void send(String message) {
-        this.send(message, null);
+        this.send(message, (OnServerResponseEvent) null);
     }
 
     /**
@@ -113,7 +266,37 @@ public class BacktraceClient {
      * @param callback Event which will be executed after receiving a response
      */
     public void send(String message, OnServerResponseEvent callback) {
-        this.send(new BacktraceReport(message), callback);
+        this.send(message, ReportPriority.Info, callback);
+    }
+
+    /**
+     * Sends a message to Backtrace Console with given priority
+     *
+     * @param message  Text message
+     * @param priority Priority of the report
+     */
+    public void send(String message, ReportPriority priority) {
+        this.send(message, priority, null);
+    }
+
+    /**
+     * Sends a message to Backtrace Console with given priority and executes callback when receives a response
+     *
+     * @param message  Text message
+     * @param priority Priority of the report
+     * @param callback Event which will be executed after receiving a response
+     */
+    public void send(String message, ReportPriority priority, OnServerResponseEvent callback) {
+        double sampleRate = this.sample(null, priority);
+        if (sampleRate == 0) {
+            this.onSampledOut(null, callback);
+            return;
+        }
+        if (!this.tryAcquire(null, priority)) {
+            this.onRateLimited(null, callback);
+            return;
+        }
+        this.enqueue(new BacktraceReport(message), priority, sampleRate, callback);
     }
 
     /**
@@ -122,7 +305,7 @@ public class BacktraceClient {
      * @param exception current exception
      */
     public void send(Exception exception) {
-        this.send(exception, null);
+        this.send(exception, (OnServerResponseEvent) null);
     }
 
     /**
@@ -132,7 +315,177 @@ public class BacktraceClient {
      * @param callback  Event which will be executed after receiving a response
      */
     public void send(Exception exception, OnServerResponseEvent callback) {
-        this.send(new BacktraceReport(exception), callback);
+        this.send(exception, ReportPriority.Error, callback);
+    }
+
+    /**
+     * Sends an exception to Backtrace Console with given priority
+     *
+     * @param exception Current exception
+     * @param priority  Priority of the report
+     */
+    public void send(Exception exception, ReportPriority priority) {
+        this.send(exception, priority, null);
+    }
+
+    /**
+     * Sends an exception to Backtrace Console with given priority and executes callback when receives a response
+     *
+     * @param exception Current exception
+     * @param priority  Priority of the report
+     * @param callback  Event which will be executed after receiving a response
+     */
+    public void send(Exception exception, ReportPriority priority, OnServerResponseEvent callback) {
+        String classifier = getClassifier(exception);
+        double sampleRate = this.sample(classifier, priority);
+        if (sampleRate == 0) {
+            this.onSampledOut(null, callback);
+            return;
+        }
+        if (!this.tryAcquire(classifier, priority)) {
+            this.onRateLimited(null, callback);
+            return;
+        }
+        this.enqueue(new BacktraceReport(exception), priority, sampleRate, callback);
+    }
+
+    /**
+     * Finishes sampling of created report, which has already been accepted by rate limiter, and adds the report
+     * to the queue or to the aggregator. Rate limit tokens of sampled out report are given back
+     *
+     * @param report     error report
+     * @param priority   report priority
+     * @param sampleRate sample rate of the report computed before the report was created
+     * @param callback   event which will be executed after receiving a response
+     */
+    private void enqueue(BacktraceReport report, ReportPriority priority, double sampleRate,
+                         OnServerResponseEvent callback) {
+        Map<String, Object> attributes = this.sample(report, priority, sampleRate);
+        if (attributes == null) {
+            this.rateLimiter.release(report.getClassifier());
+            this.onSampledOut(report, callback);
+            return;
+        }
+        if (this.aggregator.accepts(report, priority)) {
+            CompletableFuture<BacktraceResult> result = this.aggregator.add(report, priority, attributes,
+                    Thread.currentThread().getName());
+            if (callback != null) {
+                result.thenAccept(callback::onEvent);
+            }
+            return;
+        }
+        this.backtrace.send(this.config, report, attributes, callback, priority);
+    }
+
+    /**
+     * Finishes sampling of created report, which has already been accepted by rate limiter, and adds the report
+     * to the queue or to the aggregator. Rate limit tokens of sampled out report are given back
+     *
+     * @param report     error report
+     * @param priority   report priority
+     * @param sampleRate sample rate of the report computed before the report was created
+     * @return future completed with the final server response
+     */
+    private CompletableFuture<BacktraceResult> enqueueAsync(BacktraceReport report, ReportPriority priority,
+                                                            double sampleRate) {
+        Map<String, Object> attributes = this.sample(report, priority, sampleRate);
+        if (attributes == null) {
+            this.rateLimiter.release(report.getClassifier());
+            return CompletableFuture.completedFuture(BacktraceResult.onSampledOut(report));
+        }
+        if (this.aggregator.accepts(report, priority)) {
+            return this.aggregator.add(report, priority, attributes, Thread.currentThread().getName());
+        }
+        return this.backtrace.sendAsync(this.config, report, attributes, priority);
+    }
+
+    /**
+     * Sends report passed through the aggregator, the first report of the aggregation window
+     * or the report which collapses identical reports, with attributes describing its occurrences
+     *
+     * @param report              error report or first of collapsed reports
+     * @param priority            priority of the report or highest priority of collapsed reports
+     * @param attributes          client attributes of the report, together with aggregation attributes
+     *                            if the report collapses identical reports
+     * @param reportingThreadName name of the thread which reported the error
+     * @return future completed with the final server response
+     */
+    private CompletableFuture<BacktraceResult> sendAggregated(BacktraceReport report, ReportPriority priority,
+                                                              Map<String, Object> attributes,
+                                                              String reportingThreadName) {
+        return this.backtrace.sendAsync(this.config, report, attributes, priority, reportingThreadName);
+    }
+
+    /**
+     * Samples a report before it is created, reports of unhandled exceptions are always sent
+     *
+     * @param classifier report classifier or null if the report does not have classifier
+     * @param priority   report priority
+     * @return sample rate of the report or zero if the report should not be sent
+     */
+    private double sample(String classifier, ReportPriority priority) {
+        if (priority == null) {
+            throw new NullPointerException("Report priority can not be null");
+        }
+        if (priority == ReportPriority.Crash) {
+            return 1;
+        }
+        return this.sampler.sample(classifier, this.customAttributes);
+    }
+
+    /**
+     * Samples created report and returns client attributes with the sample rate of the report,
+     * which allows to re-weight counts of sampled reports
+     *
+     * @param report     error report
+     * @param priority   report priority
+     * @param sampleRate sample rate of the report computed before the report was created
+     * @return attributes of the report or null if the report should not be sent
+     */
+    private Map<String, Object> sample(BacktraceReport report, ReportPriority priority, double sampleRate) {
+        if (priority != ReportPriority.Crash) {
+            sampleRate = this.sampler.sample(report, sampleRate);
+            if (sampleRate == 0) {
+                return null;
+            }
+        }
+        Map<String, Object> attributes = new HashMap<>(this.customAttributes);
+        attributes.put(BacktraceSampler.SAMPLE_RATE_ATTRIBUTE, Double.toString(sampleRate));
+        return attributes;
+    }
+
+    /**
+     * Checks rate limits before the report is created, reports of unhandled exceptions are never rejected
+     * but they are counted as accepted
+     *
+     * @param classifier report classifier or empty if the report does not have classifier
+     * @param priority   report priority
+     * @return {@code true} if the report can be sent
+     */
+    private boolean tryAcquire(String classifier, ReportPriority priority) {
+        if (priority == ReportPriority.Crash) {
+            this.backtrace.getMetrics().reportAccepted();
+            return true;
+        }
+        return this.rateLimiter.tryAcquire(classifier);
+    }
+
+    private void onRateLimited(BacktraceReport report, OnServerResponseEvent callback) {
+        LOGGER.debug("Report rejected by rate limiter");
+        if (callback != null) {
+            callback.onEvent(BacktraceResult.onRateLimited(report));
+        }
+    }
+
+    private void onSampledOut(BacktraceReport report, OnServerResponseEvent callback) {
+        LOGGER.debug("Report rejected by sampling");
+        if (callback != null) {
+            callback.onEvent(BacktraceResult.onSampledOut(report));
+        }
+    }
+
+    private static String getClassifier(Exception exception) {
+        return exception != null ? CLASSIFIERS.get(exception.getClass()) : null;
     }
 
     /**
@@ -145,17 +498,47 @@ public class BacktraceClient {
     }
 
     /**
-     * Stop Backtrace Thread and wait until current processing message will be sent
+     * Stop Backtrace Thread and wait until current processing message will be sent.
+     * If the client uses shared dispatcher, the dispatcher is not closed
      *
      * @param await if true wait until all added messages will be sent
      * @throws InterruptedException if the current thread is interrupted while waiting
      */
     public void close(boolean await) throws InterruptedException {
         LOGGER.debug("Closing Backtrace Client - awaiting: " + await);
+        this.aggregator.close();
         if (await) {
             this.await();
         }
-        this.backtrace.close();
+        if (!this.sharedDispatcher) {
+            this.backtrace.close();
+        }
+    }
+
+    /**
+     * Sends reports until the timeout elapses, then stops Backtrace Threads and stores reports which
+     * have not been sent in the database, they will be sent when the next client starts.
+     * Requests which are in progress when the timeout elapses are aborted and their reports are stored too.
+     * If the client uses shared dispatcher, the dispatcher is not closed, the client only waits until
+     * the timeout elapses for reports of all clients to be sent and unsent reports stay in the dispatcher queue
+     *
+     * @param timeout the maximum time to wait for reports to be sent
+     * @return numbers of sent, persisted and dropped reports
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public BacktraceShutdownSummary close(Duration timeout) throws InterruptedException {
+        LOGGER.debug("Closing Backtrace Client - timeout: " + timeout);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        this.aggregator.close();
+        long remaining = Math.max(deadline - System.nanoTime(), 0);
+        if (this.sharedDispatcher) {
+            long sentBefore = this.getMetrics().getSentReports();
+            this.backtrace.await(remaining, TimeUnit.NANOSECONDS);
+            return new BacktraceShutdownSummary(this.getMetrics().getSentReports() - sentBefore, 0, 0);
+        }
+        BacktraceShutdownSummary summary = this.backtrace.close(remaining, TimeUnit.NANOSECONDS);
+        LOGGER.info("Backtrace Client closed: " + summary);
+        return summary;
     }
 
     /**
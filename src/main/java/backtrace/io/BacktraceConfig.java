@@ -2,17 +2,63 @@ package backtrace.io;
 
 import backtrace.io.database.BacktraceDatabaseConfig;
 import backtrace.io.events.BeforeSendEvent;
+import backtrace.io.events.AsyncRequestHandler;
 import backtrace.io.events.RequestHandler;
+import backtrace.io.http.CompressionType;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class BacktraceConfig {
     private volatile BacktraceCredentials credentials;
     private volatile BacktraceDatabaseConfig databaseConfig = new BacktraceDatabaseConfig();
     private volatile RequestHandler requestHandler;
+    private volatile AsyncRequestHandler asyncRequestHandler;
     private volatile BeforeSendEvent beforeSendEvent;
     private volatile boolean gatherAllThreads = false;
     private volatile boolean awaitMessagesOnClose = false;
+    private volatile long uncaughtExceptionTimeoutMillis = 10000;
+    private volatile int queueCapacity = 0; // 0 is unlimited
+    private volatile QueueOverflowPolicy queueOverflowPolicy = QueueOverflowPolicy.DropNewest;
+    private volatile long queueBlockTimeoutMillis = 1000;
+    private volatile int senderThreadCount = 1;
+    private volatile SenderExecutionMode senderExecutionMode = SenderExecutionMode.Threads;
+    private volatile int maxConcurrentRequests = 64;
+    private volatile Executor completionExecutor = ForkJoinPool.commonPool();
+    private volatile long retryInitialDelayMillis = 500;
+    private volatile long retryMaxDelayMillis = 60000;
+    private volatile double retryJitter = 0.5;
+    private volatile PriorityDrainPolicy priorityDrainPolicy = PriorityDrainPolicy.Strict;
+    private volatile int[] priorityWeights = {4, 2, 1}; // crash, error, info
+    private volatile double rateLimit = 0; // 0 is unlimited
+    private volatile int rateLimitBurst = 1;
+    private volatile double classifierRateLimit = 0; // 0 is unlimited
+    private volatile int classifierRateLimitBurst = 1;
+    private volatile long aggregationWindowMillis = 0; // 0 is disabled
+    private volatile int aggregationStackFrames = 5;
+    private volatile double sampleRate = 1;
+    private final Map<String, Double> classifierSampleRates = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Double>> attributeSampleRates = new ConcurrentHashMap<>();
+    private volatile int adaptiveSamplingOccurrences = 0; // 0 is disabled
+    private volatile int connectionPoolSize = 0; // 0 is disabled
+    private volatile long connectionPoolIdleTimeoutMillis = 30000;
+    private volatile CompressionType compressionType = null; // null is disabled
+    private volatile int compressionLevel = 6;
+    private volatile int compressionThreshold = 0;
+    private volatile long maxAttachmentBytes = 0; // 0 is unlimited
+    private volatile long maxReportAttachmentBytes = 0; // 0 is unlimited
+    private volatile int circuitBreakerFailureThreshold = 5; // 0 is disabled
+    private volatile long circuitBreakerOpenDurationMillis = 30000;
+    private volatile long connectTimeoutMillis = 10000;
+    private volatile long readTimeoutMillis = 30000;
+    private volatile long requestTimeoutMillis = 0; // 0 is disabled
+    private volatile EndpointSelectionPolicy endpointSelectionPolicy = EndpointSelectionPolicy.Failover;
+    private volatile long slowEndpointLatencyMillis = 0; // 0 is disabled
 
     /**
      * Creates Backtrace credentials instance
@@ -73,10 +119,95 @@ public class BacktraceConfig {
         return credentials.getSubmissionUrl().toString();
     }
 
+    List<BacktraceCredentials.SubmissionEndpoint> getSubmissionEndpoints() {
+        return credentials.getSubmissionEndpoints();
+    }
+
+    /**
+     * Checks whether the url is one of the configured submission endpoints
+     *
+     * @param submissionUrl submission url
+     * @return {@code true} if reports sent to the url can be sent to another configured endpoint
+     */
+    boolean isSubmissionEndpoint(String submissionUrl) {
+        for (BacktraceCredentials.SubmissionEndpoint endpoint : credentials.getSubmissionEndpoints()) {
+            if (endpoint.url.equals(submissionUrl)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds endpoint to which reports are sent when the endpoints configured before it are unhealthy,
+     * or which shares reports with other endpoints if {@link EndpointSelectionPolicy#Weighted} is used
+     *
+     * @param submissionUrl submission url with token, e.g. of a secondary region or an on-premise relay
+     */
+    public void addSubmissionUrl(String submissionUrl) {
+        addSubmissionUrl(submissionUrl, 1);
+    }
+
+    /**
+     * Adds endpoint to which reports are sent when the endpoints configured before it are unhealthy,
+     * or which shares reports with other endpoints if {@link EndpointSelectionPolicy#Weighted} is used.
+     * The endpoint passed to the constructor has weight 1
+     *
+     * @param submissionUrl submission url with token, e.g. of a secondary region or an on-premise relay
+     * @param weight        share of reports sent to the endpoint when all endpoints are healthy
+     */
+    public void addSubmissionUrl(String submissionUrl, int weight) {
+        if (submissionUrl == null) {
+            throw new NullPointerException("Endpoint URL can not be null");
+        }
+        if (weight < 1) {
+            throw new IllegalArgumentException("Endpoint weight should be greater than zero");
+        }
+        credentials.addSubmissionUrl(URI.create(submissionUrl), weight);
+    }
+
+    EndpointSelectionPolicy getEndpointSelectionPolicy() {
+        return endpointSelectionPolicy;
+    }
+
+    /**
+     * Sets how reports are spread over the submission endpoints, {@link EndpointSelectionPolicy#Failover} by default
+     *
+     * @param endpointSelectionPolicy endpoint selection policy
+     */
+    public void setEndpointSelectionPolicy(EndpointSelectionPolicy endpointSelectionPolicy) {
+        if (endpointSelectionPolicy == null) {
+            throw new NullPointerException("Endpoint selection policy can not be null");
+        }
+        this.endpointSelectionPolicy = endpointSelectionPolicy;
+    }
+
+    long getSlowEndpointLatencyMillis() {
+        return slowEndpointLatencyMillis;
+    }
+
+    /**
+     * Sets average latency above which a submission endpoint is skipped while another endpoint is healthy.
+     * A slow endpoint receives a single report after the circuit breaker open duration to measure its latency again
+     *
+     * @param latency average latency of successful requests, zero disables the check
+     * @param unit    the time unit of the {@code latency} argument
+     */
+    public void setSlowEndpointLatency(long latency, TimeUnit unit) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("Slow endpoint latency should be greater than or equal to zero");
+        }
+        this.slowEndpointLatencyMillis = unit.toMillis(latency);
+    }
+
     RequestHandler getRequestHandler() {
         return requestHandler;
     }
 
+    AsyncRequestHandler getAsyncRequestHandler() {
+        return asyncRequestHandler;
+    }
+
     BeforeSendEvent getBeforeSendEvent() {
         return beforeSendEvent;
     }
@@ -97,6 +228,25 @@ public class BacktraceConfig {
         this.awaitMessagesOnClose = awaitMessagesOnClose;
     }
 
+    long getUncaughtExceptionTimeoutMillis() {
+        return uncaughtExceptionTimeoutMillis;
+    }
+
+    /**
+     * Sets maximum time for which the thread terminated by an uncaught exception waits until the exception is sent,
+     * when the uncaught exception handler blocks the thread. After the timeout the exception is passed
+     * to the default uncaught exception handler and the report is sent in the background
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the {@code timeout} argument
+     */
+    public void setUncaughtExceptionTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Uncaught exception timeout should be greater than or equal to zero");
+        }
+        this.uncaughtExceptionTimeoutMillis = unit.toMillis(timeout);
+    }
+
     void setDatabasePath(String databasePath) {
         this.databaseConfig.setDatabasePath(databasePath);
     }
@@ -105,6 +255,10 @@ public class BacktraceConfig {
         this.requestHandler = requestHandler;
     }
 
+    void setAsyncRequestHandler(AsyncRequestHandler asyncRequestHandler) {
+        this.asyncRequestHandler = asyncRequestHandler;
+    }
+
     void setBeforeSendEvent(BeforeSendEvent beforeSendEvent) {
         this.beforeSendEvent = beforeSendEvent;
     }
@@ -128,4 +282,506 @@ public class BacktraceConfig {
     public void enableDatabase() {
         this.databaseConfig.enableDatabase();
     }
-}
\ No newline at end of file
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets maximum number of reports waiting to be sent, when the queue is full the overflow policy is applied
+     *
+     * @param queueCapacity maximum number of reports in queue, zero means unlimited
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity should be greater than or equal to zero");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    QueueOverflowPolicy getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+
+    /**
+     * Sets what should happen with a report which does not fit into the full queue
+     *
+     * @param queueOverflowPolicy overflow policy
+     */
+    public void setQueueOverflowPolicy(QueueOverflowPolicy queueOverflowPolicy) {
+        if (queueOverflowPolicy == null) {
+            throw new NullPointerException("Queue overflow policy can not be null");
+        }
+        this.queueOverflowPolicy = queueOverflowPolicy;
+    }
+
+    long getQueueBlockTimeoutMillis() {
+        return queueBlockTimeoutMillis;
+    }
+
+    /**
+     * Sets maximum time for which sending thread is blocked when the queue is full
+     * and {@link QueueOverflowPolicy#Block} is used
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the {@code timeout} argument
+     */
+    public void setQueueBlockTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Queue block timeout should be greater than or equal to zero");
+        }
+        this.queueBlockTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    int getSenderThreadCount() {
+        return senderThreadCount;
+    }
+
+    /**
+     * Sets number of threads which send reports from the queue concurrently
+     *
+     * @param senderThreadCount number of sender threads
+     */
+    public void setSenderThreadCount(int senderThreadCount) {
+        if (senderThreadCount < 1) {
+            throw new IllegalArgumentException("Number of sender threads should be greater than zero");
+        }
+        this.senderThreadCount = senderThreadCount;
+    }
+
+    SenderExecutionMode getSenderExecutionMode() {
+        return senderExecutionMode;
+    }
+
+    /**
+     * Sets how reports taken from the queue are sent, {@link SenderExecutionMode#VirtualThreads}
+     * falls back to {@link SenderExecutionMode#Threads} on JVMs without virtual threads
+     *
+     * @param senderExecutionMode sender execution mode
+     */
+    public void setSenderExecutionMode(SenderExecutionMode senderExecutionMode) {
+        if (senderExecutionMode == null) {
+            throw new NullPointerException("Sender execution mode can not be null");
+        }
+        this.senderExecutionMode = senderExecutionMode;
+    }
+
+    int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Sets maximum number of reports sent at the same time in {@link SenderExecutionMode#VirtualThreads} mode
+     * or by the asynchronous request handler
+     *
+     * @param maxConcurrentRequests maximum number of concurrent requests
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Maximum number of concurrent requests should be greater than zero");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    Executor getCompletionExecutor() {
+        return completionExecutor;
+    }
+
+    /**
+     * Sets executor on which futures returned by {@link BacktraceClient#sendAsync(backtrace.io.data.BacktraceReport)}
+     * are completed, by default {@link ForkJoinPool#commonPool()} is used so dependent stages never run on sender threads
+     *
+     * @param completionExecutor executor which completes futures
+     */
+    public void setCompletionExecutor(Executor completionExecutor) {
+        if (completionExecutor == null) {
+            throw new NullPointerException("Completion executor can not be null");
+        }
+        this.completionExecutor = completionExecutor;
+    }
+
+    long getRetryInitialDelayMillis() {
+        return retryInitialDelayMillis;
+    }
+
+    long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    /**
+     * Sets delays between sending attempts of a report which could not be sent,
+     * the delay is doubled after each attempt until it reaches the maximum delay
+     *
+     * @param initialDelay delay before the first retry
+     * @param maxDelay     maximum delay between retries
+     * @param unit         the time unit of the delay arguments
+     */
+    public void setRetryBackoff(long initialDelay, long maxDelay, TimeUnit unit) {
+        if (initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Retry delays should be greater than or equal to zero " +
+                    "and maximum delay should not be less than initial delay");
+        }
+        this.retryInitialDelayMillis = unit.toMillis(initialDelay);
+        this.retryMaxDelayMillis = unit.toMillis(maxDelay);
+    }
+
+    double getRetryJitter() {
+        return retryJitter;
+    }
+
+    /**
+     * Sets part of the retry delay which is randomized, so reports which failed together are not sent again together
+     *
+     * @param retryJitter value between 0 (no randomization) and 1 (delay between zero and computed delay)
+     */
+    public void setRetryJitter(double retryJitter) {
+        if (retryJitter < 0 || retryJitter > 1) {
+            throw new IllegalArgumentException("Retry jitter should be between 0 and 1");
+        }
+        this.retryJitter = retryJitter;
+    }
+
+    boolean isCircuitBreakerEnabled() {
+        return circuitBreakerFailureThreshold > 0;
+    }
+
+    int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    long getCircuitBreakerOpenDurationMillis() {
+        return circuitBreakerOpenDurationMillis;
+    }
+
+    /**
+     * Sets when the submission endpoint is considered unavailable. After given number of consecutive failures
+     * reports are stored in the database instead of being sent, until a probe report sent after open duration succeeds
+     *
+     * @param failureThreshold number of consecutive failures which opens the circuit
+     * @param openDuration     time after which a probe report is sent
+     * @param unit             the time unit of the {@code openDuration} argument
+     */
+    public void setCircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        if (failureThreshold < 1 || openDuration < 0) {
+            throw new IllegalArgumentException("Failure threshold should be greater than zero " +
+                    "and open duration should be greater than or equal to zero");
+        }
+        this.circuitBreakerFailureThreshold = failureThreshold;
+        this.circuitBreakerOpenDurationMillis = unit.toMillis(openDuration);
+    }
+
+    /**
+     * Disables circuit breaker, reports are always sent to the submission endpoint
+     */
+    public void disableCircuitBreaker() {
+        this.circuitBreakerFailureThreshold = 0;
+    }
+
+    PriorityDrainPolicy getPriorityDrainPolicy() {
+        return priorityDrainPolicy;
+    }
+
+    /**
+     * Sets how sender threads choose the priority lane from which the next report is taken
+     *
+     * @param priorityDrainPolicy drain policy
+     */
+    public void setPriorityDrainPolicy(PriorityDrainPolicy priorityDrainPolicy) {
+        if (priorityDrainPolicy == null) {
+            throw new NullPointerException("Priority drain policy can not be null");
+        }
+        this.priorityDrainPolicy = priorityDrainPolicy;
+    }
+
+    int[] getPriorityWeights() {
+        return priorityWeights;
+    }
+
+    /**
+     * Sets how many reports are taken from each priority lane in one round when
+     * {@link PriorityDrainPolicy#Weighted} is used
+     *
+     * @param crash weight of {@link ReportPriority#Crash} lane
+     * @param error weight of {@link ReportPriority#Error} lane
+     * @param info  weight of {@link ReportPriority#Info} lane
+     */
+    public void setPriorityWeights(int crash, int error, int info) {
+        if (crash < 1 || error < 1 || info < 1) {
+            throw new IllegalArgumentException("Priority weights should be greater than zero");
+        }
+        this.priorityWeights = new int[]{crash, error, info};
+    }
+
+    double getRateLimit() {
+        return rateLimit;
+    }
+
+    int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    /**
+     * Limits number of reports sent by the client, reports over the limit are rejected before they are created.
+     * Reports of unhandled exceptions are never rejected
+     *
+     * @param reportsPerSecond maximum average number of reports per second, zero means unlimited
+     * @param burst            maximum number of reports which can be sent at once
+     */
+    public void setRateLimit(double reportsPerSecond, int burst) {
+        validateRateLimit(reportsPerSecond, burst);
+        this.rateLimit = reportsPerSecond;
+        this.rateLimitBurst = burst;
+    }
+
+    double getClassifierRateLimit() {
+        return classifierRateLimit;
+    }
+
+    int getClassifierRateLimitBurst() {
+        return classifierRateLimitBurst;
+    }
+
+    /**
+     * Limits number of reports with the same classifier (exception type) sent by the client,
+     * reports over the limit are rejected before they are created. Reports of unhandled exceptions are never rejected
+     *
+     * @param reportsPerSecond maximum average number of reports per second for each classifier, zero means unlimited
+     * @param burst            maximum number of reports with the same classifier which can be sent at once
+     */
+    public void setClassifierRateLimit(double reportsPerSecond, int burst) {
+        validateRateLimit(reportsPerSecond, burst);
+        this.classifierRateLimit = reportsPerSecond;
+        this.classifierRateLimitBurst = burst;
+    }
+
+    private static void validateRateLimit(double reportsPerSecond, int burst) {
+        if (reportsPerSecond < 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate limit should be greater than or equal to zero " +
+                    "and burst should be greater than zero");
+        }
+    }
+
+    long getAggregationWindowMillis() {
+        return aggregationWindowMillis;
+    }
+
+    /**
+     * Sets time window in which reports of identical exceptions are collapsed into one report
+     * with occurrence count and first-seen and last-seen timestamps. The first report is sent immediately
+     * and opens the window, the following identical reports are sent together when the window elapses
+     *
+     * @param window time for which identical reports are collapsed, zero disables aggregation
+     * @param unit   the time unit of the {@code window} argument
+     */
+    public void setAggregationWindow(long window, TimeUnit unit) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Aggregation window should be greater than or equal to zero");
+        }
+        this.aggregationWindowMillis = unit.toMillis(window);
+    }
+
+    int getAggregationStackFrames() {
+        return aggregationStackFrames;
+    }
+
+    /**
+     * Sets number of top stack frames which, together with classifier, identify identical exceptions
+     *
+     * @param aggregationStackFrames number of stack frames
+     */
+    public void setAggregationStackFrames(int aggregationStackFrames) {
+        if (aggregationStackFrames < 1) {
+            throw new IllegalArgumentException("Number of aggregation stack frames should be greater than zero");
+        }
+        this.aggregationStackFrames = aggregationStackFrames;
+    }
+
+    double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets probability with which reports are sent, reports of unhandled exceptions are always sent
+     *
+     * @param sampleRate probability between 0 and 1
+     */
+    public void setSampleRate(double sampleRate) {
+        validateSampleRate(sampleRate);
+        this.sampleRate = sampleRate;
+    }
+
+    Map<String, Double> getClassifierSampleRates() {
+        return classifierSampleRates;
+    }
+
+    /**
+     * Sets probability with which reports with given classifier are sent, multiplied by the global sample rate
+     *
+     * @param classifier canonical name of the exception class
+     * @param sampleRate probability between 0 and 1
+     */
+    public void setClassifierSampleRate(String classifier, double sampleRate) {
+        if (classifier == null) {
+            throw new NullPointerException("Classifier can not be null");
+        }
+        validateSampleRate(sampleRate);
+        this.classifierSampleRates.put(classifier, sampleRate);
+    }
+
+    Map<String, Map<String, Double>> getAttributeSampleRates() {
+        return attributeSampleRates;
+    }
+
+    /**
+     * Sets probability with which reports with given attribute value are sent, multiplied by the global sample rate.
+     * Both client and report attributes are checked
+     *
+     * @param attribute  attribute name
+     * @param value      attribute value, compared by its string representation
+     * @param sampleRate probability between 0 and 1
+     */
+    public void setAttributeSampleRate(String attribute, Object value, double sampleRate) {
+        if (attribute == null || value == null) {
+            throw new NullPointerException("Attribute name and value can not be null");
+        }
+        validateSampleRate(sampleRate);
+        this.attributeSampleRates.computeIfAbsent(attribute, key -> new ConcurrentHashMap<>())
+                .put(value.toString(), sampleRate);
+    }
+
+    private static void validateSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate should be between 0 and 1");
+        }
+    }
+
+    int getAdaptiveSamplingOccurrences() {
+        return adaptiveSamplingOccurrences;
+    }
+
+    /**
+     * Enables adaptive sampling, first occurrences of each exception are sent, later the number of sent
+     * reports grows logarithmically with the number of occurrences. Exceptions are identified by the classifier
+     * and the number of top stack frames set by {@link #setAggregationStackFrames}
+     *
+     * @param occurrences number of occurrences of each exception which are always sent, zero disables adaptive sampling
+     */
+    public void setAdaptiveSampling(int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Number of occurrences should be greater than or equal to zero");
+        }
+        this.adaptiveSamplingOccurrences = occurrences;
+    }
+
+    int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    long getConnectionPoolIdleTimeoutMillis() {
+        return connectionPoolIdleTimeoutMillis;
+    }
+
+    /**
+     * Enables pool of HTTP connections kept open between reports, so reports do not pay TCP and TLS handshakes.
+     * Pooled connections are opened directly, without proxy configured for {@link java.net.HttpURLConnection}
+     *
+     * @param size        maximum number of idle connections kept for each endpoint, zero disables the pool
+     * @param idleTimeout time after which an idle connection is closed
+     * @param unit        the time unit of the {@code idleTimeout} argument
+     */
+    public void setConnectionPool(int size, long idleTimeout, TimeUnit unit) {
+        if (size < 0 || idleTimeout <= 0) {
+            throw new IllegalArgumentException("Pool size should be greater than or equal to zero " +
+                    "and idle timeout should be greater than zero");
+        }
+        this.connectionPoolSize = size;
+        this.connectionPoolIdleTimeoutMillis = unit.toMillis(idleTimeout);
+    }
+
+    CompressionType getCompressionType() {
+        return compressionType;
+    }
+
+    int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Enables compression of request bodies, compressed requests are sent with Content-Encoding header.
+     * Requests with body smaller than the threshold are sent uncompressed
+     *
+     * @param type      content encoding of compressed requests, null disables compression
+     * @param level     compression level from 0 (no compression) to 9 (best compression)
+     * @param threshold minimum size of the request body in bytes for which the request is compressed
+     */
+    public void setCompression(CompressionType type, int level, int threshold) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Compression level should be between 0 and 9");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold should be greater than or equal to zero");
+        }
+        this.compressionType = type;
+        this.compressionLevel = level;
+        this.compressionThreshold = threshold;
+    }
+
+    long getMaxAttachmentBytes() {
+        return maxAttachmentBytes;
+    }
+
+    long getMaxReportAttachmentBytes() {
+        return maxReportAttachmentBytes;
+    }
+
+    /**
+     * Limits number of attachment bytes sent with each report. Text attachments which exceed the limits
+     * are sent as their last bytes, other attachments which exceed the limits are not sent.
+     * Truncated attachments are listed in the "Truncated attachments" annotation of the report
+     *
+     * @param maxAttachmentBytes       maximum number of bytes sent from a single attachment, zero is unlimited
+     * @param maxReportAttachmentBytes maximum number of bytes sent from all attachments of a report, zero is unlimited
+     */
+    public void setAttachmentLimits(long maxAttachmentBytes, long maxReportAttachmentBytes) {
+        if (maxAttachmentBytes < 0 || maxReportAttachmentBytes < 0) {
+            throw new IllegalArgumentException("Attachment limits should be greater than or equal to zero");
+        }
+        this.maxAttachmentBytes = maxAttachmentBytes;
+        this.maxReportAttachmentBytes = maxReportAttachmentBytes;
+    }
+
+    long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    long getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /**
+     * Sets timeouts of requests sent to Backtrace API. Reports whose requests time out are reported
+     * with {@link backtrace.io.http.BacktraceResultStatus#Timeout} status, are retried and count as failures
+     * of the circuit breaker
+     *
+     * @param connectTimeout maximum time of opening a connection, zero is unlimited
+     * @param readTimeout    maximum time of waiting for data from the server, zero is unlimited
+     * @param requestTimeout maximum time of the whole request including upload of attachments, zero is unlimited
+     * @param unit           the time unit of the timeout arguments
+     */
+    public void setTimeouts(long connectTimeout, long readTimeout, long requestTimeout, TimeUnit unit) {
+        if (connectTimeout < 0 || readTimeout < 0 || requestTimeout < 0) {
+            throw new IllegalArgumentException("Timeouts should be greater than or equal to zero");
+        }
+        this.connectTimeoutMillis = unit.toMillis(connectTimeout);
+        this.readTimeoutMillis = unit.toMillis(readTimeout);
+        this.requestTimeoutMillis = unit.toMillis(requestTimeout);
+    }
+}
@@ -2,12 +2,16 @@ package backtrace.io;
 
 
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 class BacktraceCredentials {
     @SuppressWarnings("FieldCanBeLocal")
     private final static String FORMAT = "json";
 
     private URI backtraceHostUri;
+    private final List<SubmissionEndpoint> endpoints = new CopyOnWriteArrayList<>();
 
     /**
      * Creates Backtrace credentials instance
@@ -35,14 +39,47 @@ class BacktraceCredentials {
      */
     BacktraceCredentials(URI backtraceHostUri) {
         this.backtraceHostUri = backtraceHostUri;
+        this.endpoints.add(new SubmissionEndpoint(backtraceHostUri.toString(), 1));
     }
 
     /**
      * Get submission URL to Backtrace API
      *
-     * @return URL to Backtrace API
+     * @return URL to Backtrace API, the first endpoint if more endpoints are configured
      */
     URI getSubmissionUrl() {
         return backtraceHostUri;
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds another endpoint to which reports can be sent
+     *
+     * @param submissionUrl submission uri
+     * @param weight        share of reports sent to the endpoint by {@link EndpointSelectionPolicy#Weighted}
+     */
+    void addSubmissionUrl(URI submissionUrl, int weight) {
+        this.endpoints.add(new SubmissionEndpoint(submissionUrl.toString(), weight));
+    }
+
+    /**
+     * Get all submission endpoints in the order in which they were configured
+     *
+     * @return submission endpoints, the first one is the url passed to the constructor
+     */
+    List<SubmissionEndpoint> getSubmissionEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Submission url with its weight
+     */
+    static class SubmissionEndpoint {
+        final String url;
+        final int weight;
+
+        SubmissionEndpoint(String url, int weight) {
+            this.url = url;
+            this.weight = weight;
+        }
+    }
+}
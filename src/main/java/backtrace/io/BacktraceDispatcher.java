@@ -0,0 +1,92 @@
+package backtrace.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue, sender threads and database which can be shared by many clients. Each client keeps its own
+ * attributes, endpoint, request handler and events, while reports of all clients are sent by the same
+ * sender threads and stored in the same database directory
+ */
+public class BacktraceDispatcher {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceDispatcher.class);
+    private final BacktraceQueueHandler queueHandler;
+
+    /**
+     * Creates dispatcher, the queue, sender threads, database, retries and circuit breakers are configured
+     * by passed configuration. Its endpoint is used for reports loaded from a database which do not
+     * store the endpoint of the client which sent them
+     *
+     * @param config Library configuration
+     */
+    public BacktraceDispatcher(BacktraceConfig config) {
+        if (config == null) {
+            throw new NullPointerException("BacktraceConfig is null");
+        }
+        this.queueHandler = new BacktraceQueueHandler(config);
+    }
+
+    BacktraceQueueHandler getQueueHandler() {
+        return queueHandler;
+    }
+
+    /**
+     * Returns counters describing processing of error reports of all clients
+     *
+     * @return library metrics
+     */
+    public BacktraceMetrics getMetrics() {
+        return queueHandler.getMetrics();
+    }
+
+    /**
+     * Wait until all messages in queue will be sent
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        queueHandler.await();
+    }
+
+    /**
+     * Wait until all messages in queue will be sent
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the {@code timeout} argument
+     * @return {@code true} if all messages are sent in passed time and {@code false}
+     * if the waiting time elapsed before all messages has been sent
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return queueHandler.await(timeout, unit);
+    }
+
+    /**
+     * Stop sender threads and wait until messages which are currently processed will be sent,
+     * clients which use the dispatcher can not send reports anymore
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        LOGGER.debug("Closing Backtrace Dispatcher");
+        queueHandler.close();
+    }
+
+    /**
+     * Sends reports until the timeout elapses, then stops sender threads, aborts requests in progress
+     * and stores reports which have not been sent in the database
+     *
+     * @param timeout the maximum time to wait for reports to be sent
+     * @return numbers of sent, persisted and dropped reports
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public BacktraceShutdownSummary close(Duration timeout) throws InterruptedException {
+        LOGGER.debug("Closing Backtrace Dispatcher - timeout: " + timeout);
+        BacktraceShutdownSummary summary = queueHandler.close(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        LOGGER.info("Backtrace Dispatcher closed: " + summary);
+        return summary;
+    }
+}
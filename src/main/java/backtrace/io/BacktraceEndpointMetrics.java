@@ -0,0 +1,129 @@
+package backtrace.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters which describe latency and errors of a single submission endpoint
+ */
+public class BacktraceEndpointMetrics {
+    private static final double LATENCY_SMOOTHING = 0.2; // weight of the newest sample in the average latency
+    private final String url;
+    private long requests = 0;
+    private long failedRequests = 0;
+    private int consecutiveFailures = 0;
+    private double averageLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+    private long lastSelectedNanos = 0;
+    private boolean selected = false;
+
+    /**
+     * Creates counters for submission endpoint
+     *
+     * @param url submission url with masked token
+     */
+    BacktraceEndpointMetrics(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the submission url with the token replaced by its short hash, so the token is not exposed
+     *
+     * @return redacted submission url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns number of requests which have been completed by the endpoint, including failed requests
+     *
+     * @return number of requests
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns number of requests which have failed with a missing response, a timeout or a response
+     * which should be retried
+     *
+     * @return number of failed requests
+     */
+    public synchronized long getFailedRequests() {
+        return failedRequests;
+    }
+
+    /**
+     * Returns number of failed requests since the last successful response
+     *
+     * @return number of consecutive failures
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Returns share of failed requests
+     *
+     * @return value between 0 and 1, zero if no request has been completed
+     */
+    public synchronized double getErrorRate() {
+        return requests == 0 ? 0 : (double) failedRequests / requests;
+    }
+
+    /**
+     * Returns exponentially weighted average latency of successful requests, recent requests have more weight
+     *
+     * @return average latency in milliseconds, zero if no request has succeeded
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return averageLatencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns latency of the slowest successful request
+     *
+     * @return maximum latency in milliseconds
+     */
+    public synchronized long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+    }
+
+    synchronized double getAverageLatencyNanos() {
+        return averageLatencyNanos;
+    }
+
+    /**
+     * Returns time elapsed since a report was last sent to the endpoint
+     *
+     * @param nowNanos current time
+     * @return elapsed time in nanoseconds, {@link Long#MAX_VALUE} if no report has been sent
+     */
+    synchronized long getNanosSinceSelected(long nowNanos) {
+        return selected ? nowNanos - lastSelectedNanos : Long.MAX_VALUE;
+    }
+
+    synchronized void onSelected(long nowNanos) {
+        selected = true;
+        lastSelectedNanos = nowNanos;
+    }
+
+    /**
+     * Records a completed request
+     *
+     * @param latencyNanos time between sending the request and receiving the response
+     * @param failed       {@code true} if the endpoint is unavailable
+     */
+    synchronized void onResponse(long latencyNanos, boolean failed) {
+        requests++;
+        if (failed) {
+            failedRequests++;
+            consecutiveFailures++;
+            return;
+        }
+        consecutiveFailures = 0;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+        averageLatencyNanos = requests - failedRequests == 1 ? latencyNanos
+                : averageLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - averageLatencyNanos);
+    }
+}
@@ -1,11 +1,13 @@
 package backtrace.io;
 
 import backtrace.io.data.BacktraceReport;
-import backtrace.io.events.OnServerResponseEvent;
+import backtrace.io.http.BacktraceResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 /**
@@ -17,7 +19,6 @@ public class BacktraceExceptionHandler implements Thread.UncaughtExceptionHandle
     private static final transient Logger LOGGER = LoggerFactory.getLogger(backtrace.io.BacktraceExceptionHandler.class);
 
     private final Thread.UncaughtExceptionHandler rootHandler;
-    private final CountDownLatch signal = new CountDownLatch(1);
     private BacktraceClient client;
     private boolean blockThread;
 
@@ -25,8 +26,8 @@ public class BacktraceExceptionHandler implements Thread.UncaughtExceptionHandle
      * Creates BacktraceExceptionHandler instance with BacktraceClient instance and blockThread flag
      *
      * @param client      Current Backtrace client instance
-     * @param blockThread Block thread until it gets a response from the API
-     *                    which will be used to send information about exception
+     * @param blockThread Block thread until it gets a response from the API or the uncaught exception timeout
+     *                    set in {@link BacktraceConfig} elapses
      */
     private BacktraceExceptionHandler(BacktraceClient client, boolean blockThread) {
         LOGGER.debug("BacktraceExceptionHandler initialization");
@@ -41,8 +42,8 @@ public class BacktraceExceptionHandler implements Thread.UncaughtExceptionHandle
      * Enables catching unexpected exceptions by BacktraceClient
      *
      * @param client      Current Backtrace client instance
-     * @param blockThread Block thread until it gets a response from the API
-     *                    which will be used to send information about exception
+     * @param blockThread Block thread until it gets a response from the API or the uncaught exception timeout
+     *                    set in {@link BacktraceConfig} elapses
      */
     static void enable(BacktraceClient client, boolean blockThread) {
         if (Thread.getDefaultUncaughtExceptionHandler() instanceof backtrace.io.BacktraceExceptionHandler) {
@@ -80,39 +81,42 @@ public class BacktraceExceptionHandler implements Thread.UncaughtExceptionHandle
      */
     @Override
     public void uncaughtException(final Thread thread, final Throwable throwable) {
-        OnServerResponseEvent callback = getCallbackToDefaultHandler(thread, throwable);
+        CompletableFuture<BacktraceResult> result = CompletableFuture.completedFuture(null);
 
         if (throwable instanceof Exception) {
             LOGGER.error("Sending uncaught exception to Backtrace API", throwable);
-            this.client.send(new BacktraceReport((Exception) throwable), callback);
+            result = this.client.sendAsync(new BacktraceReport((Exception) throwable), ReportPriority.Crash);
             LOGGER.debug("Uncaught exception sent to Backtrace API");
         }
         LOGGER.debug("Default uncaught exception handler");
         if (!blockThread) {
+            result.whenComplete((backtraceResult, error) -> callRootHandler(thread, throwable));
             return;
         }
 
         try {
-            signal.await();
+            result.get(this.client.getConfig().getUncaughtExceptionTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            LOGGER.warn("Uncaught exception has not been sent before the timeout, it will be sent in the background");
+        } catch (InterruptedException ex) {
+            LOGGER.error("Interrupted while waiting for response", ex);
+            Thread.currentThread().interrupt();
         } catch (Exception ex) {
             LOGGER.error("Exception during waiting for response", ex);
         }
+        callRootHandler(thread, throwable);
     }
 
     /**
-     * Returns callback to default uncaught exception handler
+     * Passes uncaught exception to default uncaught exception handler
      *
-     * @param thread    current thread
-     * @param throwable error
-     * @return callback to default uncaught exception handler
+     * @param thread    Thread that is about to exit
+     * @param throwable Uncaught exception
      */
-    private OnServerResponseEvent getCallbackToDefaultHandler(final Thread thread, final Throwable throwable) {
-        return backtraceResult -> {
-            LOGGER.debug("Root handler event callback");
-            signal.countDown();
-            if (rootHandler != null) {
-                rootHandler.uncaughtException(thread, throwable);
-            }
-        };
+    private void callRootHandler(Thread thread, Throwable throwable) {
+        LOGGER.debug("Root handler event callback");
+        if (rootHandler != null) {
+            rootHandler.uncaughtException(thread, throwable);
+        }
     }
-}
\ No newline at end of file
+}
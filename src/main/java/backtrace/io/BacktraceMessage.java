@@ -1,15 +1,36 @@
 package backtrace.io;
 
 import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
 import backtrace.io.events.OnServerResponseEvent;
+import backtrace.io.http.BacktraceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * The message that is sent from the application, which will be added to the queue and handled by the thread
  * which sending the message. After receiving the response, callback event will be executed.
+ * A message can be created from a snapshot of the report, in which case the report data
+ * (environment variables, host information, threads) is gathered by the thread which handles the message.
  */
 public class BacktraceMessage {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceMessage.class);
     private BacktraceData backtraceData;
+    private BacktraceConfig config;
+    private BacktraceReport report;
+    private Map<String, Object> attributes;
+    private boolean allThreads;
+    private String reportingThreadName;
+    private ReportPriority priority;
     private OnServerResponseEvent callback;
+    private CompletableFuture<BacktraceResult> result;
+    private Executor completionExecutor;
 
     /**
      * Creates new instance of BacktraceMessage
@@ -18,15 +39,180 @@ public class BacktraceMessage {
      * @param callback      Event which will be executed after receiving the response
      */
     public BacktraceMessage(BacktraceData backtraceData, OnServerResponseEvent callback) {
+        this(backtraceData, callback, null, null);
+    }
+
+    /**
+     * Creates new instance of BacktraceMessage
+     *
+     * @param backtraceData      Message which contains information about error, attributes and threads
+     * @param callback           Event which will be executed after receiving each response
+     * @param result             Future which will be completed with the final result of sending
+     * @param completionExecutor Executor on which the future will be completed
+     */
+    BacktraceMessage(BacktraceData backtraceData, OnServerResponseEvent callback,
+                     CompletableFuture<BacktraceResult> result, Executor completionExecutor) {
         this.backtraceData = backtraceData;
+        this.priority = backtraceData != null ? getDefaultPriority(backtraceData.getReport()) : ReportPriority.Error;
         this.callback = callback;
+        this.result = result;
+        this.completionExecutor = completionExecutor;
     }
 
-    BacktraceData getBacktraceData() {
+    /**
+     * Creates new instance of BacktraceMessage from snapshot of the report taken on the calling thread,
+     * the report data is gathered when it is needed for the first time
+     *
+     * @param report             Current report which contains information about error
+     * @param attributes         Custom user attributes, the map is copied
+     * @param allThreads         if true information about all threads will be gathered
+     * @param priority           priority lane of the report
+     * @param callback           Event which will be executed after receiving each response
+     * @param result             Future which will be completed with the final result of sending
+     * @param completionExecutor Executor on which the future will be completed
+     */
+    BacktraceMessage(BacktraceReport report, Map<String, Object> attributes, boolean allThreads,
+                     ReportPriority priority, OnServerResponseEvent callback,
+                     CompletableFuture<BacktraceResult> result, Executor completionExecutor) {
+        this(report, attributes, allThreads, priority, Thread.currentThread().getName(), callback, result,
+                completionExecutor);
+    }
+
+    /**
+     * Creates new instance of BacktraceMessage from snapshot of the report taken on behalf of given thread,
+     * the report data is gathered when it is needed for the first time
+     *
+     * @param report              Current report which contains information about error
+     * @param attributes          Custom user attributes, the map is copied
+     * @param allThreads          if true information about all threads will be gathered
+     * @param priority            priority lane of the report
+     * @param reportingThreadName name of the thread which reported the error
+     * @param callback            Event which will be executed after receiving each response
+     * @param result              Future which will be completed with the final result of sending
+     * @param completionExecutor  Executor on which the future will be completed
+     */
+    BacktraceMessage(BacktraceReport report, Map<String, Object> attributes, boolean allThreads,
+                     ReportPriority priority, String reportingThreadName, OnServerResponseEvent callback,
+                     CompletableFuture<BacktraceResult> result, Executor completionExecutor) {
+        this(null, callback, result, completionExecutor);
+        this.priority = priority;
+        this.report = report;
+        this.attributes = attributes != null ? new HashMap<>(attributes) : null;
+        this.allThreads = allThreads;
+        this.reportingThreadName = reportingThreadName;
+    }
+
+    /**
+     * Creates new instance of BacktraceMessage from snapshot of the report sent by a client,
+     * the report is sent to the endpoint of the client
+     *
+     * @param config              configuration of the client which sent the report
+     * @param report              Current report which contains information about error
+     * @param attributes          Custom user attributes, the map is copied
+     * @param priority            priority lane of the report
+     * @param reportingThreadName name of the thread which reported the error
+     * @param callback            Event which will be executed after receiving each response
+     * @param result              Future which will be completed with the final result of sending
+     */
+    BacktraceMessage(BacktraceConfig config, BacktraceReport report, Map<String, Object> attributes,
+                     ReportPriority priority, String reportingThreadName, OnServerResponseEvent callback,
+                     CompletableFuture<BacktraceResult> result) {
+        this(report, attributes, config.isGatherAllThreads(), priority, reportingThreadName, callback, result,
+                result != null ? config.getCompletionExecutor() : null);
+        this.config = config;
+    }
+
+    /**
+     * Returns report data, if the message has been created from snapshot the data is gathered
+     * on the current thread on behalf of the thread which sent the report
+     *
+     * @return report data
+     */
+    synchronized BacktraceData getBacktraceData() {
+        if (backtraceData == null && report != null) {
+            backtraceData = new BacktraceData(report, attributes, allThreads, reportingThreadName);
+            attributes = null;
+            if (config != null) {
+                backtraceData.setSubmissionUrl(config.getSubmissionUrl());
+            }
+        }
         return backtraceData;
     }
 
+    /**
+     * Returns report without gathering the report data
+     *
+     * @return current report
+     */
+    BacktraceReport getReport() {
+        if (report != null) {
+            return report;
+        }
+        return backtraceData != null ? backtraceData.getReport() : null;
+    }
+
+    /**
+     * Returns configuration of the client which sent the report
+     *
+     * @return client configuration or null if the message has been loaded from the database
+     */
+    BacktraceConfig getConfig() {
+        return config;
+    }
+
+    ReportPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns priority of report which has been sent without priority,
+     * reports created from exceptions have higher priority than text messages
+     *
+     * @param report error report
+     * @return default priority of the report
+     */
+    static ReportPriority getDefaultPriority(BacktraceReport report) {
+        return report != null && report.getExceptionTypeReport() ? ReportPriority.Error : ReportPriority.Info;
+    }
+
     OnServerResponseEvent getCallback() {
         return callback;
     }
+
+    /**
+     * Completes future of this message with the final result of sending, the report will not be sent again
+     *
+     * @param backtraceResult final server response
+     */
+    void complete(final BacktraceResult backtraceResult) {
+        if (result == null) {
+            return;
+        }
+        executeCompletion(() -> result.complete(backtraceResult));
+    }
+
+    /**
+     * Completes future of this message with exception when report can not be sent
+     *
+     * @param throwable reason why the report can not be sent
+     */
+    void completeExceptionally(final Throwable throwable) {
+        if (result == null) {
+            return;
+        }
+        executeCompletion(() -> result.completeExceptionally(throwable));
+    }
+
+    private void executeCompletion(Runnable completion) {
+        if (completionExecutor == null) {
+            completion.run();
+            return;
+        }
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Completion executor rejected the task, future will be completed on current thread");
+            completion.run();
+        }
+    }
 }
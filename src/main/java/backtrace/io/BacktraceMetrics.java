@@ -0,0 +1,197 @@
+package backtrace.io;
+
+import backtrace.io.http.HttpConnectionPool;
+import backtrace.io.http.RequestCompression;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters which describe how error reports pass through the library
+ */
+public class BacktraceMetrics {
+    private final AtomicLong droppedReports = new AtomicLong();
+    private final AtomicLong spilledReports = new AtomicLong();
+    private final LongAdder sentReports = new LongAdder();
+    private final LongAdder acceptedReports = new LongAdder();
+    private final LongAdder rateLimitedReports = new LongAdder();
+    private final LongAdder sampledOutReports = new LongAdder();
+    private final List<BacktraceWorkerMetrics> workers = new CopyOnWriteArrayList<>();
+    private final List<BacktraceCircuitBreaker> circuitBreakers = new CopyOnWriteArrayList<>();
+    private final List<BacktraceEndpointMetrics> endpoints = new CopyOnWriteArrayList<>();
+    private volatile HttpConnectionPool connectionPool;
+    private volatile RequestCompression compression;
+
+    /**
+     * Returns number of reports rejected by the queue because it was full
+     *
+     * @return number of dropped reports
+     */
+    public long getDroppedReports() {
+        return droppedReports.get();
+    }
+
+    /**
+     * Returns number of reports stored in the database instead of being sent because the queue was full
+     * or the circuit breaker was open
+     *
+     * @return number of reports spilled to the database
+     */
+    public long getSpilledReports() {
+        return spilledReports.get();
+    }
+
+    /**
+     * Returns number of reports successfully sent to the Backtrace console
+     *
+     * @return number of sent reports
+     */
+    public long getSentReports() {
+        return sentReports.sum();
+    }
+
+    /**
+     * Returns number of reports accepted by rate limiter after sampling, including reports of unhandled exceptions
+     * which are never rate limited
+     *
+     * @return number of accepted reports
+     */
+    public long getAcceptedReports() {
+        return acceptedReports.sum();
+    }
+
+    /**
+     * Returns number of reports rejected by rate limiter before they were created
+     *
+     * @return number of rate limited reports
+     */
+    public long getRateLimitedReports() {
+        return rateLimitedReports.sum();
+    }
+
+    /**
+     * Returns number of reports which have not been sent because they were not selected by sampling
+     *
+     * @return number of sampled out reports
+     */
+    public long getSampledOutReports() {
+        return sampledOutReports.sum();
+    }
+
+    /**
+     * Returns counters of each sender worker
+     *
+     * @return sender workers counters
+     */
+    public List<BacktraceWorkerMetrics> getWorkers() {
+        return Collections.unmodifiableList(workers);
+    }
+
+    /**
+     * Returns circuit breakers of submission endpoints, including their state and transition counters
+     *
+     * @return circuit breakers
+     */
+    public List<BacktraceCircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableList(circuitBreakers);
+    }
+
+    /**
+     * Returns latency and error counters of each submission endpoint to which a report has been sent
+     *
+     * @return submission endpoints counters
+     */
+    public List<BacktraceEndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Returns number of sender workers which are processing a report at the moment
+     *
+     * @return number of busy workers
+     */
+    public int getBusyWorkers() {
+        int busy = 0;
+        for (BacktraceWorkerMetrics worker : workers) {
+            if (worker.isBusy()) {
+                busy++;
+            }
+        }
+        return busy;
+    }
+
+    BacktraceWorkerMetrics registerWorker(String name) {
+        BacktraceWorkerMetrics worker = new BacktraceWorkerMetrics(name);
+        workers.add(worker);
+        return worker;
+    }
+
+    /**
+     * Returns counters of the pool of HTTP connections, e.g. number of TLS handshakes and connection reuse ratio
+     *
+     * @return connection pool or null if the connection pool is disabled
+     */
+    public HttpConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    HttpConnectionPool registerConnectionPool(HttpConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+        return connectionPool;
+    }
+
+    /**
+     * Returns counters of request compression, e.g. compression ratio and time spent on compression
+     *
+     * @return request compression or null if compression is disabled
+     */
+    public RequestCompression getCompression() {
+        return compression;
+    }
+
+    RequestCompression registerCompression(RequestCompression compression) {
+        this.compression = compression;
+        return compression;
+    }
+
+    BacktraceCircuitBreaker registerCircuitBreaker(BacktraceCircuitBreaker circuitBreaker) {
+        circuitBreakers.add(circuitBreaker);
+        return circuitBreaker;
+    }
+
+    BacktraceEndpointMetrics registerEndpoint(BacktraceEndpointMetrics endpoint) {
+        endpoints.add(endpoint);
+        return endpoint;
+    }
+
+    void reportSent() {
+        sentReports.increment();
+    }
+
+    void reportAccepted() {
+        acceptedReports.increment();
+    }
+
+    void reportAcceptanceReleased() {
+        acceptedReports.decrement();
+    }
+
+    void reportRateLimited() {
+        rateLimitedReports.increment();
+    }
+
+    void reportSampledOut() {
+        sampledOutReports.increment();
+    }
+
+    void reportDropped() {
+        droppedReports.incrementAndGet();
+    }
+
+    void reportSpilled() {
+        spilledReports.incrementAndGet();
+    }
+}
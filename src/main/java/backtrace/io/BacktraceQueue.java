@@ -1,102 +1,461 @@
 package backtrace.io;
 
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.database.BacktraceDatabase;
+import backtrace.io.events.OnServerResponseEvent;
 import backtrace.io.helpers.CountLatch;
+import backtrace.io.http.BacktraceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class represents queue with locking mechanism to inform
- * that there are messages in queue or all messages from queue are sent
+ * that there are messages in queue or all messages from queue are sent.
+ * A message is counted as pending from the moment it is added until a worker
+ * reports that its processing has finished, so many workers can drain the same queue.
+ * Messages are kept in a ring buffer per priority lane, the drain policy decides from which lane the next
+ * message is taken. If the queue has a capacity, a message which does not fit into the full queue replaces
+ * the newest message of a lower priority, if there is no such message the overflow policy decides what happens
  */
-class BacktraceQueue extends ConcurrentLinkedQueue<BacktraceMessage> {
+class BacktraceQueue extends AbstractQueue<BacktraceMessage> {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceQueue.class);
 
-    private final CountLatch processingLock = new CountLatch(0, 0); // state 1 if should process message
-    private final CountLatch notEmptyQueueLock = new CountLatch(1, 0); // state 1 if queue is empty
-    private final CountLatch closingLock = new CountLatch(1, 0); // state 0 if closing
+    private final CountLatch processingLock = new CountLatch(0, 0); // number of messages waiting or processing
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private volatile boolean closing = false;
+    private final ArrayDeque<BacktraceMessage>[] lanes;
+    private final int[] laneWeights;
+    private final int[] laneCredits;
+    private final PriorityDrainPolicy drainPolicy;
+    private int count = 0;
+    private final int capacity;
+    private final QueueOverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private final BacktraceMetrics metrics;
+    private volatile BacktraceDatabase database;
+
+    /**
+     * Creates unbounded queue
+     */
+    BacktraceQueue() {
+        this(0, QueueOverflowPolicy.DropNewest, 0, new BacktraceMetrics());
+    }
+
+    /**
+     * Creates queue with capacity and overflow policy taken from library configuration
+     *
+     * @param config  library configuration
+     * @param metrics counters which will be updated when messages are rejected
+     */
+    BacktraceQueue(BacktraceConfig config, BacktraceMetrics metrics) {
+        this(config.getQueueCapacity(), config.getQueueOverflowPolicy(), config.getQueueBlockTimeoutMillis(),
+                config.getPriorityDrainPolicy(), config.getPriorityWeights(), metrics);
+    }
+
+    /**
+     * Creates queue
+     *
+     * @param capacity           maximum number of messages in queue, zero or less means unbounded queue
+     * @param overflowPolicy     what should happen with a message which does not fit into the queue
+     * @param blockTimeoutMillis maximum time in milliseconds for which {@link QueueOverflowPolicy#Block} waits
+     * @param metrics            counters which will be updated when messages are rejected
+     */
+    BacktraceQueue(int capacity, QueueOverflowPolicy overflowPolicy, long blockTimeoutMillis, BacktraceMetrics metrics) {
+        this(capacity, overflowPolicy, blockTimeoutMillis, PriorityDrainPolicy.Strict, null, metrics);
+    }
+
+    /**
+     * Creates queue
+     *
+     * @param capacity           maximum number of messages in queue, zero or less means unbounded queue
+     * @param overflowPolicy     what should happen with a message which does not fit into the queue
+     * @param blockTimeoutMillis maximum time in milliseconds for which {@link QueueOverflowPolicy#Block} waits
+     * @param drainPolicy        how the priority lane of the next message is chosen
+     * @param laneWeights        number of messages taken from each lane in one round of
+     *                           {@link PriorityDrainPolicy#Weighted} draining, indexed by priority ordinal
+     * @param metrics            counters which will be updated when messages are rejected
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    BacktraceQueue(int capacity, QueueOverflowPolicy overflowPolicy, long blockTimeoutMillis,
+                   PriorityDrainPolicy drainPolicy, int[] laneWeights, BacktraceMetrics metrics) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.drainPolicy = drainPolicy;
+        this.metrics = metrics;
+        int laneCount = ReportPriority.values().length;
+        this.lanes = new ArrayDeque[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            this.lanes[i] = new ArrayDeque<>();
+        }
+        this.laneWeights = laneWeights != null ? laneWeights.clone() : new int[laneCount];
+        this.laneCredits = this.laneWeights.clone();
+    }
+
+    /**
+     * Sets database in which messages are stored when the queue is full
+     * and {@link QueueOverflowPolicy#SpillToDatabase} is used
+     *
+     * @param database database for messages which do not fit into the queue
+     */
+    void setDatabase(BacktraceDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Add message to queue, the message is treated as pending until its processing is finished
+     *
+     * @param message error report
+     * @return {@code true} if the message was added to the queue
+     */
+    boolean addWithLock(BacktraceMessage message) {
+        return this.offer(message);
+    }
 
     /**
-     * Add message to queue with locking semaphore to inform that at least one of messages are processing
+     * Inserts the message into lane of its priority, if the queue is full the newest message with lower priority
+     * is rejected to make room, if there is no such message the overflow policy is applied
      *
      * @param message error report
+     * @return {@code true} if the message was added to the queue
      */
-    void addWithLock(BacktraceMessage message) {
-        this.lock();
+    @Override
+    public boolean offer(BacktraceMessage message) {
+        if (message == null) {
+            throw new NullPointerException("BacktraceMessage can not be null");
+        }
+        BacktraceMessage removed = null;
+        boolean added;
+        // count the message before it becomes visible to workers
+        processingLock.countUp();
+        lock.lock();
+        try {
+            if (isFull()) {
+                removed = pollLowerPriority(message.getPriority());
+            }
+            if (isFull() && overflowPolicy == QueueOverflowPolicy.Block) {
+                awaitNotFull();
+            }
+            if (isFull() && overflowPolicy == QueueOverflowPolicy.DropOldest) {
+                removed = pollOldest(message.getPriority());
+            }
+            added = !isFull() && lanes[message.getPriority().ordinal()].offerLast(message);
+            if (added) {
+                count++;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
 
-        this.add(message);
+        if (removed != null) {
+            this.reject(removed);
+        }
 
-        this.queueNotEmpty();
+        if (!added) {
+            this.reject(message);
+            return false;
+        }
+        return true;
     }
 
     /**
-     * Unlock semaphore to inform that all messages from queue are sent
+     * Retrieves and removes the head of this queue, the caller is responsible
+     * for calling {@link #messageProcessed()} when the message is handled
+     *
+     * @return the head of this queue or {@code null} if this queue is empty
      */
-    void unlock() {
-        if (processingLock.getCount() == 1) {
-            processingLock.countDown();
+    @Override
+    public BacktraceMessage poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : pollNext();
+        } finally {
+            lock.unlock();
         }
     }
 
-    boolean shouldHandleMessages() {
-        return processingLock.getCount() == 1;
+    @Override
+    public BacktraceMessage peek() {
+        lock.lock();
+        try {
+            for (ArrayDeque<BacktraceMessage> lane : lanes) {
+                if (!lane.isEmpty()) {
+                    return lane.peekFirst();
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Lock semaphore because queue is empty
+     * Returns iterator over snapshot of messages currently waiting in the queue
+     *
+     * @return iterator over messages in queue
      */
-    void queueIsEmpty() {
-        if (notEmptyQueueLock.getCount() == 0) {
-            notEmptyQueueLock.countUp();
+    @Override
+    public Iterator<BacktraceMessage> iterator() {
+        lock.lock();
+        try {
+            List<BacktraceMessage> messages = new ArrayList<>(count);
+            for (ArrayDeque<BacktraceMessage> lane : lanes) {
+                messages.addAll(lane);
+            }
+            return Collections.unmodifiableList(messages).iterator();
+        } finally {
+            lock.unlock();
         }
     }
 
+    private boolean isBounded() {
+        return capacity > 0;
+    }
+
+    private boolean isFull() {
+        return isBounded() && count >= capacity;
+    }
+
     /**
-     * Unlocking processing because queue is not empty
+     * Removes the next message depending on drain policy, must be called with lock held when queue is not empty
+     *
+     * @return the next message
      */
-    private void queueNotEmpty() {
-        if (notEmptyQueueLock.getCount() == 1) {
-            notEmptyQueueLock.countDown();
+    private BacktraceMessage pollNext() {
+        int lane = drainPolicy == PriorityDrainPolicy.Weighted ? nextWeightedLane() : nextStrictLane();
+        count--;
+        notFull.signal();
+        return lanes[lane].pollFirst();
+    }
+
+    private int nextStrictLane() {
+        for (int i = 0; i < lanes.length; i++) {
+            if (!lanes[i].isEmpty()) {
+                return i;
+            }
         }
+        throw new IllegalStateException("Backtrace queue is empty");
     }
 
     /**
-     * Lock semaphore to inform that at least one of messages are processing
+     * Chooses the highest priority lane which still has credit in current round,
+     * a new round starts when no lane with messages has credit left
+     *
+     * @return index of the lane
      */
-    private void lock() {
-        if (processingLock.getCount() == 0) {
-            processingLock.countUp();
+    private int nextWeightedLane() {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < lanes.length; i++) {
+                if (!lanes[i].isEmpty() && laneCredits[i] > 0) {
+                    laneCredits[i]--;
+                    return i;
+                }
+            }
+            System.arraycopy(laneWeights, 0, laneCredits, 0, laneWeights.length);
         }
+        return nextStrictLane();
     }
 
     /**
-     * Wait until all messages in queue will be sent
+     * Removes the newest message from the lowest priority lane which has lower priority than given one,
+     * must be called with lock held
      *
-     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @param priority priority of the incoming message
+     * @return removed message or null if there is no message with lower priority
      */
-    void await() throws InterruptedException {
-        processingLock.await();
+    private BacktraceMessage pollLowerPriority(ReportPriority priority) {
+        for (int i = lanes.length - 1; i > priority.ordinal(); i--) {
+            if (!lanes[i].isEmpty()) {
+                count--;
+                return lanes[i].pollLast();
+            }
+        }
+        return null;
     }
 
-    boolean isClosing() {
-        return closingLock.getCount() == 0;
+    /**
+     * Removes the oldest message from the lowest priority lane which does not have higher priority than given one,
+     * must be called with lock held
+     *
+     * @param priority priority of the incoming message
+     * @return removed message or null if all messages have higher priority
+     */
+    private BacktraceMessage pollOldest(ReportPriority priority) {
+        for (int i = lanes.length - 1; i >= priority.ordinal(); i--) {
+            if (!lanes[i].isEmpty()) {
+                count--;
+                return lanes[i].pollFirst();
+            }
+        }
+        return null;
     }
 
-    void close() {
-        if (closingLock.getCount() == 1) {
-            closingLock.countDown();
+    /**
+     * Wait until there is room in the queue, block timeout elapses or the queue is closed,
+     * must be called with lock held
+     */
+    private void awaitNotFull() {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        try {
+            while (isFull() && nanos > 0 && !closing) {
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for free space in queue");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles a message which does not fit into the queue depending on overflow policy
+     * and informs the sender about the rejection
+     *
+     * @param message rejected message
+     */
+    private void reject(BacktraceMessage message) {
+        BacktraceDatabase database = this.database;
+        String reason;
+        if (overflowPolicy == QueueOverflowPolicy.SpillToDatabase && database != null
+                && spill(message, database)) {
+            metrics.reportSpilled();
+            reason = "Backtrace queue is full, report has been stored in the database";
+        } else {
+            metrics.reportDropped();
+            reason = "Backtrace queue is full, report has been dropped";
+        }
+        LOGGER.warn(reason);
+
+        OnServerResponseEvent callback = message.getCallback();
+        try {
+            BacktraceReport report = message.getReport();
+            BacktraceResult result = report != null ?
+                    BacktraceResult.onError(report, new IllegalStateException(reason)) : null;
+            if (callback != null && result != null) {
+                callback.onEvent(result);
+            }
+            message.complete(result);
+        } finally {
+            this.messageProcessed();
+        }
+    }
+
+    /**
+     * Stores the message in the database
+     *
+     * @param message  rejected message
+     * @param database database for messages which do not fit into the queue
+     * @return {@code true} if the message has been stored
+     */
+    private boolean spill(BacktraceMessage message, BacktraceDatabase database) {
+        BacktraceData backtraceData = message.getBacktraceData();
+        return backtraceData != null && database.saveReport(backtraceData);
+    }
+
+    /**
+     * Stores the message which will not be sent in the database, messages which have already been sent
+     * at least once are stored in the database before they are sent again
+     *
+     * @param message message which will not be sent
+     * @return {@code true} if the message is stored in the database
+     */
+    boolean persist(BacktraceMessage message) {
+        BacktraceDatabase database = this.database;
+        if (database == null) {
+            return false;
         }
-        queueNotEmpty();
+        BacktraceReport report = message.getReport();
+        return (report != null && database.containsReport(report)) || spill(message, database);
     }
 
     /**
-     * Wait until new message will be added to the queue
+     * Retrieves and removes the head of this queue, waiting if necessary until a message becomes available
+     * or the queue is closed
      *
+     * @return the head of this queue or {@code null} if the queue has been closed
      * @throws InterruptedException if the current thread is interrupted while waiting
      */
-    void awaitNewMessage() throws InterruptedException {
-        notEmptyQueueLock.await();
+    BacktraceMessage take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closing) {
+                notEmpty.await();
+            }
+            if (closing) {
+                return null;
+            }
+            return pollNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inform that a message will be added to the queue later, the message is treated as pending
+     * until {@link #messageProcessed()} is called
+     */
+    void messageScheduled() {
+        processingLock.countUp();
+    }
+
+    /**
+     * Inform that processing of a message taken from the queue is finished
+     */
+    void messageProcessed() {
+        processingLock.countDown();
     }
 
+    /**
+     * Wait until all messages in queue will be sent
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void await() throws InterruptedException {
+        processingLock.await();
+    }
+
+    boolean isClosing() {
+        return closing;
+    }
+
+    /**
+     * Close the queue and wake up all threads waiting for new messages or for free space in the queue,
+     * messages which are waiting for free space are rejected
+     */
+    void close() {
+        lock.lock();
+        try {
+            closing = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
 
     /**
      * Wait until all messages in queue will be sent
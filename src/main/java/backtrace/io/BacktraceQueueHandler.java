@@ -1,15 +1,25 @@
 package backtrace.io;
 
-import backtrace.io.data.BacktraceData;
 import backtrace.io.data.BacktraceReport;
 import backtrace.io.events.OnServerResponseEvent;
 
+import backtrace.io.http.BacktraceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 class BacktraceQueueHandler {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceQueueHandler.class);
+    private static final long ABORT_TIMEOUT_MILLIS = 500; // time for aborted requests to hand over their reports
     private BacktraceQueue queue;
-    private BacktraceThread thread;
+    private Backtrace backtrace;
+    private BacktraceThread[] threads;
+    private final BacktraceMetrics metrics = new BacktraceMetrics();
 
     /**
      * Creates instance of BacktraceQueueHandler
@@ -17,34 +27,230 @@ class BacktraceQueueHandler {
      * @param config Library configuration
      */
     BacktraceQueueHandler(BacktraceConfig config) {
-        this.queue = new BacktraceQueue();
-        this.thread = BacktraceThread.init(config, queue);
+        this.queue = new BacktraceQueue(config, metrics);
+        this.backtrace = new Backtrace(config, queue, metrics);
+        this.threads = BacktraceThread.initPool(config, backtrace, metrics);
     }
 
     /**
-     * Creates BacktraceMessage based on report and attributes and adds message to queue
+     * Creates BacktraceMessage based on report and attributes and adds message to queue.
+     * Only the report, a copy of attributes and identity of the current thread are captured,
+     * the rest of the report data is gathered by the thread which sends the report.
+     * If the queue is full, the configured overflow policy is applied and the callback receives an error result
      *
+     * @param config     configuration of the client which sends the report
      * @param report     Current report which contains information about error
      * @param attributes Custom user attributes
      * @param callback   Event which will be executed after receiving the response
-     * @param allThreads if true information about all threads will be gathered
+     * @param priority   priority lane of the report
+     */
+    void send(BacktraceConfig config, BacktraceReport report, Map<String, Object> attributes,
+              OnServerResponseEvent callback, ReportPriority priority) {
+        queue.addWithLock(new BacktraceMessage(config, report, attributes, priority, Thread.currentThread().getName(),
+                callback, null));
+    }
+
+    /**
+     * Creates BacktraceMessage based on report and attributes, adds message to queue
+     * and returns future completed with the final result of sending
+     *
+     * @param config     configuration of the client which sends the report
+     * @param report     Current report which contains information about error
+     * @param attributes Custom user attributes
+     * @param priority   priority lane of the report
+     * @return future completed with the final server response
+     */
+    CompletableFuture<BacktraceResult> sendAsync(BacktraceConfig config, BacktraceReport report,
+                                                 Map<String, Object> attributes, ReportPriority priority) {
+        return sendAsync(config, report, attributes, priority, Thread.currentThread().getName());
+    }
+
+    /**
+     * Creates BacktraceMessage based on report and attributes on behalf of given thread, adds message to queue
+     * and returns future completed with the final result of sending
+     *
+     * @param config              configuration of the client which sends the report
+     * @param report              Current report which contains information about error
+     * @param attributes          Custom user attributes
+     * @param priority            priority lane of the report
+     * @param reportingThreadName name of the thread which reported the error
+     * @return future completed with the final server response
+     */
+    CompletableFuture<BacktraceResult> sendAsync(BacktraceConfig config, BacktraceReport report,
+                                                 Map<String, Object> attributes, ReportPriority priority,
+                                                 String reportingThreadName) {
+        CompletableFuture<BacktraceResult> result = new CompletableFuture<>();
+        queue.addWithLock(new BacktraceMessage(config, report, attributes, priority, reportingThreadName,
+                null, result));
+        return result;
+    }
+
+    /**
+     * Inform that a report will be added to the queue later, the report is treated as pending
+     * until {@link #messageProcessed()} is called
+     */
+    void messageScheduled() {
+        queue.messageScheduled();
+    }
+
+    /**
+     * Inform that the report announced by {@link #messageScheduled()} has been added to the queue or dropped
      */
-    void send(BacktraceReport report, Map<String, Object> attributes, OnServerResponseEvent callback, boolean allThreads) {
-        BacktraceData backtraceData = new BacktraceData(report, attributes, allThreads);
-        queue.addWithLock(new BacktraceMessage(backtraceData, callback));
+    void messageProcessed() {
+        queue.messageProcessed();
     }
 
     /**
-     * Stop Backtrace Thread and wait until last message will be sent
+     * Returns counters describing processing of error reports
+     *
+     * @return library metrics
+     */
+    BacktraceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stop all Backtrace Threads and wait until messages which are currently processed will be sent
      *
      * @throws InterruptedException if the current thread is interrupted while waiting
      */
     void close() throws InterruptedException {
-        if (!this.thread.isAlive()) {
-            return;
+        this.closeThreads();
+        this.cancelRemainingMessages();
+    }
+
+    /**
+     * Sends messages until the timeout elapses, then stops all Backtrace Threads and stores messages
+     * which have not been sent in the database. Requests which are still in progress when the timeout elapses
+     * are aborted and their messages are stored in the database too. Threads which do not finish
+     * within a short time after the abort are left behind, so the method returns shortly after the timeout
+     *
+     * @param timeout the maximum time to wait for messages to be sent
+     * @param unit    the time unit of the {@code timeout} argument
+     * @return numbers of sent, persisted and dropped reports
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    BacktraceShutdownSummary close(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final long sentBefore = this.metrics.getSentReports();
+        final AtomicLong persisted = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        if (!this.queue.await(timeout, unit)) {
+            LOGGER.warn("Not all reports have been sent before the deadline, remaining reports will be stored in the database");
+        }
+        this.backtrace.close(message -> (this.persist(message) ? persisted : dropped).incrementAndGet());
+        if (!this.closeThreads(deadline - System.nanoTime())) {
+            LOGGER.warn("Reports are still being sent after the deadline, requests in progress will be aborted");
+            this.abortThreads();
+        }
+
+        BacktraceMessage message;
+        while ((message = this.queue.poll()) != null) {
+            try {
+                (this.persist(message) ? persisted : dropped).incrementAndGet();
+            } finally {
+                this.queue.messageProcessed();
+            }
+        }
+        return new BacktraceShutdownSummary(this.metrics.getSentReports() - sentBefore, persisted.get(), dropped.get());
+    }
+
+    /**
+     * Stores message which will not be sent in the database and completes it
+     *
+     * @param message message which will not be sent
+     * @return {@code true} if the message is stored in the database
+     */
+    private boolean persist(BacktraceMessage message) {
+        boolean persisted;
+        try {
+            persisted = this.queue.persist(message);
+        } catch (Exception e) {
+            LOGGER.error("Can not store report in the database", e);
+            persisted = false;
+        }
+        if (!persisted) {
+            message.completeExceptionally(new CancellationException("BacktraceClient has been closed"));
+            return false;
+        }
+        BacktraceResult result = BacktraceResult.onError(message.getReport(),
+                new IllegalStateException("BacktraceClient has been closed, report has been stored in the database"));
+        OnServerResponseEvent callback = message.getCallback();
+        if (callback != null) {
+            callback.onEvent(result);
+        }
+        message.complete(result);
+        return true;
+    }
+
+    private void closeThreads() throws InterruptedException {
+        for (BacktraceThread thread : this.threads) {
+            if (!thread.isAlive()) {
+                continue;
+            }
+            thread.close();
+            thread.join();
+        }
+    }
+
+    /**
+     * Stops all Backtrace Threads and waits until they finish or the timeout elapses
+     *
+     * @param timeoutNanos the maximum time to wait in nanoseconds
+     * @return {@code true} if all threads have finished
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    private boolean closeThreads(long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        boolean closed = true;
+        for (BacktraceThread thread : this.threads) {
+            if (thread.isAlive()) {
+                closed &= thread.close(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+        }
+        return closed && this.joinThreads(deadline);
+    }
+
+    /**
+     * Aborts requests in progress and interrupts Backtrace Threads, then waits a short time until the threads
+     * hand over reports of aborted requests, which are stored in the database
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    private void abortThreads() throws InterruptedException {
+        this.backtrace.abortRequests();
+        for (BacktraceThread thread : this.threads) {
+            thread.abort();
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ABORT_TIMEOUT_MILLIS);
+        boolean closed = true;
+        for (BacktraceThread thread : this.threads) {
+            closed &= thread.awaitClosed(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
+        if (!closed || !this.joinThreads(deadline)) {
+            LOGGER.warn("Backtrace Threads have not finished after aborting requests in progress");
+        }
+    }
+
+    private boolean joinThreads(long deadline) throws InterruptedException {
+        for (BacktraceThread thread : this.threads) {
+            TimeUnit.NANOSECONDS.timedJoin(thread, Math.max(deadline - System.nanoTime(), 1));
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes futures of messages which will not be sent because the queue has been closed
+     */
+    private void cancelRemainingMessages() {
+        BacktraceMessage message;
+        while ((message = this.queue.poll()) != null) {
+            message.completeExceptionally(new CancellationException("BacktraceClient has been closed"));
+            this.queue.messageProcessed();
         }
-        this.thread.close();
-        this.thread.join();
     }
 
     /**
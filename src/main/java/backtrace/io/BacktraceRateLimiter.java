@@ -0,0 +1,84 @@
+package backtrace.io;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limits number of reports sent by the client with token buckets, one shared by all reports
+ * and one for each classifier. The limit is checked before the report is created, so a rejected report costs
+ * no stack capture and no data allocation. Reports sampled out after they are created give their tokens back,
+ * so sampled out reports do not take tokens
+ */
+class BacktraceRateLimiter {
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> classifierBuckets = new ConcurrentHashMap<>();
+    private final double classifierReportsPerSecond;
+    private final int classifierBurst;
+    private final BacktraceMetrics metrics;
+
+    /**
+     * Creates rate limiter with limits taken from library configuration
+     *
+     * @param config  library configuration
+     * @param metrics counters of accepted and rejected reports
+     */
+    BacktraceRateLimiter(BacktraceConfig config, BacktraceMetrics metrics) {
+        this.globalBucket = config.getRateLimit() > 0 ?
+                new TokenBucket(config.getRateLimit(), config.getRateLimitBurst()) : null;
+        this.classifierReportsPerSecond = config.getClassifierRateLimit();
+        this.classifierBurst = config.getClassifierRateLimitBurst();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Checks whether report can be sent
+     *
+     * @param classifier report classifier, null or empty for reports without classifier
+     * @return {@code true} if the report can be sent
+     */
+    boolean tryAcquire(String classifier) {
+        if (globalBucket != null && !globalBucket.tryAcquire()) {
+            metrics.reportRateLimited();
+            return false;
+        }
+        TokenBucket classifierBucket = getClassifierBucket(classifier);
+        if (classifierBucket != null && !classifierBucket.tryAcquire()) {
+            if (globalBucket != null) {
+                globalBucket.release();
+            }
+            metrics.reportRateLimited();
+            return false;
+        }
+        metrics.reportAccepted();
+        return true;
+    }
+
+    /**
+     * Gives back tokens taken by accepted report which will not be sent, because it has been sampled out
+     * after it was created
+     *
+     * @param classifier report classifier, null or empty for reports without classifier
+     */
+    void release(String classifier) {
+        if (globalBucket != null) {
+            globalBucket.release();
+        }
+        TokenBucket classifierBucket = getClassifierBucket(classifier);
+        if (classifierBucket != null) {
+            classifierBucket.release();
+        }
+        metrics.reportAcceptanceReleased();
+    }
+
+    private TokenBucket getClassifierBucket(String classifier) {
+        if (classifierReportsPerSecond <= 0 || classifier == null || classifier.isEmpty()) {
+            return null;
+        }
+        TokenBucket bucket = classifierBuckets.get(classifier);
+        if (bucket == null) {
+            bucket = classifierBuckets.computeIfAbsent(classifier,
+                    key -> new TokenBucket(classifierReportsPerSecond, classifierBurst));
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,204 @@
+package backtrace.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds messages which should be sent again until their backoff delay elapses and then adds them back to the queue.
+ * The delay grows exponentially with the number of retries of the report, is randomized by jitter
+ * and is limited by the maximum delay. Messages which are backing off do not block other messages in the queue
+ */
+class BacktraceRetryScheduler {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceRetryScheduler.class);
+    private final static String THREAD_NAME = "backtrace-retry";
+    private final DelayQueue<DelayedMessage> delayedMessages = new DelayQueue<>();
+    private final BacktraceQueue queue;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double jitter;
+    private Thread thread;
+    private volatile boolean closing = false;
+    private volatile Consumer<BacktraceMessage> remainingMessageHandler = message ->
+            message.completeExceptionally(new CancellationException("BacktraceClient has been closed"));
+
+    /**
+     * Creates retry scheduler with backoff settings taken from library configuration
+     *
+     * @param config library configuration
+     * @param queue  queue to which messages are added when their delay elapses
+     */
+    BacktraceRetryScheduler(BacktraceConfig config, BacktraceQueue queue) {
+        this(queue, config.getRetryInitialDelayMillis(), config.getRetryMaxDelayMillis(), config.getRetryJitter());
+    }
+
+    /**
+     * Creates retry scheduler
+     *
+     * @param queue              queue to which messages are added when their delay elapses
+     * @param initialDelayMillis delay in milliseconds before the first retry
+     * @param maxDelayMillis     maximum delay in milliseconds between retries
+     * @param jitter             part of the delay which is randomized, between 0 and 1
+     */
+    BacktraceRetryScheduler(BacktraceQueue queue, long initialDelayMillis, long maxDelayMillis, double jitter) {
+        this.queue = queue;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Schedules sending the message again, the message is treated as pending until it is sent
+     *
+     * @param message message which should be sent again
+     * @param retry   number of the retry, starting from 1
+     */
+    void schedule(BacktraceMessage message, int retry) {
+        schedule(message, getDelayMillis(retry));
+    }
+
+    /**
+     * Schedules sending the message again after given delay, the message is treated as pending until it is sent
+     *
+     * @param message     message which should be sent again
+     * @param delayMillis delay in milliseconds
+     */
+    void schedule(BacktraceMessage message, long delayMillis) {
+        LOGGER.debug("Report will be sent again in " + delayMillis + " ms");
+        queue.messageScheduled();
+        delayedMessages.add(new DelayedMessage(message, delayMillis));
+        startThread();
+        if (closing) {
+            cancelRemainingMessages();
+        }
+    }
+
+    /**
+     * Returns delay before given retry, exponentially growing with the number of retries,
+     * limited by the maximum delay and randomly reduced by up to jitter part of it
+     *
+     * @param retry number of the retry, starting from 1
+     * @return delay in milliseconds
+     */
+    long getDelayMillis(int retry) {
+        int exponent = Math.min(Math.max(retry - 1, 0), 62);
+        long delay = initialDelayMillis;
+        for (int i = 0; i < exponent && delay < maxDelayMillis; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelayMillis);
+        if (jitter <= 0) {
+            return delay;
+        }
+        return delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Returns number of messages which are waiting for their delay to elapse
+     *
+     * @return number of scheduled messages
+     */
+    int size() {
+        return delayedMessages.size();
+    }
+
+    /**
+     * Stop the scheduler, messages which are still waiting will not be sent
+     */
+    void close() {
+        close(remainingMessageHandler);
+    }
+
+    /**
+     * Stop the scheduler and pass messages which are still waiting, or are scheduled later, to the handler
+     *
+     * @param remainingMessageHandler handles messages which will not be sent
+     */
+    void close(Consumer<BacktraceMessage> remainingMessageHandler) {
+        this.remainingMessageHandler = remainingMessageHandler;
+        Thread thread;
+        synchronized (this) {
+            closing = true;
+            thread = this.thread;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                LOGGER.warn("Interrupted while waiting for retry thread");
+                Thread.currentThread().interrupt();
+            }
+        }
+        cancelRemainingMessages();
+    }
+
+    private synchronized void startThread() {
+        if (thread != null || closing) {
+            return;
+        }
+        thread = new Thread(this::run, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        while (!closing) {
+            DelayedMessage delayedMessage;
+            try {
+                delayedMessage = delayedMessages.take();
+            } catch (InterruptedException e) {
+                LOGGER.debug("Retry thread has been interrupted");
+                break;
+            }
+            try {
+                queue.offer(delayedMessage.message);
+            } finally {
+                queue.messageProcessed();
+            }
+        }
+    }
+
+    private void cancelRemainingMessages() {
+        DelayedMessage delayedMessage;
+        while ((delayedMessage = delayedMessages.peek()) != null) {
+            if (!delayedMessages.remove(delayedMessage)) {
+                continue;
+            }
+            try {
+                remainingMessageHandler.accept(delayedMessage.message);
+            } finally {
+                queue.messageProcessed();
+            }
+        }
+    }
+
+    /**
+     * Message which becomes available after its delay elapses
+     */
+    private static class DelayedMessage implements Delayed {
+        private final BacktraceMessage message;
+        private final long readyTime;
+
+        DelayedMessage(BacktraceMessage message, long delayMillis) {
+            this.message = message;
+            this.readyTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
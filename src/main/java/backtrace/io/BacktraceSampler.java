@@ -0,0 +1,124 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceReport;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which reports are sent. Reports are sampled in two steps, both before any report data is gathered.
+ * The first step uses global, classifier and client attribute sample rates and can be done before the report
+ * is created. The second step uses sample rates of report attributes and adaptive sampling, which keeps
+ * the first occurrences of each fingerprint and then only occurrences whose number doubles,
+ * so the number of sent reports grows logarithmically
+ */
+class BacktraceSampler {
+    static final String SAMPLE_RATE_ATTRIBUTE = "sample_rate";
+    private final BacktraceConfig config;
+    private final BacktraceMetrics metrics;
+    private final Map<String, AtomicLong> occurrences = new ConcurrentHashMap<>();
+
+    /**
+     * Creates sampler using sample rates from library configuration
+     *
+     * @param config  library configuration
+     * @param metrics counters updated with the number of sampled out reports
+     */
+    BacktraceSampler(BacktraceConfig config, BacktraceMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Samples a report using global, classifier and client attributes sample rates,
+     * which are known before the report is created
+     *
+     * @param classifier       report classifier or null if the report does not have classifier
+     * @param clientAttributes attributes of the client
+     * @return sample rate of the report or zero if the report should not be sent
+     */
+    double sample(String classifier, Map<String, Object> clientAttributes) {
+        double rate = config.getSampleRate();
+        if (classifier != null && !classifier.isEmpty()) {
+            Double classifierRate = config.getClassifierSampleRates().get(classifier);
+            rate *= classifierRate != null ? classifierRate : 1;
+        }
+        rate *= getAttributesSampleRate(clientAttributes);
+        return draw(rate) ? rate : 0;
+    }
+
+    /**
+     * Samples created report using sample rates of its attributes and adaptive sampling
+     *
+     * @param report     error report
+     * @param sampleRate sample rate of the report returned by {@link #sample(String, Map)}
+     * @return final sample rate of the report or zero if the report should not be sent
+     */
+    double sample(BacktraceReport report, double sampleRate) {
+        double attributesRate = getAttributesSampleRate(report.getAttributes());
+        if (!draw(attributesRate)) {
+            return 0;
+        }
+        double adaptiveRate = getAdaptiveSampleRate(report);
+        if (adaptiveRate == 0) {
+            metrics.reportSampledOut();
+            return 0;
+        }
+        return sampleRate * attributesRate * adaptiveRate;
+    }
+
+    private boolean draw(double sampleRate) {
+        if (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            return true;
+        }
+        metrics.reportSampledOut();
+        return false;
+    }
+
+    private double getAttributesSampleRate(Map<String, Object> attributes) {
+        Map<String, Map<String, Double>> attributeSampleRates = config.getAttributeSampleRates();
+        if (attributes == null || attributeSampleRates.isEmpty()) {
+            return 1;
+        }
+        double rate = 1;
+        for (Map.Entry<String, Map<String, Double>> entry : attributeSampleRates.entrySet()) {
+            Object value = attributes.get(entry.getKey());
+            if (value == null) {
+                continue;
+            }
+            Double valueRate = entry.getValue().get(value.toString());
+            rate *= valueRate != null ? valueRate : 1;
+        }
+        return rate;
+    }
+
+    /**
+     * Keeps first occurrences of each fingerprint, then only the occurrences whose number is the number
+     * of full fidelity occurrences multiplied by a power of two. Such occurrence represents all occurrences
+     * since the previous kept one
+     *
+     * @param report error report
+     * @return sample rate of the occurrence or zero if the occurrence should not be sent
+     */
+    private double getAdaptiveSampleRate(BacktraceReport report) {
+        int fullFidelity = config.getAdaptiveSamplingOccurrences();
+        if (fullFidelity <= 0 || !report.getExceptionTypeReport()) {
+            return 1;
+        }
+        String fingerprint = report.getFingerprint(config.getAggregationStackFrames());
+        long occurrence = occurrences.computeIfAbsent(fingerprint, key -> new AtomicLong()).incrementAndGet();
+        if (occurrence <= fullFidelity) {
+            return 1;
+        }
+        if (occurrence % fullFidelity != 0) {
+            return 0;
+        }
+        long multiple = occurrence / fullFidelity;
+        if ((multiple & (multiple - 1)) != 0) {
+            return 0;
+        }
+        return 2.0 / occurrence;
+    }
+}
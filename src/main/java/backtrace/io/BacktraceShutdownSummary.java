@@ -0,0 +1,61 @@
+package backtrace.io;
+
+/**
+ * Describes what happened to reports when the client was closed with a deadline
+ */
+public class BacktraceShutdownSummary {
+    private final long sentReports;
+    private final long persistedReports;
+    private final long droppedReports;
+
+    /**
+     * Creates summary of closing the client
+     *
+     * @param sentReports      number of reports sent while closing
+     * @param persistedReports number of reports stored in the database because the deadline elapsed
+     * @param droppedReports   number of reports which could not be stored in the database
+     */
+    BacktraceShutdownSummary(long sentReports, long persistedReports, long droppedReports) {
+        this.sentReports = sentReports;
+        this.persistedReports = persistedReports;
+        this.droppedReports = droppedReports;
+    }
+
+    /**
+     * Returns number of reports successfully sent while closing the client
+     *
+     * @return number of sent reports
+     */
+    public long getSentReports() {
+        return sentReports;
+    }
+
+    /**
+     * Returns number of reports which have not been sent before the deadline and are stored in the database,
+     * they will be sent when the next client starts
+     *
+     * @return number of persisted reports
+     */
+    public long getPersistedReports() {
+        return persistedReports;
+    }
+
+    /**
+     * Returns number of reports which have not been sent before the deadline and could not be stored
+     * in the database, e.g. because the database is disabled
+     *
+     * @return number of dropped reports
+     */
+    public long getDroppedReports() {
+        return droppedReports;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktraceShutdownSummary{" +
+                "sentReports=" + sentReports +
+                ", persistedReports=" + persistedReports +
+                ", droppedReports=" + droppedReports +
+                '}';
+    }
+}
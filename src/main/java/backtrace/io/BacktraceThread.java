@@ -1,40 +1,113 @@
 package backtrace.io;
 
+import backtrace.io.helpers.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 
 public class BacktraceThread extends Thread {
     private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceThread.class);
     private final static String THREAD_NAME = "backtrace-daemon";
     private final Backtrace backtrace;
+    private final BacktraceWorkerMetrics workerMetrics;
+    private final ExecutorService executor;
+    private final Semaphore requestPermits;
     private volatile boolean running = true;
     private final CountDownLatch closing = new CountDownLatch(1);
 
     /**
      * Creates new thread for handling and sending error reports passed to queue
      *
-     * @param config library configuration
-     * @param queue  queue containing error reports that should be sent to the Backtrace console
+     * @param backtrace     error reports processing shared by all sender threads
+     * @param name          thread name
+     * @param workerMetrics counters of this thread
      */
-    private BacktraceThread(BacktraceConfig config, BacktraceQueue queue) {
+    private BacktraceThread(Backtrace backtrace, String name, BacktraceWorkerMetrics workerMetrics) {
+        this(backtrace, name, workerMetrics, null, 0);
+    }
+
+    /**
+     * Creates new thread which takes error reports from queue and sends each of them on the executor
+     *
+     * @param backtrace             error reports processing
+     * @param name                  thread name
+     * @param workerMetrics         counters of this thread
+     * @param executor              executor which sends reports, if null reports are sent by this thread
+     * @param maxConcurrentRequests maximum number of reports sent at the same time by the executor
+     */
+    private BacktraceThread(Backtrace backtrace, String name, BacktraceWorkerMetrics workerMetrics,
+                            ExecutorService executor, int maxConcurrentRequests) {
         super();
-        this.backtrace = new Backtrace(config, queue);
+        this.backtrace = backtrace;
+        this.workerMetrics = workerMetrics;
+        this.executor = executor;
+        this.requestPermits = executor != null ? new Semaphore(maxConcurrentRequests) : null;
+        this.setName(name);
+    }
+
+    /**
+     * Creates, configures and start pool of BacktraceThreads which will handle and send error reports passed to queue
+     *
+     * @param config    library configuration
+     * @param backtrace error reports processing shared by all sender threads
+     * @param metrics   library counters in which each thread registers its own counters
+     * @return started sender threads
+     */
+    static BacktraceThread[] initPool(BacktraceConfig config, Backtrace backtrace, BacktraceMetrics metrics) {
+        if (config.getSenderExecutionMode() == SenderExecutionMode.VirtualThreads) {
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor != null) {
+                return new BacktraceThread[]{initDispatcher(backtrace, executor, config.getMaxConcurrentRequests(), metrics)};
+            }
+            LOGGER.warn("Virtual threads are not supported by current JVM, reports will be sent by platform threads");
+        }
+
+        int threadCount = config.getSenderThreadCount();
+        BacktraceThread[] threads = new BacktraceThread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            String name = threadCount == 1 ? THREAD_NAME : THREAD_NAME + "-" + (i + 1);
+            threads[i] = init(backtrace, name, metrics);
+        }
+        return threads;
     }
 
     /**
      * Creates, configures and start BacktraceThread which will handle and send error reports passed to queue
      *
-     * @param config library configuration
-     * @param queue  queue containing error reports that should be sent to the Backtrace console
+     * @param backtrace error reports processing shared by all sender threads
+     * @param name      thread name
+     * @param metrics   library counters in which the thread registers its own counters
+     * @return started sender thread
+     */
+    private static BacktraceThread init(Backtrace backtrace, String name, BacktraceMetrics metrics) {
+        LOGGER.info("Initializing BacktraceThread " + name);
+        BacktraceThread thread = new BacktraceThread(backtrace, name, metrics.registerWorker(name));
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Creates, configures and start BacktraceThread which takes error reports from queue
+     * and sends each of them on its own virtual thread
+     *
+     * @param backtrace             error reports processing
+     * @param executor              virtual thread per task executor
+     * @param maxConcurrentRequests maximum number of reports sent at the same time
+     * @param metrics               library counters in which the thread registers its own counters
+     * @return started dispatcher thread
      */
-    static BacktraceThread init(BacktraceConfig config, BacktraceQueue queue) {
-        LOGGER.info("Initializing BacktraceThread");
-        BacktraceThread thread = new BacktraceThread(config, queue);
+    private static BacktraceThread initDispatcher(Backtrace backtrace, ExecutorService executor,
+                                                  int maxConcurrentRequests, BacktraceMetrics metrics) {
+        LOGGER.info("Initializing BacktraceThread sending reports on virtual threads");
+        BacktraceThread thread = new BacktraceThread(backtrace, THREAD_NAME, metrics.registerWorker(THREAD_NAME),
+                executor, maxConcurrentRequests);
         thread.setDaemon(true);
-        thread.setName(THREAD_NAME);
         thread.start();
         return thread;
     }
@@ -51,12 +124,78 @@ public class BacktraceThread extends Thread {
         this.closing.await();
     }
 
+    /**
+     * Stop Backtrace Thread and wait until last message will be sent or the timeout elapses
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the {@code timeout} argument
+     * @return {@code true} if the thread has finished before the timeout elapsed
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        LOGGER.info("Closing BacktraceThread");
+        this.running = false;
+        this.backtrace.close();
+        return this.awaitClosed(timeout, unit);
+    }
+
+    /**
+     * Wait until the thread finishes after it has been closed
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the {@code timeout} argument
+     * @return {@code true} if the thread has finished before the timeout elapsed
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.closing.await(timeout, unit);
+    }
+
+    /**
+     * Interrupts the thread and reports sent on the executor, so a closed thread does not wait
+     * for reports which are not sent before the deadline
+     */
+    void abort() {
+        this.interrupt();
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
     @Override
     public void run() {
-        while (running) {
-            backtrace.handleBacktraceMessage();
+        while (running && !backtrace.isClosing()) {
+            if (executor != null) {
+                backtrace.dispatchBacktraceMessage(executor, requestPermits, workerMetrics);
+            } else {
+                backtrace.handleBacktraceMessage(workerMetrics);
+            }
+        }
+        awaitDispatchedMessages();
+        try {
+            backtrace.awaitAsyncRequests();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for reports sent by asynchronous request handler");
         }
         this.closing.countDown();
         LOGGER.info("BacktraceThread has completed the run method");
     }
-}
\ No newline at end of file
+
+    /**
+     * Wait until reports dispatched to the executor will be sent
+     */
+    private void awaitDispatchedMessages() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOGGER.debug("Waiting for reports sent on virtual threads");
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for reports sent on virtual threads");
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package backtrace.io;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters which describe how busy a single sender worker is
+ */
+public class BacktraceWorkerMetrics {
+    private final String name;
+    private final long startTime = System.nanoTime();
+    private final AtomicLong processedReports = new AtomicLong();
+    private final AtomicLong busyTimeNanos = new AtomicLong();
+    private final AtomicInteger activeReports = new AtomicInteger();
+
+    /**
+     * Creates counters for sender worker
+     *
+     * @param name worker thread name
+     */
+    BacktraceWorkerMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns name of worker thread
+     *
+     * @return worker thread name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns number of reports processed by worker
+     *
+     * @return number of processed reports
+     */
+    public long getProcessedReports() {
+        return processedReports.get();
+    }
+
+    /**
+     * Returns total time spent by worker on processing reports
+     *
+     * @return busy time in milliseconds
+     */
+    public long getBusyTimeMillis() {
+        return busyTimeNanos.get() / 1000000;
+    }
+
+    /**
+     * Returns whether worker is processing a report at the moment
+     *
+     * @return {@code true} if worker is processing a report
+     */
+    public boolean isBusy() {
+        return activeReports.get() > 0;
+    }
+
+    /**
+     * Returns number of reports processed by worker at the moment,
+     * a worker which sends reports on virtual threads can process many reports at once
+     *
+     * @return number of reports in progress
+     */
+    public int getActiveReports() {
+        return activeReports.get();
+    }
+
+    /**
+     * Returns part of worker lifetime spent on processing reports
+     *
+     * @return value between 0 and 1
+     */
+    public double getUtilization() {
+        long lifetime = System.nanoTime() - startTime;
+        return lifetime <= 0 ? 0 : Math.min(1.0, (double) busyTimeNanos.get() / lifetime);
+    }
+
+    void processingStarted() {
+        activeReports.incrementAndGet();
+    }
+
+    void processingFinished(long durationNanos) {
+        processedReports.incrementAndGet();
+        busyTimeNanos.addAndGet(durationNanos);
+        activeReports.decrementAndGet();
+    }
+}
@@ -0,0 +1,21 @@
+package backtrace.io;
+
+/**
+ * States of the circuit breaker guarding the submission endpoint
+ */
+public enum CircuitBreakerState {
+    /**
+     * Reports are sent to the endpoint
+     */
+    Closed,
+
+    /**
+     * The endpoint is considered unavailable, reports are stored in the database instead of being sent
+     */
+    Open,
+
+    /**
+     * A single probe report is sent to check whether the endpoint is available again
+     */
+    HalfOpen,
+}
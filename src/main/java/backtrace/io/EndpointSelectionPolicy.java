@@ -0,0 +1,17 @@
+package backtrace.io;
+
+/**
+ * Strategies used to choose the submission endpoint of a report when more than one endpoint is configured.
+ * Endpoints whose circuit breaker is open or whose latency exceeds the slow endpoint latency are skipped
+ */
+public enum EndpointSelectionPolicy {
+    /**
+     * Send every report to the first healthy endpoint in the order in which the endpoints were configured
+     */
+    Failover,
+
+    /**
+     * Spread reports over healthy endpoints randomly, in proportion to the weights of the endpoints
+     */
+    Weighted,
+}
@@ -0,0 +1,190 @@
+package backtrace.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Chooses submission endpoint of a report from the endpoints of the client and keeps latency and error
+ * counters of each endpoint. An endpoint is healthy when its circuit breaker allows a report and its average
+ * latency does not exceed the slow endpoint latency. A slow endpoint receives a single report after
+ * the circuit breaker open duration, so its latency is measured again
+ */
+class EndpointSelector {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(EndpointSelector.class);
+    private final BacktraceConfig config;
+    private final BacktraceMetrics metrics;
+    private final Function<String, BacktraceCircuitBreaker> circuitBreakers;
+    private final Map<String, BacktraceEndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Creates endpoint selector
+     *
+     * @param config          library configuration with circuit breaker settings
+     * @param metrics         library counters in which endpoint counters are registered
+     * @param circuitBreakers returns circuit breaker of submission url or null if circuit breaker is disabled
+     */
+    EndpointSelector(BacktraceConfig config, BacktraceMetrics metrics,
+                     Function<String, BacktraceCircuitBreaker> circuitBreakers) {
+        this.config = config;
+        this.metrics = metrics;
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * Returns the submission url without the token, which identifies the endpoint in logs and metrics.
+     * User info and fragment are omitted, the value of the token parameter of the query is masked and, when the query
+     * has no token, the second segment of the path is masked, as in {@code /universe/token/json} urls.
+     * The masked token is replaced by a short hash of the token, so urls which differ only in the token get
+     * different names
+     *
+     * @param url submission url
+     * @return redacted url
+     */
+    static String redact(String url) {
+        int schemeIndex = url.indexOf("://");
+        int authorityStart = schemeIndex >= 0 ? schemeIndex + 3 : 0;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        int userInfoEnd = url.lastIndexOf('@', authorityEnd - 1);
+        int fragmentStart = url.indexOf('#', authorityEnd);
+        int end = fragmentStart >= 0 ? fragmentStart : url.length();
+        int queryStart = url.indexOf('?', authorityEnd);
+        int pathEnd = queryStart >= 0 && queryStart < end ? queryStart : end;
+
+        StringBuilder redacted = new StringBuilder(url.substring(0, authorityStart))
+                .append(url, Math.max(authorityStart, userInfoEnd + 1), authorityEnd);
+        String path = url.substring(authorityEnd, pathEnd);
+        String query = pathEnd < end ? url.substring(pathEnd + 1, end) : null;
+        String redactedQuery = query != null ? redactQuery(query) : null;
+        if (query == null || redactedQuery.equals(query)) {
+            path = redactPath(path);
+        }
+        redacted.append(path);
+        if (redactedQuery != null) {
+            redacted.append('?').append(redactedQuery);
+        }
+        return redacted.toString();
+    }
+
+    private static String redactQuery(String query) {
+        String[] parameters = query.split("&", -1);
+        for (int i = 0; i < parameters.length; i++) {
+            int valueStart = parameters[i].indexOf('=');
+            if (valueStart > 0 && parameters[i].substring(0, valueStart).equalsIgnoreCase("token")) {
+                parameters[i] = parameters[i].substring(0, valueStart + 1) +
+                        maskToken(parameters[i].substring(valueStart + 1));
+            }
+        }
+        return String.join("&", parameters);
+    }
+
+    private static String redactPath(String path) {
+        int tokenStart = path.indexOf('/', 1);
+        if (!path.startsWith("/") || tokenStart < 0 || tokenStart + 1 >= path.length()) {
+            return path;
+        }
+        int tokenEnd = path.indexOf('/', tokenStart + 1);
+        if (tokenEnd < 0) {
+            tokenEnd = path.length();
+        }
+        return path.substring(0, tokenStart + 1) + maskToken(path.substring(tokenStart + 1, tokenEnd)) +
+                path.substring(tokenEnd);
+    }
+
+    private static String maskToken(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return String.format("***%02x%02x%02x%02x", hash[0], hash[1], hash[2], hash[3]);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Returns counters of the endpoint, creating them on first use
+     *
+     * @param url submission url
+     * @return endpoint counters
+     */
+    BacktraceEndpointMetrics getEndpoint(String url) {
+        return endpoints.computeIfAbsent(url, key -> metrics.registerEndpoint(new BacktraceEndpointMetrics(redact(key))));
+    }
+
+    /**
+     * Chooses endpoint of a report according to the selection policy of the client. When no endpoint
+     * is healthy, the first endpoint whose circuit breaker allows a report is used, so slow endpoints are
+     * preferred to unavailable ones. When all circuits are open, the first endpoint is returned
+     *
+     * @param clientConfig configuration of the client which sent the report
+     * @return submission url
+     */
+    String select(BacktraceConfig clientConfig) {
+        List<BacktraceCredentials.SubmissionEndpoint> candidates = clientConfig.getSubmissionEndpoints();
+        long nowNanos = System.nanoTime();
+        long slowLatencyNanos = TimeUnit.MILLISECONDS.toNanos(clientConfig.getSlowEndpointLatencyMillis());
+        long probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getCircuitBreakerOpenDurationMillis());
+
+        List<BacktraceCredentials.SubmissionEndpoint> healthy = new ArrayList<>(candidates.size());
+        BacktraceCredentials.SubmissionEndpoint available = null;
+        for (BacktraceCredentials.SubmissionEndpoint candidate : candidates) {
+            if (!isAvailable(candidate.url)) {
+                continue;
+            }
+            if (available == null) {
+                available = candidate;
+            }
+            BacktraceEndpointMetrics endpoint = getEndpoint(candidate.url);
+            boolean slow = slowLatencyNanos > 0 && endpoint.getAverageLatencyNanos() > slowLatencyNanos &&
+                    endpoint.getNanosSinceSelected(nowNanos) < probeIntervalNanos;
+            if (!slow) {
+                healthy.add(candidate);
+            }
+        }
+
+        BacktraceCredentials.SubmissionEndpoint selected;
+        if (healthy.isEmpty()) {
+            selected = available != null ? available : candidates.get(0);
+            LOGGER.debug("No submission endpoint is healthy, report will be sent to " + redact(selected.url));
+        } else if (clientConfig.getEndpointSelectionPolicy() == EndpointSelectionPolicy.Weighted) {
+            selected = selectWeighted(healthy);
+        } else {
+            selected = healthy.get(0);
+        }
+        getEndpoint(selected.url).onSelected(nowNanos);
+        return selected.url;
+    }
+
+    private boolean isAvailable(String url) {
+        BacktraceCircuitBreaker circuitBreaker = circuitBreakers.apply(url);
+        return circuitBreaker == null || circuitBreaker.isAvailable();
+    }
+
+    private static BacktraceCredentials.SubmissionEndpoint selectWeighted(
+            List<BacktraceCredentials.SubmissionEndpoint> healthy) {
+        int totalWeight = 0;
+        for (BacktraceCredentials.SubmissionEndpoint endpoint : healthy) {
+            totalWeight += endpoint.weight;
+        }
+        int random = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (BacktraceCredentials.SubmissionEndpoint endpoint : healthy) {
+            random -= endpoint.weight;
+            if (random < 0) {
+                return endpoint;
+            }
+        }
+        return healthy.get(healthy.size() - 1);
+    }
+}
@@ -0,0 +1,16 @@
+package backtrace.io;
+
+/**
+ * Strategies used by sender threads to choose the priority lane from which the next report is taken
+ */
+public enum PriorityDrainPolicy {
+    /**
+     * Always take the report from the highest priority lane which is not empty
+     */
+    Strict,
+
+    /**
+     * Take reports from lanes in proportion to their weights, so lower priority reports are not starved
+     */
+    Weighted,
+}
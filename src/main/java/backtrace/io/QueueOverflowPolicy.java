@@ -0,0 +1,27 @@
+package backtrace.io;
+
+/**
+ * Strategies applied by a bounded queue when a new error report arrives and the queue is full
+ */
+public enum QueueOverflowPolicy {
+    /**
+     * Reject the incoming report and keep the reports already waiting in the queue
+     */
+    DropNewest,
+
+    /**
+     * Remove the oldest report waiting in the queue to make room for the incoming one
+     */
+    DropOldest,
+
+    /**
+     * Block the sending thread until there is room in the queue or the configured timeout elapses,
+     * after timeout the incoming report is rejected
+     */
+    Block,
+
+    /**
+     * Store the incoming report in the database, it will be loaded and sent the next time the library starts
+     */
+    SpillToDatabase,
+}
@@ -0,0 +1,21 @@
+package backtrace.io;
+
+/**
+ * Priority lanes of the queue, reports with higher priority are sent before reports with lower priority
+ */
+public enum ReportPriority {
+    /**
+     * Unhandled exceptions which may be followed by termination of the application
+     */
+    Crash,
+
+    /**
+     * Handled exceptions, default priority of reports created from exceptions
+     */
+    Error,
+
+    /**
+     * Informational messages, default priority of reports created from text messages
+     */
+    Info,
+}
@@ -0,0 +1,17 @@
+package backtrace.io;
+
+/**
+ * Ways in which reports taken from the queue are sent
+ */
+public enum SenderExecutionMode {
+    /**
+     * Reports are sent by a pool of platform threads, each thread sends one report at a time
+     */
+    Threads,
+
+    /**
+     * Each report is sent on its own virtual thread, the number of concurrent requests is limited by
+     * a semaphore. Requires Java 21 or newer, on older JVMs {@link #Threads} mode is used
+     */
+    VirtualThreads,
+}
@@ -0,0 +1,52 @@
+package backtrace.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of counting tokens, the bucket keeps the time at which it will be full again
+ * (generic cell rate algorithm), so taking a token is a single compare-and-set
+ */
+class TokenBucket {
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * Creates full token bucket
+     *
+     * @param tokensPerSecond rate at which tokens are added to the bucket
+     * @param capacity        maximum number of tokens in the bucket, it is the allowed burst
+     */
+    TokenBucket(double tokensPerSecond, int capacity) {
+        this.nanosPerToken = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond), 1);
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the bucket if there is one
+     *
+     * @return {@code true} if the token has been taken
+     */
+    boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current - now, 0) + now + nanosPerToken;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back the token taken by {@link #tryAcquire()} when it has not been used
+     */
+    void release() {
+        fullAt.addAndGet(-nanosPerToken);
+    }
+}
@@ -9,7 +9,18 @@ import com.google.gson.annotations.SerializedName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
 import java.io.Serializable;
+import java.net.URLConnection;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,7 +29,10 @@ import java.util.Map;
  * Serializable Backtrace API data object
  */
 public class BacktraceData implements Serializable {
+    private static final long serialVersionUID = 1227365397504741190L;
     private static final transient Logger LOGGER = LoggerFactory.getLogger(BacktraceData.class);
+    private static final String TRUNCATED_ATTACHMENTS_ANNOTATION = "Truncated attachments";
+    private static final String TRUNCATED_ATTACHMENTS_ATTRIBUTE = "attachments.truncated";
 
     /**
      * 16 bytes of randomness in human readable UUID format
@@ -110,6 +124,16 @@ public class BacktraceData implements Serializable {
      */
     private BacktraceReport report;
 
+    /**
+     * Submission url of the client which sent the report, not a part of the report sent to Backtrace API
+     */
+    private transient String submissionUrl;
+
+    /**
+     * Maximum number of bytes sent from the end of each attachment, not a part of the report sent to Backtrace API
+     */
+    private transient Map<String, Long> attachmentLimits;
+
     /**
      * Creates instance of report data
      *
@@ -137,6 +161,20 @@ public class BacktraceData implements Serializable {
      * @param allThreads       if true information about all threads will be gathered
      */
     public BacktraceData(BacktraceReport report, Map<String, Object> clientAttributes, boolean allThreads) {
+        this(report, clientAttributes, allThreads, Thread.currentThread().getName());
+    }
+
+    /**
+     * Creates instance of report data on behalf of the thread which reported the error,
+     * so it can be created later by a different thread
+     *
+     * @param report              Current report
+     * @param clientAttributes    Attributes which should be added to BacktraceData object
+     * @param allThreads          if true information about all threads will be gathered
+     * @param reportingThreadName name of the thread which reported the error
+     */
+    public BacktraceData(BacktraceReport report, Map<String, Object> clientAttributes, boolean allThreads,
+                         String reportingThreadName) {
         if (report == null) {
             LOGGER.warn("Report passed to BacktraceData constructor is null");
             throw new NullPointerException("BacktraceReport can not be null");
@@ -144,7 +182,7 @@ public class BacktraceData implements Serializable {
         this.report = report;
 
         setReportInformation();
-        setThreadsInformation(allThreads);
+        setThreadsInformation(allThreads, reportingThreadName);
         setAttributes(clientAttributes);
     }
 
@@ -161,6 +199,96 @@ public class BacktraceData implements Serializable {
         return FileHelper.filterOutFiles(report.attachmentPaths);
     }
 
+    /**
+     * Returns maximum number of bytes which should be sent from the end of the attachment
+     *
+     * @param path absolute path to attachment
+     * @return number of bytes, zero if the attachment should not be sent or -1 if the whole attachment should be sent
+     */
+    public long getAttachmentLimit(String path) {
+        Map<String, Long> limits = this.attachmentLimits;
+        if (limits == null || path == null) {
+            return -1;
+        }
+        Long limit = limits.get(path);
+        return limit != null ? limit : -1;
+    }
+
+    /**
+     * Limits number of attachment bytes sent with the report. Attachments which fit into the limits are sent whole,
+     * the budget of the report is shared equally between attachments which do not fit. Text attachments which
+     * do not fit are sent as their last bytes, other attachments which do not fit are not sent at all.
+     * Truncated attachments are described in annotations and counted in attributes of the report
+     *
+     * @param maxAttachmentBytes       maximum number of bytes sent from each attachment, zero is unlimited
+     * @param maxReportAttachmentBytes maximum number of bytes sent from all attachments, zero is unlimited
+     */
+    public void limitAttachments(long maxAttachmentBytes, long maxReportAttachmentBytes) {
+        this.attachmentLimits = null;
+        if (this.annotations != null) {
+            this.annotations.remove(TRUNCATED_ATTACHMENTS_ANNOTATION);
+        }
+        if (this.attributes != null) {
+            this.attributes.remove(TRUNCATED_ATTACHMENTS_ATTRIBUTE);
+        }
+        if (maxAttachmentBytes <= 0 && maxReportAttachmentBytes <= 0) {
+            return;
+        }
+
+        List<Map.Entry<String, Long>> attachments = new ArrayList<>();
+        for (String path : getAttachments()) {
+            if (path != null) {
+                attachments.add(new AbstractMap.SimpleEntry<>(path, new File(path).length()));
+            }
+        }
+        attachments.sort(Map.Entry.comparingByValue());
+
+        long attachmentBudget = maxAttachmentBytes > 0 ? maxAttachmentBytes : Long.MAX_VALUE;
+        long reportBudget = maxReportAttachmentBytes > 0 ? maxReportAttachmentBytes : Long.MAX_VALUE;
+        Map<String, Long> limits = new HashMap<>();
+        Map<String, Object> truncated = new LinkedHashMap<>();
+        for (int i = 0; i < attachments.size(); i++) {
+            String path = attachments.get(i).getKey();
+            long size = attachments.get(i).getValue();
+            long limit = Math.min(size, Math.min(attachmentBudget, reportBudget / (attachments.size() - i)));
+            if (limit < size && !isTextFile(path)) {
+                limit = 0;
+            }
+            reportBudget -= limit;
+            limits.put(path, limit);
+            if (limit < size) {
+                Map<String, Object> attachment = new LinkedHashMap<>();
+                attachment.put("size", size);
+                attachment.put("sent", limit);
+                truncated.put(new File(path).getName(), attachment);
+            }
+        }
+        this.attachmentLimits = limits;
+
+        if (truncated.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Attachments exceed the limits and will be truncated: " + truncated.keySet());
+        if (this.annotations != null) {
+            this.annotations.put(TRUNCATED_ATTACHMENTS_ANNOTATION, truncated);
+        }
+        if (this.attributes != null) {
+            this.attributes.put(TRUNCATED_ATTACHMENTS_ATTRIBUTE, truncated.size());
+        }
+    }
+
+    /**
+     * Checks if end of the file is useful on its own, files with unknown type such as logs are treated as text
+     *
+     * @param path path to file
+     * @return true if file is a text file
+     */
+    private static boolean isTextFile(String path) {
+        String contentType = URLConnection.guessContentTypeFromName(new File(path).getName());
+        return contentType == null || contentType.startsWith("text/") ||
+                contentType.endsWith("/json") || contentType.endsWith("/xml");
+    }
+
     /**
      * Sets attributes and add complex attributes to annotations
      *
@@ -203,11 +331,12 @@ public class BacktraceData implements Serializable {
     /**
      * Sets information about all threads
      *
-     * @param allThreads if true information about all threads will be gathered
+     * @param allThreads          if true information about all threads will be gathered
+     * @param reportingThreadName name of the thread which reported the error
      */
-    private void setThreadsInformation(boolean allThreads) {
+    private void setThreadsInformation(boolean allThreads, String reportingThreadName) {
         LOGGER.debug("Setting threads information");
-        ThreadData threadData = new ThreadData(report.diagnosticStack, allThreads);
+        ThreadData threadData = new ThreadData(report.diagnosticStack, allThreads, reportingThreadName);
         this.mainThread = threadData.getMainThread();
         this.threadInformationMap = threadData.getThreadInformation();
         SourceCodeData sourceCodeData = new SourceCodeData(report.diagnosticStack);
@@ -224,6 +353,53 @@ public class BacktraceData implements Serializable {
     }
 
 
+    /**
+     * Returns submission url of the client which sent the report
+     *
+     * @return submission url or null if the report should be sent to the default endpoint
+     */
+    public String getSubmissionUrl() {
+        return submissionUrl;
+    }
+
+    /**
+     * Sets submission url to which the report should be sent, it is stored together with the report in the database
+     *
+     * @param submissionUrl submission url
+     */
+    public void setSubmissionUrl(String submissionUrl) {
+        this.submissionUrl = submissionUrl;
+    }
+
+    /**
+     * Writes object during serialization, the submission url is written after default fields
+     * so reports stored in a shared database are sent to the endpoint of the client which sent them
+     *
+     * @param out Stream
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(submissionUrl);
+    }
+
+    /**
+     * Creates object during deserialization
+     *
+     * @param in Stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *                                could not be found.
+     * @throws IOException            if an I/O error occurs.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        try {
+            submissionUrl = (String) in.readObject();
+        } catch (OptionalDataException | EOFException e) {
+            // report stored by a version of the library which did not store the submission url
+        }
+    }
+
     /**
      * Returns built-in attributes
      *
@@ -233,4 +409,12 @@ public class BacktraceData implements Serializable {
         return attributes;
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns annotations
+     *
+     * @return Current annotations
+     */
+    public Map<String, Object> getAnnotations() {
+        return annotations;
+    }
+}
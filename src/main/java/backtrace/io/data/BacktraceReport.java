@@ -3,14 +3,19 @@ package backtrace.io.data;
 import backtrace.io.data.report.BacktraceStackFrame;
 import backtrace.io.data.report.BacktraceStackTrace;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class BacktraceReport implements Serializable {
 
+    private static final long serialVersionUID = 1811321826779925162L;
+
     /**
      * 16 bytes of randomness in human readable UUID format
      * server will reject request if uuid is already found
@@ -273,6 +278,18 @@ public class BacktraceReport implements Serializable {
         }
     }
 
+    /**
+     * Writes object during serialization, the retry counter is written after default fields
+     * so the number of retries survives storing the report in the database
+     *
+     * @param out Stream
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(retryCounter.get());
+    }
+
     /**
      * Creates object during deserialization
      *
@@ -283,7 +300,13 @@ public class BacktraceReport implements Serializable {
      */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
-        retryCounter = new AtomicInteger(0);
+        int retries = 0;
+        try {
+            retries = in.readInt();
+        } catch (OptionalDataException | EOFException e) {
+            // report stored by a version of the library which did not store the retry counter
+        }
+        retryCounter = new AtomicInteger(retries);
     }
 
     public UUID getUuid() {
@@ -326,4 +349,23 @@ public class BacktraceReport implements Serializable {
     public Map<String, Object> getAttributes() {
         return attributes;
     }
+
+    /**
+     * Returns fingerprint of the error, reports of identical exceptions have the same fingerprint
+     *
+     * @param stackFrames number of top stack frames taken into account
+     * @return fingerprint built from classifier and top stack frames
+     */
+    public String getFingerprint(int stackFrames) {
+        StringBuilder fingerprint = new StringBuilder(classifier);
+        if (diagnosticStack == null) {
+            return fingerprint.toString();
+        }
+        int frames = Math.min(stackFrames, diagnosticStack.size());
+        for (int i = 0; i < frames; i++) {
+            BacktraceStackFrame frame = diagnosticStack.get(i);
+            fingerprint.append('|').append(frame.getFunctionName()).append(':').append(frame.getLine());
+        }
+        return fingerprint.toString();
+    }
 }
@@ -12,6 +12,8 @@ import java.util.UUID;
  */
 public class BacktraceStackFrame implements Serializable {
 
+    private static final long serialVersionUID = -6809405243009285469L;
+
     /**
      * Function where exception occurs
      */
@@ -62,7 +64,21 @@ public class BacktraceStackFrame implements Serializable {
         this.line = frame.getLineNumber() > 0 ? frame.getLineNumber() : null;
     }
 
-    Integer getLine() {
+    /**
+     * Returns name of the function with its class name
+     *
+     * @return function name
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    /**
+     * Returns line number in source code
+     *
+     * @return line number or null if it is unknown
+     */
+    public Integer getLine() {
         return line;
     }
 
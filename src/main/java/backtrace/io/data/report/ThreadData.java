@@ -12,6 +12,8 @@ import java.util.Map;
  */
 public class ThreadData implements Serializable {
 
+    private static final long serialVersionUID = 4686549511030582687L;
+
     /**
      * All collected application threads information
      */
@@ -43,22 +45,33 @@ public class ThreadData implements Serializable {
      * @param allThreads     if true information about all threads will be gathered
      */
     public ThreadData(ArrayList<BacktraceStackFrame> exceptionStack, boolean allThreads) {
-        generateCurrentThreadInformation(exceptionStack);
+        this(exceptionStack, allThreads, Thread.currentThread().getName());
+    }
+
+    /**
+     * Create instance of ThreadData class to collect information about used threads
+     *
+     * @param exceptionStack      current BacktraceReport exception stack
+     * @param allThreads          if true information about all threads will be gathered
+     * @param reportingThreadName name of the thread which reported the error
+     */
+    public ThreadData(ArrayList<BacktraceStackFrame> exceptionStack, boolean allThreads, String reportingThreadName) {
+        generateCurrentThreadInformation(exceptionStack, reportingThreadName);
         if (allThreads) {
             processThreads();
         }
     }
 
     /**
-     * Generate information for current thread
+     * Generate information for the thread which reported the error
      *
-     * @param exceptionStack current BacktraceReport exception stack
+     * @param exceptionStack      current BacktraceReport exception stack
+     * @param reportingThreadName name of the thread which reported the error
      */
-    private void generateCurrentThreadInformation(ArrayList<BacktraceStackFrame> exceptionStack) {
-        Thread currThread = Thread.currentThread();
-        mainThread = currThread.getName().toLowerCase();
+    private void generateCurrentThreadInformation(ArrayList<BacktraceStackFrame> exceptionStack, String reportingThreadName) {
+        mainThread = reportingThreadName.toLowerCase();
         this.threadInformation.put(mainThread,
-                new ThreadInformation(currThread, exceptionStack, true)
+                new ThreadInformation(mainThread, true, exceptionStack)
         );
     }
 
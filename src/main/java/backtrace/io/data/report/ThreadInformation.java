@@ -11,6 +11,8 @@ import java.util.ArrayList;
  * Get an information about single thread passed in constructor
  */
 public class ThreadInformation implements Serializable {
+    private static final long serialVersionUID = -1904564953617585300L;
+
     /**
      * Thread name
      */
@@ -40,7 +42,7 @@ public class ThreadInformation implements Serializable {
      * @param fault      denotes whether a thread is a faulting thread - in most cases main thread
      * @param stack      exception stack information
      */
-    private ThreadInformation(String threadName, Boolean fault, ArrayList<BacktraceStackFrame>
+    ThreadInformation(String threadName, Boolean fault, ArrayList<BacktraceStackFrame>
             stack) {
         this.stack = stack == null ? new ArrayList<>() : stack;
         this.name = threadName;
@@ -63,25 +63,33 @@ public class BacktraceDatabase {
     }
 
 
-    public void saveReport(BacktraceData backtraceData) {
+    /**
+     * Stores report in the database
+     *
+     * @param backtraceData report which should be stored
+     * @return {@code true} if the report has been stored
+     */
+    public synchronized boolean saveReport(BacktraceData backtraceData) {
         if (!config.isDatabaseEnabled()) {
-            return;
+            return false;
         }
 
         boolean enoughSpace = this.deleteExcessDatabaseRecords();
 
         if (!enoughSpace) {
             LOGGER.warn("Not enough space to save report");
-            return;
+            return false;
         }
 
         String filePath = getFilePath(backtraceData.getReport());
         try (FileOutputStream fileOutputStream = new FileOutputStream(filePath)) {
             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
             objectOutputStream.writeObject(backtraceData);
+            return true;
         } catch (Exception e) {
             LOGGER.error("Can not save database report!", e);
         }
+        return false;
     }
 
     private boolean deleteExcessDatabaseRecords() {
@@ -105,7 +113,7 @@ public class BacktraceDatabase {
                 (config.isDatabaseSizeLimited() && this.getDatabaseSize() < config.getDatabaseMaxSize());
     }
 
-    public void removeReport(BacktraceData backtraceData) {
+    public synchronized void removeReport(BacktraceData backtraceData) {
         String filePath = getFilePath(backtraceData.getReport());
         File file = new File(filePath);
         removeDatabaseFile(file);
@@ -150,6 +158,41 @@ public class BacktraceDatabase {
         return size;
     }
 
+    /**
+     * Checks whether report is stored in the database
+     *
+     * @param backtraceReport report
+     * @return {@code true} if the report is stored
+     */
+    public boolean containsReport(BacktraceReport backtraceReport) {
+        return config.isDatabaseEnabled() && new File(getFilePath(backtraceReport)).isFile();
+    }
+
+    /**
+     * Returns name of the database file of stored report, the report can be loaded by the name later
+     * without being kept in memory
+     *
+     * @param backtraceReport report
+     * @return name of the database file or null if the report is not stored
+     */
+    public String getReportName(BacktraceReport backtraceReport) {
+        return containsReport(backtraceReport) ? getFileName(backtraceReport) : null;
+    }
+
+    /**
+     * Loads report stored in the database
+     *
+     * @param reportName name of the database file returned by {@link #getReportName(BacktraceReport)}
+     * @return stored report data or null if the report can not be loaded
+     */
+    public BacktraceData loadReport(String reportName) {
+        File file = Paths.get(getDatabaseDir(), reportName).toFile();
+        if (!file.isFile()) {
+            return null;
+        }
+        return loadReport(file);
+    }
+
     private void loadReports(final Queue<BacktraceMessage> queue) {
         List<File> files = getDatabaseFiles();
         for (final File f : files) {
@@ -160,7 +203,9 @@ public class BacktraceDatabase {
                 continue;
             }
 
-            queue.add(new BacktraceMessage(report, null));
+            if (!queue.offer(new BacktraceMessage(report, null))) {
+                LOGGER.warn("Queue is full, loaded report stays in the database");
+            }
         }
     }
 
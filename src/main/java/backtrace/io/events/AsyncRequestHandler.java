@@ -0,0 +1,22 @@
+package backtrace.io.events;
+
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.http.BacktraceResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface definition for a callback to be invoked instead of default request to Backtrace API,
+ * which sends the report without blocking the sender thread
+ */
+public interface AsyncRequestHandler {
+    /**
+     * Event which will be executed instead of default request to Backtrace API
+     *
+     * @param data which should be send to Backtrace API, {@link BacktraceData#getSubmissionUrl()} is the endpoint
+     *             of the client which sent the report
+     * @return future completed with response on request
+     */
+    CompletableFuture<BacktraceResult> onRequest(BacktraceData data);
+}
@@ -5,6 +5,15 @@ import backtrace.io.serialization.ThrowableTypeAdapter;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -28,6 +37,27 @@ public class BacktraceSerializeHelper {
         return gson.toJson(object);
     }
 
+    /**
+     * Serialize given object as UTF-8 JSON directly to the output stream, without building the JSON string.
+     * The stream is flushed, but not closed
+     *
+     * @param outputStream stream to which the JSON is written
+     * @param object       object which will be serialized
+     * @throws IOException if an I/O error occurs
+     */
+    public static void toJson(OutputStream outputStream, Object object) throws IOException {
+        JsonWriter jsonWriter = gson.newJsonWriter(new Utf8Writer(outputStream));
+        try {
+            gson.toJson(object, object == null ? Object.class : object.getClass(), jsonWriter);
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        jsonWriter.flush();
+    }
+
     /**
      * Deserialize the specified Json into an object of the specified class
      *
@@ -40,4 +70,26 @@ public class BacktraceSerializeHelper {
     public static <T> T fromJson(String json, Class<T> type) {
         return gson.fromJson(json, type);
     }
+
+    /**
+     * Deserialize UTF-8 JSON read directly from the input stream into an object of the specified class,
+     * without building the JSON string. The stream is read up to the end of the JSON value and is not closed
+     *
+     * @param <T>         the type of the desired object
+     * @param inputStream stream from which the JSON is read
+     * @param type        the class of T
+     * @return an object of type T from the stream. Returns {@code null} if the stream is empty
+     * @throws IOException if an I/O error occurs
+     */
+    public static <T> T fromJson(InputStream inputStream, Class<T> type) throws IOException {
+        JsonReader jsonReader = gson.newJsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        try {
+            return gson.fromJson(jsonReader, type);
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
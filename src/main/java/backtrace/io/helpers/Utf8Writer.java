@@ -0,0 +1,119 @@
+package backtrace.io.helpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Encodes characters as UTF-8 into a byte buffer which is written to the output stream when it is full.
+ * Unlike {@link java.io.OutputStreamWriter} it does not allocate on small writes,
+ * and the buffer can be reused by the same thread for many documents
+ */
+class Utf8Writer extends Writer {
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private final OutputStream outputStream;
+    private final byte[] buffer;
+    private int count = 0;
+    private char highSurrogate = 0; // first half of a surrogate pair split between writes
+
+    /**
+     * Creates writer which uses buffer of the current thread, the writer can not be used by other threads
+     *
+     * @param outputStream stream to which encoded characters are written
+     */
+    Utf8Writer(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.buffer = BUFFERS.get();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        writeChar((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            writeChar(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            writeChar(str.charAt(i));
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        String value = String.valueOf(csq);
+        write(value, 0, value.length());
+        return this;
+    }
+
+    @Override
+    public Writer append(char c) throws IOException {
+        writeChar(c);
+        return this;
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (count > buffer.length - 4) {
+            flushBuffer();
+        }
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer[count++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3f));
+                return;
+            }
+            buffer[count++] = '?'; // unpaired surrogate, as replaced by String.getBytes
+            if (count > buffer.length - 4) {
+                flushBuffer();
+            }
+        }
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xc0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xe0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            outputStream.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            writeChar('?');
+        }
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -9,13 +9,41 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Class for sending and processing HTTP request
  */
 public class ApiSender {
     private static final transient Logger LOGGER = LoggerFactory.getLogger(ApiSender.class);
+    private static final int CHUNK_SIZE = 128 * 1024;
+    static final int MAX_ERROR_BODY_BYTES = 16 * 1024;
+    private static final long MAX_DRAINED_BYTES = 1024 * 1024;
+    // drained bytes are never read, so the buffer is shared between threads
+    private static final byte[] DISCARDED_BYTES = new byte[8192];
+
+    /**
+     * Writes body of the request, the body can be written again if the request is repeated
+     */
+    interface RequestBody {
+        void write(RequestStream requestStream) throws IOException;
+    }
+
+    /**
+     * Opens stream to which request body is written, headers of the request are sent when the stream is opened
+     */
+    interface RequestStream {
+        /**
+         * Opens stream of request body
+         *
+         * @param contentEncoding value of Content-Encoding header or null if the body is not compressed
+         * @param contentLength   exact number of bytes of the body sent with Content-Length header,
+         *                        or -1 if the length is not known and the body is sent in chunks
+         * @return stream of request body
+         * @throws IOException if an I/O error occurs
+         */
+        OutputStream open(String contentEncoding, long contentLength) throws IOException;
+    }
 
     /**
      * Send HTTP request for certain url server with information about device, error, attachments
@@ -25,44 +53,195 @@ public class ApiSender {
      * @return information from the server about the result of processing the request
      */
     public static BacktraceResult sendReport(String serverUrl, BacktraceData backtraceData) {
+        return sendReport(serverUrl, backtraceData, null, null);
+    }
+
+    /**
+     * Send HTTP request for certain url server with information about device, error, attachments
+     * using connection kept open by the pool
+     *
+     * @param serverUrl      server http address to which the request will be sent
+     * @param backtraceData  error report
+     * @param connectionPool pool of open connections or null if a new connection should be opened
+     * @return information from the server about the result of processing the request
+     */
+    public static BacktraceResult sendReport(String serverUrl, BacktraceData backtraceData,
+                                             HttpConnectionPool connectionPool) {
+        return sendReport(serverUrl, backtraceData, connectionPool, null);
+    }
+
+    /**
+     * Send HTTP request for certain url server with information about device, error, attachments
+     * using connection kept open by the pool, with body compressed if the report is large enough
+     *
+     * @param serverUrl      server http address to which the request will be sent
+     * @param backtraceData  error report
+     * @param connectionPool pool of open connections or null if a new connection should be opened
+     * @param compression    request compression or null if the body should not be compressed
+     * @return information from the server about the result of processing the request
+     */
+    public static BacktraceResult sendReport(String serverUrl, BacktraceData backtraceData,
+                                             HttpConnectionPool connectionPool, RequestCompression compression) {
+        return sendReport(serverUrl, backtraceData, connectionPool, compression, null);
+    }
 
-        String json = BacktraceSerializeHelper.toJson(backtraceData);
+    /**
+     * Send HTTP request for certain url server with information about device, error, attachments
+     * using connection kept open by the pool, with body compressed if the report is large enough.
+     * A request which exceeds the timeouts is aborted and its result has {@link BacktraceResultStatus#Timeout} status
+     *
+     * @param serverUrl      server http address to which the request will be sent
+     * @param backtraceData  error report
+     * @param connectionPool pool of open connections or null if a new connection should be opened
+     * @param compression    request compression or null if the body should not be compressed
+     * @param timeouts       timeouts of the request or null if the request should wait for the server indefinitely
+     * @return information from the server about the result of processing the request
+     */
+    public static BacktraceResult sendReport(String serverUrl, BacktraceData backtraceData,
+                                             HttpConnectionPool connectionPool, RequestCompression compression,
+                                             RequestTimeouts timeouts) {
+        if (timeouts == null) {
+            timeouts = RequestTimeouts.NONE;
+        }
         BacktraceReport report = backtraceData.getReport();
-        List<String> attachments = backtraceData.getAttachments();
+        RequestBody body;
+        if (compression != null) {
+            // length of compressed body is not known until it is sent, so the body is streamed in chunks
+            body = requestStream -> compression.write(requestStream,
+                    uncompressedStream -> writeRequest(uncompressedStream.open(null, -1), backtraceData));
+        } else {
+            try {
+                body = MultipartBody.create(backtraceData);
+            } catch (Exception e) {
+                LOGGER.error("Creating HTTP request to Backtrace API failed", e);
+                return BacktraceResult.onError(report, e);
+            }
+        }
+
+        if (connectionPool == null) {
+            return sendReport(serverUrl, body, report, timeouts);
+        }
+
+        Integer statusCode = null;
+        RequestTimeouts.Deadline deadline = timeouts.start();
+        try {
+            URL url = new URL(serverUrl);
+            PooledConnection.HttpResponse response = sendRequest(connectionPool, url, body, timeouts, deadline);
+            boolean reusable = false;
+            try {
+                statusCode = response.statusCode;
+                LOGGER.debug("Received response status from Backtrace API for HTTP request is: " + statusCode);
+                return handleResponse(statusCode, response.reasonPhrase, response.body, report);
+            } finally {
+                reusable = drain(response.body) && response.keepAlive;
+                deadline.cancel();
+                connectionPool.release(response.connection, reusable);
+            }
+        } catch (Exception e) {
+            Exception error = deadline.isExpired() ? deadline.toException(e) : e;
+            LOGGER.error("Sending HTTP request failed to Backtrace API", error);
+            return BacktraceResult.onError(report, error, statusCode);
+        } finally {
+            deadline.cancel();
+        }
+    }
 
-        return sendReport(serverUrl, json, report, attachments);
+    /**
+     * Sends request using connection from the pool. If a reused connection has been closed by the server
+     * in the meantime, so it is reset or closed before any byte of the response is read, the request is sent again
+     * on a new connection. Requests which time out are never sent again, because the server may have processed them.
+     * The connection is returned to the pool by the caller, after the response body is drained
+     *
+     * @param connectionPool pool of open connections
+     * @param url            request url
+     * @param body           writes request body
+     * @param timeouts       timeouts of the request
+     * @param deadline       deadline of the request, which closes the connection when it expires
+     * @return response with stream of its body
+     * @throws IOException if the request fails
+     */
+    private static PooledConnection.HttpResponse sendRequest(HttpConnectionPool connectionPool, URL url,
+                                                             RequestBody body, RequestTimeouts timeouts,
+                                                             RequestTimeouts.Deadline deadline) throws IOException {
+        PooledConnection connection = connectionPool.acquire(url, timeouts);
+        boolean reused = connection.isReused();
+        try {
+            return sendRequest(connectionPool, connection, url, body, timeouts, deadline);
+        } catch (IOException e) {
+            if (!reused || deadline.isExpired() || !connection.isClosedBeforeResponse(e)) {
+                throw e;
+            }
+            LOGGER.debug("Reused connection has been closed, request will be sent on a new connection");
+            return sendRequest(connectionPool, connectionPool.acquire(url, true, timeouts), url, body,
+                    timeouts, deadline);
+        }
     }
 
-    private static BacktraceResult sendReport(String serverUrl, String json, BacktraceReport report, List<String> attachments) {
+    private static PooledConnection.HttpResponse sendRequest(HttpConnectionPool connectionPool,
+                                                             PooledConnection connection, URL url,
+                                                             RequestBody body, RequestTimeouts timeouts,
+                                                             RequestTimeouts.Deadline deadline) throws IOException {
+        try {
+            deadline.guard(connection);
+            connection.setReadTimeout(timeouts.getReadTimeoutMillis());
+            connection.writeRequest(url, MultiFormRequestHelper.getContentType(), body);
+            return connection.readResponse();
+        } catch (IOException | RuntimeException e) {
+            connectionPool.release(connection, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes multipart body of the request, JSON with report is serialized directly to the stream
+     *
+     * @param outputStream  stream of request body
+     * @param backtraceData error report
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeRequest(OutputStream outputStream, BacktraceData backtraceData) throws IOException {
+        MultiFormRequestHelper.addJson(outputStream, backtraceData);
+        MultiFormRequestHelper.addFiles(outputStream, backtraceData);
+        MultiFormRequestHelper.addEndOfRequest(outputStream);
+    }
+
+    private static BacktraceResult sendReport(String serverUrl, RequestBody body, BacktraceReport report,
+                                              RequestTimeouts timeouts) {
         HttpURLConnection urlConnection = null;
         Integer statusCode = null;
+        boolean drained = false;
         BacktraceResult result;
+        RequestTimeouts.Deadline deadline = timeouts.start();
         try {
-            urlConnection = getUrlConnection(serverUrl);
+            urlConnection = getUrlConnection(serverUrl, timeouts);
+            HttpURLConnection connection = urlConnection;
+            deadline.guard(connection::disconnect);
             LOGGER.debug("HttpURLConnection successfully initialized");
-            DataOutputStream request = new DataOutputStream(urlConnection.getOutputStream());
-            backtrace.io.http.MultiFormRequestHelper.addJson(request, json);
-            backtrace.io.http.MultiFormRequestHelper.addFiles(request, attachments);
-            backtrace.io.http.MultiFormRequestHelper.addEndOfRequest(request);
-
-            request.flush();
+            UrlConnectionStream request = new UrlConnectionStream(urlConnection);
+            body.write(request);
             request.close();
 
             statusCode = urlConnection.getResponseCode();
             LOGGER.debug("Received response status from Backtrace API for HTTP request is: " + statusCode);
 
-            if (statusCode == HttpURLConnection.HTTP_OK) {
-                result = handleSuccessResponse(urlConnection, report);
-            } else {
-                throw new HttpException(statusCode, String.format("%s: %s",
-                        Integer.toString(statusCode), getErrorMessage(urlConnection)));
+            InputStream responseBody = statusCode < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+            try {
+                result = handleResponse(statusCode, urlConnection.getResponseMessage(), responseBody, report);
+            } finally {
+                drained = drain(responseBody);
+                if (responseBody != null) {
+                    responseBody.close();
+                }
             }
-
         } catch (Exception e) {
-            LOGGER.error("Sending HTTP request failed to Backtrace API", e);
-            result = BacktraceResult.onError(report, e, statusCode);
+            Exception error = deadline.isExpired() ? deadline.toException(e) : e;
+            LOGGER.error("Sending HTTP request failed to Backtrace API", error);
+            result = BacktraceResult.onError(report, error, statusCode);
         } finally {
-            if (urlConnection != null) {
+            deadline.cancel();
+            // a connection whose response has been drained stays in the keep-alive cache and is reused
+            if (urlConnection != null && !drained) {
                 try {
                     urlConnection.disconnect();
                     LOGGER.debug("Disconnecting HttpUrlConnection successful");
@@ -75,30 +254,100 @@ public class ApiSender {
         return result;
     }
 
-    private static BacktraceResult handleSuccessResponse(HttpURLConnection urlConnection, BacktraceReport report) throws IOException {
-        BacktraceResult result = BacktraceSerializeHelper.fromJson(getResponse(urlConnection), BacktraceResult.class);
+    /**
+     * Reads response body. JSON of a successful response is parsed directly from the stream,
+     * message of an error response is read up to {@value #MAX_ERROR_BODY_BYTES} bytes
+     *
+     * @param statusCode   HTTP status code
+     * @param reasonPhrase HTTP reason phrase, used as the message if error response has no body
+     * @param body         stream of response body or null if the response has no body
+     * @param report       sent report
+     * @return information from the server about the result of processing the request
+     * @throws IOException   if the response can not be read
+     * @throws HttpException if the server did not accept the report
+     */
+    static BacktraceResult handleResponse(int statusCode, String reasonPhrase, InputStream body,
+                                          BacktraceReport report) throws IOException, HttpException {
+        if (statusCode == HttpURLConnection.HTTP_OK) {
+            return handleSuccessResponse(body, report);
+        }
+        String message = readErrorMessage(body);
+        message = message.isEmpty() ? reasonPhrase : message;
+        throw new HttpException(statusCode, String.format("%s: %s", Integer.toString(statusCode), message));
+    }
+
+    static BacktraceResult handleSuccessResponse(InputStream body, BacktraceReport report) throws IOException {
+        BacktraceResult result = body == null ? null : BacktraceSerializeHelper.fromJson(body, BacktraceResult.class);
+        if (result == null) {
+            throw new EOFException("Response of Backtrace API has no body");
+        }
         result.setStatus(BacktraceResultStatus.Ok);
         result.setBacktraceReport(report);
         result.setHttpStatusCode(HttpURLConnection.HTTP_OK);
         return result;
     }
 
-    private static String getErrorMessage(HttpURLConnection urlConnection) throws IOException {
-        String message = getResponse(urlConnection);
-        message = message.equals("") ? urlConnection.getResponseMessage() : message;
-        return message;
+    /**
+     * Reads message from error response, the message is truncated to {@value #MAX_ERROR_BODY_BYTES} bytes
+     * and line breaks are removed
+     *
+     * @param body stream of response body or null if the response has no body
+     * @return message or empty string
+     * @throws IOException if the response can not be read
+     */
+    static String readErrorMessage(InputStream body) throws IOException {
+        if (body == null) {
+            return "";
+        }
+        byte[] buffer = new byte[MAX_ERROR_BODY_BYTES];
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = body.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        String message = new String(buffer, 0, length, StandardCharsets.UTF_8).replace("\r", "").replace("\n", "");
+        return length == buffer.length && body.read() != -1 ? message + "..." : message;
     }
 
-    private static HttpURLConnection getUrlConnection(String serverUrl) throws IOException {
+    /**
+     * Reads the rest of response body without storing it, so the connection can be reused for the next request.
+     * Body longer than {@value #MAX_DRAINED_BYTES} bytes is not read to the end
+     *
+     * @param body stream of response body or null if the response has no body
+     * @return true if the body has been read to the end
+     */
+    static boolean drain(InputStream body) {
+        if (body == null) {
+            return true;
+        }
+        try {
+            long drained = 0;
+            int read;
+            while ((read = body.read(DISCARDED_BYTES)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAINED_BYTES) {
+                    LOGGER.debug("Response body is too long to be drained, the connection will be closed");
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Can not drain response body, the connection will be closed", e);
+            return false;
+        }
+    }
+
+    private static HttpURLConnection getUrlConnection(String serverUrl, RequestTimeouts timeouts) throws IOException {
         URL url = new URL(serverUrl);
         HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
         urlConnection.setRequestMethod("POST");
         urlConnection.setUseCaches(false);
+        urlConnection.setConnectTimeout(timeouts.getConnectTimeoutMillis());
+        urlConnection.setReadTimeout(timeouts.getReadTimeoutMillis());
 
         urlConnection.setDoOutput(true);
         urlConnection.setDoInput(true);
 
-        urlConnection.setChunkedStreamingMode(128 * 1024);
         urlConnection.setRequestProperty("Connection", "Keep-Alive");
         urlConnection.setRequestProperty("Cache-Control", "no-cache");
 
@@ -109,31 +358,40 @@ public class ApiSender {
     }
 
     /**
-     * Read response message from HTTP response
-     *
-     * @param urlConnection current HTTP connection
-     * @return response from HTTP request
-     * @throws IOException if an I/O error occurs
+     * Body of the request sent by {@link HttpURLConnection}, Content-Encoding header and streaming mode
+     * are set when the body is opened
      */
-    private static String getResponse(HttpURLConnection urlConnection) throws IOException {
-        LOGGER.debug("Reading response from HTTP request");
+    private static class UrlConnectionStream implements RequestStream {
+        private final HttpURLConnection urlConnection;
+        private OutputStream outputStream;
 
-        InputStream inputStream;
-        if (urlConnection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST) {
-            inputStream = urlConnection.getInputStream();
-        } else {
-            inputStream = urlConnection.getErrorStream();
+        UrlConnectionStream(HttpURLConnection urlConnection) {
+            this.urlConnection = urlConnection;
         }
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(
-                inputStream));
+        @Override
+        public OutputStream open(String contentEncoding, long contentLength) throws IOException {
+            if (outputStream != null) {
+                throw new IllegalStateException("Request body has already been opened");
+            }
+            if (contentEncoding != null) {
+                urlConnection.setRequestProperty("Content-Encoding", contentEncoding);
+            }
+            if (contentLength >= 0) {
+                urlConnection.setFixedLengthStreamingMode(contentLength);
+            } else {
+                urlConnection.setChunkedStreamingMode(CHUNK_SIZE);
+            }
+            outputStream = new DataOutputStream(urlConnection.getOutputStream());
+            return outputStream;
+        }
 
-        StringBuilder responseSB = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            responseSB.append(line);
+        void close() throws IOException {
+            if (outputStream == null) {
+                open(null, 0);
+            }
+            outputStream.flush();
+            outputStream.close();
         }
-        br.close();
-        return responseSB.toString();
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,8 @@ import backtrace.io.data.BacktraceReport;
 import com.google.gson.annotations.SerializedName;
 
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
 
 
 /**
@@ -107,7 +109,7 @@ public class BacktraceResult {
     }
 
     /**
-     * Returns result when error occurs while sending data to API
+     * Returns result when error occurs while sending data to API, errors caused by timeouts have timeout status
      *
      * @param report         executed report
      * @param exception      current exception
@@ -117,7 +119,46 @@ public class BacktraceResult {
     static BacktraceResult onError(BacktraceReport report, Exception exception, Integer httpStatusCode) {
         return new BacktraceResult(
                 report, exception.getMessage(),
-                BacktraceResultStatus.ServerError, httpStatusCode);
+                isTimeout(exception) ? BacktraceResultStatus.Timeout : BacktraceResultStatus.ServerError,
+                httpStatusCode);
+    }
+
+    /**
+     * Checks if the exception or one of its causes has been thrown because a timeout elapsed
+     *
+     * @param exception exception thrown while sending the request
+     * @return true if the request timed out
+     */
+    private static boolean isTimeout(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns result when the report was rejected by rate limiter and has not been sent
+     *
+     * @param report rejected report or null if the report has not been created
+     * @return BacktraceResult with rate limited status
+     */
+    public static BacktraceResult onRateLimited(BacktraceReport report) {
+        return new BacktraceResult(report, "Report rejected by rate limiter", BacktraceResultStatus.RateLimited, null);
+    }
+
+    /**
+     * Returns result when the report has not been sent because it was not selected by sampling
+     *
+     * @param report rejected report or null if the report has not been created
+     * @return BacktraceResult with sampled out status
+     */
+    public static BacktraceResult onSampledOut(BacktraceReport report) {
+        return new BacktraceResult(report, "Report rejected by sampling", BacktraceResultStatus.SampledOut, null);
     }
 
     /**
@@ -131,8 +172,14 @@ public class BacktraceResult {
         return new BacktraceResult(report, message, BacktraceResultStatus.Ok, HttpURLConnection.HTTP_OK);
     }
 
+    /**
+     * Checks if sending the report again may succeed. Reports which timed out are sent again, the server
+     * rejects a report which has already been received, so a report is not stored twice
+     *
+     * @return true if the report should be sent again
+     */
     public boolean shouldRetry() {
-        return httpStatusCode == null || httpStatusCode == HttpURLConnection.HTTP_GATEWAY_TIMEOUT ||
+        return status == BacktraceResultStatus.Timeout || httpStatusCode == null || httpStatusCode == HttpURLConnection.HTTP_GATEWAY_TIMEOUT ||
                 httpStatusCode == HttpURLConnection.HTTP_BAD_GATEWAY || httpStatusCode == HttpURLConnection.HTTP_INTERNAL_ERROR
                 || httpStatusCode == HttpURLConnection.HTTP_UNAVAILABLE || httpStatusCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT;
     }
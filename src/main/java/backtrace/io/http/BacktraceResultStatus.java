@@ -9,8 +9,23 @@ public enum BacktraceResultStatus {
      */
     ServerError,
 
+    /**
+     * Set when the server has not responded before connect, read or request timeout elapsed
+     */
+    Timeout,
+
     /**
      * Set when data were send to API
      */
     Ok,
+
+    /**
+     * Set when report has not been sent because the client exceeded its rate limit
+     */
+    RateLimited,
+
+    /**
+     * Set when report has not been sent because it was not selected by sampling
+     */
+    SampledOut,
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package backtrace.io.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data written to the stream in gzip or zlib format and measures time spent on compression
+ */
+class CompressingOutputStream extends OutputStream {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final CRC32 crc; // null for zlib format
+    private final byte[] buffer = new byte[8192];
+    private long uncompressedBytes = 0;
+    private long compressedBytes = 0;
+    private long compressionNanos = 0;
+    private boolean headerWritten = false;
+
+    /**
+     * Creates compressing stream
+     *
+     * @param out   stream to which compressed data is written
+     * @param type  compression format
+     * @param level compression level from 0 to 9
+     */
+    CompressingOutputStream(OutputStream out, CompressionType type, int level) {
+        this.out = out;
+        boolean gzip = type == CompressionType.Gzip;
+        this.deflater = new Deflater(level, gzip);
+        this.crc = gzip ? new CRC32() : null;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        writeHeader();
+        uncompressedBytes += len;
+        long start = System.nanoTime();
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        compressionNanos += System.nanoTime() - start;
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    /**
+     * Writes remaining compressed data and releases the compressor, the underlying stream is not closed
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException {
+        try {
+            writeHeader();
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+            if (crc != null) {
+                writeInt((int) crc.getValue());
+                writeInt((int) uncompressedBytes);
+                compressedBytes += GZIP_HEADER.length + 8;
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Releases the compressor if the stream has not been finished
+     */
+    void end() {
+        deflater.end();
+    }
+
+    long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    long getCompressionNanos() {
+        return compressionNanos;
+    }
+
+    private void writeHeader() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        headerWritten = true;
+        if (crc != null) {
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    private void deflate() throws IOException {
+        long start = System.nanoTime();
+        int length = deflater.deflate(buffer, 0, buffer.length);
+        compressionNanos += System.nanoTime() - start;
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            compressedBytes += length;
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
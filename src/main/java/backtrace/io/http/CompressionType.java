@@ -0,0 +1,31 @@
+package backtrace.io.http;
+
+/**
+ * Content encodings in which request body can be compressed
+ */
+public enum CompressionType {
+    /**
+     * Body compressed in gzip format, sent with {@code Content-Encoding: gzip}
+     */
+    Gzip("gzip"),
+
+    /**
+     * Body compressed in zlib format, sent with {@code Content-Encoding: deflate}
+     */
+    Deflate("deflate");
+
+    private final String contentEncoding;
+
+    CompressionType(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Returns value of Content-Encoding header
+     *
+     * @return content encoding
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+}
@@ -0,0 +1,66 @@
+package backtrace.io.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of direct buffers of the same size used by a single selector thread. Direct buffers are written
+ * to sockets without being copied, but they are expensive to allocate, so released buffers are kept for reuse
+ */
+class DirectBufferPool {
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+    private volatile long allocatedBuffers = 0;
+
+    /**
+     * Creates pool of buffers
+     *
+     * @param bufferSize       size of each buffer in bytes
+     * @param maxPooledBuffers maximum number of released buffers kept in the pool
+     */
+    DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Returns cleared buffer from the pool or allocates a new one if the pool is empty
+     *
+     * @return buffer which is not used by other connections
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.pollFirst();
+        if (buffer == null) {
+            allocatedBuffers++;
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns buffer to the pool, the most recently released buffer is reused first.
+     * Buffers of other sizes are not pooled
+     *
+     * @param buffer buffer which is no longer used or null
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize && buffers.size() < maxPooledBuffers) {
+            buffers.addFirst(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns number of buffers allocated since the pool was created
+     *
+     * @return number of allocated buffers
+     */
+    long getAllocatedBuffers() {
+        return allocatedBuffers;
+    }
+}
@@ -0,0 +1,22 @@
+package backtrace.io.http;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stream of request body which can send a file directly to the connection, without copying it through
+ * a buffer in the Java heap
+ */
+interface FileTransferStream {
+    /**
+     * Sends range of the file content to the connection
+     *
+     * @param file     file to send
+     * @param position position in the file of the first sent byte
+     * @param count    number of bytes to send
+     * @return {@code true} if the file has been sent, {@code false} if the connection does not support direct
+     * transfer and the file should be written to the stream
+     * @throws IOException if an I/O error occurs
+     */
+    boolean transferFrom(FileChannel file, long position, long count) throws IOException;
+}
@@ -0,0 +1,199 @@
+package backtrace.io.http;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.events.AsyncRequestHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends reports using {@link HttpClient} without blocking the sender thread. Over HTTPS many reports
+ * are sent at the same time as separate streams of a single HTTP/2 connection, servers which do not support
+ * HTTP/2 receive reports over HTTP/1.1
+ */
+public class HttpClientRequestHandler implements AsyncRequestHandler {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(HttpClientRequestHandler.class);
+    private final HttpClient httpClient;
+    private final RequestCompression compression;
+
+    /**
+     * Creates request handler with HTTP client which prefers HTTP/2
+     */
+    public HttpClientRequestHandler() {
+        this(HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build());
+    }
+
+    /**
+     * Creates request handler which sends reports using passed HTTP client,
+     * e.g. with custom proxy, executor or SSL context
+     *
+     * @param httpClient HTTP client
+     */
+    public HttpClientRequestHandler(HttpClient httpClient) {
+        this(httpClient, null);
+    }
+
+    /**
+     * Creates request handler which sends reports using passed HTTP client, with body compressed
+     * if the request is large enough. The body is built in memory before the request is sent
+     *
+     * @param httpClient  HTTP client
+     * @param compression request compression or null if the body should not be compressed
+     */
+    public HttpClientRequestHandler(HttpClient httpClient, RequestCompression compression) {
+        if (httpClient == null) {
+            throw new NullPointerException("HTTP client can not be null");
+        }
+        this.httpClient = httpClient;
+        this.compression = compression;
+    }
+
+    /**
+     * Sends report to the submission url of the report
+     *
+     * @param data which should be send to Backtrace API
+     * @return future completed with information from the server about the result of processing the request
+     */
+    @Override
+    public CompletableFuture<BacktraceResult> onRequest(BacktraceData data) {
+        BacktraceReport report = data.getReport();
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(data.getSubmissionUrl()))
+                    .header("Content-Type", MultiFormRequestHelper.getContentType())
+                    .header("Cache-Control", "no-cache");
+            if (compression != null) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                String[] contentEncoding = new String[1];
+                compression.write((encoding, contentLength) -> {
+                    contentEncoding[0] = encoding;
+                    return body;
+                }, requestStream -> ApiSender.writeRequest(requestStream.open(null, -1), data));
+                if (contentEncoding[0] != null) {
+                    builder.header("Content-Encoding", contentEncoding[0]);
+                }
+                builder.POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+            } else {
+                builder.POST(MultipartBodyPublisher.create(MultipartBody.create(data)));
+            }
+            request = builder.build();
+        } catch (Exception e) {
+            LOGGER.error("Creating HTTP request to Backtrace API failed", e);
+            return CompletableFuture.completedFuture(BacktraceResult.onError(report, e));
+        }
+
+        return httpClient.sendAsync(request, HttpClientRequestHandler::responseBodySubscriber)
+                .handle((response, exception) -> {
+                    if (exception != null) {
+                        Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                                ? exception.getCause() : exception;
+                        LOGGER.error("Sending HTTP request failed to Backtrace API", cause);
+                        return BacktraceResult.onError(report, toException(cause));
+                    }
+                    return handleResponse(response, report);
+                });
+    }
+
+    /**
+     * Converts failure of the HTTP client to exception of the result, timeouts of the HTTP client are reported
+     * as {@link TimeoutException}, so the result has timeout status without referring to classes of Java 11
+     * outside of this handler
+     *
+     * @param cause failure of the request
+     * @return exception passed to the result
+     */
+    private static Exception toException(Throwable cause) {
+        if (cause instanceof HttpTimeoutException) {
+            TimeoutException timeout = new TimeoutException(cause.getMessage());
+            timeout.initCause(cause);
+            return timeout;
+        }
+        return cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+    }
+
+    /**
+     * Collects body of successful response, body of error response is collected up to the size of error message
+     * and the rest is discarded
+     *
+     * @param responseInfo status and headers of the response
+     * @return subscriber of response body
+     */
+    private static HttpResponse.BodySubscriber<byte[]> responseBodySubscriber(HttpResponse.ResponseInfo responseInfo) {
+        return responseInfo.statusCode() == HttpURLConnection.HTTP_OK
+                ? HttpResponse.BodySubscribers.ofByteArray()
+                : new CappedBodySubscriber(ApiSender.MAX_ERROR_BODY_BYTES + 1);
+    }
+
+    private static BacktraceResult handleResponse(HttpResponse<byte[]> response, BacktraceReport report) {
+        int statusCode = response.statusCode();
+        LOGGER.debug("Received response status from Backtrace API for " + response.version() +
+                " request is: " + statusCode);
+        try {
+            return ApiSender.handleResponse(statusCode, "", new ByteArrayInputStream(response.body()), report);
+        } catch (Exception e) {
+            LOGGER.error("Sending HTTP request failed to Backtrace API", e);
+            return BacktraceResult.onError(report, e, statusCode);
+        }
+    }
+
+    /**
+     * Collects the beginning of response body and discards the rest
+     */
+    private static class CappedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream collected = new ByteArrayOutputStream();
+        private final int maxBytes;
+
+        CappedBodySubscriber(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                int length = Math.min(buffer.remaining(), maxBytes - collected.size());
+                if (length > 0) {
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    collected.write(bytes, 0, length);
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(collected.toByteArray());
+        }
+    }
+}
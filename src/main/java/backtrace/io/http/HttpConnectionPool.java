@@ -0,0 +1,224 @@
+package backtrace.io.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps HTTP connections to submission endpoints open between reports, so each report does not pay
+ * TCP and TLS handshakes. Connections idle for longer than the idle timeout are closed,
+ * at most the pool size of idle connections is kept for each endpoint
+ */
+public class HttpConnectionPool {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(HttpConnectionPool.class);
+    private final int maxIdleConnections;
+    private final long idleTimeoutNanos;
+    private final Map<String, Deque<PooledConnection>> idleConnections = new ConcurrentHashMap<>();
+    private final LongAdder openedConnections = new LongAdder();
+    private final LongAdder tlsHandshakes = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder reusedRequests = new LongAdder();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates connection pool
+     *
+     * @param maxIdleConnections maximum number of idle connections kept for each endpoint
+     * @param idleTimeout        time after which an idle connection is closed
+     * @param unit               the time unit of the {@code idleTimeout} argument
+     */
+    public HttpConnectionPool(int maxIdleConnections, long idleTimeout, TimeUnit unit) {
+        if (maxIdleConnections < 1 || idleTimeout <= 0) {
+            throw new IllegalArgumentException("Pool size and idle timeout should be greater than zero");
+        }
+        this.maxIdleConnections = maxIdleConnections;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    /**
+     * Returns number of connections opened by the pool
+     *
+     * @return number of opened connections
+     */
+    public long getOpenedConnections() {
+        return openedConnections.sum();
+    }
+
+    /**
+     * Returns number of TLS handshakes performed by opened connections
+     *
+     * @return number of TLS handshakes
+     */
+    public long getTlsHandshakes() {
+        return tlsHandshakes.sum();
+    }
+
+    /**
+     * Returns number of requests sent using the pool
+     *
+     * @return number of requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns number of requests sent over a connection which has been used before
+     *
+     * @return number of requests on reused connections
+     */
+    public long getReusedRequests() {
+        return reusedRequests.sum();
+    }
+
+    /**
+     * Returns part of requests sent over a connection which has been used before
+     *
+     * @return connection reuse ratio between 0 and 1
+     */
+    public double getReuseRatio() {
+        long requests = getRequests();
+        return requests == 0 ? 0 : (double) getReusedRequests() / requests;
+    }
+
+    /**
+     * Returns number of open connections waiting for the next request
+     *
+     * @return number of idle connections
+     */
+    public int getIdleConnections() {
+        int count = 0;
+        for (Deque<PooledConnection> connections : idleConnections.values()) {
+            synchronized (connections) {
+                count += connections.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns idle connection to the endpoint of the url or opens a new one
+     *
+     * @param url      endpoint url
+     * @param timeouts timeouts of opening a new connection
+     * @return connection which is not used by other requests
+     * @throws IOException if a new connection can not be opened
+     */
+    PooledConnection acquire(URL url, RequestTimeouts timeouts) throws IOException {
+        return acquire(url, false, timeouts);
+    }
+
+    /**
+     * Returns connection to the endpoint of the url
+     *
+     * @param url           endpoint url
+     * @param newConnection if true a new connection is opened even if there are idle connections
+     * @param timeouts      timeouts of opening a new connection
+     * @return connection which is not used by other requests
+     * @throws IOException if a new connection can not be opened
+     */
+    PooledConnection acquire(URL url, boolean newConnection, RequestTimeouts timeouts) throws IOException {
+        String endpoint = url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":"
+                + PooledConnection.getPort(url);
+        requests.increment();
+        if (!newConnection) {
+            evictIdleConnections();
+            PooledConnection connection = pollIdleConnection(endpoint);
+            if (connection != null) {
+                reusedRequests.increment();
+                return connection;
+            }
+        }
+        PooledConnection connection = PooledConnection.open(url, endpoint, timeouts);
+        openedConnections.increment();
+        if (PooledConnection.isHttps(url)) {
+            tlsHandshakes.increment();
+        }
+        return connection;
+    }
+
+    /**
+     * Returns connection to the pool after its response has been drained, connections idle for longer than
+     * the idle timeout are closed at the same time
+     *
+     * @param connection connection which is not used anymore
+     * @param reusable   false if the connection can not be used for the next request
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        if (!reusable || closed || connection.isClosed()) {
+            connection.close();
+            return;
+        }
+        Deque<PooledConnection> connections = idleConnections.computeIfAbsent(connection.getEndpoint(),
+                key -> new ArrayDeque<>());
+        connection.setIdleSinceNanos(System.nanoTime());
+        boolean full = false;
+        synchronized (connections) {
+            // the pool can be closed after the check above, close() clears idle connections under the same lock
+            if (!closed) {
+                full = connections.size() >= maxIdleConnections;
+                if (!full) {
+                    connections.push(connection);
+                    connection = null;
+                }
+            }
+        }
+        if (connection != null) {
+            LOGGER.debug(full ? "Connection pool is full, connection is closed"
+                    : "Connection pool has been closed, connection is closed");
+            connection.close();
+        }
+        evictIdleConnections();
+    }
+
+    /**
+     * Closes all idle connections, connections released later are closed
+     */
+    public void close() {
+        closed = true;
+        for (Deque<PooledConnection> connections : idleConnections.values()) {
+            synchronized (connections) {
+                for (PooledConnection connection : connections) {
+                    connection.close();
+                }
+                connections.clear();
+            }
+        }
+    }
+
+    private PooledConnection pollIdleConnection(String endpoint) {
+        Deque<PooledConnection> connections = idleConnections.get(endpoint);
+        if (connections == null) {
+            return null;
+        }
+        synchronized (connections) {
+            return connections.poll();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.nanoTime();
+        for (Deque<PooledConnection> connections : idleConnections.values()) {
+            synchronized (connections) {
+                Iterator<PooledConnection> iterator = connections.descendingIterator();
+                while (iterator.hasNext()) {
+                    PooledConnection connection = iterator.next();
+                    if (now - connection.getIdleSinceNanos() < idleTimeoutNanos && !connection.isClosed()) {
+                        break;
+                    }
+                    iterator.remove();
+                    connection.close();
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package backtrace.io.http;
 
+import backtrace.io.data.BacktraceData;
+import backtrace.io.helpers.BacktraceSerializeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
 
 
 /***
@@ -20,6 +24,12 @@ class MultiFormRequestHelper {
     private static final String BOUNDARY = "*****";
     private static final String CRLF = "\r\n";
     private static final String TWO_HYPHENS = "--";
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> FILE_BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(FILE_BUFFER_SIZE));
+    private static final byte[] JSON_HEADER_BYTES = getJsonHeader().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_PART_BYTES = getEndOfPart().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_REQUEST_BYTES = getEndOfRequest().getBytes(StandardCharsets.UTF_8);
 
     /**
      * Get Content-Type of request
@@ -42,47 +52,122 @@ class MultiFormRequestHelper {
             return;
         }
 
-        outputStream.write((TWO_HYPHENS + BOUNDARY +
-                TWO_HYPHENS + CRLF).getBytes());
+        outputStream.write(END_OF_REQUEST_BYTES);
     }
 
     /**
-     * Write JSON string to output data steam
+     * Get string which ends the request
+     *
+     * @return closing boundary
+     */
+    static String getEndOfRequest() {
+        return TWO_HYPHENS + BOUNDARY + TWO_HYPHENS + CRLF;
+    }
+
+    /**
+     * Get boundary and headers of the part containing JSON with BacktraceData object
+     *
+     * @return part headers followed by empty line
+     */
+    static String getJsonHeader() {
+        return TWO_HYPHENS + BOUNDARY + CRLF + getFileInfo("upload_file") + CRLF;
+    }
+
+    /**
+     * Get boundary and headers of the part containing attachment
+     *
+     * @param absolutePath file absolute path
+     * @return part headers followed by empty line
+     */
+    static String getFileHeader(String absolutePath) {
+        String fileName = Paths.get(absolutePath).getFileName().toString();
+        String fileContentType = URLConnection.guessContentTypeFromName(fileName);
+        return TWO_HYPHENS + BOUNDARY + CRLF + getFileInfo("attachment_" + fileName) +
+                "Content-Type: " + fileContentType + CRLF + CRLF;
+    }
+
+    /**
+     * Get encoded boundary and headers of the part containing attachment
+     *
+     * @param absolutePath file absolute path
+     * @return UTF-8 part headers followed by empty line
+     */
+    static byte[] getFileHeaderBytes(String absolutePath) {
+        return getFileHeader(absolutePath).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get encoded boundary and headers of the part containing JSON, the array is shared and must not be modified
+     *
+     * @return UTF-8 part headers followed by empty line
+     */
+    static byte[] getJsonHeaderBytes() {
+        return JSON_HEADER_BYTES;
+    }
+
+    /**
+     * Get encoded string which ends the part, the array is shared and must not be modified
+     *
+     * @return UTF-8 line separator
+     */
+    static byte[] getEndOfPartBytes() {
+        return END_OF_PART_BYTES;
+    }
+
+    /**
+     * Get encoded string which ends the request, the array is shared and must not be modified
+     *
+     * @return UTF-8 closing boundary
+     */
+    static byte[] getEndOfRequestBytes() {
+        return END_OF_REQUEST_BYTES;
+    }
+
+    /**
+     * Get string which ends the part
+     *
+     * @return line separator
+     */
+    static String getEndOfPart() {
+        return CRLF;
+    }
+
+    /**
+     * Write object serialized to JSON to output data steam, the JSON is not buffered in memory
      *
      * @param outputStream output data stream
-     * @param json         JSON string with BacktraceData object
+     * @param data         BacktraceData object
      * @throws IOException
      */
-    static void addJson(OutputStream outputStream, String json) throws IOException {
-        if (json == null || json.isEmpty() || outputStream == null) {
-            LOGGER.warn("JSON is null/empty or output stream is null");
+    static void addJson(OutputStream outputStream, Object data) throws IOException {
+        if (data == null || outputStream == null) {
+            LOGGER.warn("Data or output stream is null");
             return;
         }
-        outputStream.write((TWO_HYPHENS + BOUNDARY +
-                CRLF).getBytes());
-        outputStream.write((getFileInfo("upload_file")).getBytes());
-        outputStream.write((CRLF).getBytes());
-
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
-        outputStream.write(bytes);
-        outputStream.write((CRLF).getBytes());
+        outputStream.write(JSON_HEADER_BYTES);
+        BacktraceSerializeHelper.toJson(outputStream, data);
+        outputStream.write(END_OF_PART_BYTES);
     }
 
     /***
-     * Write files data to outputStream
+     * Write files data of the report to outputStream, attachments are truncated to limits of the report
      * @param outputStream output data stream
-     * @param attachments list of paths to files
+     * @param data BacktraceData object with paths to files
      * @throws IOException
      */
-    static void addFiles(OutputStream outputStream, List<String> attachments) throws
+    static void addFiles(OutputStream outputStream, BacktraceData data) throws
             IOException {
-        if (attachments == null || outputStream == null) {
-            LOGGER.warn("Attachments or output stream is null");
+        if (data == null || outputStream == null) {
+            LOGGER.warn("Data or output stream is null");
             return;
         }
 
-        for (String fileAbsolutePath : attachments) {
-            addFile(outputStream, fileAbsolutePath);
+        for (String fileAbsolutePath : data.getAttachments()) {
+            long limit = data.getAttachmentLimit(fileAbsolutePath);
+            if (limit == 0) {
+                continue;
+            }
+            addFile(outputStream, fileAbsolutePath, limit);
         }
     }
 
@@ -90,48 +175,68 @@ class MultiFormRequestHelper {
      * Write single file in multiform data format to outputStream
      * @param outputStream output data stream
      * @param absolutePath file absolute path
+     * @param limit maximum number of bytes sent from the end of the file or -1 if the whole file is sent
      * @throws IOException
      */
-    private static void addFile(OutputStream outputStream, String absolutePath) throws IOException {
+    private static void addFile(OutputStream outputStream, String absolutePath, long limit) throws IOException {
         if (absolutePath == null || outputStream == null) {
             LOGGER.warn("Absolute path or output stream is null");
             return;
         }
-        String fileName = Paths.get(absolutePath).getFileName().toString();
-        String fileContentType = URLConnection.guessContentTypeFromName(fileName);
-
-        outputStream.write((TWO_HYPHENS + BOUNDARY +
-                CRLF).getBytes());
-        outputStream.write((getFileInfo("attachment_" + fileName)).getBytes());
-        outputStream.write(("Content-Type: " + fileContentType + CRLF)
-                .getBytes
-                        ());
-        outputStream.write((CRLF).getBytes());
-        streamFile(outputStream, absolutePath);
-        outputStream.write((CRLF).getBytes());
+        outputStream.write(getFileHeaderBytes(absolutePath));
+        streamFile(outputStream, absolutePath, limit);
+        outputStream.write(END_OF_PART_BYTES);
 
     }
 
     /***
-     * Write file content to output data stream
+     * Write file content to output data stream. File larger than the limit is read from the position of its last bytes
      * @param outputStream output data stream
      * @param absolutePath absolute path to file
+     * @param limit maximum number of bytes sent from the end of the file or -1 if the whole file is sent
      * @throws IOException
      */
-    private static void streamFile(OutputStream outputStream, String absolutePath) throws
+    private static void streamFile(OutputStream outputStream, String absolutePath, long limit) throws
             IOException {
         if (outputStream == null || absolutePath == null) {
             LOGGER.warn("Absolute path or output stream is null");
             return;
         }
-        FileInputStream fis = new FileInputStream(absolutePath);
-        byte[] b = new byte[4096];
-        int c;
-        while ((c = fis.read(b)) != -1) {
-            outputStream.write(b, 0, c);
+        try (FileChannel channel = FileChannel.open(Paths.get(absolutePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = limit >= 0 && size > limit ? size - limit : 0;
+            streamFile(outputStream, channel, position, size - position);
         }
     }
 
+    /***
+     * Write range of file content to output data stream. The file is transferred directly to the connection
+     * if the stream supports it, otherwise it is read through a buffer reused by the current thread
+     * @param outputStream output data stream
+     * @param channel opened file
+     * @param position position in the file of the first written byte
+     * @param length number of bytes to write
+     * @throws IOException if an I/O error occurs or the file is shorter than the range
+     */
+    static void streamFile(OutputStream outputStream, FileChannel channel, long position, long length) throws
+            IOException {
+        if (outputStream instanceof FileTransferStream &&
+                ((FileTransferStream) outputStream).transferFrom(channel, position, length)) {
+            return;
+        }
+        channel.position(position);
+        ByteBuffer buffer = FILE_BUFFERS.get();
+        while (length > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length));
+            int read = channel.read(buffer);
+            if (read == -1) {
+                throw new EOFException("Attachment has been truncated while being sent");
+            }
+            outputStream.write(buffer.array(), buffer.arrayOffset(), read);
+            length -= read;
+        }
+    }
 
     /***
      * Get string with information about file like content-disposition, name and filename
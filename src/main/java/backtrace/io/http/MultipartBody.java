@@ -0,0 +1,215 @@
+package backtrace.io.http;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.helpers.BacktraceSerializeHelper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Multipart/form-data body of the report with length of JSON counted before the request is sent, so the exact length
+ * of the body is known and the body can be sent with Content-Length header instead of chunked transfer encoding.
+ * JSON is not kept in memory, the report is serialized again directly to the request stream when the body is written.
+ * Headers of parts are built once and the body can be written again if the request is repeated
+ */
+class MultipartBody implements ApiSender.RequestBody {
+    private final BacktraceData data;
+    private final long jsonLength;
+    private final List<FilePart> files;
+    private final long contentLength;
+
+    private MultipartBody(BacktraceData data, long jsonLength, List<FilePart> files) {
+        this.data = data;
+        this.jsonLength = jsonLength;
+        this.files = files;
+        long length = MultiFormRequestHelper.getJsonHeaderBytes().length + jsonLength +
+                MultiFormRequestHelper.getEndOfPartBytes().length;
+        for (FilePart file : files) {
+            length += file.header.length + file.length + MultiFormRequestHelper.getEndOfPartBytes().length;
+        }
+        this.contentLength = length + MultiFormRequestHelper.getEndOfRequestBytes().length;
+    }
+
+    /**
+     * Counts bytes of the report serialized to JSON and reads sizes of attachments,
+     * attachments are truncated to limits of the report
+     *
+     * @param data BacktraceData object with paths to files
+     * @return request body
+     * @throws IOException if the report can not be serialized or an attachment does not exist
+     */
+    static MultipartBody create(BacktraceData data) throws IOException {
+        CountingOutputStream json = new CountingOutputStream();
+        BacktraceSerializeHelper.toJson(json, data);
+
+        List<FilePart> files = new ArrayList<>();
+        for (String attachment : data.getAttachments()) {
+            long limit = data.getAttachmentLimit(attachment);
+            if (attachment == null || limit == 0) {
+                continue;
+            }
+            Path path = Paths.get(attachment);
+            long size = Files.size(path);
+            long position = limit >= 0 && size > limit ? size - limit : 0;
+            files.add(new FilePart(path, MultiFormRequestHelper.getFileHeaderBytes(attachment),
+                    position, size - position));
+        }
+        return new MultipartBody(data, json.count, files);
+    }
+
+    /**
+     * Returns exact number of bytes of the body
+     *
+     * @return length of the body
+     */
+    long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Serializes the report to an array of the counted length, for transports which send the body from memory
+     *
+     * @return report serialized to UTF-8 JSON
+     * @throws IOException if the report can not be serialized or its length has changed since the body was created
+     */
+    byte[] getJson() throws IOException {
+        if (jsonLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("Report is too large to be serialized to an array: " + jsonLength + " bytes");
+        }
+        byte[] json = new byte[(int) jsonLength];
+        ArrayOutputStream outputStream = new ArrayOutputStream(json);
+        BacktraceSerializeHelper.toJson(outputStream, data);
+        checkJsonLength(outputStream.count);
+        return json;
+    }
+
+    List<FilePart> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    @Override
+    public void write(ApiSender.RequestStream requestStream) throws IOException {
+        writeTo(requestStream.open(null, contentLength));
+    }
+
+    /**
+     * Writes the body to the stream, attachments are read from disk while the body is written
+     *
+     * @param outputStream stream of request body
+     * @throws IOException if an I/O error occurs or an attachment is shorter than when the body was created
+     */
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(MultiFormRequestHelper.getJsonHeaderBytes());
+        CountingOutputStream json = new CountingOutputStream(outputStream);
+        BacktraceSerializeHelper.toJson(json, data);
+        checkJsonLength(json.count);
+        outputStream.write(MultiFormRequestHelper.getEndOfPartBytes());
+        for (FilePart file : files) {
+            outputStream.write(file.header);
+            try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+                MultiFormRequestHelper.streamFile(outputStream, channel, file.position, file.length);
+            }
+            outputStream.write(MultiFormRequestHelper.getEndOfPartBytes());
+        }
+        outputStream.write(MultiFormRequestHelper.getEndOfRequestBytes());
+    }
+
+    private void checkJsonLength(long length) throws IOException {
+        if (length != jsonLength) {
+            throw new IOException(String.format("Report has changed after the request body was created, " +
+                    "JSON has %d bytes instead of %d", length, jsonLength));
+        }
+    }
+
+    /**
+     * Counts bytes written to the stream and passes them to the target stream, if any
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private long count;
+
+        CountingOutputStream() {
+            this(null);
+        }
+
+        CountingOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (target != null) {
+                target.write(b);
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target != null) {
+                target.write(b, off, len);
+            }
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes to an array of fixed length, unlike {@link java.io.ByteArrayOutputStream} the array is not copied
+     * when it grows or when it is returned
+     */
+    private static class ArrayOutputStream extends OutputStream {
+        private final byte[] array;
+        private int count;
+
+        ArrayOutputStream(byte[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > array.length - count) {
+                throw new IOException("Report has changed after the request body was created, " +
+                        "JSON is longer than " + array.length + " bytes");
+            }
+            System.arraycopy(b, off, array, count, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Attachment part of the body, range of the file content sent after the part header
+     */
+    static class FilePart {
+        final Path path;
+        final byte[] header;
+        final long position;
+        final long length;
+
+        FilePart(Path path, byte[] header, long position, long length) {
+            this.path = path;
+            this.header = header;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
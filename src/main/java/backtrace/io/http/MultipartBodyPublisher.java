@@ -0,0 +1,244 @@
+package backtrace.io.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Publishes multipart/form-data body of the report part by part. Attachments are read by file publishers
+ * when the client requests more data, so the body is never copied into a single buffer
+ */
+class MultipartBodyPublisher implements HttpRequest.BodyPublisher {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(MultipartBodyPublisher.class);
+    private final List<HttpRequest.BodyPublisher> parts;
+    private final long contentLength;
+
+    private MultipartBodyPublisher(List<HttpRequest.BodyPublisher> parts) {
+        this.parts = parts;
+        long length = 0;
+        for (HttpRequest.BodyPublisher part : parts) {
+            if (part.contentLength() < 0) {
+                length = -1;
+                break;
+            }
+            length += part.contentLength();
+        }
+        this.contentLength = length;
+    }
+
+    /**
+     * Creates publisher of request body, attachments are read from disk when the client requests more data
+     *
+     * @param body multipart body with the report and ranges of attachments
+     * @return body publisher
+     * @throws IOException if the report can not be serialized
+     */
+    static MultipartBodyPublisher create(MultipartBody body) throws IOException {
+        List<HttpRequest.BodyPublisher> parts = new ArrayList<>();
+        parts.add(HttpRequest.BodyPublishers.ofByteArray(MultiFormRequestHelper.getJsonHeaderBytes()));
+        parts.add(HttpRequest.BodyPublishers.ofByteArray(body.getJson()));
+        parts.add(HttpRequest.BodyPublishers.ofByteArray(MultiFormRequestHelper.getEndOfPartBytes()));
+        for (MultipartBody.FilePart file : body.getFiles()) {
+            parts.add(HttpRequest.BodyPublishers.ofByteArray(file.header));
+            parts.add(ofFile(file));
+            parts.add(HttpRequest.BodyPublishers.ofByteArray(MultiFormRequestHelper.getEndOfPartBytes()));
+        }
+        parts.add(HttpRequest.BodyPublishers.ofByteArray(MultiFormRequestHelper.getEndOfRequestBytes()));
+        return new MultipartBodyPublisher(parts);
+    }
+
+    /**
+     * Creates publisher of the range of file content
+     *
+     * @param file attachment part of the body
+     * @return body publisher
+     */
+    private static HttpRequest.BodyPublisher ofFile(MultipartBody.FilePart file) {
+        if (file.length == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return new FileRangeInputStream(file.path, file.position, file.length);
+            } catch (IOException e) {
+                LOGGER.error("Can not open attachment " + file.path, e);
+                return null;
+            }
+        }), file.length);
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        new ConcatSubscription(subscriber, parts.iterator()).start();
+    }
+
+    /**
+     * Subscribes to parts one after another and passes their buffers to the subscriber of the whole body.
+     * Demand which has not been satisfied by a part is requested from the next one
+     */
+    private static class ConcatSubscription implements Flow.Subscription, Flow.Subscriber<ByteBuffer> {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final Iterator<HttpRequest.BodyPublisher> parts;
+        private Flow.Subscription part;
+        private long demand = 0;
+        private boolean done = false;
+
+        ConcatSubscription(Flow.Subscriber<? super ByteBuffer> subscriber, Iterator<HttpRequest.BodyPublisher> parts) {
+            this.subscriber = subscriber;
+            this.parts = parts;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            subscribeNextPart();
+        }
+
+        private void subscribeNextPart() {
+            HttpRequest.BodyPublisher next;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                part = null;
+                if (!parts.hasNext()) {
+                    done = true;
+                    next = null;
+                } else {
+                    next = parts.next();
+                }
+            }
+            if (next == null) {
+                subscriber.onComplete();
+                return;
+            }
+            next.subscribe(this);
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested number of items should be greater than zero"));
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            if (part != null) {
+                part.request(n);
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            done = true;
+            if (part != null) {
+                part.cancel();
+            }
+        }
+
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            if (done) {
+                subscription.cancel();
+                return;
+            }
+            part = subscription;
+            if (demand > 0) {
+                subscription.request(demand);
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            }
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+            }
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscribeNextPart();
+        }
+    }
+
+    /**
+     * Reads range of the file and closes the file when the range is read or reading fails
+     */
+    private static class FileRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long remaining;
+
+        FileRangeInputStream(Path path, long position, long length) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.channel.position(position);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                close();
+                return -1;
+            }
+            int read;
+            try {
+                read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)));
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            if (read == -1) {
+                close();
+                return -1;
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
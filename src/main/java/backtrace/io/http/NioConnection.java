@@ -0,0 +1,387 @@
+package backtrace.io.http;
+
+import javax.net.ssl.SSLEngine;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking HTTP/1.1 connection driven by the selector thread of {@link NioRequestHandler}.
+ * Requests assigned to the connection are written one after another without waiting for responses,
+ * responses are matched with requests in the order the requests were written
+ */
+class NioConnection {
+    private final NioRequestHandler handler;
+    private final String endpoint;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioTransport transport;
+    private final NioResponseParser parser = new NioResponseParser();
+    private final ArrayDeque<NioRequest> queued = new ArrayDeque<>(); // assigned, not written completely
+    private final ArrayDeque<NioRequest> awaiting = new ArrayDeque<>(); // written, waiting for response
+    private final long openedNanos;
+    private ByteBuffer writeBuffer; // in read mode, bytes which are not written yet
+    private ByteBuffer readBuffer;
+    private boolean connected = false;
+    private boolean handshaken = false;
+    private boolean closing = false;
+    private boolean closed = false;
+    private long lastProgressNanos;
+    private long idleSinceNanos;
+    private int responses = 0;
+
+    private NioConnection(NioRequestHandler handler, String endpoint, SocketChannel channel, Selector selector,
+                          SSLEngine engine, long nowNanos) throws IOException {
+        this.handler = handler;
+        this.endpoint = endpoint;
+        this.channel = channel;
+        this.transport = engine != null
+                ? NioTransport.tls(channel, engine, handler.getBufferPool())
+                : NioTransport.plain(channel);
+        this.openedNanos = nowNanos;
+        this.lastProgressNanos = nowNanos;
+        this.idleSinceNanos = nowNanos;
+        this.key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+    }
+
+    /**
+     * Starts connecting to the endpoint without waiting for the connection to be established
+     *
+     * @param handler  request handler which owns the connection
+     * @param endpoint key of the endpoint
+     * @param address  address of the server
+     * @param selector selector of the handler
+     * @param engine   TLS engine or null for plain connection
+     * @param nowNanos current time
+     * @return connection which accepts requests before it is established
+     * @throws IOException if the connection can not be started
+     */
+    static NioConnection open(NioRequestHandler handler, String endpoint, InetSocketAddress address,
+                              Selector selector, SSLEngine engine, long nowNanos) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            NioConnection connection = new NioConnection(handler, endpoint, channel, selector, engine, nowNanos);
+            if (channel.connect(address)) {
+                connection.handle(nowNanos);
+            }
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns number of requests assigned to the connection which have not received a response
+     *
+     * @return number of requests in progress
+     */
+    int getLoad() {
+        return queued.size() + awaiting.size();
+    }
+
+    /**
+     * Checks whether the connection can accept another request
+     *
+     * @return false if the connection will be closed after the current response
+     */
+    boolean isAcceptingRequests() {
+        return !closing && !closed;
+    }
+
+    boolean isIdle() {
+        return handshaken && getLoad() == 0;
+    }
+
+    long getIdleSinceNanos() {
+        return idleSinceNanos;
+    }
+
+    /**
+     * Checks whether the server closed the connection, so it should not be used for more requests
+     *
+     * @return true if the connection should be closed by the handler
+     */
+    boolean isClosing() {
+        return closing;
+    }
+
+    /**
+     * Checks whether the connection has been closed by the server while it was idle, before any byte of the response
+     * was received. Requests written to such connection have not been processed and can be sent again
+     *
+     * @return true if requests written to the connection can be sent on a new connection
+     */
+    boolean isStale() {
+        NioRequest first = awaiting.isEmpty() ? queued.peekFirst() : awaiting.peekFirst();
+        return first != null && first.isWrittenOnReusedConnection() && !parser.isStarted();
+    }
+
+    /**
+     * Assigns request to the connection, the request is written when the connection is ready
+     *
+     * @param request  request to send
+     * @param nowNanos current time
+     */
+    void enqueue(NioRequest request, long nowNanos) {
+        if (getLoad() == 0) {
+            lastProgressNanos = nowNanos;
+        }
+        queued.addLast(request);
+        updateInterest();
+    }
+
+    /**
+     * Continues connecting, TLS handshake, writing requests and reading responses as far as possible
+     * without blocking
+     *
+     * @param nowNanos current time
+     * @throws IOException if the connection is broken
+     */
+    void handle(long nowNanos) throws IOException {
+        if (!connected) {
+            if (!channel.finishConnect()) {
+                return;
+            }
+            onConnected(nowNanos);
+        }
+        if (!transport.handshake()) {
+            updateInterest();
+            return;
+        }
+        if (!handshaken) {
+            handshaken = true;
+            lastProgressNanos = nowNanos;
+        }
+        write(nowNanos);
+        read(nowNanos);
+        if (!closed) {
+            updateInterest();
+        }
+    }
+
+    /**
+     * Checks connect, read and request timeouts
+     *
+     * @param nowNanos current time
+     * @param timeouts connect and read timeouts
+     * @return exception describing the exceeded timeout or null if no timeout is exceeded
+     */
+    IOException checkTimeouts(long nowNanos, RequestTimeouts timeouts) {
+        long connectTimeoutNanos = timeouts.getConnectTimeoutMillis() * 1_000_000L;
+        long readTimeoutNanos = timeouts.getReadTimeoutMillis() * 1_000_000L;
+        if (!connected && connectTimeoutNanos > 0 && nowNanos - openedNanos >= connectTimeoutNanos) {
+            return new RequestTimeoutException("Connect timed out");
+        }
+        if (connected && (!handshaken || getLoad() > 0) && readTimeoutNanos > 0 &&
+                nowNanos - lastProgressNanos >= readTimeoutNanos) {
+            return new RequestTimeoutException("Read timed out");
+        }
+        for (NioRequest request : awaiting) {
+            if (request.isExpired(nowNanos)) {
+                return request.getTimeoutException();
+            }
+        }
+        for (NioRequest request : queued) {
+            if (request.isExpired(nowNanos)) {
+                return request.getTimeoutException();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes the connection. Requests which have not been started on an established connection are returned,
+     * so they can be sent on another connection. Started requests fail with the exception, unless they can be sent again
+     *
+     * @param exception     reason of closing the connection
+     * @param resendStarted true if started requests have not been processed by the server and can be sent again
+     * @return requests which should be sent on another connection
+     */
+    List<NioRequest> close(Exception exception, boolean resendStarted) {
+        List<NioRequest> resent = new ArrayList<>();
+        if (closed) {
+            return resent;
+        }
+        closed = true;
+        key.cancel();
+        transport.close();
+        handler.getBufferPool().release(writeBuffer);
+        handler.getBufferPool().release(readBuffer);
+        writeBuffer = null;
+        readBuffer = null;
+
+        List<NioRequest> requests = new ArrayList<>(awaiting);
+        requests.addAll(queued);
+        awaiting.clear();
+        queued.clear();
+        for (NioRequest request : requests) {
+            if (!request.isStarted() && handshaken) {
+                resent.add(request);
+            } else if (request.isStarted() && resendStarted) {
+                resent.add(request);
+            } else {
+                request.fail(exception);
+            }
+        }
+        return resent;
+    }
+
+    private void onConnected(long nowNanos) {
+        connected = true;
+        lastProgressNanos = nowNanos;
+        handler.onConnectionOpened();
+    }
+
+    private void write(long nowNanos) throws IOException {
+        while (true) {
+            while (writeBuffer != null && writeBuffer.hasRemaining()) {
+                // TLS transport consumes a single record in each write
+                if (transport.write(writeBuffer) == 0) {
+                    return;
+                }
+                lastProgressNanos = nowNanos;
+            }
+            if (!transport.flush()) {
+                return;
+            }
+            if (queued.isEmpty() || closing) {
+                handler.getBufferPool().release(writeBuffer);
+                writeBuffer = null;
+                return;
+            }
+            if (writeBuffer == null) {
+                writeBuffer = handler.getBufferPool().acquire();
+            }
+            writeBuffer.clear();
+            fillWriteBuffer();
+            writeBuffer.flip();
+        }
+    }
+
+    /**
+     * Copies queued requests into the write buffer, many small requests are sent in a single write
+     */
+    private void fillWriteBuffer() throws IOException {
+        NioRequest request;
+        while (writeBuffer.hasRemaining() && (request = queued.peekFirst()) != null) {
+            if (!request.isStarted()) {
+                request.setWrittenOnReusedConnection(responses > 0);
+                if (!awaiting.isEmpty()) {
+                    handler.onRequestPipelined();
+                }
+            }
+            boolean written;
+            try {
+                written = request.fill(writeBuffer);
+            } catch (IOException e) {
+                // part of the request may have been sent, so the connection can not be used for the next request
+                queued.pollFirst();
+                request.fail(e);
+                throw new IOException("Connection closed because body of another request could not be read", e);
+            }
+            if (!written) {
+                return;
+            }
+            queued.pollFirst();
+            awaiting.addLast(request);
+        }
+    }
+
+    private void read(long nowNanos) throws IOException {
+        if (readBuffer == null) {
+            readBuffer = handler.getBufferPool().acquire();
+        }
+        while (!closing) {
+            readBuffer.clear();
+            int read = transport.read(readBuffer);
+            if (read == -1) {
+                onEndOfStream(nowNanos);
+                return;
+            }
+            if (read == 0) {
+                break;
+            }
+            lastProgressNanos = nowNanos;
+            readBuffer.flip();
+            while (readBuffer.hasRemaining() && !closing) {
+                if (parser.parse(readBuffer)) {
+                    onResponse(nowNanos);
+                }
+            }
+        }
+        if (getLoad() == 0) {
+            handler.getBufferPool().release(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    private void onResponse(long nowNanos) throws IOException {
+        NioRequest request = awaiting.pollFirst();
+        boolean early = false;
+        if (request == null) {
+            // the server responded before the whole request was written, e.g. because the body is too large
+            request = queued.pollFirst();
+            early = true;
+            if (request == null || !request.isStarted()) {
+                throw new IOException("Received response to a request which has not been sent");
+            }
+        }
+        responses++;
+        request.complete(parser.getStatusCode(), parser.getReasonPhrase(), parser.getBody());
+        if (!parser.isKeepAlive() || early) {
+            closing = true;
+        }
+        parser.reset();
+        if (getLoad() == 0) {
+            idleSinceNanos = nowNanos;
+        }
+    }
+
+    private void onEndOfStream(long nowNanos) throws IOException {
+        if (parser.finish()) {
+            onResponse(nowNanos);
+            closing = true;
+            return;
+        }
+        if (getLoad() == 0 && !parser.isStarted()) {
+            // idle connection closed by the server
+            closing = true;
+            return;
+        }
+        throw new EOFException("Connection closed by the server before the response was received");
+    }
+
+    private void updateInterest() {
+        if (closed || !key.isValid()) {
+            return;
+        }
+        int interest;
+        if (!connected) {
+            interest = SelectionKey.OP_CONNECT;
+        } else if (!handshaken) {
+            interest = SelectionKey.OP_READ | (transport.hasPendingOutput() ? SelectionKey.OP_WRITE : 0);
+        } else {
+            boolean pendingWrite = transport.hasPendingOutput() ||
+                    (writeBuffer != null && writeBuffer.hasRemaining()) || (!queued.isEmpty() && !closing);
+            interest = SelectionKey.OP_READ | (pendingWrite ? SelectionKey.OP_WRITE : 0);
+        }
+        if (key.interestOps() != interest) {
+            key.interestOps(interest);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package backtrace.io.http;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Report sent by {@link NioRequestHandler}. Request head and multipart body are prepared before the request
+ * is queued, attachments are read from disk into the write buffer of the connection while the request is sent
+ */
+class NioRequest {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(NioRequest.class);
+    private static final String CRLF = "\r\n";
+    private final String endpoint;
+    private final String host;
+    private final int port;
+    private final boolean https;
+    private final BacktraceReport report;
+    private final CompletableFuture<BacktraceResult> future;
+    private final Executor completionExecutor;
+    private final List<Segment> segments;
+    private final long deadlineNanos; // 0 if the request has no timeout
+    private final long timeoutMillis;
+    private int segmentIndex = 0;
+    private long segmentOffset = 0;
+    private FileChannel file;
+    private boolean started = false;
+    private boolean writtenOnReusedConnection = false;
+    private int attempts = 0;
+
+    private NioRequest(URL url, BacktraceReport report, CompletableFuture<BacktraceResult> future,
+                       Executor completionExecutor, List<Segment> segments, long deadlineNanos, long timeoutMillis) {
+        this.host = url.getHost();
+        this.port = PooledConnection.getPort(url);
+        this.https = PooledConnection.isHttps(url);
+        this.endpoint = (https ? "https://" : "http://") + host.toLowerCase(Locale.ROOT) + ":" + port;
+        this.report = report;
+        this.future = future;
+        this.completionExecutor = completionExecutor;
+        this.segments = segments;
+        this.deadlineNanos = deadlineNanos;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates request with body of known length, JSON is serialized and sizes of attachments are read
+     *
+     * @param url                submission url
+     * @param data               error report
+     * @param future             future completed with the result of the request
+     * @param completionExecutor executor which completes the future
+     * @param timeoutMillis      request timeout in milliseconds, zero means no timeout
+     * @return request ready to be sent
+     * @throws IOException if the url is not HTTP url, the report can not be serialized
+     *                     or an attachment does not exist
+     */
+    static NioRequest create(URL url, BacktraceData data, CompletableFuture<BacktraceResult> future,
+                             Executor completionExecutor, long timeoutMillis) throws IOException {
+        if (!"http".equalsIgnoreCase(url.getProtocol()) && !PooledConnection.isHttps(url)) {
+            throw new IOException("Unsupported protocol of submission url: " + url.getProtocol());
+        }
+        MultipartBody body = MultipartBody.create(data);
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+        String host = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+        String head = "POST " + path + " HTTP/1.1" + CRLF +
+                "Host: " + host + CRLF +
+                "Content-Type: " + MultiFormRequestHelper.getContentType() + CRLF +
+                "Content-Length: " + body.getContentLength() + CRLF +
+                "Connection: Keep-Alive" + CRLF +
+                "Cache-Control: no-cache" + CRLF + CRLF;
+
+        List<Segment> segments = new ArrayList<>();
+        segments.add(new Segment(head.getBytes(StandardCharsets.ISO_8859_1)));
+        segments.add(new Segment(MultiFormRequestHelper.getJsonHeaderBytes()));
+        segments.add(new Segment(body.getJson()));
+        segments.add(new Segment(MultiFormRequestHelper.getEndOfPartBytes()));
+        for (MultipartBody.FilePart filePart : body.getFiles()) {
+            segments.add(new Segment(filePart.header));
+            segments.add(new Segment(filePart.path, filePart.position, filePart.length));
+            segments.add(new Segment(MultiFormRequestHelper.getEndOfPartBytes()));
+        }
+        segments.add(new Segment(MultiFormRequestHelper.getEndOfRequestBytes()));
+        long deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1_000_000L : 0;
+        return new NioRequest(url, data.getReport(), future, completionExecutor, segments, deadlineNanos, timeoutMillis);
+    }
+
+    /**
+     * Returns key of the endpoint, requests to the same endpoint share connections
+     *
+     * @return scheme, host and port of the submission url
+     */
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    boolean isHttps() {
+        return https;
+    }
+
+    /**
+     * Copies next bytes of the request into the buffer
+     *
+     * @param buffer write buffer of the connection
+     * @return true if the whole request has been copied
+     * @throws IOException if an attachment can not be read or is shorter than when the request was created
+     */
+    boolean fill(ByteBuffer buffer) throws IOException {
+        started = true;
+        while (buffer.hasRemaining() && segmentIndex < segments.size()) {
+            Segment segment = segments.get(segmentIndex);
+            if (segment.bytes != null) {
+                int length = (int) Math.min(buffer.remaining(), segment.length - segmentOffset);
+                buffer.put(segment.bytes, (int) segmentOffset, length);
+                segmentOffset += length;
+            } else {
+                if (file == null) {
+                    file = FileChannel.open(segment.path, StandardOpenOption.READ);
+                }
+                int limit = buffer.limit();
+                if (buffer.remaining() > segment.length - segmentOffset) {
+                    buffer.limit(buffer.position() + (int) (segment.length - segmentOffset));
+                }
+                int read;
+                try {
+                    read = file.read(buffer, segment.position + segmentOffset);
+                } finally {
+                    buffer.limit(limit);
+                }
+                if (read == -1) {
+                    throw new EOFException("Attachment " + segment.path + " is shorter than when the request was created");
+                }
+                segmentOffset += read;
+            }
+            if (segmentOffset == segment.length) {
+                closeFile();
+                segmentIndex++;
+                segmentOffset = 0;
+            }
+        }
+        return segmentIndex == segments.size();
+    }
+
+    /**
+     * Checks whether any byte of the request has been copied to a connection
+     *
+     * @return true if the request has been started
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    boolean isWrittenOnReusedConnection() {
+        return writtenOnReusedConnection;
+    }
+
+    void setWrittenOnReusedConnection(boolean writtenOnReusedConnection) {
+        this.writtenOnReusedConnection = writtenOnReusedConnection;
+    }
+
+    /**
+     * Rewinds the request, so it can be sent again on another connection
+     *
+     * @return number of previous attempts to send the request
+     */
+    int reset() {
+        closeFile();
+        segmentIndex = 0;
+        segmentOffset = 0;
+        started = false;
+        writtenOnReusedConnection = false;
+        return ++attempts;
+    }
+
+    boolean isExpired(long nowNanos) {
+        return deadlineNanos != 0 && nowNanos - deadlineNanos >= 0;
+    }
+
+    RequestTimeoutException getTimeoutException() {
+        return new RequestTimeoutException("Request has not been completed within " + timeoutMillis + " ms");
+    }
+
+    /**
+     * Completes the request with the response, the response body is parsed by the completion executor
+     *
+     * @param statusCode   HTTP status code
+     * @param reasonPhrase HTTP reason phrase
+     * @param body         collected response body
+     */
+    void complete(int statusCode, String reasonPhrase, byte[] body) {
+        LOGGER.debug("Received response status from Backtrace API for HTTP request is: " + statusCode);
+        completeAsync(() -> {
+            try {
+                return ApiSender.handleResponse(statusCode, reasonPhrase, new ByteArrayInputStream(body), report);
+            } catch (Exception e) {
+                LOGGER.error("Sending HTTP request failed to Backtrace API", e);
+                return BacktraceResult.onError(report, e, statusCode);
+            }
+        });
+    }
+
+    /**
+     * Completes the request with an error
+     *
+     * @param exception reason of the failure
+     */
+    void fail(Exception exception) {
+        closeFile();
+        LOGGER.error("Sending HTTP request failed to Backtrace API", exception);
+        completeAsync(() -> BacktraceResult.onError(report, exception));
+    }
+
+    private void completeAsync(Supplier<BacktraceResult> result) {
+        try {
+            completionExecutor.execute(() -> future.complete(result.get()));
+        } catch (RejectedExecutionException e) {
+            future.complete(result.get());
+        }
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * Part of the request, bytes prepared before the request is sent or a range of an attachment
+     */
+    private static class Segment {
+        final byte[] bytes;
+        final Path path;
+        final long position;
+        final long length;
+
+        Segment(byte[] bytes) {
+            this.bytes = bytes;
+            this.path = null;
+            this.position = 0;
+            this.length = bytes.length;
+        }
+
+        Segment(Path path, long position, long length) {
+            this.bytes = null;
+            this.path = path;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
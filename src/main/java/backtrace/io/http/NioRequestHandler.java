@@ -0,0 +1,393 @@
+package backtrace.io.http;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.events.AsyncRequestHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends reports over HTTP/1.1 from a single selector thread, without a thread per connection.
+ * Reports are pipelined over a few persistent connections to each endpoint: the next report is written
+ * before the response to the previous one is received. Requests are written from pooled direct buffers,
+ * attachments are read into the buffers while the request is sent
+ */
+public class NioRequestHandler implements AsyncRequestHandler, Closeable {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(NioRequestHandler.class);
+    private final static String THREAD_NAME = "backtrace-nio-transport";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFERS_PER_CONNECTION = 5; // request, response and three buffers of TLS
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long ACTIVE_TICK_MILLIS = 100;
+    private static final long IDLE_TICK_MILLIS = 1000;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private final int maxConnectionsPerEndpoint;
+    private final int maxPipelinedRequests;
+    private final RequestTimeouts timeouts;
+    private final SSLContext sslContext;
+    private final Executor completionExecutor;
+    private final DirectBufferPool bufferPool;
+    private final Selector selector;
+    private final Thread selectorThread;
+    private final Queue<NioRequest> submitted = new ConcurrentLinkedQueue<>();
+    private final Map<String, Endpoint> endpoints = new HashMap<>(); // used only by the selector thread
+    private volatile boolean closed = false;
+    private volatile long openedConnections = 0;
+    private volatile long pipelinedRequests = 0;
+
+    /**
+     * Creates request handler with 2 connections per endpoint and up to 8 pipelined requests per connection
+     */
+    public NioRequestHandler() {
+        this(2, 8, new RequestTimeouts(10, 30, 0, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Creates request handler which trusts the default certificate authorities of the JVM
+     *
+     * @param maxConnectionsPerEndpoint maximum number of persistent connections to each endpoint
+     * @param maxPipelinedRequests      maximum number of requests sent on a connection without waiting for responses
+     * @param timeouts                  connect, read and request timeouts
+     */
+    public NioRequestHandler(int maxConnectionsPerEndpoint, int maxPipelinedRequests, RequestTimeouts timeouts) {
+        this(maxConnectionsPerEndpoint, maxPipelinedRequests, timeouts, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates request handler
+     *
+     * @param maxConnectionsPerEndpoint maximum number of persistent connections to each endpoint
+     * @param maxPipelinedRequests      maximum number of requests sent on a connection without waiting for responses
+     * @param timeouts                  connect, read and request timeouts
+     * @param sslContext                SSL context of HTTPS connections or null to use the default context
+     * @param completionExecutor        executor which parses responses and completes futures of requests
+     */
+    public NioRequestHandler(int maxConnectionsPerEndpoint, int maxPipelinedRequests, RequestTimeouts timeouts,
+                             SSLContext sslContext, Executor completionExecutor) {
+        if (maxConnectionsPerEndpoint < 1 || maxPipelinedRequests < 1) {
+            throw new IllegalArgumentException("Number of connections and pipelined requests should be greater than zero");
+        }
+        if (timeouts == null || completionExecutor == null) {
+            throw new NullPointerException("Timeouts and completion executor can not be null");
+        }
+        this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+        this.maxPipelinedRequests = maxPipelinedRequests;
+        this.timeouts = timeouts;
+        this.sslContext = sslContext;
+        this.completionExecutor = completionExecutor;
+        this.bufferPool = new DirectBufferPool(BUFFER_SIZE, BUFFERS_PER_CONNECTION * maxConnectionsPerEndpoint);
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open selector of NIO transport", e);
+        }
+        this.selectorThread = new Thread(this::run, THREAD_NAME);
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    /**
+     * Queues report to be sent by the selector thread
+     *
+     * @param data which should be send to Backtrace API
+     * @return future completed with information from the server about the result of processing the request
+     */
+    @Override
+    public CompletableFuture<BacktraceResult> onRequest(BacktraceData data) {
+        BacktraceReport report = data.getReport();
+        CompletableFuture<BacktraceResult> future = new CompletableFuture<>();
+        NioRequest request;
+        try {
+            if (closed) {
+                throw new IOException("NIO request handler has been closed");
+            }
+            request = NioRequest.create(new URL(data.getSubmissionUrl()), data, future, completionExecutor,
+                    timeouts.getRequestTimeoutMillis());
+        } catch (Exception e) {
+            LOGGER.error("Creating HTTP request to Backtrace API failed", e);
+            return CompletableFuture.completedFuture(BacktraceResult.onError(report, e));
+        }
+        submitted.add(request);
+        selector.wakeup();
+        if (closed && submitted.remove(request)) {
+            request.fail(new IOException("NIO request handler has been closed"));
+        }
+        return future;
+    }
+
+    /**
+     * Returns number of connections opened since the handler was created
+     *
+     * @return number of opened connections
+     */
+    public long getOpenedConnections() {
+        return openedConnections;
+    }
+
+    /**
+     * Returns number of requests written to a connection before the response to the previous request was received
+     *
+     * @return number of pipelined requests
+     */
+    public long getPipelinedRequests() {
+        return pipelinedRequests;
+    }
+
+    /**
+     * Returns number of direct buffers allocated since the handler was created, buffers are reused by connections
+     *
+     * @return number of allocated buffers
+     */
+    public long getAllocatedBuffers() {
+        return bufferPool.getAllocatedBuffers();
+    }
+
+    /**
+     * Stops the selector thread and closes connections, requests in progress fail
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    void onConnectionOpened() {
+        openedConnections++;
+    }
+
+    void onRequestPipelined() {
+        pipelinedRequests++;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select(getSelectTimeoutMillis());
+                long nowNanos = System.nanoTime();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle((NioConnection) key.attachment(), nowNanos);
+                }
+                selector.selectedKeys().clear();
+                acceptSubmitted(nowNanos);
+                checkTimeouts(nowNanos);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Selector thread of NIO request handler failed", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private long getSelectTimeoutMillis() {
+        boolean active = false;
+        boolean idle = false;
+        for (Endpoint endpoint : endpoints.values()) {
+            active |= !endpoint.pending.isEmpty();
+            for (NioConnection connection : endpoint.connections) {
+                active |= connection.getLoad() > 0 || !connection.isIdle();
+                idle = true;
+            }
+        }
+        if (active) {
+            return ACTIVE_TICK_MILLIS;
+        }
+        return idle ? IDLE_TICK_MILLIS : 0;
+    }
+
+    private void handle(NioConnection connection, long nowNanos) {
+        try {
+            connection.handle(nowNanos);
+            if (connection.isClosing()) {
+                closeConnection(connection, new IOException("Connection has been closed by the server"), true,
+                        nowNanos);
+            } else if (connection.getLoad() < maxPipelinedRequests) {
+                // responses have been received, so pending requests may be assigned to the connection
+                dispatch(endpoints.get(connection.getEndpoint()), nowNanos);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeConnection(connection, e, connection.isStale(), nowNanos);
+        }
+    }
+
+    private void acceptSubmitted(long nowNanos) {
+        NioRequest submittedRequest;
+        List<Endpoint> updated = new ArrayList<>();
+        while ((submittedRequest = submitted.poll()) != null) {
+            NioRequest request = submittedRequest;
+            Endpoint endpoint = endpoints.computeIfAbsent(request.getEndpoint(), key -> new Endpoint(request));
+            endpoint.pending.addLast(request);
+            if (!updated.contains(endpoint)) {
+                updated.add(endpoint);
+            }
+        }
+        for (Endpoint endpoint : updated) {
+            dispatch(endpoint, nowNanos);
+        }
+    }
+
+    /**
+     * Assigns pending requests of the endpoint to the least loaded connections. New connections are opened
+     * before requests are pipelined on existing connections
+     */
+    private void dispatch(Endpoint endpoint, long nowNanos) {
+        while (!endpoint.pending.isEmpty()) {
+            NioConnection connection = null;
+            for (NioConnection candidate : endpoint.connections) {
+                if (candidate.isAcceptingRequests() &&
+                        (connection == null || candidate.getLoad() < connection.getLoad())) {
+                    connection = candidate;
+                }
+            }
+            if ((connection == null || connection.getLoad() > 0) &&
+                    endpoint.connections.size() < maxConnectionsPerEndpoint) {
+                try {
+                    connection = openConnection(endpoint, nowNanos);
+                } catch (IOException | RuntimeException e) {
+                    endpoint.pending.pollFirst().fail(e);
+                    continue;
+                }
+            } else if (connection == null || connection.getLoad() >= maxPipelinedRequests) {
+                return;
+            }
+            connection.enqueue(endpoint.pending.pollFirst(), nowNanos);
+        }
+    }
+
+    private NioConnection openConnection(Endpoint endpoint, long nowNanos) throws IOException {
+        SSLEngine engine = null;
+        if (endpoint.https) {
+            try {
+                engine = (sslContext != null ? sslContext : SSLContext.getDefault())
+                        .createSSLEngine(endpoint.host, endpoint.port);
+            } catch (Exception e) {
+                throw new IOException("Can not create TLS engine", e);
+            }
+            engine.setUseClientMode(true);
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+        }
+        NioConnection connection = NioConnection.open(this, endpoint.key,
+                new InetSocketAddress(endpoint.host, endpoint.port), selector, engine, nowNanos);
+        endpoint.connections.add(connection);
+        if (connection.isClosing()) {
+            closeConnection(connection, new IOException("Connection has been closed by the server"), true, nowNanos);
+        }
+        return connection;
+    }
+
+    private void closeConnection(NioConnection connection, Exception exception, boolean resendStarted,
+                                 long nowNanos) {
+        Endpoint endpoint = endpoints.get(connection.getEndpoint());
+        endpoint.connections.remove(connection);
+        List<NioRequest> resent = connection.close(exception, resendStarted);
+        for (int i = resent.size() - 1; i >= 0; i--) {
+            NioRequest request = resent.get(i);
+            if (request.isStarted() && request.reset() >= MAX_ATTEMPTS) {
+                request.fail(exception);
+            } else {
+                endpoint.pending.addFirst(request);
+            }
+        }
+        if (!resent.isEmpty()) {
+            LOGGER.debug("Connection to " + endpoint.key + " has been closed, " + resent.size() +
+                    " requests will be sent on another connection");
+        }
+        dispatch(endpoint, nowNanos);
+    }
+
+    private void checkTimeouts(long nowNanos) {
+        Iterator<Endpoint> endpointIterator = endpoints.values().iterator();
+        while (endpointIterator.hasNext()) {
+            Endpoint endpoint = endpointIterator.next();
+            Iterator<NioRequest> pendingIterator = endpoint.pending.iterator();
+            while (pendingIterator.hasNext()) {
+                NioRequest request = pendingIterator.next();
+                if (request.isExpired(nowNanos)) {
+                    pendingIterator.remove();
+                    request.fail(request.getTimeoutException());
+                }
+            }
+            for (NioConnection connection : new ArrayList<>(endpoint.connections)) {
+                IOException timeout = connection.checkTimeouts(nowNanos, timeouts);
+                if (timeout != null) {
+                    closeConnection(connection, timeout, false, nowNanos);
+                } else if (connection.isIdle() && nowNanos - connection.getIdleSinceNanos() >= IDLE_TIMEOUT_NANOS) {
+                    closeConnection(connection, new IOException("Idle connection has been closed"), false, nowNanos);
+                }
+            }
+            if (endpoint.connections.isEmpty() && endpoint.pending.isEmpty()) {
+                endpointIterator.remove();
+            }
+        }
+    }
+
+    private void shutdown() {
+        IOException exception = new IOException("NIO request handler has been closed");
+        for (Endpoint endpoint : endpoints.values()) {
+            for (NioConnection connection : endpoint.connections) {
+                for (NioRequest request : connection.close(exception, false)) {
+                    request.fail(exception);
+                }
+            }
+            for (NioRequest request : endpoint.pending) {
+                request.fail(exception);
+            }
+        }
+        endpoints.clear();
+        NioRequest request;
+        while ((request = submitted.poll()) != null) {
+            request.fail(exception);
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Connections and requests waiting for a connection of a single host and port
+     */
+    private static class Endpoint {
+        final String key;
+        final String host;
+        final int port;
+        final boolean https;
+        final List<NioConnection> connections = new ArrayList<>();
+        final ArrayDeque<NioRequest> pending = new ArrayDeque<>();
+
+        Endpoint(NioRequest request) {
+            this.key = request.getEndpoint();
+            this.host = request.getHost();
+            this.port = request.getPort();
+            this.https = request.isHttps();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package backtrace.io.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Incremental parser of HTTP/1.1 responses read from a non-blocking connection. Bytes are passed to the parser
+ * as they arrive, pipelined responses are parsed one after another from the same stream.
+ * Body of successful response is collected up to 1 MB, body of error response up to the size of error message,
+ * the rest of the body is discarded
+ */
+class NioResponseParser {
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int MAX_SUCCESS_BODY_BYTES = 1024 * 1024;
+    private final StringBuilder line = new StringBuilder();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final byte[] copyBuffer = new byte[8192];
+    private State state = State.StatusLine;
+    private boolean started = false;
+    private int statusCode;
+    private String reasonPhrase;
+    private boolean keepAlive;
+    private boolean chunked;
+    private long contentLength;
+    private long remaining;
+    private int maxBodyBytes;
+
+    private enum State {
+        StatusLine, Headers, FixedBody, ChunkSize, ChunkData, ChunkEnd, Trailers, BodyUntilClose, Complete
+    }
+
+    /**
+     * Consumes bytes of the response until the response is complete or there are no more bytes
+     *
+     * @param input bytes read from the connection
+     * @return true if the response is complete, bytes of the next response are left in the input
+     * @throws IOException if the response is invalid
+     */
+    boolean parse(ByteBuffer input) throws IOException {
+        if (state == State.Complete) {
+            throw new IllegalStateException("Response has to be reset before the next response is parsed");
+        }
+        while (input.hasRemaining()) {
+            started = true;
+            switch (state) {
+                case FixedBody:
+                case ChunkData:
+                case BodyUntilClose:
+                    int length = (int) Math.min(input.remaining(), remaining);
+                    collect(input, length);
+                    if (state == State.BodyUntilClose) {
+                        break;
+                    }
+                    remaining -= length;
+                    if (remaining == 0) {
+                        if (state == State.FixedBody) {
+                            state = State.Complete;
+                            return true;
+                        }
+                        state = State.ChunkEnd;
+                    }
+                    break;
+                default:
+                    String completeLine = readLine(input);
+                    if (completeLine != null && onLine(completeLine)) {
+                        state = State.Complete;
+                        return true;
+                    }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Completes response whose body is read until the connection is closed by the server
+     *
+     * @return true if the response is complete
+     */
+    boolean finish() {
+        if (state == State.BodyUntilClose) {
+            state = State.Complete;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether any byte of the current response has been received
+     *
+     * @return true if the server started sending the response
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    String getReasonPhrase() {
+        return reasonPhrase;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    /**
+     * Prepares parser for the next response on the same connection
+     */
+    void reset() {
+        state = State.StatusLine;
+        started = false;
+        line.setLength(0);
+        body.reset();
+    }
+
+    private boolean onLine(String line) throws IOException {
+        switch (state) {
+            case StatusLine:
+                onStatusLine(line);
+                return false;
+            case Headers:
+                if (line.isEmpty()) {
+                    return onHeadersEnd();
+                }
+                onHeader(line);
+                return false;
+            case ChunkSize:
+                int extension = line.indexOf(';');
+                long size = parseLong((extension >= 0 ? line.substring(0, extension) : line).trim(), 16);
+                if (size == 0) {
+                    state = State.Trailers;
+                } else {
+                    remaining = size;
+                    state = State.ChunkData;
+                }
+                return false;
+            case ChunkEnd:
+                if (!line.isEmpty()) {
+                    throw new IOException("Invalid end of response chunk");
+                }
+                state = State.ChunkSize;
+                return false;
+            case Trailers:
+                // trailers are not used
+                return line.isEmpty();
+            default:
+                throw new IllegalStateException("Unexpected state of response parser: " + state);
+        }
+    }
+
+    private void onStatusLine(String statusLine) throws IOException {
+        String[] status = statusLine.split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid response status line: " + statusLine);
+        }
+        statusCode = (int) parseLong(status[1], 10);
+        reasonPhrase = status.length > 2 ? status[2] : "";
+        keepAlive = !"HTTP/1.0".equals(status[0]);
+        chunked = false;
+        contentLength = -1;
+        state = State.Headers;
+    }
+
+    private void onHeader(String header) throws IOException {
+        int separator = header.indexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        String name = header.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        String value = header.substring(separator + 1).trim();
+        if (name.equals("connection")) {
+            keepAlive = !value.equalsIgnoreCase("close");
+        } else if (name.equals("transfer-encoding")) {
+            chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+        } else if (name.equals("content-length")) {
+            contentLength = parseLong(value, 10);
+        }
+    }
+
+    private boolean onHeadersEnd() {
+        if (statusCode / 100 == 1) {
+            // interim response, the final response follows
+            state = State.StatusLine;
+            return false;
+        }
+        maxBodyBytes = statusCode == HttpURLConnection.HTTP_OK ? MAX_SUCCESS_BODY_BYTES
+                : ApiSender.MAX_ERROR_BODY_BYTES + 1;
+        if (statusCode == 204 || statusCode == 304 || (!chunked && contentLength == 0)) {
+            return true;
+        }
+        if (chunked) {
+            state = State.ChunkSize;
+        } else if (contentLength > 0) {
+            remaining = contentLength;
+            state = State.FixedBody;
+        } else {
+            remaining = Long.MAX_VALUE;
+            keepAlive = false;
+            state = State.BodyUntilClose;
+        }
+        return false;
+    }
+
+    private String readLine(ByteBuffer input) throws IOException {
+        while (input.hasRemaining()) {
+            char c = (char) (input.get() & 0xff);
+            if (c == '\n') {
+                int length = line.length();
+                String completeLine = length > 0 && line.charAt(length - 1) == '\r'
+                        ? line.substring(0, length - 1) : line.toString();
+                line.setLength(0);
+                return completeLine;
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Response line is longer than " + MAX_LINE_LENGTH + " characters");
+            }
+            line.append(c);
+        }
+        return null;
+    }
+
+    private void collect(ByteBuffer input, int length) {
+        int collected = Math.min(length, maxBodyBytes - body.size());
+        int skipped = length - collected;
+        while (collected > 0) {
+            int copied = Math.min(collected, copyBuffer.length);
+            input.get(copyBuffer, 0, copied);
+            body.write(copyBuffer, 0, copied);
+            collected -= copied;
+        }
+        input.position(input.position() + skipped);
+    }
+
+    private static long parseLong(String value, int radix) throws IOException {
+        try {
+            return Long.parseLong(value, radix);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in response: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package backtrace.io.http;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Non-blocking byte stream of a connection, plain or encrypted with TLS. Methods never block,
+ * they return zero when the socket is not ready and the caller waits for the selector
+ */
+abstract class NioTransport {
+    final SocketChannel channel;
+
+    private NioTransport(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates transport which writes bytes directly to the socket
+     *
+     * @param channel connected socket channel in non-blocking mode
+     * @return plain transport
+     */
+    static NioTransport plain(SocketChannel channel) {
+        return new PlainTransport(channel);
+    }
+
+    /**
+     * Creates transport which encrypts bytes with TLS, encrypted bytes are kept in buffers from the pool
+     *
+     * @param channel    connected socket channel in non-blocking mode
+     * @param engine     client mode TLS engine
+     * @param bufferPool pool of direct buffers
+     * @return TLS transport
+     * @throws SSLException if the handshake can not be started
+     */
+    static NioTransport tls(SocketChannel channel, SSLEngine engine, DirectBufferPool bufferPool)
+            throws SSLException {
+        return new TlsTransport(channel, engine, bufferPool);
+    }
+
+    /**
+     * Continues TLS handshake, plain connections do not need a handshake
+     *
+     * @return true if application data can be sent
+     * @throws IOException if the handshake fails
+     */
+    abstract boolean handshake() throws IOException;
+
+    /**
+     * Writes bytes from the source buffer
+     *
+     * @param source bytes to write
+     * @return number of consumed bytes, zero if the socket is not ready
+     * @throws IOException if the connection is broken
+     */
+    abstract int write(ByteBuffer source) throws IOException;
+
+    /**
+     * Writes bytes buffered by the transport
+     *
+     * @return true if there are no more buffered bytes
+     * @throws IOException if the connection is broken
+     */
+    abstract boolean flush() throws IOException;
+
+    /**
+     * Checks whether the transport keeps bytes which could not be written to the socket
+     *
+     * @return true if the transport waits until the socket is writable
+     */
+    abstract boolean hasPendingOutput();
+
+    /**
+     * Reads available bytes into the target buffer
+     *
+     * @param target buffer for read bytes
+     * @return number of read bytes, zero if no bytes are available, -1 if the server closed the connection
+     * @throws IOException if the connection is broken
+     */
+    abstract int read(ByteBuffer target) throws IOException;
+
+    /**
+     * Closes the socket and releases buffers of the transport
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class PlainTransport extends NioTransport {
+        PlainTransport(SocketChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        boolean handshake() {
+            return true;
+        }
+
+        @Override
+        int write(ByteBuffer source) throws IOException {
+            return channel.write(source);
+        }
+
+        @Override
+        boolean flush() {
+            return true;
+        }
+
+        @Override
+        boolean hasPendingOutput() {
+            return false;
+        }
+
+        @Override
+        int read(ByteBuffer target) throws IOException {
+            return channel.read(target);
+        }
+    }
+
+    private static class TlsTransport extends NioTransport {
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+        private final SSLEngine engine;
+        private final DirectBufferPool bufferPool;
+        private ByteBuffer netIn; // encrypted bytes read from the socket, in write mode
+        private ByteBuffer netOut; // encrypted bytes waiting for the socket, in read mode
+        private ByteBuffer appIn; // decrypted bytes not returned yet, in write mode
+        private boolean endOfStream = false;
+
+        TlsTransport(SocketChannel channel, SSLEngine engine, DirectBufferPool bufferPool) throws SSLException {
+            super(channel);
+            this.engine = engine;
+            this.bufferPool = bufferPool;
+            this.netIn = allocate(engine.getSession().getPacketBufferSize());
+            this.netOut = allocate(engine.getSession().getPacketBufferSize());
+            this.netOut.flip();
+            this.appIn = allocate(engine.getSession().getApplicationBufferSize());
+            engine.beginHandshake();
+        }
+
+        private ByteBuffer allocate(int size) {
+            return size <= bufferPool.getBufferSize() ? bufferPool.acquire() : ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        boolean handshake() throws IOException {
+            while (true) {
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_TASK:
+                        runDelegatedTasks();
+                        break;
+                    case NEED_WRAP:
+                        if (!flush()) {
+                            return false;
+                        }
+                        netOut.clear();
+                        SSLEngineResult wrapResult = engine.wrap(EMPTY, netOut);
+                        netOut.flip();
+                        checkNotClosed(wrapResult);
+                        if (!flush()) {
+                            return false;
+                        }
+                        break;
+                    case NEED_UNWRAP:
+                        netIn.flip();
+                        SSLEngineResult unwrapResult = engine.unwrap(netIn, appIn);
+                        netIn.compact();
+                        checkNotClosed(unwrapResult);
+                        if (unwrapResult.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                            throw new SSLException("Application data received during TLS handshake is too large");
+                        }
+                        if (unwrapResult.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                            int read = channel.read(netIn);
+                            if (read == -1) {
+                                throw new EOFException("Connection closed during TLS handshake");
+                            }
+                            if (read == 0) {
+                                return false;
+                            }
+                        }
+                        break;
+                    default:
+                        return flush();
+                }
+            }
+        }
+
+        @Override
+        int write(ByteBuffer source) throws IOException {
+            if (!flush()) {
+                return 0;
+            }
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(source, netOut);
+            netOut.flip();
+            checkNotClosed(result);
+            flush();
+            return result.bytesConsumed();
+        }
+
+        @Override
+        boolean flush() throws IOException {
+            while (netOut.hasRemaining()) {
+                if (channel.write(netOut) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean hasPendingOutput() {
+            return netOut != null && netOut.hasRemaining();
+        }
+
+        @Override
+        int read(ByteBuffer target) throws IOException {
+            if (appIn.position() == 0 && !endOfStream) {
+                if (channel.read(netIn) == -1) {
+                    endOfStream = true;
+                }
+                netIn.flip();
+                try {
+                    while (netIn.hasRemaining()) {
+                        SSLEngineResult result = engine.unwrap(netIn, appIn);
+                        if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                            endOfStream = true;
+                            break;
+                        }
+                        if (result.getStatus() != SSLEngineResult.Status.OK) {
+                            break;
+                        }
+                        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                            runDelegatedTasks();
+                        }
+                    }
+                } finally {
+                    netIn.compact();
+                }
+            }
+            appIn.flip();
+            int length = Math.min(appIn.remaining(), target.remaining());
+            int limit = appIn.limit();
+            appIn.limit(appIn.position() + length);
+            target.put(appIn);
+            appIn.limit(limit);
+            appIn.compact();
+            return length == 0 && endOfStream ? -1 : length;
+        }
+
+        @Override
+        void close() {
+            super.close();
+            bufferPool.release(netIn);
+            bufferPool.release(netOut);
+            bufferPool.release(appIn);
+            netIn = null;
+            netOut = null;
+            appIn = null;
+        }
+
+        private void runDelegatedTasks() {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+        }
+
+        private static void checkNotClosed(SSLEngineResult result) throws EOFException {
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new EOFException("TLS session has been closed by the server");
+            }
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package backtrace.io.http;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * HTTP/1.1 connection which can send many requests one after another, kept open between requests
+ * by {@link HttpConnectionPool}
+ */
+class PooledConnection implements Closeable {
+    private static final String CRLF = "\r\n";
+    private static final int CHUNK_SIZE = 128 * 1024;
+    private final String endpoint;
+    private final Socket socket;
+    private final SocketChannel channel; // null for TLS connections, which encrypt data in the Java heap
+    private final InputStream input;
+    private final OutputStream output;
+    private final byte[] chunkBuffer = new byte[CHUNK_SIZE];
+    private long idleSinceNanos;
+    private int requests = 0;
+    private boolean responseStarted = false; // a byte of the response to the current request has been read
+
+    private PooledConnection(String endpoint, Socket socket) throws IOException {
+        this.endpoint = endpoint;
+        this.socket = socket;
+        this.channel = socket.getChannel();
+        this.input = new BufferedInputStream(socket.getInputStream());
+        this.output = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Opens connection to the host of the url, https connections are verified against the host name
+     *
+     * @param url      endpoint url
+     * @param endpoint key of the endpoint in the pool
+     * @param timeouts connect timeout and read timeout of TLS handshake
+     * @return opened connection
+     * @throws IOException if the connection can not be opened
+     */
+    static PooledConnection open(URL url, String endpoint, RequestTimeouts timeouts) throws IOException {
+        String host = url.getHost();
+        int port = getPort(url);
+        Socket socket = SocketChannel.open().socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeouts.getConnectTimeoutMillis());
+            socket.setSoTimeout(timeouts.getReadTimeoutMillis());
+            socket.setTcpNoDelay(true);
+            if (isHttps(url)) {
+                SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, host, port, true);
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+                socket = sslSocket;
+            }
+            return new PooledConnection(endpoint, socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    static boolean isHttps(URL url) {
+        return "https".equalsIgnoreCase(url.getProtocol());
+    }
+
+    static int getPort(URL url) {
+        return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    long getIdleSinceNanos() {
+        return idleSinceNanos;
+    }
+
+    void setIdleSinceNanos(long idleSinceNanos) {
+        this.idleSinceNanos = idleSinceNanos;
+    }
+
+    /**
+     * Checks whether the connection has already been used for a request
+     *
+     * @return {@code true} if the connection has been reused from the pool
+     */
+    boolean isReused() {
+        return requests > 0;
+    }
+
+    boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    /**
+     * Checks whether the request failed because the server closed the connection before it started to respond,
+     * which happens when the server closes a connection idle in the pool. Such request has not been processed
+     * by the server and can be sent again, unlike a request whose response timed out or was interrupted
+     *
+     * @param e failure of the request
+     * @return {@code true} if the connection has been reset or closed before any byte of the response was read
+     */
+    boolean isClosedBeforeResponse(IOException e) {
+        // sockets of channels report reset and broken pipe as plain IOException, so only timeouts are excluded
+        return !responseStarted && !(e instanceof InterruptedIOException);
+    }
+
+    /**
+     * Sets maximum time of waiting for data from the server
+     *
+     * @param readTimeoutMillis timeout in milliseconds, zero means no timeout
+     * @throws IOException if the timeout can not be set
+     */
+    void setReadTimeout(int readTimeoutMillis) throws IOException {
+        socket.setSoTimeout(readTimeoutMillis);
+    }
+
+    /**
+     * Writes POST request to the connection, body of known length is sent with Content-Length header,
+     * other bodies are sent in chunks
+     *
+     * @param url         request url
+     * @param contentType value of Content-Type header
+     * @param body        writes request body, request headers are written when the body is opened
+     * @throws IOException if the request can not be written
+     */
+    void writeRequest(URL url, String contentType, ApiSender.RequestBody body) throws IOException {
+        requests++;
+        responseStarted = false;
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+        String host = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+        BodyOutputStream[] bodyStream = new BodyOutputStream[1];
+        ApiSender.RequestStream requestStream = (contentEncoding, contentLength) -> {
+            if (bodyStream[0] != null) {
+                throw new IllegalStateException("Request body has already been opened");
+            }
+            String head = "POST " + path + " HTTP/1.1" + CRLF +
+                    "Host: " + host + CRLF +
+                    "Content-Type: " + contentType + CRLF +
+                    (contentEncoding != null ? "Content-Encoding: " + contentEncoding + CRLF : "") +
+                    (contentLength >= 0 ? "Content-Length: " + contentLength : "Transfer-Encoding: chunked") + CRLF +
+                    "Connection: Keep-Alive" + CRLF +
+                    "Cache-Control: no-cache" + CRLF + CRLF;
+            output.write(head.getBytes(StandardCharsets.ISO_8859_1));
+            bodyStream[0] = contentLength >= 0
+                    ? new FixedLengthOutputStream(output, channel, contentLength)
+                    : new ChunkedOutputStream(output, chunkBuffer, channel);
+            return bodyStream[0];
+        };
+        body.write(requestStream);
+        if (bodyStream[0] == null) {
+            requestStream.open(null, 0);
+        }
+        bodyStream[0].finish();
+        output.flush();
+    }
+
+    /**
+     * Reads status and headers of the response. The body is read from the stream of the response
+     * and has to be drained before the connection is used for the next request
+     *
+     * @return response status and stream of its body
+     * @throws IOException if the response can not be read
+     */
+    HttpResponse readResponse() throws IOException {
+        HttpResponse response;
+        do {
+            response = readSingleResponse();
+        } while (response.statusCode / 100 == 1);
+        return response;
+    }
+
+    private HttpResponse readSingleResponse() throws IOException {
+        String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException("Connection closed before response status");
+        }
+        String[] status = statusLine.split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid response status line: " + statusLine);
+        }
+        int statusCode = Integer.parseInt(status[1]);
+        String reasonPhrase = status.length > 2 ? status[2] : "";
+        boolean keepAlive = !"HTTP/1.0".equals(status[0]);
+        boolean chunked = false;
+        long contentLength = -1;
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String name = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(separator + 1).trim();
+            if (name.equals("connection")) {
+                keepAlive = !value.equalsIgnoreCase("close");
+            } else if (name.equals("transfer-encoding")) {
+                chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+            } else if (name.equals("content-length")) {
+                contentLength = Long.parseLong(value);
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Connection closed while reading response headers");
+        }
+
+        InputStream body;
+        if (statusCode / 100 == 1 || statusCode == 204 || statusCode == 304) {
+            body = new ResponseBodyStream(false, 0);
+        } else if (chunked) {
+            body = new ResponseBodyStream(true, 0);
+        } else if (contentLength >= 0) {
+            body = new ResponseBodyStream(false, contentLength);
+        } else {
+            body = new ResponseBodyStream(false, Long.MAX_VALUE);
+            keepAlive = false;
+        }
+        return new HttpResponse(this, statusCode, reasonPhrase, body, keepAlive);
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) != -1) {
+            responseStarted = true;
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Response status and stream of its body
+     */
+    static class HttpResponse {
+        final PooledConnection connection;
+        final int statusCode;
+        final String reasonPhrase;
+        final InputStream body;
+        final boolean keepAlive;
+
+        HttpResponse(PooledConnection connection, int statusCode, String reasonPhrase, InputStream body,
+                     boolean keepAlive) {
+            this.connection = connection;
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.body = body;
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    /**
+     * Reads response body of known length, in chunks or until the connection is closed by the server.
+     * Closing the body does not close the connection
+     */
+    private class ResponseBodyStream extends InputStream {
+        private final boolean chunked;
+        private long remaining; // bytes left in the body or the current chunk, Long.MAX_VALUE until the end of stream
+        private boolean finished;
+
+        ResponseBodyStream(boolean chunked, long length) {
+            this.chunked = chunked;
+            this.remaining = chunked ? 0 : length;
+            this.finished = !chunked && length == 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (chunked && remaining == 0 && !nextChunk()) {
+                finished = true;
+                return -1;
+            }
+            int read = input.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                if (remaining == Long.MAX_VALUE) {
+                    finished = true;
+                    return -1;
+                }
+                throw new EOFException("Connection closed while reading response body");
+            }
+            if (remaining != Long.MAX_VALUE) {
+                remaining -= read;
+            }
+            if (remaining == 0) {
+                if (chunked) {
+                    readLine();
+                } else {
+                    finished = true;
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // the rest of the body is drained by the caller, so the connection can be reused
+        }
+
+        private boolean nextChunk() throws IOException {
+            String sizeLine = readLine();
+            if (sizeLine == null) {
+                throw new EOFException("Connection closed while reading response body");
+            }
+            int extension = sizeLine.indexOf(';');
+            long size = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+            if (size == 0) {
+                String trailer;
+                while ((trailer = readLine()) != null && !trailer.isEmpty()) {
+                    // trailers are not used
+                }
+                return false;
+            }
+            remaining = size;
+            return true;
+        }
+    }
+
+    /**
+     * Stream of request body written to the connection, closing the body does not close the connection
+     */
+    private abstract static class BodyOutputStream extends FilterOutputStream implements FileTransferStream {
+        final SocketChannel channel;
+
+        BodyOutputStream(OutputStream out, SocketChannel channel) {
+            super(out);
+            this.channel = channel;
+        }
+
+        @Override
+        public void flush() {
+            // the connection is flushed when the body is finished
+        }
+
+        @Override
+        public void close() {
+            // closing the body must not close the connection
+        }
+
+        /**
+         * Writes end of the body
+         *
+         * @throws IOException if the body can not be finished
+         */
+        abstract void finish() throws IOException;
+
+        /**
+         * Sends range of the file directly from the file to the socket
+         *
+         * @param file     file to send
+         * @param position position in the file of the first sent byte
+         * @param length   number of bytes to send
+         * @throws IOException if an I/O error occurs or the file is shorter than the range
+         */
+        void transfer(FileChannel file, long position, long length) throws IOException {
+            out.flush();
+            long end = position + length;
+            while (position < end) {
+                long transferred = file.transferTo(position, end - position, channel);
+                if (transferred <= 0 && position >= file.size()) {
+                    throw new EOFException("Attachment has been truncated while being sent");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Writes request body of known length directly to the connection. On plain connections a file is transferred
+     * by the operating system
+     */
+    private static class FixedLengthOutputStream extends BodyOutputStream {
+        private long remaining;
+
+        FixedLengthOutputStream(OutputStream out, SocketChannel channel, long length) {
+            super(out, channel);
+            this.remaining = length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            reserve(len);
+            out.write(b, off, len);
+        }
+
+        @Override
+        public boolean transferFrom(FileChannel file, long position, long length) throws IOException {
+            if (channel == null) {
+                return false;
+            }
+            reserve(length);
+            transfer(file, position, length);
+            return true;
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (remaining != 0) {
+                throw new IOException("Request body is shorter than its Content-Length by " + remaining + " bytes");
+            }
+        }
+
+        private void reserve(long length) throws IOException {
+            if (length > remaining) {
+                throw new IOException("Request body is longer than its Content-Length");
+            }
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Writes request body in chunks of the same size as chunked streaming mode of {@link java.net.HttpURLConnection}.
+     * On plain connections a file is sent as a single chunk transferred by the operating system
+     */
+    private static class ChunkedOutputStream extends BodyOutputStream {
+        private final byte[] buffer;
+        private int count = 0;
+
+        ChunkedOutputStream(OutputStream out, byte[] buffer, SocketChannel channel) {
+            super(out, channel);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeChunk();
+                }
+                int length = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, length);
+                count += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public boolean transferFrom(FileChannel file, long position, long length) throws IOException {
+            if (channel == null) {
+                return false;
+            }
+            if (length == 0) {
+                return true;
+            }
+            writeChunk();
+            out.write((Long.toHexString(length) + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+            transfer(file, position, length);
+            out.write(CRLF.getBytes(StandardCharsets.ISO_8859_1));
+            return true;
+        }
+
+        @Override
+        void finish() throws IOException {
+            writeChunk();
+            out.write(("0" + CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        private void writeChunk() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            out.write((Integer.toHexString(count) + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+            out.write(buffer, 0, count);
+            out.write(CRLF.getBytes(StandardCharsets.ISO_8859_1));
+            count = 0;
+        }
+    }
+}
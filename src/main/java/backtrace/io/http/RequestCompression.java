@@ -0,0 +1,175 @@
+package backtrace.io.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compresses request bodies which are large enough to benefit from compression,
+ * and counts how well and how fast the bodies are compressed
+ */
+public class RequestCompression {
+    private final CompressionType type;
+    private final int level;
+    private final int threshold;
+    private final LongAdder compressedReports = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+
+    /**
+     * Creates request compression
+     *
+     * @param type      content encoding of compressed requests
+     * @param level     compression level from 0 (no compression) to 9 (best compression)
+     * @param threshold minimum size of the request body in bytes for which the request is compressed
+     */
+    public RequestCompression(CompressionType type, int level, int threshold) {
+        if (type == null) {
+            throw new NullPointerException("Compression type can not be null");
+        }
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Compression level should be between 0 and 9");
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold should be greater than or equal to zero");
+        }
+        this.type = type;
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    public CompressionType getType() {
+        return type;
+    }
+
+    /**
+     * Returns number of reports sent with compressed body
+     *
+     * @return number of compressed reports
+     */
+    public long getCompressedReports() {
+        return compressedReports.sum();
+    }
+
+    /**
+     * Returns total size of request bodies before compression
+     *
+     * @return number of bytes before compression
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * Returns total size of compressed request bodies
+     *
+     * @return number of bytes sent
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Returns size of compressed request bodies relative to their size before compression
+     *
+     * @return value between 0 and 1 for compressible data, lower is better
+     */
+    public double getCompressionRatio() {
+        long uncompressed = uncompressedBytes.sum();
+        return uncompressed == 0 ? 0 : (double) compressedBytes.sum() / uncompressed;
+    }
+
+    /**
+     * Returns total time spent by sender threads on compression
+     *
+     * @return compression time in milliseconds
+     */
+    public long getCompressionTimeMillis() {
+        return compressionNanos.sum() / 1000000;
+    }
+
+    /**
+     * Returns average time spent on compression of a single report
+     *
+     * @return compression time in microseconds
+     */
+    public double getAverageCompressionTimeMicros() {
+        long reports = compressedReports.sum();
+        return reports == 0 ? 0 : compressionNanos.sum() / 1000.0 / reports;
+    }
+
+    /**
+     * Writes request body, compressed if it reaches the threshold. Up to threshold bytes of the body are buffered
+     * before the request stream is opened, so small bodies are sent uncompressed
+     *
+     * @param requestStream opens stream to which the body is written
+     * @param body          writes uncompressed request body
+     * @throws IOException if an I/O error occurs
+     */
+    void write(ApiSender.RequestStream requestStream, ApiSender.RequestBody body) throws IOException {
+        ThresholdOutputStream outputStream = new ThresholdOutputStream(requestStream);
+        try {
+            body.write((contentEncoding, contentLength) -> outputStream);
+            outputStream.finish();
+        } finally {
+            outputStream.end();
+        }
+        CompressingOutputStream compressingStream = outputStream.compressingStream;
+        if (compressingStream == null) {
+            return;
+        }
+        compressedReports.increment();
+        uncompressedBytes.add(compressingStream.getUncompressedBytes());
+        compressedBytes.add(compressingStream.getCompressedBytes());
+        compressionNanos.add(compressingStream.getCompressionNanos());
+    }
+
+    /**
+     * Buffers the beginning of request body until it reaches the threshold, then opens compressed request stream
+     */
+    private class ThresholdOutputStream extends OutputStream {
+        private final ApiSender.RequestStream requestStream;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private CompressingOutputStream compressingStream;
+
+        ThresholdOutputStream(ApiSender.RequestStream requestStream) {
+            this.requestStream = requestStream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (compressingStream == null && (long) buffer.size() + len >= threshold) {
+                compressingStream = new CompressingOutputStream(requestStream.open(type.getContentEncoding(), -1),
+                        type, level);
+                buffer.writeTo(compressingStream);
+                buffer = null;
+            }
+            if (compressingStream != null) {
+                compressingStream.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        void finish() throws IOException {
+            if (compressingStream != null) {
+                compressingStream.finish();
+                return;
+            }
+            buffer.writeTo(requestStream.open(null, buffer.size()));
+        }
+
+        void end() {
+            if (compressingStream != null) {
+                compressingStream.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package backtrace.io.http;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Exception which represents a request aborted because it has not been completed within the request timeout
+ */
+public class RequestTimeoutException extends SocketTimeoutException {
+    private static final long serialVersionUID = -6000190867460813801L;
+
+    /**
+     * Create new instance with message
+     *
+     * @param message exception message
+     */
+    RequestTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,220 @@
+package backtrace.io.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Timeouts of requests sent to Backtrace API. Connect and read timeouts limit a single blocking operation,
+ * request timeout limits the whole request, including sending the body and reading the response.
+ * A request which exceeds the request timeout is aborted by closing its connection,
+ * requests in progress can also be aborted when the client is closed
+ */
+public class RequestTimeouts {
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(RequestTimeouts.class);
+    private final static String THREAD_NAME = "backtrace-request-timeout";
+    static final RequestTimeouts NONE = new RequestTimeouts(0, 0, 0, TimeUnit.MILLISECONDS);
+    private static ScheduledThreadPoolExecutor scheduler;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final long requestTimeoutMillis;
+    private final Set<Deadline> deadlines = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates timeouts of requests, zero means no timeout
+     *
+     * @param connectTimeout maximum time of opening a connection
+     * @param readTimeout    maximum time of waiting for data from the server
+     * @param requestTimeout maximum time of the whole request
+     * @param unit           the time unit of the timeout arguments
+     */
+    public RequestTimeouts(long connectTimeout, long readTimeout, long requestTimeout, TimeUnit unit) {
+        if (connectTimeout < 0 || readTimeout < 0 || requestTimeout < 0) {
+            throw new IllegalArgumentException("Timeouts should be greater than or equal to zero");
+        }
+        this.connectTimeoutMillis = toIntMillis(connectTimeout, unit);
+        this.readTimeoutMillis = toIntMillis(readTimeout, unit);
+        this.requestTimeoutMillis = unit.toMillis(requestTimeout);
+    }
+
+    private static int toIntMillis(long timeout, TimeUnit unit) {
+        long millis = unit.toMillis(timeout);
+        if (timeout > 0 && millis == 0) {
+            return 1;
+        }
+        return (int) Math.min(millis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns maximum time of opening a connection
+     *
+     * @return timeout in milliseconds, zero means no timeout
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Returns maximum time of waiting for data from the server
+     *
+     * @return timeout in milliseconds, zero means no timeout
+     */
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * Returns maximum time of the whole request
+     *
+     * @return timeout in milliseconds, zero means no timeout
+     */
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /**
+     * Starts measuring the request timeout
+     *
+     * @return deadline of the request
+     */
+    Deadline start() {
+        Deadline deadline = new Deadline(requestTimeoutMillis, deadlines);
+        deadlines.add(deadline);
+        if (requestTimeoutMillis > 0) {
+            deadline.future = getScheduler().schedule(deadline::expire, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return deadline;
+    }
+
+    /**
+     * Completes the future of a request with {@link TimeoutException} if it is not completed within
+     * the request timeout, like {@code CompletableFuture.orTimeout} which is not available on Java 8
+     *
+     * @param request future of the request
+     * @param <T>     type of the request result
+     * @return the same future
+     */
+    public <T> CompletableFuture<T> orTimeout(CompletableFuture<T> request) {
+        if (requestTimeoutMillis <= 0 || request.isDone()) {
+            return request;
+        }
+        ScheduledFuture<?> timeout = getScheduler().schedule(
+                () -> request.completeExceptionally(new TimeoutException()), requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        request.whenComplete((result, exception) -> timeout.cancel(false));
+        return request;
+    }
+
+    /**
+     * Aborts requests in progress by closing their connections, so threads blocked on the connections are released
+     */
+    public void abortRequests() {
+        for (Deadline deadline : deadlines) {
+            deadline.abort();
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Deadline of a single request, when it expires the connection of the request is closed,
+     * so the thread blocked on the connection is released
+     */
+    static class Deadline {
+        private final long timeoutMillis;
+        private final Set<Deadline> deadlines;
+        private volatile Closeable connection;
+        private volatile boolean expired = false;
+        private volatile boolean aborted = false;
+        private ScheduledFuture<?> future;
+
+        private Deadline(long timeoutMillis, Set<Deadline> deadlines) {
+            this.timeoutMillis = timeoutMillis;
+            this.deadlines = deadlines;
+        }
+
+        /**
+         * Sets connection which is closed when the deadline expires
+         *
+         * @param connection connection used by the request
+         */
+        void guard(Closeable connection) {
+            this.connection = connection;
+            if (expired || aborted) {
+                close(connection);
+            }
+        }
+
+        boolean isExpired() {
+            return expired;
+        }
+
+        /**
+         * Stops measuring the timeout, the connection will not be closed
+         */
+        void cancel() {
+            connection = null;
+            deadlines.remove(this);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * Creates exception which describes the expired deadline
+         *
+         * @param cause exception thrown when the connection has been closed
+         * @return timeout exception
+         */
+        RequestTimeoutException toException(Exception cause) {
+            RequestTimeoutException exception = new RequestTimeoutException(
+                    "Request has not been completed within " + timeoutMillis + " ms");
+            exception.initCause(cause);
+            return exception;
+        }
+
+        private void expire() {
+            expired = true;
+            Closeable connection = this.connection;
+            if (connection != null) {
+                LOGGER.warn("Request has not been completed within " + timeoutMillis + " ms, closing the connection");
+                close(connection);
+            }
+        }
+
+        private void abort() {
+            aborted = true;
+            Closeable connection = this.connection;
+            if (connection != null) {
+                LOGGER.warn("Request is aborted because the client is closed, closing the connection");
+                close(connection);
+            }
+        }
+
+        private static void close(Closeable connection) {
+            try {
+                connection.close();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Closing connection of expired request failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package backtrace.io.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for the submission endpoint of Backtrace API. Received reports are parsed and recorded,
+ * responses are taken from a script, so tests and benchmarks can send reports over real HTTP connections
+ * and inject latency, error responses, connection resets and requests which are never answered.
+ * <pre>{@code
+ * try (BacktraceStubServer server = BacktraceStubServer.start()) {
+ *     server.enqueue(StubResponse.status(503), StubResponse.ok().withLatency(100, TimeUnit.MILLISECONDS));
+ *     ApiSender.sendReport(server.getUrl(), data);
+ * }
+ * }</pre>
+ */
+public class BacktraceStubServer implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String url;
+    private final ConcurrentLinkedQueue<StubResponse> script = new ConcurrentLinkedQueue<>();
+    private final List<StubRequest> requests = new CopyOnWriteArrayList<>();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile StubResponse defaultResponse = StubResponse.ok();
+
+    private BacktraceStubServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+        this.url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+    }
+
+    /**
+     * Starts the server on a free port of the loopback interface
+     *
+     * @return running server, which accepts every report until responses are scripted
+     * @throws IOException if the server can not be started
+     */
+    public static BacktraceStubServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "backtrace-stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BacktraceStubServer stubServer = new BacktraceStubServer(server, executor);
+        server.createContext("/", stubServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        return stubServer;
+    }
+
+    /**
+     * Returns submission url of the server
+     *
+     * @return url with the same query as urls created from {@code BacktraceCredentials}
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Adds responses for the next requests, in order. When the script is used up, the default response is sent
+     *
+     * @param responses responses of the following requests
+     * @return this server
+     */
+    public BacktraceStubServer enqueue(StubResponse... responses) {
+        script.addAll(Arrays.asList(responses));
+        return this;
+    }
+
+    /**
+     * Sets response for requests which are not scripted, {@link StubResponse#ok()} by default
+     *
+     * @param response response for every request without a scripted response
+     */
+    public void setDefaultResponse(StubResponse response) {
+        this.defaultResponse = response;
+    }
+
+    /**
+     * Returns requests received so far, in the order in which their bodies were read
+     *
+     * @return received requests
+     */
+    public List<StubRequest> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * Waits until the server receives the number of requests
+     *
+     * @param count   expected number of requests
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return true if the requests have been received in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean awaitRequests(int count, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (requests) {
+            while (requests.size() < count) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(requests, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the server, black holed requests are released and their connections are closed
+     */
+    @Override
+    public void close() {
+        closed.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        StubResponse response = script.poll();
+        if (response == null) {
+            response = defaultResponse;
+        }
+        try {
+            StubRequest request = record(exchange);
+            if (response.getLatencyMillis() > 0 && closed.await(response.getLatencyMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            switch (response.getAction()) {
+                case Reset:
+                    // exchange closed before response headers are sent closes the connection
+                    return;
+                case BlackHole:
+                    closed.await();
+                    return;
+                default:
+                    respond(exchange, response, request.getRxId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private StubRequest record(HttpExchange exchange) throws IOException {
+        Map<String, String> headers = new TreeMap<>();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            headers.put(header.getKey().toLowerCase(Locale.ROOT), String.join(",", header.getValue()));
+        }
+        byte[] body = StubRequest.readBody(exchange.getRequestBody(), headers.get("content-encoding"));
+        StubRequest request = new StubRequest(exchange.getRequestMethod(), exchange.getRequestURI().getRawQuery(),
+                headers, body, UUID.randomUUID().toString());
+        synchronized (requests) {
+            requests.add(request);
+            requests.notifyAll();
+        }
+        return request;
+    }
+
+    private static void respond(HttpExchange exchange, StubResponse response, String rxId) throws IOException {
+        byte[] body = response.getBody(rxId);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (response.getRetryAfterSeconds() >= 0) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(response.getRetryAfterSeconds()));
+        }
+        exchange.sendResponseHeaders(response.getStatusCode(), body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package backtrace.io.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Report received by {@link BacktraceStubServer}, the multipart body is decompressed and split into parts
+ */
+public class StubRequest {
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+    private static final Pattern NAME = Pattern.compile("name=\"([^\"]*)\"");
+    private static final Pattern FILE_NAME = Pattern.compile("filename=\"([^\"]*)\"");
+    private final String method;
+    private final String query;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private final List<Part> parts;
+    private final String rxId;
+
+    StubRequest(String method, String query, Map<String, String> headers, byte[] body, String rxId)
+            throws IOException {
+        this.method = method;
+        this.query = query;
+        this.headers = headers;
+        this.body = body;
+        this.parts = parseParts(headers.get("content-type"), body);
+        this.rxId = rxId;
+    }
+
+    /**
+     * Reads request body, compressed body is decompressed according to {@code Content-Encoding} header
+     *
+     * @param inputStream     request body
+     * @param contentEncoding value of {@code Content-Encoding} header or null
+     * @return uncompressed body
+     * @throws IOException if the body can not be read or decompressed
+     */
+    static byte[] readBody(InputStream inputStream, String contentEncoding) throws IOException {
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            inputStream = new GZIPInputStream(inputStream);
+        } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+            inputStream = new InflaterInputStream(inputStream);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns query of the submission url, e.g. {@code format=json&token=token}
+     *
+     * @return query or null if the url has no query
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns value of the request header
+     *
+     * @param name case insensitive header name
+     * @return header value or null if the header was not sent
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns uncompressed request body
+     *
+     * @return multipart body
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    /**
+     * Returns part of the multipart body
+     *
+     * @param name name of the part from {@code Content-Disposition} header
+     * @return part or null if the body does not contain such part
+     */
+    public Part getPart(String name) {
+        for (Part part : parts) {
+            if (name.equals(part.getName())) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns serialized report
+     *
+     * @return JSON from {@code upload_file} part or null if the part has not been sent
+     */
+    public String getJson() {
+        Part part = getPart("upload_file");
+        return part == null ? null : new String(part.getContent(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns content of the attachment
+     *
+     * @param fileName attachment file name without directory
+     * @return sent bytes of the attachment or null if the attachment has not been sent
+     */
+    public byte[] getAttachment(String fileName) {
+        Part part = getPart("attachment_" + fileName);
+        return part == null ? null : part.getContent();
+    }
+
+    /**
+     * Returns identifier of the report returned in {@code _rxid} of a successful response
+     *
+     * @return report identifier
+     */
+    public String getRxId() {
+        return rxId;
+    }
+
+    private static List<Part> parseParts(String contentType, byte[] body) throws IOException {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return Collections.emptyList();
+        }
+        Matcher boundaryMatcher = BOUNDARY.matcher(contentType);
+        if (!boundaryMatcher.find()) {
+            throw new IOException("Multipart body has no boundary: " + contentType);
+        }
+        byte[] delimiter = ("--" + boundaryMatcher.group(1)).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] separator = ("\r\n--" + boundaryMatcher.group(1)).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] endOfHeaders = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        List<Part> parts = new ArrayList<>();
+        int position = indexOf(body, delimiter, 0);
+        if (position == -1) {
+            throw new IOException("Multipart body does not start with the boundary");
+        }
+        position += delimiter.length;
+        while (true) {
+            if (startsWith(body, position, "--")) {
+                return parts;
+            }
+            if (!startsWith(body, position, "\r\n")) {
+                throw new IOException("Boundary is not followed by a line separator at " + position);
+            }
+            int headersStart = position + 2;
+            int headersEnd = indexOf(body, endOfHeaders, headersStart);
+            if (headersEnd == -1) {
+                throw new IOException("Headers of a part are not terminated at " + headersStart);
+            }
+            int contentStart = headersEnd + endOfHeaders.length;
+            int contentEnd = indexOf(body, separator, contentStart);
+            if (contentEnd == -1) {
+                throw new IOException("Part starting at " + headersStart + " is not terminated by the boundary");
+            }
+            String partHeaders = new String(body, headersStart, headersEnd - headersStart, StandardCharsets.UTF_8);
+            byte[] content = new byte[contentEnd - contentStart];
+            System.arraycopy(body, contentStart, content, 0, content.length);
+            parts.add(new Part(partHeaders, content));
+            position = contentEnd + separator.length;
+        }
+    }
+
+    private static boolean startsWith(byte[] body, int position, String prefix) {
+        if (position + prefix.length() > body.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (body[position + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] body, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= body.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (body[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Part of the multipart body
+     */
+    public static class Part {
+        private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final String name;
+        private final String fileName;
+        private final byte[] content;
+
+        Part(String headerLines, byte[] content) {
+            for (String line : headerLines.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+            }
+            String disposition = headers.getOrDefault("Content-Disposition", "");
+            this.name = find(NAME, disposition);
+            this.fileName = find(FILE_NAME, disposition);
+            this.content = content;
+        }
+
+        private static String find(Pattern pattern, String value) {
+            // "filename" also contains "name", so the name is matched at a parameter boundary
+            Matcher matcher = pattern.matcher(value);
+            while (matcher.find()) {
+                int start = matcher.start();
+                if (start == 0 || value.charAt(start - 1) == ';' || value.charAt(start - 1) == ' ') {
+                    return matcher.group(1);
+                }
+            }
+            return null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * Returns value of the part header
+         *
+         * @param name case insensitive header name
+         * @return header value or null
+         */
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
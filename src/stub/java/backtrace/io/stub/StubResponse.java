@@ -0,0 +1,148 @@
+package backtrace.io.stub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Behaviour of {@link BacktraceStubServer} for a single request. Every response is sent after the whole
+ * request body has been read, so the client can finish the upload before the fault happens
+ */
+public class StubResponse {
+    /**
+     * What the server does after the request body has been read
+     */
+    enum Action {
+        /**
+         * Sends status code and body
+         */
+        Respond,
+
+        /**
+         * Closes the connection without sending a response
+         */
+        Reset,
+
+        /**
+         * Keeps the connection open without sending a response until the server is closed
+         */
+        BlackHole
+    }
+
+    private final Action action;
+    private final int statusCode;
+    private final byte[] body;
+    private final int retryAfterSeconds;
+    private final long latencyMillis;
+
+    private StubResponse(Action action, int statusCode, byte[] body, int retryAfterSeconds, long latencyMillis) {
+        this.action = action;
+        this.statusCode = statusCode;
+        this.body = body;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Accepts the report, the response contains a new {@code _rxid}
+     *
+     * @return successful response
+     */
+    public static StubResponse ok() {
+        return new StubResponse(Action.Respond, 200, null, -1, 0);
+    }
+
+    /**
+     * Rejects the report with the status code and an error body in the format of Backtrace API
+     *
+     * @param statusCode HTTP status code, e.g. 400 or 503
+     * @return error response
+     */
+    public static StubResponse status(int statusCode) {
+        return status(statusCode, getErrorBody(statusCode));
+    }
+
+    /**
+     * Responds with the status code and the body
+     *
+     * @param statusCode HTTP status code
+     * @param body       UTF-8 response body
+     * @return response
+     */
+    public static StubResponse status(int statusCode, String body) {
+        return new StubResponse(Action.Respond, statusCode, body.getBytes(StandardCharsets.UTF_8), -1, 0);
+    }
+
+    /**
+     * Rejects the report with status 429 and {@code Retry-After} header
+     *
+     * @param retryAfterSeconds value of {@code Retry-After} header
+     * @return response of a rate limited endpoint
+     */
+    public static StubResponse tooManyRequests(int retryAfterSeconds) {
+        return new StubResponse(Action.Respond, 429, getErrorBody(429).getBytes(StandardCharsets.UTF_8),
+                retryAfterSeconds, 0);
+    }
+
+    /**
+     * Closes the connection after the request body has been read, the client receives no response
+     *
+     * @return reset connection
+     */
+    public static StubResponse reset() {
+        return new StubResponse(Action.Reset, 0, null, -1, 0);
+    }
+
+    /**
+     * Reads the request body and never responds, the connection is closed when the server is closed.
+     * Client timeouts are needed to complete such request
+     *
+     * @return connection without response
+     */
+    public static StubResponse blackHole() {
+        return new StubResponse(Action.BlackHole, 0, null, -1, 0);
+    }
+
+    /**
+     * Delays the response, reset or black hole by the latency
+     *
+     * @param latency time to wait after the request body has been read
+     * @param unit    unit of the latency
+     * @return delayed copy of this response
+     */
+    public StubResponse withLatency(long latency, TimeUnit unit) {
+        return new StubResponse(action, statusCode, body, retryAfterSeconds, unit.toMillis(latency));
+    }
+
+    private static String getErrorBody(int statusCode) {
+        return "{\"error\":{\"code\":" + statusCode + ",\"message\":\"stub error\"}}";
+    }
+
+    Action getAction() {
+        return action;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns body of the response
+     *
+     * @param rxId identifier of the received report
+     * @return body with the identifier for successful responses, error body otherwise
+     */
+    byte[] getBody(String rxId) {
+        if (body != null) {
+            return body;
+        }
+        return ("{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    long getLatencyMillis() {
+        return latencyMillis;
+    }
+}
@@ -6,26 +6,35 @@ import backtrace.io.http.ApiSender;
 import backtrace.io.http.BacktraceResult;
 import backtrace.io.http.BacktraceResultStatus;
 import backtrace.io.http.HttpException;
+import backtrace.io.stub.BacktraceStubServer;
+import backtrace.io.stub.StubRequest;
+import backtrace.io.stub.StubResponse;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.powermock.api.mockito.PowerMockito;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
-@RunWith(PowerMockRunner.class)
-@PrepareForTest({URL.class, URLConnection.class, ApiSender.class})
 public class ApiSenderTest {
     final private String fileAttachmentName = "test.txt";
+    final private String fileAttachmentContent = "This is the content to write into a file";
+    private BacktraceStubServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = BacktraceStubServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
 
     @Test
     public void createHttpException() {
@@ -41,7 +50,7 @@ public class ApiSenderTest {
     @Before
     public void createFileAttachment() {
         try {
-            String content = "This is the content to write into a file";
+            String content = fileAttachmentContent;
             File file = new File(fileAttachmentName);
             FileWriter fw = new FileWriter(file.getAbsoluteFile());
             BufferedWriter bw = new BufferedWriter(fw);
@@ -82,52 +91,31 @@ public class ApiSenderTest {
     @Test
     public void sendReportWithSuccessfulResponse() throws Exception {
         // GIVEN
-        String url = "https://backtrace.io/";
-        String rxId = "03000000-cdf4-a003-0000-000000000000";
-        String jsonSuccessResponse = "{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}";
         BacktraceReport backtraceReport = new BacktraceReport("");
 
-        // GIVEN - mock URL and HttpURLConnection
-        URL u = PowerMockito.mock(URL.class);
-        PowerMockito.whenNew(URL.class).withArguments(url).thenReturn(u);
-        HttpURLConnection huc = PowerMockito.mock(HttpURLConnection.class);
-        PowerMockito.when(u.openConnection()).thenReturn(huc);
-        PowerMockito.when(huc.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
-
-        PowerMockito.doNothing().when(huc).connect();
-        PowerMockito.when(huc.getOutputStream()).thenReturn(new ByteArrayOutputStream());
-        PowerMockito.when(huc.getInputStream()).thenReturn(new ByteArrayInputStream(jsonSuccessResponse.getBytes()));
-
         // WHEN
-        BacktraceResult result = ApiSender.sendReport(url, new BacktraceData(backtraceReport));
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), new BacktraceData(backtraceReport));
 
         // THEN
         Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
         Assert.assertEquals(backtraceReport, result.getBacktraceReport());
-        Assert.assertEquals(rxId, result.getRxId());
+        Assert.assertEquals(1, server.getRequests().size());
+        StubRequest request = server.getRequests().get(0);
+        Assert.assertEquals(request.getRxId(), result.getRxId());
+        Assert.assertEquals("format=json&token=token", request.getQuery());
+        Assert.assertTrue(request.getJson().contains(backtraceReport.getUuid().toString()));
     }
 
     @Test
     public void sendReportWithServerError() throws Exception {
         // GIVEN
-        String url = "https://backtrace.io/";
         String jsonErrorResponse = "{\"error\":{\"code\":32768, \"message\":\"malformed request\"}}";
         String message = String.format("%s: %s", HttpURLConnection.HTTP_BAD_REQUEST, jsonErrorResponse);
         BacktraceReport backtraceReport = new BacktraceReport("");
-
-        // GIVEN - mock URL and HttpURLConnection
-        URL u = PowerMockito.mock(URL.class);
-        PowerMockito.whenNew(URL.class).withArguments(url).thenReturn(u);
-        HttpURLConnection huc = PowerMockito.mock(HttpURLConnection.class);
-        PowerMockito.when(u.openConnection()).thenReturn(huc);
-        PowerMockito.when(huc.getResponseCode()).thenReturn(HttpURLConnection.HTTP_BAD_REQUEST);
-
-        PowerMockito.doNothing().when(huc).connect();
-        PowerMockito.when(huc.getOutputStream()).thenReturn(new ByteArrayOutputStream());
-        PowerMockito.when(huc.getErrorStream()).thenReturn(new ByteArrayInputStream(jsonErrorResponse.getBytes()));
+        server.enqueue(StubResponse.status(HttpURLConnection.HTTP_BAD_REQUEST, jsonErrorResponse));
 
         // WHEN
-        BacktraceResult result = ApiSender.sendReport(url, new BacktraceData(backtraceReport));
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), new BacktraceData(backtraceReport));
 
         // THEN
         Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
@@ -138,32 +126,49 @@ public class ApiSenderTest {
     @Test
     public void sendAttachmentFile() throws Exception {
         // GIVEN
-        String url = "https://backtrace.io/";
-        String rxId = "03000000-cdf4-a003-0000-000000000000";
-        String jsonSuccessResponse = "{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}";
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         BacktraceReport backtraceReport = new BacktraceReport("", new HashMap<String, Object>() {{
             put("custom-attribute", "custom-value");
         }}, new ArrayList<String>() {{
             add(fileAttachmentName);
         }});
 
-        // GIVEN - mock URL and HttpURLConnection
-        URL u = PowerMockito.mock(URL.class);
-        PowerMockito.whenNew(URL.class).withArguments(url).thenReturn(u);
-        HttpURLConnection huc = PowerMockito.mock(HttpURLConnection.class);
-        PowerMockito.when(u.openConnection()).thenReturn(huc);
-        PowerMockito.when(huc.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), new BacktraceData(backtraceReport));
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        StubRequest request = server.getRequests().get(0);
+        Assert.assertEquals(fileAttachmentContent,
+                new String(request.getAttachment(fileAttachmentName), StandardCharsets.UTF_8));
+        Assert.assertTrue(request.getJson().contains("custom-value"));
+    }
 
-        PowerMockito.doNothing().when(huc).connect();
-        PowerMockito.when(huc.getOutputStream()).thenReturn(outputStream);
-        PowerMockito.when(huc.getInputStream()).thenReturn(new ByteArrayInputStream(jsonSuccessResponse.getBytes()));
+    @Test
+    public void sendReportWithDelayedResponse() {
+        // GIVEN
+        server.enqueue(StubResponse.ok().withLatency(200, TimeUnit.MILLISECONDS));
 
         // WHEN
-        BacktraceResult result = ApiSender.sendReport(url, new BacktraceData(backtraceReport));
+        long start = System.nanoTime();
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), new BacktraceData(new BacktraceReport("")));
 
         // THEN
         Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
-        Assert.assertTrue(outputStream.size() > 0);
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void sendReportWithResetConnection() {
+        // GIVEN
+        server.enqueue(StubResponse.reset());
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), new BacktraceData(new BacktraceReport("")));
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertNull(result.getHttpStatusCode());
+        Assert.assertTrue(result.shouldRetry());
+        Assert.assertEquals(1, server.getRequests().size());
     }
 }
@@ -0,0 +1,127 @@
+package backtrace.io;
+
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class AsyncRequestHandlerTest {
+    private final String message = "message";
+    private final List<CompletableFuture<Void>> requests = new CopyOnWriteArrayList<>();
+    private final List<String> submissionUrls = new CopyOnWriteArrayList<>();
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("https://submit.backtrace.io/universe/token/json");
+        config.disableDatabase();
+    }
+
+    private BacktraceClient createClient() {
+        BacktraceClient client = new BacktraceClient(config);
+        client.setCustomAsyncRequestHandler(data -> {
+            CompletableFuture<Void> request = new CompletableFuture<>();
+            submissionUrls.add(data.getSubmissionUrl());
+            requests.add(request);
+            return request.thenApply(ignored -> BacktraceResult.onSuccess(data.getReport(), message));
+        });
+        return client;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void keepManyRequestsInProgressOnSingleSenderThread() throws Exception {
+        // GIVEN
+        final int reports = 200;
+        config.setMaxConcurrentRequests(reports);
+        final BacktraceClient client = createClient();
+        final List<CompletableFuture<BacktraceResult>> results = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < reports; i++) {
+            results.add(client.sendAsync(message));
+        }
+        waitUntil(() -> requests.size() == reports);
+        final boolean anyCompleted = results.stream().anyMatch(CompletableFuture::isDone);
+        requests.forEach(request -> request.complete(null));
+
+        // THEN
+        Assert.assertEquals(reports, requests.size());
+        Assert.assertFalse(anyCompleted);
+        Assert.assertEquals(1, client.getMetrics().getWorkers().size());
+        for (CompletableFuture<BacktraceResult> result : results) {
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertTrue(client.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(config.getSubmissionUrl(), submissionUrls.get(0));
+        client.close();
+    }
+
+    @Test
+    public void limitNumberOfRequestsInProgress() throws Exception {
+        // GIVEN
+        final int maxRequests = 2;
+        config.setMaxConcurrentRequests(maxRequests);
+        final BacktraceClient client = createClient();
+
+        // WHEN
+        for (int i = 0; i < 5; i++) {
+            client.sendAsync(message);
+        }
+        waitUntil(() -> requests.size() == maxRequests);
+        Thread.sleep(100);
+        final int requestsBeforeResponse = requests.size();
+        requests.get(0).complete(null);
+        waitUntil(() -> requests.size() == maxRequests + 1);
+
+        // THEN
+        Assert.assertEquals(maxRequests, requestsBeforeResponse);
+        Assert.assertEquals(maxRequests + 1, requests.size());
+        Assert.assertFalse(client.await(100, TimeUnit.MILLISECONDS));
+        requests.forEach(request -> request.complete(null));
+        waitUntil(() -> requests.size() == 5);
+        requests.forEach(request -> request.complete(null));
+        Assert.assertTrue(client.await(5, TimeUnit.SECONDS));
+        client.close();
+    }
+
+    @Test
+    public void completeFutureExceptionallyWhenRequestFails() throws Exception {
+        // GIVEN
+        final BacktraceClient client = new BacktraceClient(config);
+        final IllegalStateException exception = new IllegalStateException(message);
+        client.setCustomAsyncRequestHandler(data -> {
+            CompletableFuture<BacktraceResult> request = new CompletableFuture<>();
+            request.completeExceptionally(exception);
+            return request;
+        });
+
+        // WHEN
+        CompletableFuture<BacktraceResult> result = client.sendAsync(message);
+
+        // THEN
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail("Future should be completed exceptionally");
+        } catch (ExecutionException e) {
+            Assert.assertSame(exception, e.getCause());
+        }
+        Assert.assertTrue(client.await(5, TimeUnit.SECONDS));
+        client.close();
+    }
+}
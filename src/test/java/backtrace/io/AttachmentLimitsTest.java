@@ -0,0 +1,231 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.HttpClientRequestHandler;
+import backtrace.io.http.HttpConnectionPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class AttachmentLimitsTest {
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        requestBodies.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        byte[] response = "{\"response\":\"ok\",\"_rxid\":\"03000000-cdf4-a003-0000-000000000000\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private static File createLog(int lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append(String.format("line %05d\n", i));
+        }
+        return createFile(".log", content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static File createFile(String suffix, byte[] content) throws IOException {
+        File file = File.createTempFile("backtrace", suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static String tail(File file, int bytes) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        return new String(content, content.length - bytes, bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BacktraceData createData(File... attachments) {
+        String[] paths = new String[attachments.length];
+        for (int i = 0; i < attachments.length; i++) {
+            paths[i] = attachments[i].getAbsolutePath();
+        }
+        return new BacktraceData(new BacktraceReport("message", Arrays.asList(paths)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shareReportBudgetBetweenLargeAttachments() throws IOException {
+        // GIVEN
+        File small = createLog(10); // 110 bytes
+        File medium = createLog(100); // 1100 bytes
+        File large = createLog(1000); // 11000 bytes
+        BacktraceData data = createData(small, medium, large);
+
+        // WHEN
+        data.limitAttachments(5000, 1500);
+
+        // THEN
+        Assert.assertEquals(110, data.getAttachmentLimit(small.getAbsolutePath()));
+        Assert.assertEquals(695, data.getAttachmentLimit(medium.getAbsolutePath()));
+        Assert.assertEquals(695, data.getAttachmentLimit(large.getAbsolutePath()));
+        Assert.assertEquals(2, data.getAttributes().get("attachments.truncated"));
+        Map<String, Object> truncated = (Map<String, Object>) data.getAnnotations().get("Truncated attachments");
+        Assert.assertEquals(2, truncated.size());
+        Map<String, Object> largeInfo = (Map<String, Object>) truncated.get(large.getName());
+        Assert.assertEquals(11000L, largeInfo.get("size"));
+        Assert.assertEquals(695L, largeInfo.get("sent"));
+    }
+
+    @Test
+    public void removeLimitsWhenDisabled() throws IOException {
+        // GIVEN
+        File log = createLog(100);
+        BacktraceData data = createData(log);
+        data.limitAttachments(100, 0);
+
+        // WHEN
+        data.limitAttachments(0, 0);
+
+        // THEN
+        Assert.assertEquals(-1, data.getAttachmentLimit(log.getAbsolutePath()));
+        Assert.assertFalse(data.getAttributes().containsKey("attachments.truncated"));
+        Assert.assertFalse(data.getAnnotations().containsKey("Truncated attachments"));
+    }
+
+    @Test
+    public void sendTailOfTextAttachment() throws IOException {
+        // GIVEN
+        File log = createLog(1000);
+        BacktraceData data = createData(log);
+        data.limitAttachments(1100, 0);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, data);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        String body = requestBodies.get(0);
+        Assert.assertTrue(body.contains("Content-Type: null\r\n\r\n" + tail(log, 1100) + "\r\n--*****"));
+        Assert.assertFalse(body.contains("line 00899"));
+        Assert.assertTrue(body.contains("\"attachments.truncated\":1"));
+    }
+
+    @Test
+    public void sendTailOfTextAttachmentOnPooledConnection() throws IOException {
+        // GIVEN
+        File log = createLog(100000);
+        BacktraceData data = createData(log);
+        data.limitAttachments(200000, 0);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, data, pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertTrue(requestBodies.get(0).contains("Content-Type: null\r\n\r\n" +
+                tail(log, 200000) + "\r\n--*****"));
+    }
+
+    @Test
+    public void sendTailOfTextAttachmentWithHttpClient() throws Exception {
+        // GIVEN
+        File log = createLog(1000);
+        BacktraceData data = createData(log);
+        data.setSubmissionUrl(url);
+        data.limitAttachments(1100, 0);
+
+        // WHEN
+        BacktraceResult result = new HttpClientRequestHandler().onRequest(data).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertTrue(requestBodies.get(0).contains("Content-Type: null\r\n\r\n" +
+                tail(log, 1100) + "\r\n--*****"));
+    }
+
+    @Test
+    public void skipBinaryAttachmentWhichExceedsLimit() throws IOException {
+        // GIVEN
+        File image = createFile(".png", new byte[2048]);
+        File log = createLog(10);
+        BacktraceData data = createData(image, log);
+        data.limitAttachments(1024, 0);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, data);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(0, data.getAttachmentLimit(image.getAbsolutePath()));
+        String body = requestBodies.get(0);
+        Assert.assertFalse(body.contains("attachment_" + image.getName()));
+        Assert.assertTrue(body.contains("attachment_" + log.getName()));
+    }
+
+    @Test
+    public void applyAttachmentLimitsFromConfig() throws Exception {
+        // GIVEN
+        File log = createLog(1000);
+        BacktraceConfig config = new BacktraceConfig(url);
+        config.disableDatabase();
+        config.setAttachmentLimits(0, 550);
+        BacktraceClient client = new BacktraceClient(config);
+
+        // WHEN
+        BacktraceResult result = client.sendAsync(new BacktraceReport("message",
+                Arrays.asList(log.getAbsolutePath()))).get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertTrue(requestBodies.get(0).contains("Content-Type: null\r\n\r\n" +
+                tail(log, 550) + "\r\n--*****"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNegativeAttachmentLimit() {
+        new BacktraceConfig(url).setAttachmentLimits(-1, 0);
+    }
+}
@@ -0,0 +1,150 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceAggregatorTest {
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+    }
+
+    private Exception createException(String message) {
+        return new IllegalStateException(message);
+    }
+
+    @Test
+    public void identicalExceptionsHaveSameFingerprint() {
+        // GIVEN
+        BacktraceReport first = null;
+        BacktraceReport second = null;
+        for (int i = 0; i < 2; i++) {
+            BacktraceReport report = new BacktraceReport(createException(Integer.toString(i)));
+            if (first == null) {
+                first = report;
+            } else {
+                second = report;
+            }
+        }
+        BacktraceReport other = new BacktraceReport(new IllegalArgumentException());
+
+        // THEN
+        Assert.assertEquals(first.getFingerprint(5), second.getFingerprint(5));
+        Assert.assertNotEquals(first.getFingerprint(5), other.getFingerprint(5));
+    }
+
+    @Test
+    public void collapseIdenticalReportsInWindow() throws Exception {
+        // GIVEN
+        final int occurrences = 100;
+        final List<BacktraceData> sent = new CopyOnWriteArrayList<>();
+        config.setAggregationWindow(200, TimeUnit.MILLISECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            sent.add(data);
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        CompletableFuture<BacktraceResult> first = null;
+        CompletableFuture<BacktraceResult> last = null;
+        for (int i = 0; i < occurrences; i++) {
+            last = client.sendAsync(createException(Integer.toString(i)));
+            first = first == null ? last : first;
+        }
+        BacktraceResult firstResult = first.get(5, TimeUnit.SECONDS);
+        BacktraceResult lastResult = last.get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, firstResult.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, lastResult.getStatus());
+        Assert.assertEquals(2, sent.size());
+        Assert.assertNull(sent.get(0).getAttributes().get(BacktraceAggregator.OCCURRENCES_ATTRIBUTE));
+        Map<String, Object> attributes = sent.get(1).getAttributes();
+        Assert.assertEquals(Integer.toString(occurrences - 1), attributes.get(BacktraceAggregator.OCCURRENCES_ATTRIBUTE));
+        Assert.assertNotNull(attributes.get(BacktraceAggregator.FIRST_SEEN_ATTRIBUTE));
+        Assert.assertNotNull(attributes.get(BacktraceAggregator.LAST_SEEN_ATTRIBUTE));
+    }
+
+    @Test
+    public void sendFirstReportImmediately() throws Exception {
+        // GIVEN
+        final List<BacktraceData> sent = new CopyOnWriteArrayList<>();
+        config.setAggregationWindow(1, TimeUnit.HOURS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            sent.add(data);
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        BacktraceResult result = client.sendAsync(createException("first")).get(5, TimeUnit.SECONDS);
+        client.close(false);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void awaitAggregatedReports() throws Exception {
+        // GIVEN
+        final List<BacktraceData> sent = new CopyOnWriteArrayList<>();
+        config.setAggregationWindow(300, TimeUnit.MILLISECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            sent.add(data);
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        for (int i = 0; i < 3; i++) {
+            client.send(createException(Integer.toString(i)));
+        }
+        boolean completed = client.await(5, TimeUnit.SECONDS);
+        int sentBeforeClose = sent.size();
+        client.close();
+
+        // THEN
+        Assert.assertTrue(completed);
+        Assert.assertEquals(2, sentBeforeClose);
+        Assert.assertEquals("2", sent.get(1).getAttributes().get(BacktraceAggregator.OCCURRENCES_ATTRIBUTE));
+    }
+
+    @Test
+    public void sendAggregatedReportsOnClose() throws Exception {
+        // GIVEN
+        final List<BacktraceData> sent = new CopyOnWriteArrayList<>();
+        config.setAggregationWindow(1, TimeUnit.HOURS);
+        config.setAwaitMessagesOnClose(true);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            sent.add(data);
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        client.send(new IllegalStateException());
+        client.send(new IllegalArgumentException());
+        client.send("message");
+        client.close();
+
+        // THEN
+        Assert.assertEquals(3, sent.size());
+    }
+}
@@ -0,0 +1,204 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.helpers.FileHelper;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BacktraceCircuitBreakerTest {
+    private final String databasePath = "backtrace-circuit-breaker-database";
+    private final String url = "https://backtrace.io/";
+
+    @Before
+    @After
+    public void cleanDatabaseDir() throws Exception {
+        FileHelper.deleteRecursive(new File(databasePath));
+    }
+
+    @Test
+    public void openAfterConsecutiveFailures() {
+        // GIVEN
+        BacktraceCircuitBreaker circuitBreaker = new BacktraceCircuitBreaker(url, 2, TimeUnit.MINUTES.toNanos(1));
+
+        // WHEN
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        boolean allowedBeforeThreshold = circuitBreaker.allowRequest();
+        circuitBreaker.onFailure();
+
+        // THEN
+        Assert.assertTrue(allowedBeforeThreshold);
+        Assert.assertEquals(CircuitBreakerState.Open, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.allowRequest());
+        Assert.assertEquals(1, circuitBreaker.getOpenedCount());
+    }
+
+    @Test
+    public void allowSingleProbeAfterOpenDuration() {
+        // GIVEN
+        BacktraceCircuitBreaker circuitBreaker = new BacktraceCircuitBreaker(url, 1, 0);
+        circuitBreaker.onFailure();
+
+        // WHEN
+        boolean probe = circuitBreaker.allowRequest();
+        boolean secondRequest = circuitBreaker.allowRequest();
+
+        // THEN
+        Assert.assertTrue(probe);
+        Assert.assertFalse(secondRequest);
+        Assert.assertEquals(CircuitBreakerState.HalfOpen, circuitBreaker.getState());
+        Assert.assertEquals(1, circuitBreaker.getHalfOpenedCount());
+    }
+
+    @Test
+    public void failedProbeOpensCircuitAgain() {
+        // GIVEN
+        BacktraceCircuitBreaker circuitBreaker = new BacktraceCircuitBreaker(url, 1, 0);
+        circuitBreaker.onFailure();
+        circuitBreaker.allowRequest();
+
+        // WHEN
+        circuitBreaker.onFailure();
+
+        // THEN
+        Assert.assertEquals(CircuitBreakerState.Open, circuitBreaker.getState());
+        Assert.assertEquals(2, circuitBreaker.getOpenedCount());
+    }
+
+    @Test
+    public void releasedProbeCanBeSentAgain() {
+        // GIVEN
+        BacktraceCircuitBreaker circuitBreaker = new BacktraceCircuitBreaker(url, 1, TimeUnit.MILLISECONDS.toNanos(100));
+        circuitBreaker.onFailure();
+        while (!circuitBreaker.allowRequest()) {
+            Thread.yield();
+        }
+
+        // WHEN
+        circuitBreaker.releaseProbe();
+
+        // THEN
+        Assert.assertEquals(CircuitBreakerState.Open, circuitBreaker.getState());
+        Assert.assertTrue(circuitBreaker.isAvailable());
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        Assert.assertEquals(1, circuitBreaker.getHalfOpenedCount());
+    }
+
+    @Test
+    public void successfulProbeClosesCircuit() throws InterruptedException {
+        // GIVEN
+        BacktraceCircuitBreaker circuitBreaker = new BacktraceCircuitBreaker(url, 1, 0);
+        circuitBreaker.onFailure();
+        Thread.sleep(20);
+        circuitBreaker.allowRequest();
+
+        // WHEN
+        boolean closed = circuitBreaker.onSuccess();
+
+        // THEN
+        Assert.assertTrue(closed);
+        Assert.assertEquals(CircuitBreakerState.Closed, circuitBreaker.getState());
+        Assert.assertEquals(1, circuitBreaker.getClosedCount());
+        Assert.assertTrue(circuitBreaker.getTimeOpenMillis() >= 20);
+    }
+
+    @Test
+    public void storeReportsInDatabaseWhileCircuitIsOpen() throws Exception {
+        // GIVEN
+        final long openDuration = 300;
+        final List<String> sentMessages = new CopyOnWriteArrayList<>();
+        final AtomicBoolean available = new AtomicBoolean(false);
+        final BacktraceConfig config = new BacktraceConfig(url, "token");
+        config.setDatabasePath(databasePath);
+        config.setDatabaseRetryLimit(0);
+        config.setCircuitBreaker(2, openDuration, TimeUnit.MILLISECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            if (!available.get()) {
+                return BacktraceResult.onError(data.getReport(), new Exception());
+            }
+            sentMessages.add(data.getReport().getMessage());
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        client.sendAsync("1").get(5, TimeUnit.SECONDS);
+        client.sendAsync("2").get(5, TimeUnit.SECONDS);
+        BacktraceResult spilled = client.sendAsync(new BacktraceReport("3")).get(5, TimeUnit.SECONDS);
+        BacktraceCircuitBreaker circuitBreaker = client.getMetrics().getCircuitBreakers().get(0);
+        CircuitBreakerState stateAfterFailures = circuitBreaker.getState();
+
+        available.set(true);
+        Thread.sleep(openDuration);
+        BacktraceResult probe = client.sendAsync("4").get(5, TimeUnit.SECONDS);
+        client.await(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(CircuitBreakerState.Open, stateAfterFailures);
+        Assert.assertEquals(BacktraceResultStatus.ServerError, spilled.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, probe.getStatus());
+        Assert.assertEquals(CircuitBreakerState.Closed, circuitBreaker.getState());
+        Assert.assertEquals(EndpointSelector.redact(url + "post?format=json&token=token"), circuitBreaker.getUrl());
+        Assert.assertFalse(circuitBreaker.getUrl().contains("token=token"));
+        Assert.assertEquals(1, circuitBreaker.getOpenedCount());
+        Assert.assertEquals(1, circuitBreaker.getClosedCount());
+        Assert.assertTrue(circuitBreaker.getTimeOpenMillis() >= openDuration);
+        Assert.assertEquals(1, client.getMetrics().getSpilledReports());
+        Assert.assertTrue(sentMessages.contains("3"));
+        Assert.assertTrue(sentMessages.contains("4"));
+    }
+
+    @Test
+    public void doNotTakeProbeWhenReportIsNotSent() throws Exception {
+        // GIVEN
+        final long openDuration = 100;
+        final AtomicBoolean available = new AtomicBoolean(false);
+        final BacktraceConfig config = new BacktraceConfig(url, "token");
+        config.disableDatabase();
+        config.setDatabaseRetryLimit(0);
+        config.setCircuitBreaker(1, openDuration, TimeUnit.MILLISECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> available.get() ? BacktraceResult.onSuccess(data.getReport(), "")
+                : BacktraceResult.onError(data.getReport(), new Exception()));
+        client.setBeforeSendEvent(data -> {
+            if ("skipped".equals(data.getReport().getMessage())) {
+                throw new IllegalStateException("before send event failed");
+            }
+            return data;
+        });
+        client.sendAsync("1").get(5, TimeUnit.SECONDS);
+        BacktraceCircuitBreaker circuitBreaker = client.getMetrics().getCircuitBreakers().get(0);
+        available.set(true);
+        Thread.sleep(openDuration);
+
+        // WHEN
+        try {
+            client.sendAsync("skipped").get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        CircuitBreakerState stateAfterSkippedReport = circuitBreaker.getState();
+        BacktraceResult probe = client.sendAsync("2").get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(CircuitBreakerState.Open, stateAfterSkippedReport);
+        Assert.assertEquals(BacktraceResultStatus.Ok, probe.getStatus());
+        Assert.assertEquals(CircuitBreakerState.Closed, circuitBreaker.getState());
+        Assert.assertEquals(1, circuitBreaker.getHalfOpenedCount());
+    }
+}
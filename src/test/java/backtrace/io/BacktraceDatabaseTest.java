@@ -10,6 +10,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.LinkedList;
 
 public class BacktraceDatabaseTest {
@@ -97,6 +99,30 @@ public class BacktraceDatabaseTest {
         Assert.assertEquals(this.message, this.queue.getFirst().getBacktraceData().getReport().getMessage());
     }
 
+    @Test
+    public void loadReportStoredByPreviousRelease() throws Exception {
+        // GIVEN
+        final String fileName = "1792273935-f2586496-0c9d-4d08-a124-eba9c29ebcba.backtrace_report";
+        File databaseDir = new File(databasePath);
+        Assert.assertTrue(databaseDir.mkdirs());
+        try (InputStream stream = getClass().getResourceAsStream("/baseline-database/" + fileName)) {
+            Files.copy(stream, new File(databaseDir, fileName).toPath());
+        }
+
+        // WHEN
+        BacktraceDatabase database = BacktraceDatabase.init(this.backtraceConfig, this.queue);
+
+        // THEN
+        Assert.assertEquals(1, database.getTotalNumberOfRecords());
+        Assert.assertEquals(1, this.queue.size());
+        BacktraceData data = this.queue.getFirst().getBacktraceData();
+        Assert.assertEquals("stored by previous release", data.getReport().getException().getMessage());
+        Assert.assertEquals("baseline", data.getReport().getAttributes().get("release"));
+        Assert.assertEquals(0, data.getReport().getRetryCounter());
+        Assert.assertNull(data.getSubmissionUrl());
+        Assert.assertTrue(database.containsReport(data.getReport()));
+    }
+
     @Test
     public void saveAndDelete() {
         // GIVEN
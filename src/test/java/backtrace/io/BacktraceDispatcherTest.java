@@ -0,0 +1,106 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceDispatcherTest {
+    private final String firstUrl = "https://first.sp.backtrace.io:6098/post?format=json&token=first";
+    private final String secondUrl = "https://second.sp.backtrace.io:6098/post?format=json&token=second";
+    private BacktraceDispatcher dispatcher;
+
+    @Before
+    public void init() {
+        BacktraceConfig config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+        dispatcher = new BacktraceDispatcher(config);
+    }
+
+    @After
+    public void close() throws InterruptedException {
+        dispatcher.close();
+    }
+
+    private BacktraceClient createClient(String url, String tenant, List<BacktraceData> sent) {
+        BacktraceConfig config = new BacktraceConfig(url);
+        config.setRequestHandler(data -> {
+            sent.add(data);
+            return BacktraceResult.onSuccess(data.getReport(), Thread.currentThread().getName());
+        });
+        return new BacktraceClient(config, Collections.singletonMap("tenant", tenant), dispatcher);
+    }
+
+    @Test
+    public void sendReportsOfManyClientsWithTheirOwnEndpointsAndAttributes() throws Exception {
+        // GIVEN
+        final List<BacktraceData> sentByFirst = new CopyOnWriteArrayList<>();
+        final List<BacktraceData> sentBySecond = new CopyOnWriteArrayList<>();
+        final BacktraceClient first = createClient(firstUrl, "first", sentByFirst);
+        final BacktraceClient second = createClient(secondUrl, "second", sentBySecond);
+
+        // WHEN
+        BacktraceResult firstResult = first.sendAsync("first").get(5, TimeUnit.SECONDS);
+        BacktraceResult secondResult = second.sendAsync("second").get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(1, sentByFirst.size());
+        Assert.assertEquals(1, sentBySecond.size());
+        Assert.assertEquals(firstUrl, sentByFirst.get(0).getSubmissionUrl());
+        Assert.assertEquals(secondUrl, sentBySecond.get(0).getSubmissionUrl());
+        Assert.assertEquals("first", sentByFirst.get(0).getAttributes().get("tenant"));
+        Assert.assertEquals("second", sentBySecond.get(0).getAttributes().get("tenant"));
+        Assert.assertEquals(firstResult.getMessage(), secondResult.getMessage());
+        Assert.assertEquals(1, dispatcher.getMetrics().getWorkers().size());
+        Assert.assertSame(dispatcher.getMetrics(), first.getMetrics());
+    }
+
+    @Test
+    public void closingClientDoesNotCloseDispatcher() throws Exception {
+        // GIVEN
+        final List<BacktraceData> sent = new CopyOnWriteArrayList<>();
+        final BacktraceClient first = createClient(firstUrl, "first", sent);
+        final BacktraceClient second = createClient(secondUrl, "second", sent);
+
+        // WHEN
+        first.close(true);
+        BacktraceResult result = second.sendAsync("second").get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void storeSubmissionUrlWithReport() throws Exception {
+        // GIVEN
+        final BacktraceData data = new BacktraceData(new BacktraceReport("message"));
+        data.setSubmissionUrl(firstUrl);
+
+        // WHEN
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(data);
+        }
+        BacktraceData loaded;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            loaded = (BacktraceData) in.readObject();
+        }
+
+        // THEN
+        Assert.assertEquals(firstUrl, loaded.getSubmissionUrl());
+    }
+}
@@ -0,0 +1,261 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.database.BacktraceDatabase;
+import backtrace.io.helpers.FileHelper;
+import backtrace.io.http.BacktraceResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceQueueTest {
+    private final String databasePath = "backtrace_queue_test";
+
+    @Before
+    @After
+    public void cleanDatabaseDir() throws Exception {
+        FileHelper.deleteRecursive(new File(databasePath));
+    }
+
+    private BacktraceMessage createMessage(String message, List<BacktraceResult> rejected) {
+        return new BacktraceMessage(new BacktraceData(new BacktraceReport(message)), rejected::add);
+    }
+
+    private BacktraceMessage createMessage(String message, ReportPriority priority) {
+        return new BacktraceMessage(new BacktraceReport(message), null, false, priority, null, null, null);
+    }
+
+    private String pollMessage(BacktraceQueue queue) {
+        return queue.poll().getReport().getMessage();
+    }
+
+    @Test
+    public void dropNewestWhenQueueIsFull() {
+        // GIVEN
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(2, QueueOverflowPolicy.DropNewest, 0, metrics);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+
+        // WHEN
+        boolean first = queue.addWithLock(createMessage("1", rejected));
+        boolean second = queue.addWithLock(createMessage("2", rejected));
+        boolean third = queue.addWithLock(createMessage("3", rejected));
+
+        // THEN
+        Assert.assertTrue(first);
+        Assert.assertTrue(second);
+        Assert.assertFalse(third);
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals("1", queue.poll().getBacktraceData().getReport().getMessage());
+        Assert.assertEquals(1, metrics.getDroppedReports());
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertEquals("3", rejected.get(0).getBacktraceReport().getMessage());
+    }
+
+    @Test
+    public void dropOldestWhenQueueIsFull() {
+        // GIVEN
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(2, QueueOverflowPolicy.DropOldest, 0, metrics);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+
+        // WHEN
+        queue.addWithLock(createMessage("1", rejected));
+        queue.addWithLock(createMessage("2", rejected));
+        boolean third = queue.addWithLock(createMessage("3", rejected));
+
+        // THEN
+        Assert.assertTrue(third);
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals("2", queue.poll().getBacktraceData().getReport().getMessage());
+        Assert.assertEquals("3", queue.poll().getBacktraceData().getReport().getMessage());
+        Assert.assertEquals(1, metrics.getDroppedReports());
+        Assert.assertEquals("1", rejected.get(0).getBacktraceReport().getMessage());
+    }
+
+    @Test
+    public void blockUntilTimeoutWhenQueueIsFull() {
+        // GIVEN
+        final long timeout = 200;
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(1, QueueOverflowPolicy.Block, timeout, metrics);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+        queue.addWithLock(createMessage("1", rejected));
+
+        // WHEN
+        long start = System.nanoTime();
+        boolean added = queue.addWithLock(createMessage("2", rejected));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // THEN
+        Assert.assertFalse(added);
+        Assert.assertTrue(elapsed >= timeout);
+        Assert.assertEquals(1, metrics.getDroppedReports());
+    }
+
+    @Test
+    public void blockUntilQueueHasFreeSpace() throws InterruptedException {
+        // GIVEN
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(1, QueueOverflowPolicy.Block, 5000, metrics);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+        queue.addWithLock(createMessage("1", rejected));
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            queue.poll();
+        });
+
+        // WHEN
+        consumer.start();
+        boolean added = queue.addWithLock(createMessage("2", rejected));
+        consumer.join();
+
+        // THEN
+        Assert.assertTrue(added);
+        Assert.assertEquals(0, metrics.getDroppedReports());
+        Assert.assertEquals("2", queue.poll().getBacktraceData().getReport().getMessage());
+    }
+
+    @Test
+    public void rejectBlockedMessageWhenQueueIsClosed() throws InterruptedException {
+        // GIVEN
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(1, QueueOverflowPolicy.Block, 60000, metrics);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+        queue.addWithLock(createMessage("1", rejected));
+        Thread closer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            queue.close();
+        });
+
+        // WHEN
+        long start = System.nanoTime();
+        closer.start();
+        boolean blocked = queue.addWithLock(createMessage("2", rejected));
+        closer.join();
+        boolean afterClose = queue.addWithLock(createMessage("3", rejected));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // THEN
+        Assert.assertFalse(blocked);
+        Assert.assertFalse(afterClose);
+        Assert.assertTrue(elapsed < 5000);
+        Assert.assertEquals(2, metrics.getDroppedReports());
+        Assert.assertEquals(2, rejected.size());
+    }
+
+    @Test
+    public void spillToDatabaseWhenQueueIsFull() {
+        // GIVEN
+        final BacktraceConfig config = new BacktraceConfig("", "");
+        config.setDatabasePath(databasePath);
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(1, QueueOverflowPolicy.SpillToDatabase, 0, metrics);
+        final BacktraceDatabase database = BacktraceDatabase.init(config, new LinkedList<>());
+        queue.setDatabase(database);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+
+        // WHEN
+        queue.addWithLock(createMessage("1", rejected));
+        boolean added = queue.addWithLock(createMessage("2", rejected));
+
+        // THEN
+        Assert.assertFalse(added);
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(1, database.getTotalNumberOfRecords());
+        Assert.assertEquals(1, metrics.getSpilledReports());
+        Assert.assertEquals(0, metrics.getDroppedReports());
+    }
+
+    @Test
+    public void unboundedQueueAcceptsAllMessages() {
+        // GIVEN
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(0, QueueOverflowPolicy.DropNewest, 0, metrics);
+        final List<BacktraceResult> rejected = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 100; i++) {
+            queue.addWithLock(createMessage(Integer.toString(i), rejected));
+        }
+
+        // THEN
+        Assert.assertEquals(100, queue.size());
+        Assert.assertEquals(0, metrics.getDroppedReports());
+        Assert.assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void takeReportsWithHigherPriorityFirst() {
+        // GIVEN
+        final BacktraceQueue queue = new BacktraceQueue();
+
+        // WHEN
+        queue.addWithLock(createMessage("info", ReportPriority.Info));
+        queue.addWithLock(createMessage("error", ReportPriority.Error));
+        queue.addWithLock(createMessage("crash", ReportPriority.Crash));
+        queue.addWithLock(createMessage("info-2", ReportPriority.Info));
+
+        // THEN
+        Assert.assertEquals("crash", pollMessage(queue));
+        Assert.assertEquals("error", pollMessage(queue));
+        Assert.assertEquals("info", pollMessage(queue));
+        Assert.assertEquals("info-2", pollMessage(queue));
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void takeReportsInProportionToWeights() {
+        // GIVEN
+        final BacktraceQueue queue = new BacktraceQueue(0, QueueOverflowPolicy.DropNewest, 0,
+                PriorityDrainPolicy.Weighted, new int[]{2, 1, 1}, new BacktraceMetrics());
+        for (int i = 0; i < 3; i++) {
+            queue.addWithLock(createMessage("crash", ReportPriority.Crash));
+            queue.addWithLock(createMessage("info", ReportPriority.Info));
+        }
+
+        // WHEN
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            order.add(pollMessage(queue));
+        }
+
+        // THEN
+        Assert.assertEquals(Arrays.asList("crash", "crash", "info", "crash", "info", "info"), order);
+    }
+
+    @Test
+    public void replaceLowerPriorityReportWhenQueueIsFull() {
+        // GIVEN
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceQueue queue = new BacktraceQueue(2, QueueOverflowPolicy.DropNewest, 0, metrics);
+        queue.addWithLock(createMessage("info", ReportPriority.Info));
+        queue.addWithLock(createMessage("info-2", ReportPriority.Info));
+
+        // WHEN
+        boolean crashAdded = queue.addWithLock(createMessage("crash", ReportPriority.Crash));
+        boolean infoAdded = queue.addWithLock(createMessage("info-3", ReportPriority.Info));
+
+        // THEN
+        Assert.assertTrue(crashAdded);
+        Assert.assertFalse(infoAdded);
+        Assert.assertEquals(2, metrics.getDroppedReports());
+        Assert.assertEquals("crash", pollMessage(queue));
+        Assert.assertEquals("info", pollMessage(queue));
+    }
+}
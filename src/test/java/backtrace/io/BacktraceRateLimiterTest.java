@@ -0,0 +1,191 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BacktraceRateLimiterTest {
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+    }
+
+    @Test
+    public void allowBurstAndRejectRest() {
+        // GIVEN
+        final TokenBucket bucket = new TokenBucket(1, 3);
+
+        // WHEN
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            accepted += bucket.tryAcquire() ? 1 : 0;
+        }
+
+        // THEN
+        Assert.assertEquals(3, accepted);
+    }
+
+    @Test
+    public void refillTokensOverTime() throws InterruptedException {
+        // GIVEN
+        final TokenBucket bucket = new TokenBucket(20, 1);
+        bucket.tryAcquire();
+        boolean beforeRefill = bucket.tryAcquire();
+
+        // WHEN
+        Thread.sleep(100);
+
+        // THEN
+        Assert.assertFalse(beforeRefill);
+        Assert.assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    public void limitEachClassifierSeparately() {
+        // GIVEN
+        config.setClassifierRateLimit(0.001, 2);
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceRateLimiter rateLimiter = new BacktraceRateLimiter(config, metrics);
+
+        // WHEN
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire(IllegalStateException.class.getCanonicalName());
+            rateLimiter.tryAcquire(IllegalArgumentException.class.getCanonicalName());
+            rateLimiter.tryAcquire(null);
+        }
+
+        // THEN
+        Assert.assertEquals(9, metrics.getAcceptedReports());
+        Assert.assertEquals(6, metrics.getRateLimitedReports());
+    }
+
+    @Test
+    public void rejectedReportDoesNotTakeTokensOfOtherLimit() {
+        // GIVEN
+        config.setRateLimit(0.001, 2);
+        config.setClassifierRateLimit(0.001, 1);
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceRateLimiter rateLimiter = new BacktraceRateLimiter(config, metrics);
+        final String classifier = IllegalStateException.class.getCanonicalName();
+        final String otherClassifier = IllegalArgumentException.class.getCanonicalName();
+
+        // WHEN
+        boolean first = rateLimiter.tryAcquire(classifier);
+        boolean rejectedByClassifier = rateLimiter.tryAcquire(classifier);
+        boolean other = rateLimiter.tryAcquire(otherClassifier);
+        boolean rejectedByGlobal = rateLimiter.tryAcquire(classifier + ".Other");
+        rateLimiter.release(null);
+        boolean afterRelease = rateLimiter.tryAcquire(classifier + ".Other");
+
+        // THEN
+        Assert.assertTrue(first);
+        Assert.assertFalse(rejectedByClassifier);
+        Assert.assertTrue(other);
+        Assert.assertFalse(rejectedByGlobal);
+        Assert.assertTrue(afterRelease);
+        Assert.assertEquals(2, metrics.getAcceptedReports());
+        Assert.assertEquals(2, metrics.getRateLimitedReports());
+    }
+
+    @Test
+    public void rejectReportsOverClientLimit() throws Exception {
+        // GIVEN
+        final AtomicInteger requests = new AtomicInteger();
+        config.setRateLimit(0.001, 2);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            requests.incrementAndGet();
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        client.sendAsync("1");
+        client.sendAsync(new Exception("2"));
+        BacktraceResult rejected = client.sendAsync("3").get(5, TimeUnit.SECONDS);
+        client.send(new Exception("4"));
+        client.await(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.RateLimited, rejected.getStatus());
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(2, client.getMetrics().getAcceptedReports());
+        Assert.assertEquals(2, client.getMetrics().getRateLimitedReports());
+    }
+
+    @Test
+    public void sampledOutReportsDoNotTakeTokens() throws Exception {
+        // GIVEN
+        config.setRateLimit(0.001, 1);
+        config.setAttributeSampleRate("noisy", true, 0);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), ""));
+        final Map<String, Object> noisy = new HashMap<>();
+        noisy.put("noisy", true);
+
+        // WHEN
+        BacktraceResult sampledOut = client.sendAsync(new BacktraceReport("1", noisy)).get(5, TimeUnit.SECONDS);
+        BacktraceResult sent = client.sendAsync("2").get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.SampledOut, sampledOut.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, sent.getStatus());
+        Assert.assertEquals(1, client.getMetrics().getAcceptedReports());
+        Assert.assertEquals(0, client.getMetrics().getRateLimitedReports());
+    }
+
+    @Test
+    public void neverRejectCrashReports() throws Exception {
+        // GIVEN
+        config.setRateLimit(0.001, 1);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), ""));
+
+        // WHEN
+        client.send("1");
+        BacktraceResult crash = client.sendAsync(new BacktraceReport(new Exception("2")),
+                ReportPriority.Crash).get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, crash.getStatus());
+    }
+
+    @Test
+    public void sendMessageAndExceptionWithCrashPriority() throws Exception {
+        // GIVEN
+        config.setRateLimit(0.001, 1);
+        final List<BacktraceResult> results = new CopyOnWriteArrayList<>();
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), ""));
+        client.send("1");
+
+        // WHEN
+        client.send("2", ReportPriority.Crash, results::add);
+        client.send(new Exception("3"), ReportPriority.Crash, results::add);
+        client.await(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(2, results.size());
+        for (BacktraceResult result : results) {
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        }
+        Assert.assertEquals(0, client.getMetrics().getRateLimitedReports());
+        Assert.assertEquals(3, client.getMetrics().getAcceptedReports());
+    }
+}
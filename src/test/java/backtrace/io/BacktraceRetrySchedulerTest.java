@@ -0,0 +1,148 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.helpers.FileHelper;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceRetrySchedulerTest {
+    private final String databasePath = "backtrace-retry-database";
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+    }
+
+    @After
+    public void cleanDatabaseDir() throws Exception {
+        FileHelper.deleteRecursive(new File(databasePath));
+    }
+
+    @Test
+    public void delayGrowsExponentiallyUpToMaximum() {
+        // GIVEN
+        BacktraceRetryScheduler scheduler = new BacktraceRetryScheduler(new BacktraceQueue(), 100, 1000, 0);
+
+        // THEN
+        Assert.assertEquals(100, scheduler.getDelayMillis(1));
+        Assert.assertEquals(200, scheduler.getDelayMillis(2));
+        Assert.assertEquals(800, scheduler.getDelayMillis(4));
+        Assert.assertEquals(1000, scheduler.getDelayMillis(5));
+        Assert.assertEquals(1000, scheduler.getDelayMillis(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void jitterReducesDelay() {
+        // GIVEN
+        BacktraceRetryScheduler scheduler = new BacktraceRetryScheduler(new BacktraceQueue(), 1000, 1000, 0.5);
+
+        // THEN
+        for (int i = 0; i < 100; i++) {
+            long delay = scheduler.getDelayMillis(1);
+            Assert.assertTrue(delay > 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void reportsAreNotBlockedByReportBackingOff() throws Exception {
+        // GIVEN
+        final String failingMessage = "failing";
+        config.setDatabaseRetryLimit(1);
+        config.setRetryBackoff(2, 2, TimeUnit.SECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> failingMessage.equals(data.getReport().getMessage()) ?
+                BacktraceResult.onError(data.getReport(), new Exception()) :
+                BacktraceResult.onSuccess(data.getReport(), ""));
+
+        // WHEN
+        CompletableFuture<BacktraceResult> failing = client.sendAsync(failingMessage);
+        BacktraceResult result = client.sendAsync("message").get(1, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertFalse(failing.isDone());
+        Assert.assertEquals(BacktraceResultStatus.ServerError, failing.get(5, TimeUnit.SECONDS).getStatus());
+        client.close();
+    }
+
+    @Test
+    public void awaitWaitsForScheduledRetries() throws Exception {
+        // GIVEN
+        config.setDatabaseRetryLimit(2);
+        config.setRetryBackoff(100, 100, TimeUnit.MILLISECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onError(data.getReport(), new Exception()));
+        final BacktraceReport report = new BacktraceReport("message");
+
+        // WHEN
+        client.send(report);
+        boolean completed = client.await(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertTrue(completed);
+        Assert.assertEquals(2, report.getRetryCounter());
+    }
+
+    @Test
+    public void storeRetryCounterInDatabase() throws Exception {
+        // GIVEN
+        config = new BacktraceConfig("url", "token");
+        config.setDatabasePath(databasePath);
+        config.setDatabaseRetryLimit(3);
+        config.setRetryBackoff(1, 1, TimeUnit.MINUTES);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onError(data.getReport(), new Exception()));
+        final CompletableFuture<BacktraceResult> firstResponse = new CompletableFuture<>();
+
+        // WHEN
+        client.send(new BacktraceReport("message"), firstResponse::complete);
+        firstResponse.get(5, TimeUnit.SECONDS);
+        File[] files = new File(databasePath).listFiles();
+        BacktraceData data;
+        try (ObjectInputStream input = new ObjectInputStream(new FileInputStream(files[0]))) {
+            data = (BacktraceData) input.readObject();
+        }
+        client.close();
+
+        // THEN
+        Assert.assertEquals(1, data.getReport().getRetryCounter());
+    }
+
+    @Test
+    public void serializeRetryCounter() throws Exception {
+        // GIVEN
+        BacktraceReport report = new BacktraceReport("message");
+        report.incrementRetryCounter();
+        report.incrementRetryCounter();
+
+        // WHEN
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(output)) {
+            stream.writeObject(report);
+        }
+        BacktraceReport deserialized;
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            deserialized = (BacktraceReport) stream.readObject();
+        }
+
+        // THEN
+        Assert.assertEquals(2, deserialized.getRetryCounter());
+    }
+}
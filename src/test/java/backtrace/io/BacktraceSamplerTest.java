@@ -0,0 +1,137 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceSamplerTest {
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+    }
+
+    @Test
+    public void sampleByClassifier() {
+        // GIVEN
+        config.setClassifierSampleRate(IllegalStateException.class.getCanonicalName(), 0);
+        final BacktraceMetrics metrics = new BacktraceMetrics();
+        final BacktraceSampler sampler = new BacktraceSampler(config, metrics);
+
+        // WHEN
+        double sampledOut = sampler.sample(IllegalStateException.class.getCanonicalName(), null);
+        double sampled = sampler.sample(IllegalArgumentException.class.getCanonicalName(), null);
+
+        // THEN
+        Assert.assertEquals(0, sampledOut, 0);
+        Assert.assertEquals(1, sampled, 0);
+        Assert.assertEquals(1, metrics.getSampledOutReports());
+    }
+
+    @Test
+    public void multiplySampleRates() {
+        // GIVEN
+        config.setSampleRate(1);
+        config.setClassifierSampleRate(IllegalStateException.class.getCanonicalName(), 1);
+        config.setAttributeSampleRate("environment", "test", 1);
+        final BacktraceSampler sampler = new BacktraceSampler(config, new BacktraceMetrics());
+        final BacktraceReport report = new BacktraceReport(new IllegalStateException(),
+                Collections.singletonMap("environment", "test"));
+
+        // WHEN
+        config.setAttributeSampleRate("environment", "test", 0.5);
+        config.setSampleRate(0.5);
+        double sampleRate = 0;
+        while (sampleRate == 0) {
+            sampleRate = sampler.sample(report, sampler.sample(report.getClassifier(), null));
+        }
+
+        // THEN
+        Assert.assertEquals(0.25, sampleRate, 0);
+    }
+
+    @Test
+    public void sampleDownRepeatedExceptionsLogarithmically() {
+        // GIVEN
+        final int fullFidelity = 10;
+        final int occurrences = 1000;
+        config.setAdaptiveSampling(fullFidelity);
+        final BacktraceSampler sampler = new BacktraceSampler(config, new BacktraceMetrics());
+
+        // WHEN
+        List<Double> sampleRates = new ArrayList<>();
+        for (int i = 0; i < occurrences; i++) {
+            double sampleRate = sampler.sample(new BacktraceReport(new IllegalStateException()), 1);
+            if (sampleRate != 0) {
+                sampleRates.add(sampleRate);
+            }
+        }
+
+        // THEN
+        Assert.assertEquals(fullFidelity + 6, sampleRates.size()); // 20, 40, 80, 160, 320 and 640
+        double weightedCount = 0;
+        for (double sampleRate : sampleRates) {
+            weightedCount += 1 / sampleRate;
+        }
+        Assert.assertEquals(640, weightedCount, 0.001);
+    }
+
+    @Test
+    public void attachSampleRateToReport() throws InterruptedException {
+        // GIVEN
+        config.setAttributeSampleRate("environment", "test", 1);
+        final List<BacktraceData> sent = new ArrayList<>();
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("environment", "test");
+        final BacktraceClient client = new BacktraceClient(config, attributes);
+        client.setCustomRequestHandler(data -> {
+            sent.add(data);
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        client.send(new IllegalStateException());
+        client.await(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals("1.0", sent.get(0).getAttributes().get(BacktraceSampler.SAMPLE_RATE_ATTRIBUTE));
+    }
+
+    @Test
+    public void rejectSampledOutReportBeforeItIsCreated() throws Exception {
+        // GIVEN
+        config.setSampleRate(0);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), ""));
+
+        // WHEN
+        BacktraceResult result = client.sendAsync(new IllegalStateException()).get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.SampledOut, result.getStatus());
+        Assert.assertNull(result.getBacktraceReport());
+        Assert.assertEquals(1, client.getMetrics().getSampledOutReports());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSampleRate() {
+        // WHEN
+        config.setSampleRate(1.5);
+    }
+}
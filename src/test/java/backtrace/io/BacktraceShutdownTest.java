@@ -0,0 +1,128 @@
+package backtrace.io;
+
+import backtrace.io.helpers.FileHelper;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.stub.BacktraceStubServer;
+import backtrace.io.stub.StubResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceShutdownTest {
+    private final String databasePath = "backtrace-shutdown-database";
+    private BacktraceConfig config;
+
+    @Before
+    @After
+    public void cleanDatabaseDir() throws Exception {
+        FileHelper.deleteRecursive(new File(databasePath));
+    }
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.setDatabasePath(databasePath);
+    }
+
+    @Test
+    public void persistReportsNotSentBeforeDeadline() throws Exception {
+        // GIVEN
+        final int reports = 5;
+        final long requestTime = 200;
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            try {
+                Thread.sleep(requestTime);
+            } catch (InterruptedException ignored) {
+            }
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+        for (int i = 0; i < reports; i++) {
+            client.send(Integer.toString(i));
+        }
+
+        // WHEN
+        long start = System.nanoTime();
+        BacktraceShutdownSummary summary = client.close(Duration.ofMillis(requestTime + requestTime / 2));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // THEN
+        Assert.assertTrue(elapsed < reports * requestTime);
+        Assert.assertTrue(summary.getSentReports() >= 1);
+        Assert.assertTrue(summary.getPersistedReports() >= 1);
+        Assert.assertEquals(0, summary.getDroppedReports());
+        Assert.assertEquals(reports, summary.getSentReports() + summary.getPersistedReports());
+        File[] files = new File(databasePath).listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(summary.getPersistedReports(), files.length);
+    }
+
+    @Test
+    public void dropReportsWhenDatabaseIsDisabled() throws Exception {
+        // GIVEN
+        config.disableDatabase();
+        final CompletableFuture<Void> release = new CompletableFuture<>();
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            release.join();
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+        client.send("1");
+        CompletableFuture<BacktraceResult> queued = client.sendAsync("2");
+
+        // WHEN
+        CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            release.complete(null);
+        });
+        BacktraceShutdownSummary summary = client.close(Duration.ofMillis(100));
+
+        // THEN
+        Assert.assertEquals(1, summary.getSentReports());
+        Assert.assertEquals(0, summary.getPersistedReports());
+        Assert.assertEquals(1, summary.getDroppedReports());
+        try {
+            queued.get(5, TimeUnit.SECONDS);
+            Assert.fail("Future of dropped report should be cancelled");
+        } catch (CancellationException ignored) {
+        }
+    }
+
+    @Test
+    public void abortRequestsInProgressAtDeadline() throws Exception {
+        // GIVEN
+        final long timeout = 300;
+        try (BacktraceStubServer server = BacktraceStubServer.start()) {
+            server.setDefaultResponse(StubResponse.blackHole());
+            BacktraceConfig config = new BacktraceConfig(server.getUrl());
+            config.setDatabasePath(databasePath);
+            final BacktraceClient client = new BacktraceClient(config);
+            client.send("1");
+            Assert.assertTrue(server.awaitRequests(1, 5, TimeUnit.SECONDS));
+
+            // WHEN
+            long start = System.nanoTime();
+            BacktraceShutdownSummary summary = client.close(Duration.ofMillis(timeout));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // THEN
+            Assert.assertTrue(elapsed < timeout + 1000);
+            Assert.assertEquals(0, summary.getSentReports());
+            Assert.assertEquals(1, summary.getPersistedReports());
+            Assert.assertEquals(0, summary.getDroppedReports());
+            File[] files = new File(databasePath).listFiles();
+            Assert.assertNotNull(files);
+            Assert.assertEquals(1, files.length);
+        }
+    }
+}
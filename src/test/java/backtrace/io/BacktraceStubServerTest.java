@@ -0,0 +1,111 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.CompressionType;
+import backtrace.io.http.RequestCompression;
+import backtrace.io.http.RequestTimeouts;
+import backtrace.io.stub.BacktraceStubServer;
+import backtrace.io.stub.StubRequest;
+import backtrace.io.stub.StubResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class BacktraceStubServerTest {
+    private BacktraceStubServer server;
+    private File attachment;
+
+    @Before
+    public void setUp() throws IOException {
+        server = BacktraceStubServer.start();
+        attachment = File.createTempFile("backtrace-stub", ".txt");
+        Files.write(attachment.toPath(), "attachment content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        attachment.delete();
+    }
+
+    private BacktraceData createData() {
+        return new BacktraceData(new BacktraceReport("message", Arrays.asList(attachment.getAbsolutePath())));
+    }
+
+    @Test
+    public void parseCompressedMultipartBody() throws Exception {
+        // GIVEN
+        RequestCompression compression = new RequestCompression(CompressionType.Gzip, 6, 0);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), createData(), null, compression);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        StubRequest request = server.getRequests().get(0);
+        Assert.assertEquals("gzip", request.getHeader("Content-Encoding"));
+        Assert.assertEquals(2, request.getParts().size());
+        Assert.assertEquals("upload_file", request.getParts().get(0).getName());
+        Assert.assertTrue(request.getJson().contains("\"message\""));
+        String fileName = attachment.getName();
+        Assert.assertEquals("attachment_" + fileName, request.getParts().get(1).getFileName());
+        Assert.assertEquals("text/plain", request.getParts().get(1).getHeader("Content-Type"));
+        Assert.assertEquals("attachment content",
+                new String(request.getAttachment(fileName), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void respondInScriptedOrder() throws Exception {
+        // GIVEN
+        server.enqueue(StubResponse.status(503), StubResponse.tooManyRequests(30));
+
+        // WHEN
+        BacktraceResult unavailable = ApiSender.sendReport(server.getUrl(), createData());
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.getUrl()).openConnection();
+        connection.setDoOutput(true);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write("{}".getBytes(StandardCharsets.UTF_8));
+        }
+        int rateLimitedStatus = connection.getResponseCode();
+        String retryAfter = connection.getHeaderField("Retry-After");
+        connection.disconnect();
+        BacktraceResult accepted = ApiSender.sendReport(server.getUrl(), createData());
+
+        // THEN
+        Assert.assertEquals(503, unavailable.getHttpStatusCode().intValue());
+        Assert.assertTrue(unavailable.shouldRetry());
+        Assert.assertEquals(429, rateLimitedStatus);
+        Assert.assertEquals("30", retryAfter);
+        Assert.assertEquals(BacktraceResultStatus.Ok, accepted.getStatus());
+        Assert.assertEquals(server.getRequests().get(2).getRxId(), accepted.getRxId());
+    }
+
+    @Test
+    public void blackHoleRequestUntilClientTimesOut() throws Exception {
+        // GIVEN
+        server.setDefaultResponse(StubResponse.blackHole());
+        RequestTimeouts timeouts = new RequestTimeouts(1, 1, 0, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), createData(), null, null, timeouts);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+        Assert.assertTrue(server.awaitRequests(1, 1, TimeUnit.SECONDS));
+    }
+}
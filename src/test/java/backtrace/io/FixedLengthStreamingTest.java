@@ -0,0 +1,173 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.CompressionType;
+import backtrace.io.http.HttpClientRequestHandler;
+import backtrace.io.http.HttpConnectionPool;
+import backtrace.io.http.RequestCompression;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class FixedLengthStreamingTest {
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+    private File attachment;
+
+    private static class Request {
+        final String contentLength;
+        final String transferEncoding;
+        final byte[] body;
+
+        Request(String contentLength, String transferEncoding, byte[] body) {
+            this.contentLength = contentLength;
+            this.transferEncoding = transferEncoding;
+            this.body = body;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 512 * 1024; i++) {
+            content.append("log line ").append(i).append('\n');
+        }
+        attachment = File.createTempFile("backtrace", ".log");
+        attachment.deleteOnExit();
+        Files.write(attachment.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        requests.add(new Request(exchange.getRequestHeaders().getFirst("Content-Length"),
+                exchange.getRequestHeaders().getFirst("Transfer-Encoding"), body.toByteArray()));
+        byte[] response = "{\"response\":\"ok\",\"_rxid\":\"03000000-cdf4-a003-0000-000000000000\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private BacktraceData createData() {
+        return new BacktraceData(new BacktraceReport("message", Arrays.asList(attachment.getAbsolutePath())));
+    }
+
+    private void assertFixedLength(Request request) throws IOException {
+        Assert.assertNull(request.transferEncoding);
+        Assert.assertNotNull(request.contentLength);
+        Assert.assertEquals(request.body.length, Long.parseLong(request.contentLength));
+        String body = new String(request.body, StandardCharsets.UTF_8);
+        Assert.assertTrue(body.contains("\r\n\r\n" + new String(Files.readAllBytes(attachment.toPath()),
+                StandardCharsets.UTF_8) + "\r\n--*****"));
+        Assert.assertTrue(body.endsWith("--*****--\r\n"));
+    }
+
+    @Test
+    public void sendFixedLengthBodyWithHttpUrlConnection() throws IOException {
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, createData());
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        assertFixedLength(requests.get(0));
+    }
+
+    @Test
+    public void sendFixedLengthBodyOnPooledConnection() throws IOException {
+        // GIVEN
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+        BacktraceData data = createData();
+
+        // WHEN
+        BacktraceResult first = ApiSender.sendReport(url, data, pool);
+        BacktraceResult second = ApiSender.sendReport(url, data, pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, second.getStatus());
+        Assert.assertEquals(1, pool.getReusedRequests());
+        assertFixedLength(requests.get(0));
+        assertFixedLength(requests.get(1));
+    }
+
+    @Test
+    public void sendFixedLengthBodyWithHttpClient() throws Exception {
+        // GIVEN
+        BacktraceData data = createData();
+        data.setSubmissionUrl(url);
+
+        // WHEN
+        BacktraceResult result = new HttpClientRequestHandler().onRequest(data).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        assertFixedLength(requests.get(0));
+    }
+
+    @Test
+    public void sendCompressedBodyInChunks() {
+        // GIVEN
+        RequestCompression compression = new RequestCompression(CompressionType.Gzip, 6, 0);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, createData(), null, compression);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals("chunked", requests.get(0).transferEncoding);
+        Assert.assertNull(requests.get(0).contentLength);
+    }
+
+    @Test
+    public void sendUncompressedBodyBelowThresholdWithFixedLength() throws IOException {
+        // GIVEN
+        RequestCompression compression = new RequestCompression(CompressionType.Gzip, 6, 16 * 1024 * 1024);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, createData(), null, compression);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        assertFixedLength(requests.get(0));
+    }
+}
@@ -0,0 +1,150 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.HttpClientRequestHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class HttpClientRequestHandlerTest {
+    private final String rxId = "03000000-cdf4-a003-0000-000000000000";
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+    private volatile int responseStatus = 200;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        requestBodies.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        byte[] response = (responseStatus == 200 ? "{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}"
+                : "{\"error\":{\"code\":503,\"message\":\"error\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(responseStatus, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private BacktraceData createData(BacktraceReport report) {
+        BacktraceData data = new BacktraceData(report);
+        data.setSubmissionUrl(url);
+        return data;
+    }
+
+    @Test
+    public void sendReportWithAttachment() throws Exception {
+        // GIVEN
+        final String content = "attachment content";
+        final File attachment = File.createTempFile("backtrace", ".txt");
+        attachment.deleteOnExit();
+        Files.write(attachment.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        final BacktraceReport report = new BacktraceReport("message",
+                Collections.singletonList(attachment.getAbsolutePath()));
+        final HttpClientRequestHandler handler = new HttpClientRequestHandler();
+
+        // WHEN
+        BacktraceResult result = handler.onRequest(createData(report)).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(rxId, result.getRxId());
+        Assert.assertEquals(1, requestBodies.size());
+        String body = requestBodies.get(0);
+        Assert.assertTrue(body.startsWith("--*****\r\nContent-Disposition: form-data; name=\"upload_file\""));
+        Assert.assertTrue(body.contains("name=\"attachment_" + attachment.getName() + "\""));
+        Assert.assertTrue(body.contains("\r\n\r\n" + content + "\r\n"));
+        Assert.assertTrue(body.endsWith("--*****--\r\n"));
+    }
+
+    @Test
+    public void sendManyReportsConcurrently() throws Exception {
+        // GIVEN
+        final int reports = 50;
+        final HttpClientRequestHandler handler = new HttpClientRequestHandler();
+        final List<CompletableFuture<BacktraceResult>> results = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < reports; i++) {
+            results.add(handler.onRequest(createData(new BacktraceReport("message " + i))));
+        }
+
+        // THEN
+        for (CompletableFuture<BacktraceResult> result : results) {
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertEquals(reports, requestBodies.size());
+    }
+
+    @Test
+    public void returnServerErrorStatus() throws Exception {
+        // GIVEN
+        responseStatus = 503;
+        final HttpClientRequestHandler handler = new HttpClientRequestHandler();
+
+        // WHEN
+        BacktraceResult result = handler.onRequest(createData(new BacktraceReport("message"))).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertEquals(503, (int) result.getHttpStatusCode());
+        Assert.assertTrue(result.shouldRetry());
+    }
+
+    @Test
+    public void sendReportsFromClient() throws Exception {
+        // GIVEN
+        final BacktraceConfig config = new BacktraceConfig(url);
+        config.disableDatabase();
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomAsyncRequestHandler(new HttpClientRequestHandler());
+
+        // WHEN
+        BacktraceResult result = client.sendAsync("message").get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(rxId, result.getRxId());
+        Assert.assertEquals(1, requestBodies.size());
+    }
+}
@@ -0,0 +1,269 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.HttpConnectionPool;
+import backtrace.io.http.RequestTimeouts;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class HttpConnectionPoolTest {
+    private final String rxId = "03000000-cdf4-a003-0000-000000000000";
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+    private volatile int responseStatus = 200;
+    private volatile boolean closeConnections = false;
+    private volatile long responseDelayMillis = 0;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        requestBodies.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        if (responseDelayMillis > 0) {
+            try {
+                Thread.sleep(responseDelayMillis);
+            } catch (InterruptedException ignored) {
+            }
+        }
+        byte[] response = (responseStatus == 200 ? "{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}"
+                : "{\"error\":{\"code\":500,\"message\":\"error\"}}").getBytes(StandardCharsets.UTF_8);
+        if (closeConnections) {
+            exchange.getResponseHeaders().add("Connection", "close");
+        }
+        exchange.sendResponseHeaders(responseStatus, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private BacktraceResult send(HttpConnectionPool pool) {
+        return ApiSender.sendReport(url, new BacktraceData(new BacktraceReport("message")), pool);
+    }
+
+    @Test
+    public void reuseConnectionForConsecutiveReports() {
+        // GIVEN
+        final int reports = 5;
+        final HttpConnectionPool pool = new HttpConnectionPool(2, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        for (int i = 0; i < reports; i++) {
+            BacktraceResult result = send(pool);
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+            Assert.assertEquals(rxId, result.getRxId());
+        }
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(reports, requestBodies.size());
+        Assert.assertTrue(requestBodies.get(0).contains("upload_file"));
+        Assert.assertEquals(1, pool.getOpenedConnections());
+        Assert.assertEquals(0, pool.getTlsHandshakes());
+        Assert.assertEquals(reports - 1, pool.getReusedRequests());
+        Assert.assertEquals((double) (reports - 1) / reports, pool.getReuseRatio(), 0.001);
+        Assert.assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void sendAttachmentsOnPooledConnection() throws IOException {
+        // GIVEN
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 1024 * 1024; i++) {
+            content.append("log line ").append(i).append('\n');
+        }
+        final File attachment = File.createTempFile("backtrace", ".log");
+        attachment.deleteOnExit();
+        Files.write(attachment.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        final File emptyAttachment = File.createTempFile("backtrace", ".txt");
+        emptyAttachment.deleteOnExit();
+        final BacktraceData data = new BacktraceData(new BacktraceReport("message",
+                Arrays.asList(attachment.getAbsolutePath(), emptyAttachment.getAbsolutePath())));
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = ApiSender.sendReport(url, data, pool);
+        BacktraceResult second = ApiSender.sendReport(url, data, pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, second.getStatus());
+        Assert.assertEquals(1, pool.getOpenedConnections());
+        for (String body : requestBodies) {
+            Assert.assertTrue(body.contains("Content-Type: null\r\n\r\n" + content + "\r\n--*****"));
+            Assert.assertTrue(body.contains("filename=\"attachment_" + emptyAttachment.getName() +
+                    "\"\r\nContent-Type: text/plain\r\n\r\n\r\n--*****"));
+        }
+    }
+
+    @Test
+    public void reuseConnectionAfterServerError() {
+        // GIVEN
+        responseStatus = 500;
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = send(pool);
+        BacktraceResult second = send(pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, first.getStatus());
+        Assert.assertEquals(500, (int) second.getHttpStatusCode());
+        Assert.assertTrue(first.getMessage().startsWith("500: {\"error\""));
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void closeIdleConnectionsAfterTimeout() throws InterruptedException {
+        // GIVEN
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 50, TimeUnit.MILLISECONDS);
+        send(pool);
+
+        // WHEN
+        Thread.sleep(150);
+        BacktraceResult result = send(pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(2, pool.getOpenedConnections());
+        Assert.assertEquals(0, pool.getReusedRequests());
+    }
+
+    @Test
+    public void closeIdleConnectionsWhenConnectionIsReleased() throws Exception {
+        // GIVEN
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 50, TimeUnit.MILLISECONDS);
+        final HttpServer otherServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        otherServer.createContext("/post", this::handle);
+        otherServer.start();
+        final String otherUrl = "http://127.0.0.1:" + otherServer.getAddress().getPort() + "/post?format=json&token=token";
+        send(pool);
+
+        // WHEN
+        Thread.sleep(150);
+        BacktraceResult result = ApiSender.sendReport(otherUrl, new BacktraceData(new BacktraceReport("message")), pool);
+        int idleConnections = pool.getIdleConnections();
+        pool.close();
+        otherServer.stop(0);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(1, idleConnections);
+    }
+
+    @Test
+    public void closeConnectionReleasedAfterPoolIsClosed() {
+        // GIVEN
+        final HttpConnectionPool pool = new HttpConnectionPool(2, 30, TimeUnit.SECONDS);
+        send(pool);
+
+        // WHEN
+        pool.close();
+        BacktraceResult result = send(pool);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(0, pool.getIdleConnections());
+        Assert.assertEquals(2, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void doNotSendRequestAgainWhenReusedConnectionTimesOut() {
+        // GIVEN
+        final HttpConnectionPool pool = new HttpConnectionPool(2, 30, TimeUnit.SECONDS);
+        final RequestTimeouts timeouts = new RequestTimeouts(1000, 200, 0, TimeUnit.MILLISECONDS);
+        final BacktraceData data = new BacktraceData(new BacktraceReport("message"));
+        BacktraceResult first = ApiSender.sendReport(url, data, pool, null, timeouts);
+
+        // WHEN
+        responseDelayMillis = 600;
+        BacktraceResult second = ApiSender.sendReport(url, data, pool, null, timeouts);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Timeout, second.getStatus());
+        Assert.assertEquals(2, requestBodies.size());
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void openNewConnectionWhenServerClosesConnection() {
+        // GIVEN
+        closeConnections = true;
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        send(pool);
+        BacktraceResult result = send(pool);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(2, pool.getOpenedConnections());
+        Assert.assertEquals(0, pool.getIdleConnections());
+        pool.close();
+    }
+
+    @Test
+    public void sendReportsUsingConnectionPoolFromConfig() throws Exception {
+        // GIVEN
+        final BacktraceConfig config = new BacktraceConfig(url);
+        config.disableDatabase();
+        config.setConnectionPool(2, 30, TimeUnit.SECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+
+        // WHEN
+        client.sendAsync("first").get(5, TimeUnit.SECONDS);
+        BacktraceResult result = client.sendAsync("second").get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        HttpConnectionPool pool = client.getMetrics().getConnectionPool();
+        Assert.assertNotNull(pool);
+        Assert.assertEquals(1, pool.getOpenedConnections());
+        Assert.assertEquals(1, pool.getReusedRequests());
+    }
+}
@@ -0,0 +1,335 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.NioRequestHandler;
+import backtrace.io.http.RequestTimeouts;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class NioRequestHandlerTest {
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+    private volatile int responseStatus = 200;
+    private volatile CountDownLatch receivedRequests = new CountDownLatch(0);
+    private NioRequestHandler handler;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        if (handler != null) {
+            handler.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        requestBodies.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        receivedRequests.countDown();
+        try {
+            receivedRequests.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] response = responseStatus == 200
+                ? "{\"response\":\"ok\",\"_rxid\":\"03000000-cdf4-a003-0000-000000000000\"}".getBytes(StandardCharsets.UTF_8)
+                : "Bad gateway".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(responseStatus, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private static BacktraceData createData(String url, String message, String... attachments) {
+        BacktraceData data = new BacktraceData(new BacktraceReport(message, Arrays.asList(attachments)));
+        data.setSubmissionUrl(url);
+        return data;
+    }
+
+    @Test
+    public void pipelineReportsOnSingleConnection() throws Exception {
+        // GIVEN
+        final int reports = 20;
+        handler = new NioRequestHandler(1, 8, new RequestTimeouts(5, 5, 0, TimeUnit.SECONDS));
+        List<CompletableFuture<BacktraceResult>> results = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < reports; i++) {
+            results.add(handler.onRequest(createData(url, "message " + i)));
+        }
+
+        // THEN
+        for (CompletableFuture<BacktraceResult> result : results) {
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertEquals(reports, requestBodies.size());
+        Assert.assertEquals(1, handler.getOpenedConnections());
+        Assert.assertTrue(handler.getPipelinedRequests() > 0);
+        for (int i = 0; i < reports; i++) {
+            Assert.assertTrue(requestBodies.get(i).contains("\"message " + i + "\""));
+        }
+    }
+
+    @Test
+    public void spreadReportsOverConnectionsBeforePipelining() throws Exception {
+        // GIVEN
+        handler = new NioRequestHandler(3, 8, new RequestTimeouts(5, 5, 0, TimeUnit.SECONDS));
+        receivedRequests = new CountDownLatch(3); // responses are sent when all requests are received
+        List<CompletableFuture<BacktraceResult>> results = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 3; i++) {
+            results.add(handler.onRequest(createData(url, "message " + i)));
+        }
+
+        // THEN
+        for (CompletableFuture<BacktraceResult> result : results) {
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertEquals(3, handler.getOpenedConnections());
+        Assert.assertEquals(0, handler.getPipelinedRequests());
+    }
+
+    @Test
+    public void sendPendingReportsWhenResponsesAreReceived() throws Exception {
+        // GIVEN
+        final int reports = 10;
+        handler = new NioRequestHandler(1, 2, new RequestTimeouts(5, 5, 0, TimeUnit.SECONDS));
+        List<BacktraceData> data = new ArrayList<>();
+        for (int i = 0; i < reports; i++) {
+            data.add(createData(url, "message " + i));
+        }
+        List<CompletableFuture<BacktraceResult>> results = new ArrayList<>();
+
+        // WHEN
+        for (BacktraceData report : data) {
+            results.add(handler.onRequest(report));
+        }
+
+        // THEN
+        for (CompletableFuture<BacktraceResult> result : results) {
+            Assert.assertEquals(BacktraceResultStatus.Ok, result.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertEquals(reports, requestBodies.size());
+        Assert.assertEquals(1, handler.getOpenedConnections());
+    }
+
+    @Test
+    public void sendAttachmentFromDirectBuffers() throws Exception {
+        // GIVEN
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; content.length() < 512 * 1024; i++) {
+            content.append("log line ").append(i).append('\n');
+        }
+        File attachment = File.createTempFile("backtrace", ".log");
+        attachment.deleteOnExit();
+        Files.write(attachment.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        handler = new NioRequestHandler();
+
+        // WHEN
+        BacktraceResult first = handler.onRequest(createData(url, "message", attachment.getAbsolutePath()))
+                .get(5, TimeUnit.SECONDS);
+        BacktraceResult second = handler.onRequest(createData(url, "message", attachment.getAbsolutePath()))
+                .get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, second.getStatus());
+        Assert.assertTrue(requestBodies.get(0).contains("\r\n\r\n" + content + "\r\n--*****"));
+        Assert.assertTrue(requestBodies.get(0).endsWith("--*****--\r\n"));
+        Assert.assertTrue(requestBodies.get(1).contains("\r\n\r\n" + content + "\r\n--*****"));
+        Assert.assertEquals(1, handler.getOpenedConnections());
+        Assert.assertTrue(handler.getAllocatedBuffers() <= 2); // write and read buffers are reused by the second request
+    }
+
+    @Test
+    public void reportErrorResponse() throws Exception {
+        // GIVEN
+        responseStatus = 502;
+        handler = new NioRequestHandler();
+
+        // WHEN
+        BacktraceResult result = handler.onRequest(createData(url, "message")).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertEquals(502, (int) result.getHttpStatusCode());
+        Assert.assertEquals("502: Bad gateway", result.getMessage());
+        Assert.assertTrue(result.shouldRetry());
+    }
+
+    @Test
+    public void resendPipelinedReportsWhenServerClosesConnection() throws Exception {
+        // GIVEN
+        final int reports = 6;
+        handler = new NioRequestHandler(1, 8, new RequestTimeouts(5, 5, 0, TimeUnit.SECONDS));
+        try (ServerSocket closingServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            Thread serverThread = new Thread(() -> serveTwoRequestsPerConnection(closingServer));
+            serverThread.setDaemon(true);
+            serverThread.start();
+            String closingUrl = "http://127.0.0.1:" + closingServer.getLocalPort() + "/post?format=json&token=token";
+            List<CompletableFuture<BacktraceResult>> results = new ArrayList<>();
+
+            // WHEN
+            for (int i = 0; i < reports; i++) {
+                results.add(handler.onRequest(createData(closingUrl, "message " + i)));
+            }
+
+            // THEN
+            for (CompletableFuture<BacktraceResult> result : results) {
+                Assert.assertEquals(BacktraceResultStatus.Ok, result.get(5, TimeUnit.SECONDS).getStatus());
+            }
+            Assert.assertEquals(3, handler.getOpenedConnections());
+        }
+    }
+
+    /**
+     * Answers two requests on each connection, the second response closes the connection
+     * although more requests have been pipelined
+     */
+    private static void serveTwoRequestsPerConnection(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                InputStream input = socket.getInputStream();
+                OutputStream output = socket.getOutputStream();
+                for (int i = 0; i < 2; i++) {
+                    readRequest(input);
+                    String body = "{\"response\":\"ok\",\"_rxid\":\"03000000-cdf4-a003-0000-000000000000\"}";
+                    output.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\n" +
+                            (i == 1 ? "Connection: close\r\n" : "") + "\r\n" + body).getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                }
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private static void readRequest(InputStream input) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while (!head.toString().endsWith("\r\n\r\n")) {
+            int c = input.read();
+            if (c == -1) {
+                throw new IOException("Connection closed");
+            }
+            head.append((char) c);
+        }
+        String lengthHeader = "Content-Length: ";
+        int start = head.indexOf(lengthHeader) + lengthHeader.length();
+        long length = Long.parseLong(head.substring(start, head.indexOf("\r\n", start)));
+        for (long i = 0; i < length; i++) {
+            if (input.read() == -1) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+
+    @Test
+    public void reportTimeoutWhenServerDoesNotRespond() throws Exception {
+        // GIVEN
+        handler = new NioRequestHandler(1, 8, new RequestTimeouts(5000, 0, 300, TimeUnit.MILLISECONDS));
+        try (ServerSocket blackHole = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            String blackHoleUrl = "http://127.0.0.1:" + blackHole.getLocalPort() + "/post?format=json&token=token";
+
+            // WHEN
+            BacktraceResult result = handler.onRequest(createData(blackHoleUrl, "message")).get(5, TimeUnit.SECONDS);
+
+            // THEN
+            Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+            Assert.assertEquals("Request has not been completed within 300 ms", result.getMessage());
+        }
+    }
+
+    @Test
+    public void reportErrorWhenConnectionIsRefused() throws Exception {
+        // GIVEN
+        int port;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            port = closed.getLocalPort();
+        }
+        handler = new NioRequestHandler();
+
+        // WHEN
+        BacktraceResult result = handler.onRequest(createData("http://127.0.0.1:" + port + "/post", "message"))
+                .get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertTrue(result.shouldRetry());
+    }
+
+    @Test
+    public void failRequestsAfterClose() throws Exception {
+        // GIVEN
+        handler = new NioRequestHandler();
+        handler.close();
+
+        // WHEN
+        BacktraceResult result = handler.onRequest(createData(url, "message")).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertTrue(requestBodies.isEmpty());
+    }
+
+    @Test
+    public void sendReportsFromClient() throws Exception {
+        // GIVEN
+        BacktraceConfig config = new BacktraceConfig(url);
+        config.disableDatabase();
+        handler = new NioRequestHandler();
+        BacktraceClient client = new BacktraceClient(config);
+        client.setCustomAsyncRequestHandler(handler);
+
+        // WHEN
+        BacktraceResult result = client.sendAsync(new BacktraceReport("message")).get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(1, requestBodies.size());
+    }
+}
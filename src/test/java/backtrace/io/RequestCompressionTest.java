@@ -0,0 +1,160 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.CompressionType;
+import backtrace.io.http.HttpConnectionPool;
+import backtrace.io.http.RequestCompression;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class RequestCompressionTest {
+    private final String rxId = "03000000-cdf4-a003-0000-000000000000";
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final List<String> contentEncodings = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        contentEncodings.add(String.valueOf(contentEncoding));
+        InputStream input = exchange.getRequestBody();
+        if ("gzip".equals(contentEncoding)) {
+            input = new GZIPInputStream(input);
+        } else if ("deflate".equals(contentEncoding)) {
+            input = new InflaterInputStream(input);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        input.close();
+        requestBodies.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        byte[] response = ("{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(response);
+        }
+    }
+
+    private BacktraceData createData() {
+        return new BacktraceData(new BacktraceReport("message"));
+    }
+
+    @Test
+    public void sendGzipCompressedReport() {
+        // GIVEN
+        final RequestCompression compression = new RequestCompression(CompressionType.Gzip, 6, 0);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, createData(), null, compression);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(rxId, result.getRxId());
+        Assert.assertEquals("gzip", contentEncodings.get(0));
+        Assert.assertTrue(requestBodies.get(0).contains("name=\"upload_file\""));
+        Assert.assertTrue(requestBodies.get(0).endsWith("--*****--\r\n"));
+        Assert.assertEquals(1, compression.getCompressedReports());
+        Assert.assertEquals(requestBodies.get(0).getBytes(StandardCharsets.UTF_8).length,
+                compression.getUncompressedBytes());
+        Assert.assertTrue(compression.getCompressionRatio() > 0);
+        Assert.assertTrue(compression.getCompressionRatio() < 0.5);
+    }
+
+    @Test
+    public void sendDeflateCompressedReportsOnPooledConnection() {
+        // GIVEN
+        final RequestCompression compression = new RequestCompression(CompressionType.Deflate, 9, 0);
+        final HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = ApiSender.sendReport(url, createData(), pool, compression);
+        BacktraceResult second = ApiSender.sendReport(url, createData(), pool, compression);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, second.getStatus());
+        Assert.assertEquals("deflate", contentEncodings.get(1));
+        Assert.assertTrue(requestBodies.get(1).contains("name=\"upload_file\""));
+        Assert.assertEquals(2, compression.getCompressedReports());
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void skipCompressionOfSmallReports() {
+        // GIVEN
+        final RequestCompression compression = new RequestCompression(CompressionType.Gzip, 6, Integer.MAX_VALUE);
+
+        // WHEN
+        BacktraceResult result = ApiSender.sendReport(url, createData(), null, compression);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals("null", contentEncodings.get(0));
+        Assert.assertEquals(0, compression.getCompressedReports());
+        Assert.assertEquals(0, compression.getCompressionRatio(), 0);
+    }
+
+    @Test
+    public void sendCompressedReportsFromClient() throws Exception {
+        // GIVEN
+        final BacktraceConfig config = new BacktraceConfig(url);
+        config.disableDatabase();
+        config.setCompression(CompressionType.Gzip, 6, 1024);
+        final BacktraceClient client = new BacktraceClient(config);
+
+        // WHEN
+        BacktraceResult result = client.sendAsync("message").get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals("gzip", contentEncodings.get(0));
+        Assert.assertEquals(1, client.getMetrics().getCompression().getCompressedReports());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidCompressionLevel() {
+        // GIVEN
+        final BacktraceConfig config = new BacktraceConfig(url);
+
+        // WHEN
+        config.setCompression(CompressionType.Gzip, 10, 0);
+    }
+}
@@ -5,31 +5,27 @@ import backtrace.io.data.BacktraceReport;
 import backtrace.io.http.ApiSender;
 import backtrace.io.http.BacktraceResult;
 import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.stub.BacktraceStubServer;
+import backtrace.io.stub.StubResponse;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
-import org.powermock.api.mockito.PowerMockito;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
-import org.powermock.modules.junit4.PowerMockRunnerDelegate;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.Arrays;
 import java.util.Collection;
 
-@RunWith(PowerMockRunner.class)
-@PowerMockRunnerDelegate(Parameterized.class)
-@PrepareForTest({URL.class, URLConnection.class, ApiSender.class})
+@RunWith(Parameterized.class)
 public class RequestRetryingTest {
 
     private BacktraceResultStatus serverResultStatus;
     private Integer httpStatusCode;
     private boolean retry;
+    private BacktraceStubServer server;
 
     public RequestRetryingTest(BacktraceResultStatus serverResultStatus, Integer httpStatusCode, boolean retry) {
         this.serverResultStatus = serverResultStatus;
@@ -37,27 +33,25 @@ public class RequestRetryingTest {
         this.retry = retry;
     }
 
+    @Before
+    public void startServer() throws IOException {
+        server = BacktraceStubServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
     @Test
     public void ifRequestShouldBeResent() throws Exception {
         // GIVEN
-        String url = "https://backtrace.io/";
-        String jsonSuccessResponse = "{\"response\":\"error\",\"_rxid\":\"" + "00000000-0000-0000-0000-000000000000" + "\"}";
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        String jsonResponse = "{\"response\":\"error\",\"_rxid\":\"" + "00000000-0000-0000-0000-000000000000" + "\"}";
         BacktraceReport backtraceReport = new BacktraceReport("");
-
-        // GIVEN - mock URL and HttpURLConnection
-        URL u = PowerMockito.mock(URL.class);
-        PowerMockito.whenNew(URL.class).withArguments(url).thenReturn(u);
-        HttpURLConnection huc = PowerMockito.mock(HttpURLConnection.class);
-        PowerMockito.when(u.openConnection()).thenReturn(huc);
-        PowerMockito.when(huc.getResponseCode()).thenReturn(httpStatusCode);
-
-        PowerMockito.doNothing().when(huc).connect();
-        PowerMockito.when(huc.getOutputStream()).thenReturn(outputStream);
-        PowerMockito.when(huc.getInputStream()).thenReturn(new ByteArrayInputStream(jsonSuccessResponse.getBytes()));
+        server.enqueue(StubResponse.status(httpStatusCode, jsonResponse));
 
         // WHEN
-        BacktraceResult result = ApiSender.sendReport(url, new BacktraceData(backtraceReport));
+        BacktraceResult result = ApiSender.sendReport(server.getUrl(), new BacktraceData(backtraceReport));
 
         // THEN
         Assert.assertEquals(serverResultStatus, result.getStatus());
@@ -0,0 +1,160 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.HttpConnectionPool;
+import backtrace.io.http.RequestTimeouts;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class RequestTimeoutsTest {
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private ServerSocket server;
+    private String url;
+
+    @Before
+    public void startServer() throws IOException {
+        // server reads requests but never responds
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        url = "http://127.0.0.1:" + server.getLocalPort() + "/post?format=json&token=token";
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    connections.add(socket);
+                    Thread reader = new Thread(() -> discard(socket));
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+
+    private static void discard(Socket socket) {
+        try (InputStream input = socket.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) != -1) {
+                // request is not answered
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private BacktraceResult send(HttpConnectionPool pool, RequestTimeouts timeouts) {
+        return ApiSender.sendReport(url, new BacktraceData(new BacktraceReport("message")), pool, null, timeouts);
+    }
+
+    @Test
+    public void reportReadTimeoutWithHttpUrlConnection() {
+        // GIVEN
+        RequestTimeouts timeouts = new RequestTimeouts(1000, 200, 0, TimeUnit.MILLISECONDS);
+
+        // WHEN
+        BacktraceResult result = send(null, timeouts);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+        Assert.assertTrue(result.shouldRetry());
+    }
+
+    @Test
+    public void reportReadTimeoutOnPooledConnection() {
+        // GIVEN
+        RequestTimeouts timeouts = new RequestTimeouts(1000, 200, 0, TimeUnit.MILLISECONDS);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult result = send(pool, timeouts);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+        Assert.assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void abortRequestAfterRequestTimeoutWithHttpUrlConnection() {
+        // GIVEN
+        RequestTimeouts timeouts = new RequestTimeouts(1000, 0, 300, TimeUnit.MILLISECONDS);
+        long start = System.currentTimeMillis();
+
+        // WHEN
+        BacktraceResult result = send(null, timeouts);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+        Assert.assertEquals("Request has not been completed within 300 ms", result.getMessage());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void abortRequestAfterRequestTimeoutOnPooledConnection() {
+        // GIVEN
+        RequestTimeouts timeouts = new RequestTimeouts(1000, 0, 300, TimeUnit.MILLISECONDS);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+        long start = System.currentTimeMillis();
+
+        // WHEN
+        BacktraceResult result = send(pool, timeouts);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+        Assert.assertEquals("Request has not been completed within 300 ms", result.getMessage());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void timeoutOfAsyncRequestOpensCircuit() throws Exception {
+        // GIVEN
+        BacktraceConfig config = new BacktraceConfig(url);
+        config.disableDatabase();
+        config.setDatabaseRetryLimit(0);
+        config.setTimeouts(1000, 1000, 200, TimeUnit.MILLISECONDS);
+        config.setCircuitBreaker(1, 1, TimeUnit.MINUTES);
+        BacktraceClient client = new BacktraceClient(config);
+        client.setCustomAsyncRequestHandler(data -> new CompletableFuture<>());
+
+        // WHEN
+        BacktraceResult result = client.sendAsync(new BacktraceReport("message")).get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Timeout, result.getStatus());
+        Assert.assertTrue(result.shouldRetry());
+        Assert.assertEquals(CircuitBreakerState.Open, client.getMetrics().getCircuitBreakers().get(0).getState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectNegativeTimeout() {
+        new BacktraceConfig(url).setTimeouts(-1, 0, 0, TimeUnit.MILLISECONDS);
+    }
+}
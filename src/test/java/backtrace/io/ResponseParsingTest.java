@@ -0,0 +1,194 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceData;
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.ApiSender;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import backtrace.io.http.HttpClientRequestHandler;
+import backtrace.io.http.HttpConnectionPool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class ResponseParsingTest {
+    private final String rxId = "03000000-cdf4-a003-0000-000000000000";
+    private HttpServer server;
+    private String url;
+    private volatile int responseStatus = 200;
+    private volatile byte[] responseBody;
+    private volatile boolean chunked = false;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/post", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/post?format=json&token=token";
+        responseBody = ("{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            while (input.read(buffer) != -1) {
+                // request body is not verified
+            }
+        }
+        byte[] response = responseBody;
+        exchange.sendResponseHeaders(responseStatus, chunked ? 0 : response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            for (int offset = 0; offset < response.length; offset += 1000) {
+                output.write(response, offset, Math.min(1000, response.length - offset));
+            }
+        }
+    }
+
+    private static byte[] createErrorBody(int size) {
+        byte[] body = new byte[size];
+        Arrays.fill(body, (byte) 'x');
+        return body;
+    }
+
+    private BacktraceResult send(HttpConnectionPool pool) {
+        return ApiSender.sendReport(url, new BacktraceData(new BacktraceReport("message")), pool);
+    }
+
+    @Test
+    public void parseChunkedResponseOnPooledConnection() {
+        // GIVEN
+        chunked = true;
+        responseBody = ("{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\", \"padding\":\"" +
+                new String(createErrorBody(5000), StandardCharsets.UTF_8) + "\"}\n").getBytes(StandardCharsets.UTF_8);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = send(pool);
+        BacktraceResult second = send(pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(rxId, first.getRxId());
+        Assert.assertEquals(BacktraceResultStatus.Ok, second.getStatus());
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void drainTextAfterJsonOnPooledConnection() {
+        // GIVEN
+        responseBody = ("{\"response\":\"ok\",\"_rxid\":\"" + rxId + "\"}\n\n   ").getBytes(StandardCharsets.UTF_8);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = send(pool);
+        BacktraceResult second = send(pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, second.getStatus());
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void capErrorMessageAndReuseConnection() {
+        // GIVEN
+        responseStatus = 502;
+        responseBody = createErrorBody(256 * 1024);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = send(pool);
+        BacktraceResult second = send(pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, first.getStatus());
+        Assert.assertEquals(502, (int) second.getHttpStatusCode());
+        Assert.assertTrue(first.getMessage().startsWith("502: xxx"));
+        Assert.assertTrue(first.getMessage().endsWith("..."));
+        Assert.assertTrue(first.getMessage().length() <= 16 * 1024 + 10);
+        Assert.assertEquals(1, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void closeConnectionWhenErrorBodyIsTooLongToDrain() {
+        // GIVEN
+        responseStatus = 502;
+        responseBody = createErrorBody(4 * 1024 * 1024);
+        HttpConnectionPool pool = new HttpConnectionPool(1, 30, TimeUnit.SECONDS);
+
+        // WHEN
+        BacktraceResult first = send(pool);
+        BacktraceResult second = send(pool);
+        pool.close();
+
+        // THEN
+        Assert.assertEquals(502, (int) first.getHttpStatusCode());
+        Assert.assertEquals(502, (int) second.getHttpStatusCode());
+        Assert.assertEquals(2, pool.getOpenedConnections());
+    }
+
+    @Test
+    public void capErrorMessageWithHttpUrlConnection() {
+        // GIVEN
+        responseStatus = 500;
+        responseBody = createErrorBody(256 * 1024);
+
+        // WHEN
+        BacktraceResult result = send(null);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertEquals(500, (int) result.getHttpStatusCode());
+        Assert.assertTrue(result.getMessage().endsWith("..."));
+        Assert.assertTrue(result.getMessage().length() <= 16 * 1024 + 10);
+    }
+
+    @Test
+    public void capErrorMessageWithHttpClient() throws Exception {
+        // GIVEN
+        responseStatus = 500;
+        responseBody = createErrorBody(256 * 1024);
+        BacktraceData data = new BacktraceData(new BacktraceReport("message"));
+        data.setSubmissionUrl(url);
+
+        // WHEN
+        BacktraceResult result = new HttpClientRequestHandler().onRequest(data).get(5, TimeUnit.SECONDS);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertTrue(result.getMessage().endsWith("..."));
+        Assert.assertTrue(result.getMessage().length() <= 16 * 1024 + 10);
+    }
+
+    @Test
+    public void reportErrorForEmptySuccessfulResponse() {
+        // GIVEN
+        responseBody = new byte[0];
+
+        // WHEN
+        BacktraceResult result = send(null);
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertEquals("Response of Backtrace API has no body", result.getMessage());
+    }
+}
@@ -0,0 +1,121 @@
+package backtrace.io;
+
+import backtrace.io.data.BacktraceReport;
+import backtrace.io.http.BacktraceResult;
+import backtrace.io.http.BacktraceResultStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SendAsyncTest {
+    private final String message = "message";
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+    }
+
+    @Test
+    public void completeFutureWithServerResponse() throws Exception {
+        // GIVEN
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> BacktraceResult.onSuccess(data.getReport(), message));
+
+        // WHEN
+        CompletableFuture<BacktraceResult> future = client.sendAsync(message);
+        BacktraceResult result = future.get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.Ok, result.getStatus());
+        Assert.assertEquals(message, result.getMessage());
+    }
+
+    @Test
+    public void completeFutureAfterLastRetry() throws Exception {
+        // GIVEN
+        final int retryLimit = 2;
+        final AtomicInteger requests = new AtomicInteger();
+        config.setDatabaseRetryLimit(retryLimit);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            requests.incrementAndGet();
+            return BacktraceResult.onError(data.getReport(), new Exception(message));
+        });
+        final BacktraceReport report = new BacktraceReport(message);
+
+        // WHEN
+        BacktraceResult result = client.sendAsync(report).get(5, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertEquals(BacktraceResultStatus.ServerError, result.getStatus());
+        Assert.assertEquals(retryLimit + 1, requests.get());
+        Assert.assertEquals(retryLimit, report.getRetryCounter());
+    }
+
+    @Test
+    public void completeFutureOnCompletionExecutor() throws Exception {
+        // GIVEN
+        final String executorThreadName = "completion-thread";
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, executorThreadName));
+        final AtomicReference<String> completionThread = new AtomicReference<>();
+        final CompletableFuture<Void> stageAttached = new CompletableFuture<>();
+        config.setCompletionExecutor(executor);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            stageAttached.join();
+            return BacktraceResult.onSuccess(data.getReport(), message);
+        });
+
+        // WHEN
+        CompletableFuture<Void> stage = client.sendAsync(new Exception(message))
+                .thenAccept(result -> completionThread.set(Thread.currentThread().getName()));
+        stageAttached.complete(null);
+        stage.get(5, TimeUnit.SECONDS);
+        client.close();
+        executor.shutdown();
+
+        // THEN
+        Assert.assertEquals(executorThreadName, completionThread.get());
+    }
+
+    @Test
+    public void completeFutureWhenQueueIsFull() throws Exception {
+        // GIVEN
+        config.setQueueCapacity(1);
+        config.setCompletionExecutor(Runnable::run);
+        final BacktraceClient client = new BacktraceClient(config);
+        final CompletableFuture<Void> release = new CompletableFuture<>();
+        client.setCustomRequestHandler(data -> {
+            release.join();
+            return BacktraceResult.onSuccess(data.getReport(), message);
+        });
+
+        // WHEN
+        CompletableFuture<BacktraceResult> first = client.sendAsync("1");
+        CompletableFuture<BacktraceResult> rejected = null;
+        for (int i = 0; i < 3 && rejected == null; i++) {
+            CompletableFuture<BacktraceResult> future = client.sendAsync(Integer.toString(i));
+            if (future.isDone()) {
+                rejected = future;
+            }
+        }
+        release.complete(null);
+
+        // THEN
+        Assert.assertNotNull(rejected);
+        Assert.assertEquals(BacktraceResultStatus.ServerError, rejected.get(5, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals(BacktraceResultStatus.Ok, first.get(5, TimeUnit.SECONDS).getStatus());
+        client.close();
+    }
+}
@@ -0,0 +1,138 @@
+package backtrace.io;
+
+import backtrace.io.helpers.VirtualThreads;
+import backtrace.io.http.BacktraceResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SenderThreadPoolTest {
+    private BacktraceConfig config;
+
+    @Before
+    public void init() {
+        config = new BacktraceConfig("url", "token");
+        config.disableDatabase();
+    }
+
+    @Test
+    public void sendReportsConcurrently() throws InterruptedException {
+        // GIVEN
+        final int threads = 4;
+        final int reports = 8;
+        final long requestTime = 300;
+        final Set<String> senderThreads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger sent = new AtomicInteger();
+        config.setSenderThreadCount(threads);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            senderThreads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(requestTime);
+            } catch (InterruptedException ignored) {
+            }
+            sent.incrementAndGet();
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        long start = System.nanoTime();
+        for (int i = 0; i < reports; i++) {
+            client.send(Integer.toString(i));
+        }
+        boolean completed = client.await(5, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        client.close();
+
+        // THEN
+        Assert.assertTrue(completed);
+        Assert.assertEquals(reports, sent.get());
+        Assert.assertTrue(elapsed < reports * requestTime);
+        Assert.assertTrue(senderThreads.size() > 1);
+        Assert.assertEquals(threads, client.getMetrics().getWorkers().size());
+
+        long processed = 0;
+        for (BacktraceWorkerMetrics worker : client.getMetrics().getWorkers()) {
+            processed += worker.getProcessedReports();
+        }
+        Assert.assertEquals(reports, processed);
+    }
+
+    @Test
+    public void awaitWaitsForReportsProcessedByAllThreads() throws InterruptedException {
+        // GIVEN
+        final AtomicInteger sent = new AtomicInteger();
+        config.setSenderThreadCount(3);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            sent.incrementAndGet();
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        client.send("1");
+        client.send("2");
+        client.send("3");
+        client.await();
+        final int afterAwait = sent.get();
+        client.close();
+
+        // THEN
+        Assert.assertEquals(3, afterAwait);
+        Assert.assertEquals(0, client.getMetrics().getBusyWorkers());
+    }
+
+    @Test
+    public void sendReportsInVirtualThreadsMode() throws InterruptedException {
+        // GIVEN
+        final int maxConcurrentRequests = 3;
+        final int reports = 12;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger sent = new AtomicInteger();
+        config.setSenderExecutionMode(SenderExecutionMode.VirtualThreads);
+        config.setMaxConcurrentRequests(maxConcurrentRequests);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            inFlight.decrementAndGet();
+            sent.incrementAndGet();
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+
+        // WHEN
+        for (int i = 0; i < reports; i++) {
+            client.send(Integer.toString(i));
+        }
+        boolean completed = client.await(10, TimeUnit.SECONDS);
+        client.close();
+
+        // THEN
+        Assert.assertTrue(completed);
+        Assert.assertEquals(reports, sent.get());
+        Assert.assertTrue(maxInFlight.get() <= maxConcurrentRequests);
+        if (VirtualThreads.isSupported()) {
+            Assert.assertEquals(1, client.getMetrics().getWorkers().size());
+            Assert.assertTrue(maxInFlight.get() > 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidNumberOfSenderThreads() {
+        // WHEN
+        config.setSenderThreadCount(0);
+    }
+}
@@ -5,6 +5,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
 public class SerializerTest {
     private final String message = "test-message";
     private String expectedJson;
@@ -36,6 +40,20 @@ public class SerializerTest {
         Assert.assertEquals(expectedJson, json);
     }
 
+    @Test
+    public void objectSerializationToStream() throws Exception {
+        // GIVEN
+        MockTestObject mto = new MockTestObject("zażółć \u2603 \uD83D\uDE00");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // WHEN
+        BacktraceSerializeHelper.toJson(outputStream, mto);
+
+        // THEN
+        Assert.assertEquals(BacktraceSerializeHelper.toJson(mto),
+                new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
     @Test
     public void objectDeserialization() {
         // WHEN
@@ -45,4 +63,18 @@ public class SerializerTest {
         Assert.assertNotNull(mto);
         Assert.assertEquals(this.message, mto.getMessage());
     }
+
+    @Test
+    public void objectDeserializationFromStream() throws Exception {
+        // GIVEN
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(
+                BacktraceSerializeHelper.toJson(new MockTestObject("zażółć \u2603")).getBytes(StandardCharsets.UTF_8));
+
+        // WHEN
+        MockTestObject mto = BacktraceSerializeHelper.fromJson(inputStream, MockTestObject.class);
+
+        // THEN
+        Assert.assertNotNull(mto);
+        Assert.assertEquals("zażółć \u2603", mto.getMessage());
+    }
 }
@@ -9,6 +9,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -90,6 +91,43 @@ public class UncaughtExceptionTest {
         }
     }
 
+    @Test
+    public void passExceptionToRootHandlerAfterTimeout() throws InterruptedException {
+        // GIVEN
+        final CountDownLatch serverResponse = new CountDownLatch(1);
+        final CountDownLatch rootHandlerCalled = new CountDownLatch(1);
+        config.setUncaughtExceptionTimeout(200, TimeUnit.MILLISECONDS);
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(data -> {
+            try {
+                serverResponse.await();
+            } catch (InterruptedException ignored) {
+            }
+            return BacktraceResult.onSuccess(data.getReport(), "");
+        });
+        final Thread.UncaughtExceptionHandler rootHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> rootHandlerCalled.countDown());
+        BacktraceExceptionHandler.enable(client, true);
+
+        // WHEN
+        long start = System.nanoTime();
+        try {
+            Thread.getDefaultUncaughtExceptionHandler().uncaughtException(Thread.currentThread(),
+                    new IllegalStateException("Expected!"));
+        } finally {
+            BacktraceExceptionHandler.disable();
+            Thread.setDefaultUncaughtExceptionHandler(rootHandler);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        serverResponse.countDown();
+        client.close();
+
+        // THEN
+        Assert.assertEquals(0, rootHandlerCalled.getCount());
+        Assert.assertTrue(elapsed >= 200);
+        Assert.assertTrue(elapsed < 5000);
+    }
+
     @Test
     public void testEnableUncaughtExceptionHandler() throws InterruptedException {
         // GIVEN
@@ -71,4 +71,38 @@ public class BacktraceClientThreadsInformationTest {
             client.close();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void markThreadWhichSentReportAsMainThread() throws TimeoutException, InterruptedException {
+        // GIVEN
+        final Waiter waiter = new Waiter();
+        final String threadName = "reporting-thread";
+        final BacktraceConfig config = new BacktraceConfig(URL);
+        config.setGatherAllThreads(false);
+
+        final BacktraceClient client = new BacktraceClient(config);
+        client.setCustomRequestHandler(new RequestHandler() {
+            @Override
+            public BacktraceResult onRequest(BacktraceData data) {
+                waiter.assertFalse(Thread.currentThread().getName().equals(threadName));
+                waiter.assertTrue(data.getThreadInformationMap().containsKey(threadName));
+                waiter.resume();
+                return BacktraceResult.onSuccess(data.getReport(), "");
+            }
+        });
+
+        // WHEN
+        Thread thread = new Thread(() -> client.send("test-message"), threadName);
+        thread.start();
+        thread.join();
+
+        // THEN
+        try {
+            waiter.await(5, TimeUnit.SECONDS);
+        } catch (Exception exception) {
+            waiter.fail(exception);
+        } finally {
+            client.close();
+        }
+    }
+}